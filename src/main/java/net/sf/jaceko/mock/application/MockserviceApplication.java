@@ -24,6 +24,7 @@ import net.sf.jaceko.mock.service.*;
 import net.sf.jaceko.mock.util.FileReader;
 
 import javax.ws.rs.core.Application;
+import java.io.File;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
@@ -41,9 +42,24 @@ public class MockserviceApplication extends Application {
         } catch (IOException e) {
             throw new RuntimeException("Problem reading property file", e);
         }
+        Delayer delayer = new Delayer();
         RecordedRequestsHolder recordedRequestsHolder = new RecordedRequestsHolder();
         recordedRequestsHolder.setMockserviceConfiguration(configurationHolder);
-        Delayer delayer = new Delayer();
+        recordedRequestsHolder.setDelayer(delayer);
+        recordedRequestsHolder.setRecordedBodyStore(new RecordedBodyStore());
+        if (configurationHolder.getRecordingJournalDirectory() != null) {
+            try {
+                recordedRequestsHolder.setRecordingJournal(new RecordingJournal(
+                    new File(configurationHolder.getRecordingJournalDirectory()),
+                    configurationHolder.getRecordingJournalSegmentBytes(),
+                    configurationHolder.getRecordingJournalMaxSegments()));
+            } catch (IOException e) {
+                throw new RuntimeException("Problem opening recording journal", e);
+            }
+        }
+        if (configurationHolder.isRecordingPipelineEnabled()) {
+            recordedRequestsHolder.setRecordingPipeline(new RecordingPipeline(configurationHolder.getRecordingPipelineRingSize()));
+        }
 
         MockSetupExecutor mockSetupExecutor = new MockSetupExecutor();
         mockSetupExecutor.setMockserviceConfiguration(configurationHolder);
@@ -51,7 +67,6 @@ public class MockserviceApplication extends Application {
 
         RequestExecutor svcLayer = new RequestExecutor();
         svcLayer.setMockserviceConfiguration(configurationHolder);
-        svcLayer.setDelayer(delayer);
         svcLayer.setRecordedRequestsHolder(recordedRequestsHolder);
 
         RestServiceMockSetupResource restMockSetupResource = new RestServiceMockSetupResource();
@@ -70,22 +85,37 @@ public class MockserviceApplication extends Application {
         SoapEndpointResource mockSoapEndpointResource = new SoapEndpointResource();
         mockSoapEndpointResource.setConfigurationHolder(configurationHolder);
         mockSoapEndpointResource.setWebserviceMockService(svcLayer);
+        mockSoapEndpointResource.setDelayer(delayer);
 
         RestEndpointResource mockRestEndpointResource = new RestEndpointResource();
         mockRestEndpointResource.setWebserviceMockService(svcLayer);
         mockRestEndpointResource.setMockConfigurationHolder(configurationHolder);
+        mockRestEndpointResource.setDelayer(delayer);
 
         RestMultipartEndpointResource mockRestMultipartEndpointResource = new RestMultipartEndpointResource();
         mockRestMultipartEndpointResource.setWebserviceMockService(svcLayer);
         mockRestMultipartEndpointResource.setMockConfigurationHolder(configurationHolder);
+        mockRestMultipartEndpointResource.setDelayer(delayer);
 
         RestEndpointResource mockRestServiceResourceWithoutEndPoint = new RestServiceResourceWithoutEndPoint();
         mockRestServiceResourceWithoutEndPoint.setWebserviceMockService(svcLayer);
         mockRestServiceResourceWithoutEndPoint.setMockConfigurationHolder(configurationHolder);
+        mockRestServiceResourceWithoutEndPoint.setDelayer(delayer);
 
         WsdlExposingResource wsdlExposingResource = new WsdlExposingResource();
         wsdlExposingResource.setWebserviceMockService(svcLayer);
 
+        RecordedRequestsTailResource recordedRequestsTailResource = new RecordedRequestsTailResource();
+        recordedRequestsTailResource.setRecordedRequestsHolder(recordedRequestsHolder);
+        recordedRequestsTailResource.setDelayer(delayer);
+
+        RecordedTrafficExportResource recordedTrafficExportResource = new RecordedTrafficExportResource();
+        recordedTrafficExportResource.setConfigurationHolder(configurationHolder);
+        recordedTrafficExportResource.setRecordedRequestsHolder(recordedRequestsHolder);
+
+        ResponseBatchResource responseBatchResource = new ResponseBatchResource();
+        responseBatchResource.setMockSetupExecutor(mockSetupExecutor);
+
         ServicesResource servicesResource = new ServicesResource();
         servicesResource.setMockConfigurationService(configurationHolder);
 
@@ -99,6 +129,9 @@ public class MockserviceApplication extends Application {
         singletons.add(soapVerificationResource);
         singletons.add(wsdlExposingResource);
         singletons.add(servicesResource);
+        singletons.add(recordedRequestsTailResource);
+        singletons.add(recordedTrafficExportResource);
+        singletons.add(responseBatchResource);
 
     }
 
@@ -0,0 +1,100 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.application;
+
+import net.sf.jaceko.mock.model.request.RequestTiming;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+
+/**
+ * Times each request from its arrival until its response is written. The timing is kept as request attribute
+ * {@link RequestTiming#ATTRIBUTE_NAME}, so that it can be attached to the recorded request. Responses of suspended
+ * (delayed) requests are written after the filter chain returns; their timing is completed when the asynchronous
+ * processing completes.
+ */
+public class RequestTimingFilter implements Filter {
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+        throws IOException, ServletException {
+        final RequestTiming timing = RequestTiming.arrivingNow();
+        request.setAttribute(RequestTiming.ATTRIBUTE_NAME, timing);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (!request.isAsyncStarted() || !addTimingCompletingListener(request, timing)) {
+                timing.completeNow();
+            }
+        }
+    }
+
+    private static boolean addTimingCompletingListener(ServletRequest request, RequestTiming timing) {
+        try {
+            request.getAsyncContext().addListener(new TimingCompletingListener(timing));
+            return true;
+        } catch (IllegalStateException e) {
+            // asynchronous processing completed meanwhile
+            return false;
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    private static final class TimingCompletingListener implements AsyncListener {
+        private final RequestTiming timing;
+
+        private TimingCompletingListener(RequestTiming timing) {
+            this.timing = timing;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            timing.completeNow();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            timing.completeNow();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            timing.completeNow();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.dto;
+
+import com.google.common.base.Objects;
+
+import javax.xml.bind.annotation.*;
+import java.util.ArrayList;
+import java.util.List;
+
+@XmlRootElement(name = "response")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class PrimedResponseDto {
+
+    @XmlAttribute(name = "service")
+    private String service;
+
+    @XmlAttribute(name = "operation")
+    private String operation;
+
+    @XmlAttribute(name = "position")
+    private Integer position;
+
+    @XmlAttribute(name = "code")
+    private int code;
+
+    @XmlAttribute(name = "delay")
+    private int delay;
+
+    @XmlAttribute(name = "latency")
+    private String latency;
+
+    @XmlAttribute(name = "content-type")
+    private String contentType;
+
+    @XmlAttribute(name = "template")
+    private boolean template;
+
+    @XmlAttribute(name = "when")
+    private String when;
+
+    @XmlElement(name = "header")
+    private final List<HeaderDto> headers = new ArrayList<HeaderDto>();
+
+    @XmlElement(name = "body")
+    private String body;
+
+    public String getService() {
+        return service;
+    }
+
+    public void setService(String service) {
+        this.service = service;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public Integer getPosition() {
+        return position;
+    }
+
+    public void setPosition(Integer position) {
+        this.position = position;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public void setCode(int code) {
+        this.code = code;
+    }
+
+    public int getDelay() {
+        return delay;
+    }
+
+    public void setDelay(int delay) {
+        this.delay = delay;
+    }
+
+    public String getLatency() {
+        return latency;
+    }
+
+    public void setLatency(String latency) {
+        this.latency = latency;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public boolean isTemplate() {
+        return template;
+    }
+
+    public void setTemplate(boolean template) {
+        this.template = template;
+    }
+
+    public String getWhen() {
+        return when;
+    }
+
+    public void setWhen(String when) {
+        this.when = when;
+    }
+
+    public List<HeaderDto> getHeaders() {
+        return headers;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("service", service).add("operation", operation).add("position", position)
+            .add("code", code).add("delay", delay).add("latency", latency).add("contentType", contentType)
+            .add("template", template).add("when", when).add("headers", headers).add("body", body).toString();
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class HeaderDto {
+
+        @XmlAttribute(name = "name")
+        private String name;
+
+        @XmlAttribute(name = "value")
+        private String value;
+
+        public HeaderDto() {
+            super();
+        }
+
+        public HeaderDto(String name, String value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return name + ":" + value;
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.dto;
+
+import com.google.common.base.Objects;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
+import java.util.List;
+
+@XmlRootElement(name = "responses")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class PrimedResponsesDto {
+
+    @XmlElement(name = "response")
+    private final List<PrimedResponseDto> responses = new ArrayList<PrimedResponseDto>();
+
+    public List<PrimedResponseDto> getResponses() {
+        return responses;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("responses", responses).toString();
+    }
+
+}
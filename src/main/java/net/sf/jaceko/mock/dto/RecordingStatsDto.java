@@ -0,0 +1,147 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.dto;
+
+import com.google.common.base.Objects;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+@XmlRootElement(name = "recorded-requests-stats")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class RecordingStatsDto {
+
+    @XmlElement(name = "capacity")
+    private int capacity;
+
+    @XmlElement(name = "max-bytes")
+    private long maxBytes;
+
+    @XmlElement(name = "retained")
+    private int retained;
+
+    @XmlElement(name = "retained-bytes")
+    private long retainedBytes;
+
+    @XmlElement(name = "recorded")
+    private long recorded;
+
+    @XmlElement(name = "evicted")
+    private long evicted;
+
+    @XmlElement(name = "dropped")
+    private long dropped;
+
+    @XmlElement(name = "invocations")
+    private long invocations;
+
+    @XmlElement(name = "invocation-bytes")
+    private long invocationBytes;
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public int getRetained() {
+        return retained;
+    }
+
+    public void setRetained(int retained) {
+        this.retained = retained;
+    }
+
+    public long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    public void setRetainedBytes(long retainedBytes) {
+        this.retainedBytes = retainedBytes;
+    }
+
+    public long getRecorded() {
+        return recorded;
+    }
+
+    public void setRecorded(long recorded) {
+        this.recorded = recorded;
+    }
+
+    public long getEvicted() {
+        return evicted;
+    }
+
+    public void setEvicted(long evicted) {
+        this.evicted = evicted;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public void setDropped(long dropped) {
+        this.dropped = dropped;
+    }
+
+    public long getInvocations() {
+        return invocations;
+    }
+
+    public void setInvocations(long invocations) {
+        this.invocations = invocations;
+    }
+
+    public long getInvocationBytes() {
+        return invocationBytes;
+    }
+
+    public void setInvocationBytes(long invocationBytes) {
+        this.invocationBytes = invocationBytes;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+            .add("capacity", capacity)
+            .add("maxBytes", maxBytes)
+            .add("retained", retained)
+            .add("retainedBytes", retainedBytes)
+            .add("recorded", recorded)
+            .add("evicted", evicted)
+            .add("dropped", dropped)
+            .add("invocations", invocations)
+            .add("invocationBytes", invocationBytes)
+            .toString();
+    }
+
+}
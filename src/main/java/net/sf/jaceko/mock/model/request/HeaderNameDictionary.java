@@ -0,0 +1,73 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.request;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Numbers header names so that recorded requests share a single copy of each name. The dictionary is bounded, so
+ * that clients sending arbitrary header names cannot grow it without limit; names beyond the bound are not numbered.
+ */
+final class HeaderNameDictionary {
+    static final int NOT_NUMBERED = -1;
+
+    private static final int MAX_NAMES = 4096;
+
+    private static final ConcurrentMap<String, Integer> IDS = new ConcurrentHashMap<String, Integer>();
+    private static volatile String[] names = new String[0];
+
+    private HeaderNameDictionary() {
+    }
+
+    /**
+     * @return number of given header name, {@link #NOT_NUMBERED} if the dictionary is full
+     */
+    static int idOf(String name) {
+        Integer id = IDS.get(name);
+        if (id != null) {
+            return id;
+        }
+        // once the dictionary is full, unseen names are kept by the caller without taking the lock
+        return names.length < MAX_NAMES ? register(name) : NOT_NUMBERED;
+    }
+
+    static String nameOf(int id) {
+        return names[id];
+    }
+
+    private static synchronized int register(String name) {
+        Integer id = IDS.get(name);
+        if (id != null) {
+            return id;
+        }
+        String[] current = names;
+        if (current.length == MAX_NAMES) {
+            return NOT_NUMBERED;
+        }
+        String[] extended = new String[current.length + 1];
+        System.arraycopy(current, 0, extended, 0, current.length);
+        extended[current.length] = name;
+        // published before the id, so that a reader finding the id finds the name
+        names = extended;
+        IDS.put(name, current.length);
+        return current.length;
+    }
+}
@@ -0,0 +1,271 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.request;
+
+import net.sf.jaceko.mock.util.FastRandom;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Response latency, sampled in milliseconds on every invocation. Profiles are immutable and sampling is
+ * lock-free and allocation-free, so they can be shared by all threads serving an operation.
+ * <p/>
+ * Profiles are created from text specification:
+ * <pre>
+ * 250                               fixed 250 ms (same as fixed:250)
+ * uniform:100,500                   uniformly distributed between 100 and 500 ms
+ * normal:200,50                     normal distribution, mean 200 ms, standard deviation 50 ms
+ * lognormal:200,0.5                 log-normal distribution, median 200 ms, sigma 0.5
+ * percentiles:50=100,95=400,99=900  latency having given percentiles (linear interpolation in between,
+ *                                   0th percentile is 0 ms and 100th the highest given value unless specified)
+ * </pre>
+ * Negative samples are returned as 0.
+ */
+public abstract class LatencyProfile {
+
+    private static final String TYPE_SEPARATOR = ":";
+    private static final String PARAM_SEPARATOR = ",";
+    private static final String PERCENTILE_SEPARATOR = "=";
+
+    private final String spec;
+
+    private LatencyProfile(String spec) {
+        this.spec = spec;
+    }
+
+    public static LatencyProfile fixed(long millis) {
+        return new Fixed(Long.toString(millis), millis);
+    }
+
+    /**
+     * @throws IllegalArgumentException if specification is not recognized
+     */
+    public static LatencyProfile parse(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            throw new IllegalArgumentException("Empty latency profile");
+        }
+        spec = spec.trim();
+        int typeEnd = spec.indexOf(TYPE_SEPARATOR);
+        if (typeEnd < 0) {
+            return new Fixed(spec, parseMillis(spec, spec));
+        }
+        String type = spec.substring(0, typeEnd).trim();
+        String[] params = spec.substring(typeEnd + 1).split(PARAM_SEPARATOR);
+
+        if ("fixed".equals(type)) {
+            checkParamCount(spec, params, 1);
+            return new Fixed(spec, parseMillis(spec, params[0]));
+        } else if ("uniform".equals(type)) {
+            checkParamCount(spec, params, 2);
+            return new Uniform(spec, parseMillis(spec, params[0]), parseMillis(spec, params[1]));
+        } else if ("normal".equals(type)) {
+            checkParamCount(spec, params, 2);
+            return new Normal(spec, parseDouble(spec, params[0]), parseDouble(spec, params[1]));
+        } else if ("lognormal".equals(type)) {
+            checkParamCount(spec, params, 2);
+            return new LogNormal(spec, parseDouble(spec, params[0]), parseDouble(spec, params[1]));
+        } else if ("percentiles".equals(type)) {
+            return Percentiles.parse(spec, params);
+        }
+        throw new IllegalArgumentException("Unknown latency profile type: " + spec);
+    }
+
+    /**
+     * @return latency in milliseconds, never negative
+     */
+    public abstract long sampleMillis();
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return spec.equals(((LatencyProfile) o).spec);
+    }
+
+    @Override
+    public int hashCode() {
+        return spec.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    private static long round(double millis) {
+        return millis <= 0 ? 0 : Math.round(millis);
+    }
+
+    private static void checkParamCount(String spec, String[] params, int expected) {
+        if (params.length != expected) {
+            throw new IllegalArgumentException("Expected " + expected + " parameter(s) in latency profile: " + spec);
+        }
+    }
+
+    private static long parseMillis(String spec, String value) {
+        double millis = parseDouble(spec, value);
+        if (millis < 0) {
+            throw new IllegalArgumentException("Negative latency in latency profile: " + spec);
+        }
+        return Math.round(millis);
+    }
+
+    private static double parseDouble(String spec, String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Illegal number '" + value + "' in latency profile: " + spec);
+        }
+    }
+
+    private static final class Fixed extends LatencyProfile {
+        private final long millis;
+
+        Fixed(String spec, long millis) {
+            super(spec);
+            this.millis = millis;
+        }
+
+        @Override
+        public long sampleMillis() {
+            return millis;
+        }
+    }
+
+    private static final class Uniform extends LatencyProfile {
+        private final long min;
+        private final long range;
+
+        Uniform(String spec, long min, long max) {
+            super(spec);
+            if (max < min) {
+                throw new IllegalArgumentException("Maximum lower than minimum in latency profile: " + spec);
+            }
+            this.min = min;
+            this.range = max - min;
+        }
+
+        @Override
+        public long sampleMillis() {
+            return min + round(FastRandom.current().nextDouble() * range);
+        }
+    }
+
+    private static final class Normal extends LatencyProfile {
+        private final double mean;
+        private final double deviation;
+
+        Normal(String spec, double mean, double deviation) {
+            super(spec);
+            this.mean = mean;
+            this.deviation = deviation;
+        }
+
+        @Override
+        public long sampleMillis() {
+            return round(mean + FastRandom.current().nextGaussian() * deviation);
+        }
+    }
+
+    private static final class LogNormal extends LatencyProfile {
+        private final double mu;
+        private final double sigma;
+
+        LogNormal(String spec, double median, double sigma) {
+            super(spec);
+            if (median <= 0) {
+                throw new IllegalArgumentException("Median must be positive in latency profile: " + spec);
+            }
+            this.mu = Math.log(median);
+            this.sigma = sigma;
+        }
+
+        @Override
+        public long sampleMillis() {
+            return round(Math.exp(mu + FastRandom.current().nextGaussian() * sigma));
+        }
+    }
+
+    /**
+     * Piecewise linear inverse of the cumulative distribution through the given percentile points
+     */
+    private static final class Percentiles extends LatencyProfile {
+        private final double[] quantiles;
+        private final double[] millis;
+
+        private Percentiles(String spec, double[] quantiles, double[] millis) {
+            super(spec);
+            this.quantiles = quantiles;
+            this.millis = millis;
+        }
+
+        static Percentiles parse(String spec, String[] params) {
+            TreeMap<Double, Double> points = new TreeMap<Double, Double>();
+            for (String param : params) {
+                String[] point = param.split(PERCENTILE_SEPARATOR);
+                if (point.length != 2) {
+                    throw new IllegalArgumentException("Expected percentile=millis in latency profile: " + spec);
+                }
+                double percentile = parseDouble(spec, point[0]);
+                if (percentile < 0 || percentile > 100) {
+                    throw new IllegalArgumentException("Percentile out of range in latency profile: " + spec);
+                }
+                if (points.put(percentile / 100, (double) parseMillis(spec, point[1])) != null) {
+                    throw new IllegalArgumentException("Percentile given more than once in latency profile: " + spec);
+                }
+            }
+            if (!points.containsKey(0.0)) {
+                points.put(0.0, 0.0);
+            }
+            if (!points.containsKey(1.0)) {
+                points.put(1.0, points.lastEntry().getValue());
+            }
+
+            double[] quantiles = new double[points.size()];
+            double[] millis = new double[points.size()];
+            int i = 0;
+            for (Map.Entry<Double, Double> point : points.entrySet()) {
+                quantiles[i] = point.getKey();
+                millis[i] = point.getValue();
+                if (i > 0 && millis[i] < millis[i - 1]) {
+                    throw new IllegalArgumentException("Latency decreasing with percentile in latency profile: " + spec);
+                }
+                i++;
+            }
+            return new Percentiles(spec, quantiles, millis);
+        }
+
+        @Override
+        public long sampleMillis() {
+            double quantile = FastRandom.current().nextDouble();
+            int upper = Arrays.binarySearch(quantiles, quantile);
+            if (upper >= 0) {
+                return round(millis[upper]);
+            }
+            upper = -upper - 1;
+            int lower = upper - 1;
+            double fraction = (quantile - quantiles[lower]) / (quantiles[upper] - quantiles[lower]);
+            return round(millis[lower] + fraction * (millis[upper] - millis[lower]));
+        }
+    }
+
+}
@@ -25,19 +25,68 @@ import javax.ws.rs.core.MultivaluedMap;
 public class MockRequest {
 
     private String resourcePath;
-    private String body;
+    private RecordedBody body;
     private String queryString;
     private MultivaluedMap<String, String> headers;
+    private long recordedAt;
+    private RequestTiming timing;
+    private MockResponse response;
 
     public MockRequest(String body, String queryString, String resourcePath, MultivaluedMap<String, String> headers) {
+        this(body, queryString, resourcePath, headers, System.currentTimeMillis());
+    }
+
+    /**
+     * @param recordedAt time the request was recorded, in milliseconds since the epoch
+     */
+    public MockRequest(String body, String queryString, String resourcePath, MultivaluedMap<String, String> headers,
+                       long recordedAt) {
+        this(body, queryString, resourcePath, headers, recordedAt, null);
+    }
+
+    /**
+     * @param timing server-side timing of the request, null if unknown
+     */
+    public MockRequest(String body, String queryString, String resourcePath, MultivaluedMap<String, String> headers,
+                       long recordedAt, RequestTiming timing) {
+        this(body, queryString, resourcePath, headers, recordedAt, timing, null);
+    }
+
+    /**
+     * @param response response served to the request, null if unknown
+     */
+    public MockRequest(String body, String queryString, String resourcePath, MultivaluedMap<String, String> headers,
+                       long recordedAt, RequestTiming timing, MockResponse response) {
+        this(RecordedBody.of(body), queryString, resourcePath, headers, recordedAt, timing, response);
+    }
+
+    /**
+     * @param body body as stored, e.g. shared with other recordings or read back from the journal; null if the
+     *             request had none
+     */
+    public MockRequest(RecordedBody body, String queryString, String resourcePath, MultivaluedMap<String, String> headers,
+                       long recordedAt, RequestTiming timing, MockResponse response) {
         super();
         this.body = body;
         this.queryString = queryString;
         this.resourcePath = resourcePath;
-        this.headers = headers;
+        this.headers = RecordedHeaders.copyOf(headers);
+        this.recordedAt = recordedAt;
+        this.timing = timing;
+        this.response = response;
     }
 
+    /**
+     * @return text of the body; inflated on each call if the body is kept compressed
+     */
     public String getBody() {
+        return body != null ? body.getText() : null;
+    }
+
+    /**
+     * @return body as stored, null if the request had none
+     */
+    public RecordedBody getRecordedBody() {
         return body;
     }
 
@@ -49,7 +98,28 @@ public class MockRequest {
         return queryString;
     }
 
+    /**
+     * @return read-only copy of the request headers, null if the request had none recorded
+     */
     public MultivaluedMap<String, String> getHeaders() {
         return headers;
     }
+
+    public long getRecordedAt() {
+        return recordedAt;
+    }
+
+    /**
+     * @return server-side timing of the request, null if unknown (e.g. for requests replayed from the journal)
+     */
+    public RequestTiming getTiming() {
+        return timing;
+    }
+
+    /**
+     * @return response served to the request, null if unknown
+     */
+    public MockResponse getResponse() {
+        return response;
+    }
 }
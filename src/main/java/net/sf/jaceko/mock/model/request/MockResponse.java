@@ -20,17 +20,29 @@
 package net.sf.jaceko.mock.model.request;
 
 import javax.ws.rs.core.MediaType;
+import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class MockResponse {
+    private static final int MILIS_IN_SEC = 1000;
+
     private String bodyString;
     private byte[] binaryBody;
+    private byte[] encodedBody;
     private int code = 200;
     private int delaySec;
+    private LatencyProfile latency;
     private String contentType;
     private Map<String, String> headers;
+    private TransportFault fault;
+    private ResponseTemplate bodyTemplate;
+    private Map<String, ResponseTemplate> headerTemplates;
+    // charset of body rendered from template, which is decoded to text only if asked for
+    private Charset encodedBodyCharset;
 
     public static MockResponseBuilder body(String body) {
         MockResponseBuilder builder = MockResponseBuilder.getInstance();
@@ -64,6 +76,9 @@ public class MockResponse {
     }
 
     public String getBody() {
+        if (bodyString == null && encodedBodyCharset != null) {
+            bodyString = new String(encodedBody, encodedBodyCharset);
+        }
         return bodyString;
     }
 
@@ -85,6 +100,29 @@ public class MockResponse {
         return delaySec;
     }
 
+    public LatencyProfile getLatency() {
+        return latency;
+    }
+
+    /**
+     * Sets latency profile unless this response already has a delay or latency profile of its own
+     */
+    public void setMissingLatencyTo(LatencyProfile latency) {
+        if (this.latency == null && this.delaySec == 0) {
+            this.latency = latency;
+        }
+    }
+
+    /**
+     * @return delay of this response in milliseconds; sampled from latency profile (if set) on every call
+     */
+    public long sampleDelayMillis() {
+        if (latency != null) {
+            return latency.sampleMillis();
+        }
+        return delaySec * (long) MILIS_IN_SEC;
+    }
+
     public String getContentType() {
         return contentType;
     }
@@ -117,13 +155,105 @@ public class MockResponse {
         return binaryBody != null;
     }
 
+    /**
+     * @return failure of the connection served instead of or in the middle of this response, null if it is
+     * served normally
+     */
+    public TransportFault getFault() {
+        return fault;
+    }
+
+    /**
+     * @return response the same as this one, served with given fault
+     */
+    public MockResponse withFault(TransportFault fault) {
+        MockResponse faulty = new MockResponse();
+        faulty.bodyString = bodyString;
+        faulty.binaryBody = binaryBody;
+        faulty.encodedBody = encodedBody;
+        faulty.code = code;
+        faulty.delaySec = delaySec;
+        faulty.latency = latency;
+        faulty.contentType = contentType;
+        faulty.headers = headers;
+        faulty.bodyTemplate = bodyTemplate;
+        faulty.headerTemplates = headerTemplates;
+        faulty.fault = fault;
+        return faulty;
+    }
+
+    /**
+     * @return body as written to the client: binary body, or text body encoded in the charset of content type
+     */
+    public byte[] encodeBody() {
+        if (binaryBody != null) {
+            return binaryBody;
+        }
+        if (encodedBody != null) {
+            return encodedBody;
+        }
+        return bodyString != null ? bodyString.getBytes(MockResponseBuilder.charsetOf(contentType)) : new byte[0];
+    }
+
+    /**
+     * @return text body already encoded in the charset of content type, null unless the response was built
+     * with {@link MockResponseBuilder#precomputed()}
+     */
+    public byte[] getEncodedBody() {
+        return encodedBody;
+    }
+
+    /**
+     * @return whether body or headers of the response are templates to be rendered for every request
+     */
+    public boolean isTemplate() {
+        return bodyTemplate != null || headerTemplates != null;
+    }
+
+    /**
+     * @return response with body and headers rendered from templates for given request, this response if it
+     * is not a template
+     */
+    public MockResponse render(RequestContext request, int invocationNumber) {
+        if (!isTemplate()) {
+            return this;
+        }
+        MockResponse rendered = new MockResponse();
+        rendered.code = code;
+        rendered.delaySec = delaySec;
+        rendered.latency = latency;
+        rendered.contentType = contentType;
+        rendered.fault = fault;
+        if (bodyTemplate != null) {
+            rendered.encodedBody = bodyTemplate.renderEncoded(request, invocationNumber);
+            rendered.encodedBodyCharset = bodyTemplate.getCharset();
+        } else {
+            rendered.bodyString = bodyString;
+            rendered.encodedBody = encodedBody;
+        }
+        if (headerTemplates != null) {
+            Map<String, String> renderedHeaders = new LinkedHashMap<String, String>(headers);
+            for (Map.Entry<String, ResponseTemplate> header : headerTemplates.entrySet()) {
+                renderedHeaders.put(header.getKey(), header.getValue().render(request, invocationNumber));
+            }
+            rendered.headers = renderedHeaders;
+        } else {
+            rendered.headers = headers;
+        }
+        return rendered;
+    }
+
     public static class MockResponseBuilder {
         private String body;
         private int code = 200;
         private int delaySec;
+        private LatencyProfile latency;
         private String contentType;
         private Map<String, String> headers = new HashMap<String, String>();
         private byte[] binaryBody;
+        private TransportFault fault;
+        private boolean precomputed;
+        private boolean template;
 
         public static MockResponseBuilder getInstance() {
             return new MockResponseBuilder();
@@ -144,6 +274,11 @@ public class MockResponse {
             return this;
         }
 
+        public MockResponseBuilder latency(LatencyProfile latency) {
+            this.latency = latency;
+            return this;
+        }
+
         public MockResponseBuilder contentType(MediaType contentType) {
             if (contentType != null) {
                 this.contentType = contentType.toString();
@@ -161,17 +296,109 @@ public class MockResponse {
             return this;
         }
 
+        /**
+         * @param fault failure of the connection to serve instead of or in the middle of the response, null to
+         *              serve it normally
+         */
+        public MockResponseBuilder fault(TransportFault fault) {
+            this.fault = fault;
+            return this;
+        }
+
+        /**
+         * Builds a response meant to be served many times: text body is encoded once, the way it would
+         * otherwise be encoded on every write, and headers can no longer be modified
+         */
+        public MockResponseBuilder precomputed() {
+            this.precomputed = true;
+            return this;
+        }
+
+        /**
+         * Makes text body and header values templates (see {@link ResponseTemplate}), compiled on build
+         */
+        public MockResponseBuilder template(boolean template) {
+            this.template = template;
+            return this;
+        }
+
         public MockResponse build() {
             MockResponse mockResponse = new MockResponse();
+            if (template) {
+                compileTemplates(mockResponse);
+            }
             mockResponse.setBody(body);
             mockResponse.setCode(code);
             mockResponse.setContentType(contentType);
             mockResponse.setDelaySec(delaySec);
+            mockResponse.setLatency(latency);
             mockResponse.setHeaders(headers);
             mockResponse.setBinaryBody(binaryBody);
+            mockResponse.fault = fault;
+            if (precomputed) {
+                mockResponse.setHeaders(headers != null
+                    ? Collections.unmodifiableMap(new LinkedHashMap<String, String>(headers))
+                    : Collections.<String, String>emptyMap());
+                if (binaryBody == null && body != null) {
+                    mockResponse.encodedBody = body.getBytes(charsetOf(contentType));
+                }
+            }
             return mockResponse;
         }
 
+        /**
+         * Compiles templates of body and header values having placeholders; the ones without are served as
+         * they are, only unescaped
+         *
+         * @throws IllegalArgumentException if body or a header value is not a valid template
+         */
+        private void compileTemplates(MockResponse mockResponse) {
+            Charset charset = charsetOf(contentType);
+            if (binaryBody == null && body != null) {
+                ResponseTemplate bodyTemplate = ResponseTemplate.compile(body, charset);
+                if (bodyTemplate.hasPlaceholders()) {
+                    mockResponse.bodyTemplate = bodyTemplate;
+                } else {
+                    body = bodyTemplate.render(null, 0);
+                }
+            }
+            if (headers != null) {
+                Map<String, String> literalHeaders = new LinkedHashMap<String, String>();
+                Map<String, ResponseTemplate> headerTemplates = new LinkedHashMap<String, ResponseTemplate>();
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    if (header.getValue() == null) {
+                        literalHeaders.put(header.getKey(), null);
+                        continue;
+                    }
+                    ResponseTemplate headerTemplate = ResponseTemplate.compile(header.getValue(), charset);
+                    if (headerTemplate.hasPlaceholders()) {
+                        headerTemplates.put(header.getKey(), headerTemplate);
+                        literalHeaders.put(header.getKey(), header.getValue());
+                    } else {
+                        literalHeaders.put(header.getKey(), headerTemplate.render(null, 0));
+                    }
+                }
+                headers = literalHeaders;
+                if (!headerTemplates.isEmpty()) {
+                    mockResponse.headerTemplates = headerTemplates;
+                }
+            }
+        }
+
+        private static Charset charsetOf(String contentType) {
+            if (contentType != null) {
+                try {
+                    String charset = MediaType.valueOf(contentType).getParameters().get("charset");
+                    if (charset != null) {
+                        return Charset.forName(charset);
+                    }
+                } catch (IllegalArgumentException e) {
+                    // unparseable content type or unknown charset - encode as the string entity would be
+                }
+            }
+            return Charset.defaultCharset();
+        }
+
         public MockResponseBuilder headers(Map<String, String> headers) {
             this.headers = headers;
             return this;
@@ -186,6 +413,10 @@ public class MockResponse {
         this.delaySec = delaySec;
     }
 
+    void setLatency(LatencyProfile latency) {
+        this.latency = latency;
+    }
+
     void setContentType(String contentType) {
         this.contentType = contentType;
     }
@@ -199,10 +430,12 @@ public class MockResponse {
 
         if (code != that.code) return false;
         if (delaySec != that.delaySec) return false;
+        if (latency != null ? !latency.equals(that.latency) : that.latency != null) return false;
         if (bodyString != null ? !bodyString.equals(that.bodyString) : that.bodyString != null) return false;
         if (binaryBody != null ? !Arrays.equals(binaryBody,that.binaryBody) : that.binaryBody != null) return false;
         if (contentType != null ? !contentType.equals(that.contentType) : that.contentType != null) return false;
         if (headers != null ? !headers.equals(that.headers) : that.headers != null) return false;
+        if (fault != null ? !fault.equals(that.fault) : that.fault != null) return false;
 
         return true;
     }
@@ -212,9 +445,11 @@ public class MockResponse {
         int result = bodyString != null ? bodyString.hashCode() : 0;
         result = 31 * result + code;
         result = 31 * result + delaySec;
+        result = 31 * result + (latency != null ? latency.hashCode() : 0);
         result = 31 * result + (contentType != null ? contentType.hashCode() : 0);
         result = 31 * result + (binaryBody != null ? binaryBody.hashCode() : 0);
         result = 31 * result + (headers != null ? headers.hashCode() : 0);
+        result = 31 * result + (fault != null ? fault.hashCode() : 0);
         return result;
     }
 
@@ -224,8 +459,10 @@ public class MockResponse {
             "body='" + debugBodyText() + '\'' +
             ", code=" + code +
             ", delaySec=" + delaySec +
+            ", latency=" + latency +
             ", contentType='" + contentType + '\'' +
             ", headers=" + headers +
+            (fault != null ? ", fault=" + fault : "") +
             '}';
     }
 
@@ -0,0 +1,110 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.request;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resource path template of a REST operation, e.g. <code>/customers/{id}/orders/{orderId}</code>: literal segments
+ * match themselves, variables in braces match any single segment. Leading, trailing and repeated slashes are ignored.
+ */
+public final class PathTemplate {
+
+    private static final String PATH_SEPARATOR = "/";
+    private static final char VARIABLE_START = '{';
+    private static final char VARIABLE_END = '}';
+
+    private final String template;
+    private final String[] segments;
+    private final boolean[] variables;
+
+    private PathTemplate(String template, String[] segments, boolean[] variables) {
+        this.template = template;
+        this.segments = segments;
+        this.variables = variables;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a segment has braces but is not a single named variable
+     */
+    public static PathTemplate parse(String template) {
+        String[] segments = split(template);
+        boolean[] variables = new boolean[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            boolean variable = segment.length() > 2 && segment.charAt(0) == VARIABLE_START
+                && segment.charAt(segment.length() - 1) == VARIABLE_END;
+            String name = variable ? segment.substring(1, segment.length() - 1) : segment;
+            if (name.indexOf(VARIABLE_START) >= 0 || name.indexOf(VARIABLE_END) >= 0) {
+                throw new IllegalArgumentException("Invalid segment of path template " + template + ": " + segment);
+            }
+            segments[i] = name;
+            variables[i] = variable;
+        }
+        return new PathTemplate(template, segments, variables);
+    }
+
+    /**
+     * @return non-empty segments of the path, none if it is null
+     */
+    public static String[] split(String path) {
+        List<String> segments = new ArrayList<String>();
+        if (path != null) {
+            for (String segment : path.split(PATH_SEPARATOR)) {
+                if (!segment.isEmpty()) {
+                    segments.add(segment);
+                }
+            }
+        }
+        return segments.toArray(new String[segments.size()]);
+    }
+
+    public int getDepth() {
+        return segments.length;
+    }
+
+    /**
+     * @return literal segment, or name of the variable
+     */
+    public String getSegment(int index) {
+        return segments[index];
+    }
+
+    public boolean isVariable(int index) {
+        return variables[index];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PathTemplate && template.equals(((PathTemplate) o).template);
+    }
+
+    @Override
+    public int hashCode() {
+        return template.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+
+}
@@ -0,0 +1,73 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.request;
+
+/**
+ * Custom response to be primed for an operation of a service as a part of a batch
+ */
+public final class PrimedResponse {
+
+    private final String serviceName;
+    private final String operationId;
+    private final Integer requestInOrder;
+    private final MockResponse response;
+    private final RequestPredicate when;
+
+    /**
+     * @param requestInOrder invocation number to serve the response to (counted from 1), null to append it
+     *                       after responses primed so far
+     */
+    public PrimedResponse(String serviceName, String operationId, Integer requestInOrder, MockResponse response) {
+        this(serviceName, operationId, requestInOrder, response, null);
+    }
+
+    /**
+     * @param when condition of requests to serve the response to, null to serve it by invocation number
+     */
+    public PrimedResponse(String serviceName, String operationId, Integer requestInOrder, MockResponse response,
+                          RequestPredicate when) {
+        this.serviceName = serviceName;
+        this.operationId = operationId;
+        this.requestInOrder = requestInOrder;
+        this.response = response;
+        this.when = when;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public Integer getRequestInOrder() {
+        return requestInOrder;
+    }
+
+    public MockResponse getResponse() {
+        return response;
+    }
+
+    public RequestPredicate getWhen() {
+        return when;
+    }
+
+}
@@ -0,0 +1,168 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.request;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Body of a recorded request. Bodies of at least {@link #COMPRESSION_THRESHOLD} characters are kept deflated and
+ * inflated again whenever their text is read.
+ */
+public final class RecordedBody {
+    /**
+     * shorter bodies are not worth sharing between recordings - the lookup costs more than their copy
+     */
+    public static final int DEDUPLICATION_THRESHOLD = 128;
+
+    /**
+     * shorter bodies are kept as text
+     */
+    public static final int COMPRESSION_THRESHOLD = 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // exactly one of text and deflated is set
+    private final String text;
+    private final byte[] deflated;
+    private final int length;
+    private final int encodedLength;
+
+    private RecordedBody(String text, byte[] deflated, int length, int encodedLength) {
+        this.text = text;
+        this.deflated = deflated;
+        this.length = length;
+        this.encodedLength = encodedLength;
+    }
+
+    /**
+     * @return body holding given text, deflated if it is large enough; null if text is null
+     */
+    public static RecordedBody of(String text) {
+        if (text == null) {
+            return null;
+        }
+        if (text.length() >= COMPRESSION_THRESHOLD) {
+            byte[] encoded = text.getBytes(UTF_8);
+            byte[] deflated = deflate(encoded);
+            if (deflated.length < 2 * text.length()) {
+                return new RecordedBody(null, deflated, text.length(), encoded.length);
+            }
+        }
+        return new RecordedBody(text, null, text.length(), 0);
+    }
+
+    /**
+     * @param deflated      text encoded in UTF-8 and deflated, as returned by {@link #getDeflated()}; not copied
+     * @param length        number of characters of the text
+     * @param encodedLength number of bytes of the text encoded in UTF-8
+     * @return body kept deflated, without deflating it again
+     */
+    public static RecordedBody deflated(byte[] deflated, int length, int encodedLength) {
+        return new RecordedBody(null, deflated, length, encodedLength);
+    }
+
+    public String getText() {
+        return text != null ? text : new String(inflate(deflated, encodedLength), UTF_8);
+    }
+
+    /**
+     * @return number of characters of the text, known without inflating it
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return approximate number of bytes the body occupies
+     */
+    public int getStoredBytes() {
+        return text != null ? 2 * length : deflated.length;
+    }
+
+    public boolean isCompressed() {
+        return deflated != null;
+    }
+
+    /**
+     * @return text encoded in UTF-8 and deflated, null if the body is kept as text; must not be modified
+     */
+    public byte[] getDeflated() {
+        return deflated;
+    }
+
+    /**
+     * @return number of bytes of the text encoded in UTF-8, 0 if the body is kept as text
+     */
+    public int getEncodedLength() {
+        return encodedLength;
+    }
+
+    /**
+     * @return true if the body holds exactly given text; a deflated body is inflated and compared byte by byte
+     */
+    public boolean hasText(String text) {
+        if (text == null || text.length() != length) {
+            return false;
+        }
+        if (this.text != null) {
+            return this.text.equals(text);
+        }
+        byte[] encoded = text.getBytes(UTF_8);
+        return encoded.length == encodedLength && Arrays.equals(inflate(deflated, encodedLength), encoded);
+    }
+
+    private static byte[] deflate(byte[] encoded) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(encoded);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(encoded.length / 4 + 16);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] deflated, int encodedLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(deflated);
+            byte[] encoded = new byte[encodedLength];
+            int inflated = 0;
+            while (inflated < encodedLength && !inflater.finished()) {
+                inflated += inflater.inflate(encoded, inflated, encodedLength - inflated);
+            }
+            return inflated == encodedLength ? encoded : Arrays.copyOf(encoded, inflated);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Recorded body is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
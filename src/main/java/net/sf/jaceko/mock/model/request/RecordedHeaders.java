@@ -0,0 +1,196 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.request;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable copy of request headers kept by a recorded request. Header names are stored as numbers of the shared
+ * {@link HeaderNameDictionary} and all values in a single array, so a recording holds neither the container's header
+ * map nor its own copy of each header name. Lookup by name is case-insensitive, like in the container's map.
+ */
+public final class RecordedHeaders extends AbstractMap<String, List<String>> implements MultivaluedMap<String, String> {
+    // per header: number of its name (negative for names outside the dictionary) and end of its values
+    private final int[] layout;
+    private final String[] values;
+    // names the dictionary had no room for, null if there are none
+    private final String[] unnumberedNames;
+
+    private RecordedHeaders(int[] layout, String[] values, String[] unnumberedNames) {
+        this.layout = layout;
+        this.values = values;
+        this.unnumberedNames = unnumberedNames;
+    }
+
+    /**
+     * @return compact copy of given headers, null if headers are null
+     */
+    public static RecordedHeaders copyOf(Map<String, List<String>> headers) {
+        if (headers == null) {
+            return null;
+        }
+        if (headers instanceof RecordedHeaders) {
+            return (RecordedHeaders) headers;
+        }
+        int valueCount = 0;
+        for (List<String> headerValues : headers.values()) {
+            valueCount += headerValues != null ? headerValues.size() : 0;
+        }
+        int[] layout = new int[2 * headers.size()];
+        String[] values = new String[valueCount];
+        String[] unnumberedNames = null;
+        int unnumberedCount = 0;
+        int header = 0;
+        int valueEnd = 0;
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            int id = HeaderNameDictionary.idOf(entry.getKey());
+            if (id == HeaderNameDictionary.NOT_NUMBERED) {
+                if (unnumberedNames == null) {
+                    unnumberedNames = new String[headers.size()];
+                }
+                unnumberedNames[unnumberedCount] = entry.getKey();
+                id = -1 - unnumberedCount++;
+            }
+            if (entry.getValue() != null) {
+                for (String value : entry.getValue()) {
+                    values[valueEnd++] = value;
+                }
+            }
+            layout[2 * header] = id;
+            layout[2 * header + 1] = valueEnd;
+            header++;
+        }
+        return new RecordedHeaders(layout, values, unnumberedNames);
+    }
+
+    private String nameAt(int header) {
+        int id = layout[2 * header];
+        return id >= 0 ? HeaderNameDictionary.nameOf(id) : unnumberedNames[-1 - id];
+    }
+
+    private List<String> valuesAt(int header) {
+        final int start = header > 0 ? layout[2 * header - 1] : 0;
+        final int end = layout[2 * header + 1];
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                if (index < 0 || index >= end - start) {
+                    throw new IndexOutOfBoundsException("Index: " + index);
+                }
+                return values[start + index];
+            }
+
+            @Override
+            public int size() {
+                return end - start;
+            }
+        };
+    }
+
+    private int indexOf(Object name) {
+        if (!(name instanceof String)) {
+            return -1;
+        }
+        for (int header = 0; header < size(); header++) {
+            if (nameAt(header).equalsIgnoreCase((String) name)) {
+                return header;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return layout.length / 2;
+    }
+
+    @Override
+    public boolean containsKey(Object name) {
+        return indexOf(name) >= 0;
+    }
+
+    @Override
+    public List<String> get(Object name) {
+        int header = indexOf(name);
+        return header >= 0 ? valuesAt(header) : null;
+    }
+
+    @Override
+    public String getFirst(String name) {
+        List<String> headerValues = get(name);
+        return headerValues != null && !headerValues.isEmpty() ? headerValues.get(0) : null;
+    }
+
+    @Override
+    public void putSingle(String name, String value) {
+        throw new UnsupportedOperationException("Recorded headers cannot be modified");
+    }
+
+    @Override
+    public void add(String name, String value) {
+        throw new UnsupportedOperationException("Recorded headers cannot be modified");
+    }
+
+    @Override
+    public Set<Entry<String, List<String>>> entrySet() {
+        return new AbstractSet<Entry<String, List<String>>>() {
+            @Override
+            public Iterator<Entry<String, List<String>>> iterator() {
+                return new Iterator<Entry<String, List<String>>>() {
+                    private int header;
+
+                    @Override
+                    public boolean hasNext() {
+                        return header < RecordedHeaders.this.size();
+                    }
+
+                    @Override
+                    public Entry<String, List<String>> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<String, List<String>> entry = new SimpleImmutableEntry<String, List<String>>(nameAt(header),
+                            valuesAt(header));
+                        header++;
+                        return entry;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException("Recorded headers cannot be modified");
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return RecordedHeaders.this.size();
+            }
+        };
+    }
+}
@@ -0,0 +1,256 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.request;
+
+import com.google.common.base.Objects;
+import net.sf.jaceko.mock.util.JsonPath;
+import net.sf.jaceko.mock.util.QueryStringParser;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.w3c.dom.Document;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import javax.ws.rs.core.MultivaluedMap;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Criteria recorded requests are filtered by; a request matches when it meets all of them. Header names are
+ * case-insensitive, header and query parameter values must be equal. XPath is evaluated on the body parsed without
+ * namespace support, so prefixed elements are matched with <code>local-name()</code> or by their prefixed name.
+ */
+public class RecordedRequestsQuery {
+    // reports malformed bodies as exceptions instead of printing them
+    private static final ErrorHandler SILENT_ERROR_HANDLER = new ErrorHandler() {
+        @Override
+        public void warning(SAXParseException exception) {
+        }
+
+        @Override
+        public void error(SAXParseException exception) throws SAXException {
+            throw exception;
+        }
+
+        @Override
+        public void fatalError(SAXParseException exception) throws SAXException {
+            throw exception;
+        }
+    };
+
+    private final MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+    private final MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl<String, String>();
+    private String resourcePathPrefix;
+    private Long recordedFrom;
+    private Long recordedTo;
+    private String xpath;
+    private XPathExpression xpathExpression;
+    private JsonPath jsonPath;
+    private String jsonPathValue;
+
+    public RecordedRequestsQuery withHeader(String name, String value) {
+        headers.add(normalizeHeaderName(name), value);
+        return this;
+    }
+
+    public RecordedRequestsQuery withQueryParam(String name, String value) {
+        queryParams.add(name, value);
+        return this;
+    }
+
+    public RecordedRequestsQuery withResourcePathPrefix(String resourcePathPrefix) {
+        this.resourcePathPrefix = resourcePathPrefix;
+        return this;
+    }
+
+    /**
+     * @param recordedFrom milliseconds since the epoch, inclusive; null for no lower bound
+     * @param recordedTo   milliseconds since the epoch, exclusive; null for no upper bound
+     */
+    public RecordedRequestsQuery recordedBetween(Long recordedFrom, Long recordedTo) {
+        this.recordedFrom = recordedFrom;
+        this.recordedTo = recordedTo;
+        return this;
+    }
+
+    /**
+     * @param xpath expression evaluated to boolean on the body, e.g. <code>/order[amount &gt; 10]</code>
+     * @throws IllegalArgumentException if the expression can't be compiled
+     */
+    public RecordedRequestsQuery withXPath(String xpath) {
+        try {
+            this.xpathExpression = XPathFactory.newInstance().newXPath().compile(xpath);
+            this.xpath = xpath;
+        } catch (XPathExpressionException e) {
+            throw new IllegalArgumentException("Invalid XPath: " + xpath, e);
+        }
+        return this;
+    }
+
+    /**
+     * @param value string form of a selected value the body must contain, null if selecting anything is enough
+     * @throws IllegalArgumentException if the expression is not supported
+     */
+    public RecordedRequestsQuery withJsonPath(String jsonPath, String value) {
+        this.jsonPath = JsonPath.compile(jsonPath);
+        this.jsonPathValue = value;
+        return this;
+    }
+
+    /**
+     * @return required header values by lower case header name
+     */
+    public MultivaluedMap<String, String> getHeaders() {
+        return headers;
+    }
+
+    public MultivaluedMap<String, String> getQueryParams() {
+        return queryParams;
+    }
+
+    public String getResourcePathPrefix() {
+        return resourcePathPrefix;
+    }
+
+    public boolean matches(MockRequest request) {
+        return matchesRecordingTime(request) && matchesResourcePath(request) && matchesHeaders(request)
+            && matchesQueryParams(request) && matchesXPath(request) && matchesJsonPath(request);
+    }
+
+    private boolean matchesRecordingTime(MockRequest request) {
+        return (recordedFrom == null || request.getRecordedAt() >= recordedFrom)
+            && (recordedTo == null || request.getRecordedAt() < recordedTo);
+    }
+
+    private boolean matchesResourcePath(MockRequest request) {
+        return resourcePathPrefix == null
+            || (request.getResourcePath() != null && request.getResourcePath().startsWith(resourcePathPrefix));
+    }
+
+    private boolean matchesHeaders(MockRequest request) {
+        if (headers.isEmpty()) {
+            return true;
+        }
+        MultivaluedMap<String, String> requestHeaders = request.getHeaders();
+        if (requestHeaders == null) {
+            return false;
+        }
+        MultivaluedMap<String, String> normalizedHeaders = new MultivaluedMapImpl<String, String>();
+        for (Map.Entry<String, List<String>> header : requestHeaders.entrySet()) {
+            if (header.getValue() != null) {
+                normalizedHeaders.put(normalizeHeaderName(header.getKey()), header.getValue());
+            }
+        }
+        return containsAll(normalizedHeaders, headers);
+    }
+
+    private boolean matchesQueryParams(MockRequest request) {
+        return queryParams.isEmpty() || containsAll(QueryStringParser.parse(request.getQueryString()), queryParams);
+    }
+
+    private static boolean containsAll(MultivaluedMap<String, String> actual, MultivaluedMap<String, String> required) {
+        for (Map.Entry<String, List<String>> entry : required.entrySet()) {
+            List<String> actualValues = actual.get(entry.getKey());
+            if (actualValues == null || !actualValues.containsAll(entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matchesXPath(MockRequest request) {
+        if (xpathExpression == null) {
+            return true;
+        }
+        Document document = parseXml(request.getBody());
+        if (document == null) {
+            return false;
+        }
+        try {
+            return (Boolean) xpathExpression.evaluate(document, XPathConstants.BOOLEAN);
+        } catch (XPathExpressionException e) {
+            return false;
+        }
+    }
+
+    private boolean matchesJsonPath(MockRequest request) {
+        if (jsonPath == null) {
+            return true;
+        }
+        String body = request.getBody();
+        if (body == null) {
+            return false;
+        }
+        List<Object> selected = jsonPath.select(body);
+        if (jsonPathValue == null) {
+            return !selected.isEmpty();
+        }
+        for (Object value : selected) {
+            if (jsonPathValue.equals(String.valueOf(value))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return parsed document, null if the body is not well-formed XML
+     */
+    static Document parseXml(String body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            DocumentBuilder documentBuilder = factory.newDocumentBuilder();
+            documentBuilder.setErrorHandler(SILENT_ERROR_HANDLER);
+            return documentBuilder.parse(new InputSource(new StringReader(body)));
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        } catch (SAXException e) {
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String normalizeHeaderName(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).omitNullValues().add("headers", headers).add("queryParams", queryParams)
+            .add("resourcePathPrefix", resourcePathPrefix).add("recordedFrom", recordedFrom).add("recordedTo", recordedTo)
+            .add("xpath", xpath).add("jsonPath", jsonPath).add("jsonPathValue", jsonPathValue).toString();
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.request;
+
+/**
+ * Decides how much of each request of an operation is recorded. Modes are immutable and shared by all threads
+ * recording the operation.
+ * <p/>
+ * Modes are created from text specification:
+ * <pre>
+ * full           every request is recorded (default)
+ * sampled:10     one request in 10 is recorded: the 1st, 11th, 21st...
+ * headers-only   every request is recorded without its body
+ * count-only     requests are only counted, nothing is recorded
+ * off            requests are neither recorded nor counted
+ * </pre>
+ */
+public final class RecordingMode {
+
+    private static final String TYPE_SEPARATOR = ":";
+
+    public static final RecordingMode FULL = new RecordingMode("full", 1, true);
+    public static final RecordingMode HEADERS_ONLY = new RecordingMode("headers-only", 1, false);
+    public static final RecordingMode COUNT_ONLY = new RecordingMode("count-only", 0, false);
+    public static final RecordingMode OFF = new RecordingMode("off", 0, false);
+
+    private final String spec;
+    private final int sampleInterval;
+    private final boolean bodyRecorded;
+
+    private RecordingMode(String spec, int sampleInterval, boolean bodyRecorded) {
+        this.spec = spec;
+        this.sampleInterval = sampleInterval;
+        this.bodyRecorded = bodyRecorded;
+    }
+
+    /**
+     * @throws IllegalArgumentException if interval is not positive
+     */
+    public static RecordingMode sampled(int interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Sampling interval must be positive: " + interval);
+        }
+        return interval == 1 ? FULL : new RecordingMode("sampled:" + interval, interval, true);
+    }
+
+    /**
+     * @throws IllegalArgumentException if specification is not recognized
+     */
+    public static RecordingMode parse(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            throw new IllegalArgumentException("Empty recording mode");
+        }
+        String mode = spec.trim().toLowerCase();
+        if (FULL.spec.equals(mode)) {
+            return FULL;
+        } else if (HEADERS_ONLY.spec.equals(mode)) {
+            return HEADERS_ONLY;
+        } else if (COUNT_ONLY.spec.equals(mode)) {
+            return COUNT_ONLY;
+        } else if (OFF.spec.equals(mode)) {
+            return OFF;
+        } else if (mode.startsWith("sampled" + TYPE_SEPARATOR)) {
+            String interval = mode.substring(mode.indexOf(TYPE_SEPARATOR) + 1).trim();
+            try {
+                return sampled(Integer.parseInt(interval));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Illegal sampling interval '" + interval + "' in recording mode: " + spec);
+            }
+        }
+        throw new IllegalArgumentException("Unknown recording mode: " + spec);
+    }
+
+    /**
+     * @return false if requests are not even counted
+     */
+    public boolean isCounted() {
+        return this != OFF;
+    }
+
+    /**
+     * @param invocation zero-based number of the request among the requests counted for the operation
+     * @return true if the request is to be recorded
+     */
+    public boolean isRecorded(long invocation) {
+        return sampleInterval > 0 && invocation % sampleInterval == 0;
+    }
+
+    /**
+     * @return false if recorded requests are stripped of their body
+     */
+    public boolean isBodyRecorded() {
+        return bodyRecorded;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof RecordingMode && spec.equals(((RecordingMode) o).spec);
+    }
+
+    @Override
+    public int hashCode() {
+        return spec.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+}
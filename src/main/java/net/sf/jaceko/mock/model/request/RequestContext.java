@@ -0,0 +1,198 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.request;
+
+import net.sf.jaceko.mock.util.JsonPath;
+import net.sf.jaceko.mock.util.QueryStringParser;
+import net.sf.jaceko.mock.util.Utf8;
+import org.w3c.dom.Document;
+
+import javax.ws.rs.core.MultivaluedMap;
+import javax.xml.namespace.QName;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * View of a single incoming request, built once by the endpoint and shared by dispatch,
+ * namespace validation, response selection and recording so the body is never parsed or scanned more than once.
+ * Parsed forms of query string and body are created on first use and published through volatile fields, so a
+ * context handed to the recording pipeline may be read by its thread and the request thread at the same time; both
+ * racing to parse the same form is harmless.
+ */
+public final class RequestContext {
+
+    private static final String XML_DECLARATION_START = "<?xml";
+    private static final String XML_DECLARATION_END = "?>";
+
+    private final String body;
+    private final QName rootElement;
+    private final String queryString;
+    private final String resourcePath;
+    private final MultivaluedMap<String, String> headers;
+    private final int xmlDeclarationEnd;
+    private volatile MultivaluedMap<String, String> queryParams;
+    // null until parsed, holding null if the body is not XML or JSON respectively
+    private volatile Parsed<Document> xmlDocument;
+    private volatile Parsed<Object> jsonDocument;
+
+    public RequestContext(String body, QName rootElement, String queryString, String resourcePath,
+                          MultivaluedMap<String, String> headers) {
+        this.body = body;
+        this.rootElement = rootElement;
+        this.queryString = queryString;
+        this.resourcePath = resourcePath;
+        this.headers = headers;
+        this.xmlDeclarationEnd = findXmlDeclarationEnd(body);
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return name of the first SOAP Body child, or null for requests which were not dispatched as SOAP
+     */
+    public QName getRootElement() {
+        return rootElement;
+    }
+
+    /**
+     * @return namespace of the SOAP request message; empty if it has none, null for non-SOAP requests
+     */
+    public String getNamespace() {
+        return rootElement != null ? rootElement.getNamespaceURI() : null;
+    }
+
+    public String getQueryString() {
+        return queryString;
+    }
+
+    public String getResourcePath() {
+        return resourcePath;
+    }
+
+    public MultivaluedMap<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return decoded query parameters
+     */
+    public MultivaluedMap<String, String> getQueryParams() {
+        MultivaluedMap<String, String> params = queryParams;
+        if (params == null) {
+            params = QueryStringParser.parse(queryString);
+            queryParams = params;
+        }
+        return params;
+    }
+
+    /**
+     * @return value of the header, name compared case-insensitively; first one if repeated, null if missing
+     */
+    public String getHeader(String name) {
+        if (headers == null) {
+            return null;
+        }
+        String value = headers.getFirst(name);
+        if (value != null) {
+            return value;
+        }
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return body parsed without namespace support, null if it is not well-formed XML
+     */
+    public Document getXmlDocument() {
+        Parsed<Document> document = xmlDocument;
+        if (document == null) {
+            document = new Parsed<Document>(RecordedRequestsQuery.parseXml(body));
+            xmlDocument = document;
+        }
+        return document.value;
+    }
+
+    /**
+     * @return body parsed by {@link JsonPath#parse(String)}, null if it is not a JSON object or array
+     */
+    public Object getJsonDocument() {
+        Parsed<Object> document = jsonDocument;
+        if (document == null) {
+            document = new Parsed<Object>(body != null ? JsonPath.parse(body) : null);
+            jsonDocument = document;
+        }
+        return document.value;
+    }
+
+    /**
+     * @return offset of the first character after a leading XML declaration, 0 if the body has none
+     */
+    public int getXmlDeclarationEnd() {
+        return xmlDeclarationEnd;
+    }
+
+    public String getBodyWithoutXmlDeclaration() {
+        return xmlDeclarationEnd > 0 ? body.substring(xmlDeclarationEnd) : body;
+    }
+
+    /**
+     * @return number of bytes of the body encoded in UTF-8, counted without encoding it; 0 if there is no body
+     */
+    public long getEncodedBodyLength() {
+        return Utf8.encodedLength(body);
+    }
+
+    /**
+     * @return the same request without its body
+     */
+    public RequestContext withoutBody() {
+        return new RequestContext(null, rootElement, queryString, resourcePath, headers);
+    }
+
+    private static int findXmlDeclarationEnd(String body) {
+        if (body == null) {
+            return 0;
+        }
+        int start = 0;
+        while (start < body.length() && (Character.isWhitespace(body.charAt(start)) || body.charAt(start) == '\uFEFF')) {
+            start++;
+        }
+        if (!body.startsWith(XML_DECLARATION_START, start)) {
+            return 0;
+        }
+        int end = body.indexOf(XML_DECLARATION_END, start);
+        return end > 0 ? end + XML_DECLARATION_END.length() : 0;
+    }
+
+    private static final class Parsed<T> {
+        private final T value;
+
+        private Parsed(T value) {
+            this.value = value;
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.request;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Condition a request has to meet for a {@link ResponseRules rule} to select its response:
+ * <ul>
+ * <li><code>header:name=value</code>, <code>query:name=value</code> - header (name compared case-insensitively) or
+ * query parameter equal to the value</li>
+ * <li><code>xpath:expression=value</code>, <code>jsonPath:$.path=value</code> - value of the body, as in
+ * {@link ResponseTemplate} placeholders, equal to the value; the expression ends at the last <code>=</code></li>
+ * <li><code>path:/customers/&#42;/orders</code> - resource path, <code>&#42;</code> standing for any single segment</li>
+ * <li><code>regex:pattern</code> - body containing a match of the pattern</li>
+ * </ul>
+ */
+public final class RequestPredicate {
+
+    private static final char NAME_SEPARATOR = ':';
+    private static final char VALUE_SEPARATOR = '=';
+    static final String WILDCARD_SEGMENT = "*";
+    private static final String REGEX = "regex";
+
+    private final String spec;
+    private final RequestValue value;
+    private final String expected;
+    private final String[] pathPattern;
+    private final Pattern regex;
+
+    private RequestPredicate(String spec, RequestValue value, String expected, String[] pathPattern, Pattern regex) {
+        this.spec = spec;
+        this.value = value;
+        this.expected = expected;
+        this.pathPattern = pathPattern;
+        this.regex = regex;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the condition is not one of the above or its expression is invalid
+     */
+    public static RequestPredicate parse(String spec) {
+        if (spec == null) {
+            throw new IllegalArgumentException("Missing request condition");
+        }
+        int separator = spec.indexOf(NAME_SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid request condition: " + spec);
+        }
+        String name = spec.substring(0, separator);
+        String argument = spec.substring(separator + 1);
+
+        if (name.equals(RequestValue.PATH)) {
+            return new RequestPredicate(spec, null, null, PathTemplate.split(argument), null);
+        }
+        if (name.equals(REGEX)) {
+            try {
+                return new RequestPredicate(spec, null, null, null, Pattern.compile(argument));
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid regular expression in request condition: " + spec, e);
+            }
+        }
+
+        boolean expression = name.equals(RequestValue.XPATH) || name.equals(RequestValue.JSON_PATH);
+        int valueSeparator = expression ? argument.lastIndexOf(VALUE_SEPARATOR) : argument.indexOf(VALUE_SEPARATOR);
+        if (valueSeparator < 0) {
+            throw new IllegalArgumentException("Missing value in request condition: " + spec);
+        }
+        RequestValue value;
+        try {
+            value = RequestValue.forName(name, argument.substring(0, valueSeparator));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid request condition: " + spec, e);
+        }
+        if (value == null || name.equals(RequestValue.PATH)) {
+            throw new IllegalArgumentException("Unknown request condition: " + spec);
+        }
+        return new RequestPredicate(spec, value, argument.substring(valueSeparator + 1), null, null);
+    }
+
+    /**
+     * @param request request to check, null if not known
+     */
+    public boolean matches(RequestContext request) {
+        if (value != null) {
+            return expected.equals(value.of(request));
+        }
+        if (regex != null) {
+            String body = request != null ? request.getBody() : null;
+            return body != null && regex.matcher(body).find();
+        }
+        String[] path = PathTemplate.split(request != null ? request.getResourcePath() : null);
+        if (request == null || request.getResourcePath() == null || path.length != pathPattern.length) {
+            return false;
+        }
+        for (int i = 0; i < path.length; i++) {
+            if (!pathPattern[i].equals(WILDCARD_SEGMENT) && !pathPattern[i].equals(path[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return value the condition compares, null for path and regex conditions
+     */
+    RequestValue getValue() {
+        return value;
+    }
+
+    String getExpected() {
+        return expected;
+    }
+
+    /**
+     * @return path segments of a path condition, null for other conditions
+     */
+    String[] getPathPattern() {
+        return pathPattern;
+    }
+
+    boolean isRegex() {
+        return regex != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof RequestPredicate && spec.equals(((RequestPredicate) o).spec);
+    }
+
+    @Override
+    public int hashCode() {
+        return spec.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.request;
+
+/**
+ * Server-side timing of a single mocked request, from its arrival at the servlet until its response was written
+ * (including reading and matching the request and any configured delay)
+ */
+public final class RequestTiming {
+    /**
+     * name of the servlet request attribute holding timing of the request
+     */
+    public static final String ATTRIBUTE_NAME = RequestTiming.class.getName();
+
+    private static final long NOT_COMPLETED = -1;
+
+    private final long arrivalNanos;
+    private volatile long completionNanos = NOT_COMPLETED;
+    private Runnable completionCallback;
+
+    public RequestTiming(long arrivalNanos) {
+        this.arrivalNanos = arrivalNanos;
+    }
+
+    /**
+     * Starts timing of a request arriving now
+     */
+    public static RequestTiming arrivingNow() {
+        return new RequestTiming(System.nanoTime());
+    }
+
+    /**
+     * @return arrival time from the monotonic {@link System#nanoTime()} clock; only differences of arrival times are
+     * meaningful, e.g. between retries of a client
+     */
+    public long getArrivalNanos() {
+        return arrivalNanos;
+    }
+
+    /**
+     * Marks the response as written; only the first call has effect
+     */
+    public void complete(long completionNanos) {
+        Runnable callback;
+        synchronized (this) {
+            if (this.completionNanos != NOT_COMPLETED) {
+                return;
+            }
+            this.completionNanos = completionNanos;
+            callback = completionCallback;
+            completionCallback = null;
+        }
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    public void completeNow() {
+        complete(System.nanoTime());
+    }
+
+    /**
+     * Runs the callback once the response is written, right away if it already is; replaces a callback set before
+     */
+    public void onCompletion(Runnable callback) {
+        synchronized (this) {
+            if (completionNanos == NOT_COMPLETED) {
+                completionCallback = callback;
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    /**
+     * @return nanoseconds between arrival of the request and completion of its response, null while the response has
+     * not been written yet
+     */
+    public Long getServiceTimeNanos() {
+        long completion = completionNanos;
+        return completion != NOT_COMPLETED ? completion - arrivalNanos : null;
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.request;
+
+import net.sf.jaceko.mock.util.JsonPath;
+import org.w3c.dom.Document;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Value taken from a request: resource path or its segment, query parameter, header, or XPath or JSONPath value
+ * of the body. Values are equal when they take the same thing, so rules can be grouped by the value they test.
+ */
+abstract class RequestValue {
+
+    static final String PATH = "path";
+    static final String QUERY = "query";
+    static final String HEADER = "header";
+    static final String XPATH = "xpath";
+    static final String JSON_PATH = "jsonPath";
+
+    private final String key;
+
+    RequestValue(String key) {
+        this.key = key;
+    }
+
+    /**
+     * @param argument text after the name, e.g. parameter name; null if there is none
+     * @return value of given name, null if the name is not one of request values
+     * @throws IllegalArgumentException if the argument is missing or invalid
+     */
+    static RequestValue forName(String name, String argument) {
+        if (name.equals(PATH)) {
+            return argument == null ? new ResourcePath() : new PathSegment(parseIndex(argument));
+        }
+        if (!name.equals(QUERY) && !name.equals(HEADER) && !name.equals(XPATH) && !name.equals(JSON_PATH)) {
+            return null;
+        }
+        if (argument == null || argument.isEmpty()) {
+            throw new IllegalArgumentException(name + " requires an argument");
+        }
+        if (name.equals(QUERY)) {
+            return new QueryParam(argument);
+        } else if (name.equals(HEADER)) {
+            return new Header(argument);
+        } else if (name.equals(XPATH)) {
+            return new XPathValue(argument);
+        } else {
+            return new JsonPathValue(argument);
+        }
+    }
+
+    private static int parseIndex(String index) {
+        try {
+            int value = Integer.parseInt(index);
+            if (value >= 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Illegal path segment index: " + index);
+    }
+
+    /**
+     * @param request request the value is taken from, null if not known
+     * @return the value, null if the request has none
+     */
+    abstract String of(RequestContext request);
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof RequestValue && key.equals(((RequestValue) o).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+
+    private static final class ResourcePath extends RequestValue {
+        ResourcePath() {
+            super(PATH);
+        }
+
+        @Override
+        String of(RequestContext request) {
+            return request != null ? request.getResourcePath() : null;
+        }
+    }
+
+    private static final class PathSegment extends RequestValue {
+        private final int index;
+
+        PathSegment(int index) {
+            super(PATH + ':' + index);
+            this.index = index;
+        }
+
+        @Override
+        String of(RequestContext request) {
+            String path = request != null ? request.getResourcePath() : null;
+            if (path == null) {
+                return null;
+            }
+            int start = path.startsWith("/") ? 1 : 0;
+            for (int i = 0; i < index; i++) {
+                start = path.indexOf('/', start) + 1;
+                if (start == 0) {
+                    return null;
+                }
+            }
+            int end = path.indexOf('/', start);
+            return path.substring(start, end < 0 ? path.length() : end);
+        }
+    }
+
+    private static final class QueryParam extends RequestValue {
+        private final String name;
+
+        QueryParam(String name) {
+            super(QUERY + ':' + name);
+            this.name = name;
+        }
+
+        @Override
+        String of(RequestContext request) {
+            return request != null ? request.getQueryParams().getFirst(name) : null;
+        }
+    }
+
+    private static final class Header extends RequestValue {
+        private final String name;
+
+        Header(String name) {
+            super(HEADER + ':' + name.toLowerCase(Locale.ENGLISH));
+            this.name = name;
+        }
+
+        @Override
+        String of(RequestContext request) {
+            return request != null ? request.getHeader(name) : null;
+        }
+    }
+
+    private static final class XPathValue extends RequestValue {
+        private final String expression;
+        // compiled expressions must not be evaluated concurrently, so each thread compiles its own once
+        private final ThreadLocal<XPathExpression> compiled = new ThreadLocal<XPathExpression>() {
+            @Override
+            protected XPathExpression initialValue() {
+                return compileXPath(expression);
+            }
+        };
+
+        XPathValue(String expression) {
+            super(XPATH + ':' + expression);
+            this.expression = expression;
+            compiled.get();
+        }
+
+        @Override
+        String of(RequestContext request) {
+            Document document = request != null ? request.getXmlDocument() : null;
+            if (document == null) {
+                return null;
+            }
+            try {
+                return (String) compiled.get().evaluate(document, XPathConstants.STRING);
+            } catch (XPathExpressionException e) {
+                return null;
+            }
+        }
+
+        private static XPathExpression compileXPath(String expression) {
+            try {
+                return XPathFactory.newInstance().newXPath().compile(expression);
+            } catch (XPathExpressionException e) {
+                throw new IllegalArgumentException("Invalid XPath: " + expression, e);
+            }
+        }
+    }
+
+    private static final class JsonPathValue extends RequestValue {
+        private final JsonPath jsonPath;
+
+        JsonPathValue(String expression) {
+            super(JSON_PATH + ':' + expression);
+            this.jsonPath = JsonPath.compile(expression);
+        }
+
+        /**
+         * @return first value selected
+         */
+        @Override
+        String of(RequestContext request) {
+            Object json = request != null ? request.getJsonDocument() : null;
+            if (json == null) {
+                return null;
+            }
+            List<Object> selected = jsonPath.select(json);
+            return selected.isEmpty() ? null : String.valueOf(selected.get(0));
+        }
+    }
+
+}
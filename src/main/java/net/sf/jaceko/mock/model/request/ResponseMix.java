@@ -0,0 +1,201 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.request;
+
+import net.sf.jaceko.mock.util.FastRandom;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Responses served in a fixed proportion, indefinitely, e.g. 95% of one response, 4% of an error and 1% of
+ * a slow one; a share without response stands for the default response of the operation. Mixes are
+ * immutable, adding a response creates a new one, and selection takes no lock:
+ * <pre>
+ * round-robin   responses repeat in a fixed cycle in which each appears as many times as its weight,
+ *               spread evenly over the cycle (default)
+ * weighted      each invocation draws a response at random with probability proportional to its weight
+ * </pre>
+ */
+public final class ResponseMix {
+
+    /**
+     * upper limit of the sum of weights, which is the length of the round-robin cycle
+     */
+    static final int MAX_TOTAL_WEIGHT = 1000000;
+
+    public enum Selection {
+        ROUND_ROBIN("round-robin"), WEIGHTED("weighted");
+
+        private final String spec;
+
+        Selection(String spec) {
+            this.spec = spec;
+        }
+
+        /**
+         * @throws IllegalArgumentException if specification is not recognized
+         */
+        public static Selection parse(String spec) {
+            if (spec != null) {
+                String selection = spec.trim().toLowerCase();
+                for (Selection value : values()) {
+                    if (value.spec.equals(selection)) {
+                        return value;
+                    }
+                }
+            }
+            throw new IllegalArgumentException("Unknown response mix selection: " + spec);
+        }
+
+        @Override
+        public String toString() {
+            return spec;
+        }
+    }
+
+    private final Selection selection;
+    private final MockResponse[] responses;
+    private final int[] weights;
+    private final int totalWeight;
+
+    /**
+     * upper bounds of the shares drawn by weighted selection, cumulative weights of the responses
+     */
+    private final int[] shareEnds;
+
+    /**
+     * indexes of the responses in the order they are served by round-robin selection; built on first selection,
+     * so that priming many responses, each creating a new mix, does not build a cycle for each of them. Threads
+     * racing to build it build the same one
+     */
+    private volatile int[] cycle;
+
+    private final AtomicLong invocations = new AtomicLong();
+
+    public ResponseMix(Selection selection) {
+        this(selection, new MockResponse[0], new int[0]);
+    }
+
+    private ResponseMix(Selection selection, MockResponse[] responses, int[] weights) {
+        this.selection = selection;
+        this.responses = responses;
+        this.weights = weights;
+        this.shareEnds = new int[weights.length];
+        int total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += weights[i];
+            shareEnds[i] = total;
+        }
+        this.totalWeight = total;
+    }
+
+    /**
+     * @param response response to add, null for a share of the default response
+     * @return mix having also given response
+     * @throws IllegalArgumentException if weight is not positive or total weight gets too high
+     */
+    public ResponseMix add(MockResponse response, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Weight of response in mix must be positive: " + weight);
+        }
+        if (weight > MAX_TOTAL_WEIGHT - totalWeight) {
+            throw new IllegalArgumentException("Total weight of response mix can't exceed " + MAX_TOTAL_WEIGHT);
+        }
+        MockResponse[] addedResponses = Arrays.copyOf(responses, responses.length + 1);
+        int[] addedWeights = Arrays.copyOf(weights, weights.length + 1);
+        addedResponses[responses.length] = response;
+        addedWeights[weights.length] = weight;
+        return new ResponseMix(selection, addedResponses, addedWeights);
+    }
+
+    /**
+     * @return mix of the same responses selected as given
+     */
+    public ResponseMix withSelection(Selection selection) {
+        return selection == this.selection ? this : new ResponseMix(selection, responses, weights);
+    }
+
+    /**
+     * @return response for the next invocation; null if it is a share of the default response or the mix is empty
+     */
+    public MockResponse next() {
+        if (responses.length == 0) {
+            return null;
+        }
+        if (selection == Selection.ROUND_ROBIN) {
+            int[] servedCycle = cycle;
+            if (servedCycle == null) {
+                servedCycle = buildCycle(weights, totalWeight);
+                cycle = servedCycle;
+            }
+            return responses[servedCycle[(int) ((invocations.getAndIncrement() & Long.MAX_VALUE) % servedCycle.length)]];
+        }
+        int draw = (int) (FastRandom.current().nextDouble() * totalWeight);
+        int index = Arrays.binarySearch(shareEnds, draw + 1);
+        return responses[index >= 0 ? index : -index - 1];
+    }
+
+    public Selection getSelection() {
+        return selection;
+    }
+
+    public boolean isEmpty() {
+        return responses.length == 0;
+    }
+
+    public int size() {
+        return responses.length;
+    }
+
+    /**
+     * Smooth weighted round-robin: every step each response gains its weight and the one with most is served and
+     * loses the total, so responses of low weight are spread among the others instead of coming in a run
+     */
+    private static int[] buildCycle(int[] weights, int totalWeight) {
+        int[] cycle = new int[totalWeight];
+        long[] current = new long[weights.length];
+        for (int step = 0; step < totalWeight; step++) {
+            int best = 0;
+            for (int i = 0; i < weights.length; i++) {
+                current[i] += weights[i];
+                if (current[i] > current[best]) {
+                    best = i;
+                }
+            }
+            current[best] -= totalWeight;
+            cycle[step] = best;
+        }
+        return cycle;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(selection.toString()).append('[');
+        for (int i = 0; i < responses.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(weights[i]).append('=').append(responses[i] != null ? responses[i] : "default");
+        }
+        return sb.append(']').toString();
+    }
+
+}
@@ -0,0 +1,261 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.request;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Responses selected by content of the request. Rules are indexed by what they test, so matching does not
+ * depend on the number of rules: value conditions are hashed on the value they compare, one lookup per
+ * distinct value (e.g. <code>header:X-Customer</code>) however many customers are primed; path conditions form
+ * a trie walked segment by segment. Only regex conditions are evaluated one by one.
+ * <p>
+ * When several rules match, the one added first wins; a rule with the same condition as an earlier one replaces
+ * its response in place. Matching takes no lock.
+ */
+public final class ResponseRules {
+
+    private static final Comparator<Rule> BY_ORDER = new Comparator<Rule>() {
+        @Override
+        public int compare(Rule rule1, Rule rule2) {
+            return rule1.order < rule2.order ? -1 : (rule1.order == rule2.order ? 0 : 1);
+        }
+    };
+
+    private final ConcurrentMap<RequestValue, ConcurrentMap<String, Rule>> valueRules =
+        new ConcurrentHashMap<RequestValue, ConcurrentMap<String, Rule>>();
+    private final PathNode pathRules = new PathNode();
+    private final List<Rule> regexRules = new CopyOnWriteArrayList<Rule>();
+    private volatile int size;
+    private long nextOrder;
+
+    /**
+     * Adds a rule or replaces response of the rule with the same condition
+     */
+    public synchronized void add(RequestPredicate predicate, MockResponse response) {
+        Rule existing = find(predicate);
+        put(new Rule(predicate, response, existing != null ? existing.order : nextOrder++), existing == null);
+    }
+
+    /**
+     * @param request request to match, null if not known
+     * @return response of the first added rule the request meets, null if it meets none
+     */
+    public MockResponse match(RequestContext request) {
+        if (size == 0) {
+            return null;
+        }
+        Rule best = null;
+        for (Map.Entry<RequestValue, ConcurrentMap<String, Rule>> rules : valueRules.entrySet()) {
+            String value = rules.getKey().of(request);
+            if (value != null) {
+                best = earlier(best, rules.getValue().get(value));
+            }
+        }
+        if (request != null && request.getResourcePath() != null) {
+            best = earlier(best, pathRules.match(PathTemplate.split(request.getResourcePath()), 0));
+        }
+        for (Rule rule : regexRules) {
+            if (best != null && best.order < rule.order) {
+                break;
+            }
+            if (rule.predicate.matches(request)) {
+                best = rule;
+                break;
+            }
+        }
+        return best != null ? best.response : null;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return rules in the order they were added
+     */
+    public synchronized List<RequestPredicate> getPredicates() {
+        List<Rule> rules = getRules();
+        List<RequestPredicate> predicates = new ArrayList<RequestPredicate>(rules.size());
+        for (Rule rule : rules) {
+            predicates.add(rule.predicate);
+        }
+        return predicates;
+    }
+
+    /**
+     * @return independent copy of the rules; responses are shared
+     */
+    public synchronized ResponseRules copy() {
+        ResponseRules copy = new ResponseRules();
+        for (Rule rule : getRules()) {
+            copy.put(rule, true);
+        }
+        copy.nextOrder = nextOrder;
+        return copy;
+    }
+
+    private Rule find(RequestPredicate predicate) {
+        if (predicate.getValue() != null) {
+            Map<String, Rule> rules = valueRules.get(predicate.getValue());
+            return rules != null ? rules.get(predicate.getExpected()) : null;
+        }
+        if (predicate.isRegex()) {
+            for (Rule rule : regexRules) {
+                if (rule.predicate.equals(predicate)) {
+                    return rule;
+                }
+            }
+            return null;
+        }
+        return pathRules.nodeOf(predicate.getPathPattern()).rule;
+    }
+
+    private void put(Rule rule, boolean added) {
+        RequestPredicate predicate = rule.predicate;
+        if (predicate.getValue() != null) {
+            ConcurrentMap<String, Rule> rules = valueRules.get(predicate.getValue());
+            if (rules == null) {
+                rules = new ConcurrentHashMap<String, Rule>();
+                valueRules.put(predicate.getValue(), rules);
+            }
+            rules.put(predicate.getExpected(), rule);
+        } else if (predicate.isRegex()) {
+            if (added) {
+                regexRules.add(rule);
+            } else {
+                for (int i = 0; i < regexRules.size(); i++) {
+                    if (regexRules.get(i).predicate.equals(predicate)) {
+                        regexRules.set(i, rule);
+                    }
+                }
+            }
+        } else {
+            pathRules.nodeOf(predicate.getPathPattern()).rule = rule;
+        }
+        if (added) {
+            size++;
+        }
+    }
+
+    private List<Rule> getRules() {
+        List<Rule> rules = new ArrayList<Rule>(size);
+        for (Map<String, Rule> valueRule : valueRules.values()) {
+            rules.addAll(valueRule.values());
+        }
+        pathRules.collect(rules);
+        rules.addAll(regexRules);
+        Collections.sort(rules, BY_ORDER);
+        return rules;
+    }
+
+    private static Rule earlier(Rule best, Rule candidate) {
+        if (candidate == null) {
+            return best;
+        }
+        return best == null || candidate.order < best.order ? candidate : best;
+    }
+
+    @Override
+    public String toString() {
+        return getPredicates().toString();
+    }
+
+    private static final class Rule {
+        private final RequestPredicate predicate;
+        private final MockResponse response;
+        private final long order;
+
+        Rule(RequestPredicate predicate, MockResponse response, long order) {
+            this.predicate = predicate;
+            this.response = response;
+            this.order = order;
+        }
+    }
+
+    /**
+     * Node of the path trie; rule of a node is the one whose pattern ends at it
+     */
+    private static final class PathNode {
+        private final ConcurrentMap<String, PathNode> children = new ConcurrentHashMap<String, PathNode>();
+        private volatile PathNode wildcard;
+        private volatile Rule rule;
+
+        PathNode nodeOf(String[] pattern) {
+            PathNode node = this;
+            for (String segment : pattern) {
+                node = node.child(segment);
+            }
+            return node;
+        }
+
+        private PathNode child(String segment) {
+            if (segment.equals(RequestPredicate.WILDCARD_SEGMENT)) {
+                if (wildcard == null) {
+                    wildcard = new PathNode();
+                }
+                return wildcard;
+            }
+            PathNode child = children.get(segment);
+            if (child == null) {
+                child = new PathNode();
+                children.put(segment, child);
+            }
+            return child;
+        }
+
+        /**
+         * @return earliest rule matching path from given segment on; literal segments and wildcards are both tried
+         */
+        Rule match(String[] path, int index) {
+            if (index == path.length) {
+                return rule;
+            }
+            PathNode literal = children.get(path[index]);
+            Rule best = literal != null ? literal.match(path, index + 1) : null;
+            PathNode any = wildcard;
+            return any != null ? earlier(best, any.match(path, index + 1)) : best;
+        }
+
+        void collect(List<Rule> rules) {
+            if (rule != null) {
+                rules.add(rule);
+            }
+            for (PathNode child : children.values()) {
+                child.collect(rules);
+            }
+            if (wildcard != null) {
+                wildcard.collect(rules);
+            }
+        }
+    }
+
+}
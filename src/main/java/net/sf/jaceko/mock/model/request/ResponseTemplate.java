@@ -0,0 +1,289 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.request;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Response text with placeholders filled from the request it is served to:
+ * <ul>
+ * <li><code>${path}</code> - resource path, <code>${path:N}</code> - its N-th segment counted from 0</li>
+ * <li><code>${query:name}</code> - query parameter, <code>${header:name}</code> - request header</li>
+ * <li><code>${xpath:expression}</code> - XPath evaluated to string on the body (parsed without namespace support,
+ * as in {@link RecordedRequestsQuery}), <code>${jsonPath:$.path}</code> - first value selected in JSON body</li>
+ * <li><code>${invocation}</code> - invocation number, <code>${timestamp}</code> - current time in milliseconds,
+ * <code>${timestamp:pattern}</code> - formatted with {@link SimpleDateFormat} pattern, <code>${uuid}</code> - random UUID</li>
+ * </ul>
+ * Placeholders without value are left empty; <code>$${</code> stands for literal <code>${</code>. The text is parsed
+ * once into segments, literal ones already encoded, so rendering only appends values to the output.
+ */
+public final class ResponseTemplate {
+    private static final String PLACEHOLDER_START = "${";
+    private static final char PLACEHOLDER_END = '}';
+    private static final char ARGUMENT_SEPARATOR = ':';
+    // room left for placeholder values in the output buffer
+    private static final int VALUES_CAPACITY = 64;
+
+    private final String text;
+    private final Charset charset;
+    private final Segment[] segments;
+    private final int literalBytes;
+
+    private ResponseTemplate(String text, Charset charset, Segment[] segments, int literalBytes) {
+        this.text = text;
+        this.charset = charset;
+        this.segments = segments;
+        this.literalBytes = literalBytes;
+    }
+
+    /**
+     * @param charset charset the template is rendered in by {@link #renderEncoded(RequestContext, int)}
+     * @throws IllegalArgumentException if a placeholder is unclosed, unknown or has invalid argument
+     */
+    public static ResponseTemplate compile(String text, Charset charset) {
+        List<Segment> segments = new ArrayList<Segment>();
+        StringBuilder literal = new StringBuilder();
+        int position = 0;
+        while (position < text.length()) {
+            int start = text.indexOf(PLACEHOLDER_START, position);
+            if (start < 0) {
+                literal.append(text, position, text.length());
+                break;
+            }
+            if (start > position && text.charAt(start - 1) == '$') {
+                literal.append(text, position, start - 1).append(PLACEHOLDER_START);
+                position = start + PLACEHOLDER_START.length();
+                continue;
+            }
+            int end = text.indexOf(PLACEHOLDER_END, start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder in template: " + text.substring(start));
+            }
+            literal.append(text, position, start);
+            if (literal.length() > 0) {
+                segments.add(new Literal(literal.toString(), charset));
+                literal.setLength(0);
+            }
+            segments.add(placeholder(text.substring(start + PLACEHOLDER_START.length(), end)));
+            position = end + 1;
+        }
+        if (literal.length() > 0) {
+            segments.add(new Literal(literal.toString(), charset));
+        }
+
+        int literalBytes = 0;
+        for (Segment segment : segments) {
+            if (segment instanceof Literal) {
+                literalBytes += ((Literal) segment).encoded.length;
+            }
+        }
+        return new ResponseTemplate(text, charset, segments.toArray(new Segment[segments.size()]), literalBytes);
+    }
+
+    private static Segment placeholder(String placeholder) {
+        int separator = placeholder.indexOf(ARGUMENT_SEPARATOR);
+        String name = separator < 0 ? placeholder : placeholder.substring(0, separator);
+        String argument = separator < 0 ? null : placeholder.substring(separator + 1);
+
+        if (name.equals("invocation") && argument == null) {
+            return new Invocation();
+        } else if (name.equals("timestamp")) {
+            return new Timestamp(argument);
+        } else if (name.equals("uuid") && argument == null) {
+            return new Uuid();
+        }
+        RequestValue value;
+        try {
+            value = RequestValue.forName(name, argument);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid placeholder in template: ${" + placeholder + "}", e);
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Unknown placeholder in template: ${" + placeholder + "}");
+        }
+        return new Value(value);
+    }
+
+    /**
+     * @return whether the template has any placeholder
+     */
+    public boolean hasPlaceholders() {
+        for (Segment segment : segments) {
+            if (!(segment instanceof Literal)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param request request the response is served to, null if not known
+     */
+    public String render(RequestContext request, int invocationNumber) {
+        Rendering rendering = new Rendering(request, invocationNumber);
+        StringBuilder out = new StringBuilder(text.length() + VALUES_CAPACITY);
+        for (Segment segment : segments) {
+            String value = segment.value(rendering);
+            if (value != null) {
+                out.append(value);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * @param request request the response is served to, null if not known
+     * @return rendered text encoded in the charset of the template
+     */
+    public byte[] renderEncoded(RequestContext request, int invocationNumber) {
+        Rendering rendering = new Rendering(request, invocationNumber);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(literalBytes + VALUES_CAPACITY);
+        for (Segment segment : segments) {
+            segment.write(rendering, out, charset);
+        }
+        return out.toByteArray();
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Request a template is rendered for, with the time shared by all timestamp placeholders
+     */
+    private static final class Rendering {
+        private final RequestContext request;
+        private final int invocationNumber;
+        private long now;
+
+        Rendering(RequestContext request, int invocationNumber) {
+            this.request = request;
+            this.invocationNumber = invocationNumber;
+        }
+
+        long getNow() {
+            if (now == 0) {
+                now = System.currentTimeMillis();
+            }
+            return now;
+        }
+    }
+
+    private abstract static class Segment {
+
+        /**
+         * @return value of the segment for the request, null if it has none
+         */
+        abstract String value(Rendering rendering);
+
+        void write(Rendering rendering, ByteArrayOutputStream out, Charset charset) {
+            String value = value(rendering);
+            if (value != null) {
+                byte[] encoded = value.getBytes(charset);
+                out.write(encoded, 0, encoded.length);
+            }
+        }
+    }
+
+    private static final class Literal extends Segment {
+        private final String text;
+        private final byte[] encoded;
+
+        Literal(String text, Charset charset) {
+            this.text = text;
+            this.encoded = text.getBytes(charset);
+        }
+
+        @Override
+        String value(Rendering rendering) {
+            return text;
+        }
+
+        @Override
+        void write(Rendering rendering, ByteArrayOutputStream out, Charset charset) {
+            out.write(encoded, 0, encoded.length);
+        }
+    }
+
+    private static final class Value extends Segment {
+        private final RequestValue value;
+
+        Value(RequestValue value) {
+            this.value = value;
+        }
+
+        @Override
+        String value(Rendering rendering) {
+            return value.of(rendering.request);
+        }
+    }
+
+    private static final class Invocation extends Segment {
+        @Override
+        String value(Rendering rendering) {
+            return Integer.toString(rendering.invocationNumber);
+        }
+    }
+
+    private static final class Timestamp extends Segment {
+        private final String pattern;
+        // formats are not thread safe, so each thread creates its own once
+        private final ThreadLocal<SimpleDateFormat> format = new ThreadLocal<SimpleDateFormat>() {
+            @Override
+            protected SimpleDateFormat initialValue() {
+                return new SimpleDateFormat(pattern);
+            }
+        };
+
+        Timestamp(String pattern) {
+            this.pattern = pattern;
+            if (pattern != null) {
+                format.get();
+            }
+        }
+
+        @Override
+        String value(Rendering rendering) {
+            if (pattern == null) {
+                return Long.toString(rendering.getNow());
+            }
+            return format.get().format(new Date(rendering.getNow()));
+        }
+    }
+
+    private static final class Uuid extends Segment {
+        @Override
+        String value(Rendering rendering) {
+            return UUID.randomUUID().toString();
+        }
+    }
+
+}
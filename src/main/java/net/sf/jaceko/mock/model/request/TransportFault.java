@@ -0,0 +1,145 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.request;
+
+/**
+ * Failure of the connection served instead of, or in the middle of, a response. Faults are immutable and shared
+ * by all threads serving a response.
+ * <p/>
+ * Faults are created from text specification:
+ * <pre>
+ * reset               connection is reset (TCP RST) before any byte of the response is sent
+ * empty               connection is closed before any byte of the response is sent
+ * close-after:100     status line, headers and first 100 bytes of the body are sent, then the connection is closed
+ * stall               status line and headers are sent, then nothing until the client gives up (at most 10 minutes)
+ * stall:5000          status line and headers are sent, and the connection is closed 5000 ms later
+ * malformed-chunked   body is sent in chunked encoding with an invalid chunk size
+ * </pre>
+ */
+public final class TransportFault {
+
+    private static final String TYPE_SEPARATOR = ":";
+
+    static final long DEFAULT_STALL_MILLIS = 600000;
+
+    public enum Type {
+        RESET, EMPTY, CLOSE_AFTER, STALL, MALFORMED_CHUNKED
+    }
+
+    public static final TransportFault RESET = new TransportFault("reset", Type.RESET, 0);
+    public static final TransportFault EMPTY = new TransportFault("empty", Type.EMPTY, 0);
+    public static final TransportFault MALFORMED_CHUNKED = new TransportFault("malformed-chunked", Type.MALFORMED_CHUNKED, 0);
+
+    private final String spec;
+    private final Type type;
+    private final long amount;
+
+    private TransportFault(String spec, Type type, long amount) {
+        this.spec = spec;
+        this.type = type;
+        this.amount = amount;
+    }
+
+    /**
+     * @throws IllegalArgumentException if number of bytes is negative
+     */
+    public static TransportFault closeAfter(int bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Number of bytes sent before closing can't be negative: " + bytes);
+        }
+        return new TransportFault("close-after" + TYPE_SEPARATOR + bytes, Type.CLOSE_AFTER, bytes);
+    }
+
+    /**
+     * @throws IllegalArgumentException if stall is not positive
+     */
+    public static TransportFault stall(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Stall must be positive: " + millis);
+        }
+        return new TransportFault("stall" + TYPE_SEPARATOR + millis, Type.STALL, millis);
+    }
+
+    /**
+     * @throws IllegalArgumentException if specification is not recognized
+     */
+    public static TransportFault parse(String spec) {
+        if (spec == null || spec.trim().isEmpty()) {
+            throw new IllegalArgumentException("Empty transport fault");
+        }
+        String fault = spec.trim().toLowerCase();
+        if (RESET.spec.equals(fault)) {
+            return RESET;
+        } else if (EMPTY.spec.equals(fault)) {
+            return EMPTY;
+        } else if (MALFORMED_CHUNKED.spec.equals(fault)) {
+            return MALFORMED_CHUNKED;
+        } else if ("stall".equals(fault)) {
+            return stall(DEFAULT_STALL_MILLIS);
+        }
+        int typeEnd = fault.indexOf(TYPE_SEPARATOR);
+        String type = typeEnd > 0 ? fault.substring(0, typeEnd) : fault;
+        String param = typeEnd > 0 ? fault.substring(typeEnd + 1).trim() : "";
+        try {
+            if ("close-after".equals(type)) {
+                return closeAfter(Integer.parseInt(param));
+            } else if ("stall".equals(type)) {
+                return stall(Long.parseLong(param));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Illegal number '" + param + "' in transport fault: " + spec);
+        }
+        throw new IllegalArgumentException("Unknown transport fault: " + spec);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return number of body bytes sent before the connection is closed by {@link Type#CLOSE_AFTER}
+     */
+    public int getBodyBytes() {
+        return type == Type.CLOSE_AFTER ? (int) amount : 0;
+    }
+
+    /**
+     * @return milliseconds the connection is held after headers by {@link Type#STALL}
+     */
+    public long getStallMillis() {
+        return type == Type.STALL ? amount : 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TransportFault && spec.equals(((TransportFault) o).spec);
+    }
+
+    @Override
+    public int hashCode() {
+        return spec.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+}
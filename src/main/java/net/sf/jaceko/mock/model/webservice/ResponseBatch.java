@@ -0,0 +1,156 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.webservice;
+
+import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.RequestPredicate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Custom responses of several operations, staged aside and installed together. Until the batch is activated
+ * every operation keeps serving its previous responses; activation is a single write, so no request ever
+ * sees a part of the batch. Staged responses are applied to the operations' responses as they are at
+ * installation, so responses primed in between are kept. As with a single priming, setting the response of
+ * an invocation restarts counting of invocations of its operation, once the batch is activated.
+ */
+public final class ResponseBatch {
+
+    private final AtomicBoolean activated = new AtomicBoolean(false);
+    private final Map<WebserviceOperation, List<Priming>> primings = new LinkedHashMap<WebserviceOperation, List<Priming>>();
+    private final boolean init;
+
+    /**
+     * @param init whether operations primed by the batch start from scratch as on {@link WebserviceOperation#init()},
+     *             instead of keeping their responses and invocation numbers
+     */
+    public ResponseBatch(boolean init) {
+        this.init = init;
+    }
+
+    public void setResponse(WebserviceOperation operation, final int requestNumber, final MockResponse response) {
+        operation.prepareCustomResponse(response, init);
+        stage(operation, new Priming() {
+            @Override
+            void applyTo(ResponseSequence sequence) {
+                sequence.set(requestNumber, response);
+            }
+
+            @Override
+            boolean resetsInvocationNumber() {
+                return true;
+            }
+        });
+    }
+
+    public void addResponse(WebserviceOperation operation, final MockResponse response) {
+        operation.prepareCustomResponse(response, init);
+        stage(operation, new Priming() {
+            @Override
+            void applyTo(ResponseSequence sequence) {
+                sequence.append(response);
+            }
+        });
+    }
+
+    public void addResponseRule(WebserviceOperation operation, final RequestPredicate predicate, final MockResponse response) {
+        operation.prepareCustomResponse(response, init);
+        stage(operation, new Priming() {
+            @Override
+            void applyTo(ResponseSequence sequence) {
+                sequence.getRules().add(predicate, response);
+            }
+        });
+    }
+
+    public Set<WebserviceOperation> getOperations() {
+        return Collections.unmodifiableSet(primings.keySet());
+    }
+
+    public void install() {
+        install(null);
+    }
+
+    /**
+     * Installs staged responses in their operations and activates them at once. Batches must not be installed
+     * concurrently with each other or with other priming of the same operations
+     *
+     * @param onActivation run right after activation, before any other change, e.g. to clear recordings of
+     *                     requests served the previous responses; null if nothing needs to be done
+     */
+    public void install(Runnable onActivation) {
+        List<ResponseSequence> sequences = new ArrayList<ResponseSequence>(primings.size());
+        List<ResponseSequence> restartedSequences = new ArrayList<ResponseSequence>();
+        for (Map.Entry<WebserviceOperation, List<Priming>> entry : primings.entrySet()) {
+            WebserviceOperation operation = entry.getKey();
+            ResponseSequence sequence = init
+                ? ResponseSequence.staged(activated)
+                : operation.getCustomResponses().current().stagedCopy(activated);
+            boolean restarted = false;
+            for (Priming priming : entry.getValue()) {
+                priming.applyTo(sequence);
+                restarted |= priming.resetsInvocationNumber();
+            }
+            operation.installCustomResponses(sequence, init);
+            sequences.add(sequence);
+            if (restarted) {
+                restartedSequences.add(sequence);
+            }
+        }
+        activated.set(true);
+        // counting is shared with the sequences served before activation, so it is restarted only now
+        for (ResponseSequence sequence : restartedSequences) {
+            sequence.resetInvocationNumber();
+        }
+        if (onActivation != null) {
+            onActivation.run();
+        }
+        for (ResponseSequence sequence : sequences) {
+            sequence.release();
+        }
+    }
+
+    private void stage(WebserviceOperation operation, Priming priming) {
+        List<Priming> operationPrimings = primings.get(operation);
+        if (operationPrimings == null) {
+            operationPrimings = new ArrayList<Priming>();
+            primings.put(operation, operationPrimings);
+        }
+        operationPrimings.add(priming);
+    }
+
+    /**
+     * Change of an operation's responses, applied on installation
+     */
+    private abstract static class Priming {
+        abstract void applyTo(ResponseSequence sequence);
+
+        boolean resetsInvocationNumber() {
+            return false;
+        }
+    }
+
+}
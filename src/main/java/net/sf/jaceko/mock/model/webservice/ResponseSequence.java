@@ -0,0 +1,204 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.model.webservice;
+
+import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.ResponseMix;
+import net.sf.jaceko.mock.model.request.ResponseRules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Custom responses of an operation: by invocation number, by request content and as a mix served indefinitely,
+ * with the count of invocations so far. Invocation numbers are kept sparse, so priming a far one allocates no
+ * others. Reads and writes take no lock.
+ * <p>
+ * A sequence staged by a {@link ResponseBatch} is installed in place of the previous one but keeps
+ * delegating to it until the batch is activated.
+ */
+final class ResponseSequence {
+
+    private final ConcurrentMap<Integer, MockResponse> responses = new ConcurrentHashMap<Integer, MockResponse>();
+
+    /**
+     * highest primed invocation number; responses added without explicit position are appended after it
+     */
+    private final AtomicInteger lastPosition = new AtomicInteger(0);
+
+    /**
+     * responses served to requests meeting their conditions, when none is primed for the invocation number
+     */
+    private final ResponseRules rules;
+
+    /**
+     * responses served in proportion when neither a response nor a rule applies; null if none is primed
+     */
+    private volatile ResponseMix mix;
+
+    /**
+     * number of consecutive invocations; shared with the sequence this one was copied from
+     */
+    private final AtomicInteger invocationNumber;
+
+    /**
+     * set once the batch which staged this sequence is activated; null if the sequence was not staged
+     */
+    private final AtomicBoolean activated;
+
+    /**
+     * sequence still served until this one is activated; released afterwards
+     */
+    private volatile ResponseSequence previous;
+
+    ResponseSequence() {
+        this(new ResponseRules(), new AtomicInteger(0), null);
+    }
+
+    private ResponseSequence(ResponseRules rules, AtomicInteger invocationNumber, AtomicBoolean activated) {
+        this.rules = rules;
+        this.invocationNumber = invocationNumber;
+        this.activated = activated;
+    }
+
+    /**
+     * @return empty sequence counting invocations from 0, which takes effect once given flag is set
+     */
+    static ResponseSequence staged(AtomicBoolean activated) {
+        return new ResponseSequence(new ResponseRules(), new AtomicInteger(0), activated);
+    }
+
+    /**
+     * @return copy of this sequence which goes on counting its invocations and takes effect once given flag is set
+     */
+    ResponseSequence stagedCopy(AtomicBoolean activated) {
+        ResponseSequence copy = new ResponseSequence(rules.copy(), invocationNumber, activated);
+        copy.responses.putAll(responses);
+        copy.lastPosition.set(lastPosition.get());
+        copy.mix = mix;
+        return copy;
+    }
+
+    /**
+     * @return sequence to serve requests from: this one, or the one it replaces while it is not yet activated
+     */
+    ResponseSequence current() {
+        if (activated == null || activated.get()) {
+            return this;
+        }
+        ResponseSequence replaced = previous;
+        return replaced != null ? replaced.current() : this;
+    }
+
+    void replacing(ResponseSequence previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * drops reference to the replaced sequence; called once this one is activated
+     */
+    void release() {
+        previous = null;
+    }
+
+    int nextInvocationNumber() {
+        return invocationNumber.incrementAndGet();
+    }
+
+    int getInvocationNumber() {
+        return invocationNumber.get();
+    }
+
+    void resetInvocationNumber() {
+        invocationNumber.set(0);
+    }
+
+    /**
+     * @return response primed for given invocation number (counted from 1), null if none was primed
+     */
+    MockResponse get(int requestNumber) {
+        return responses.get(requestNumber);
+    }
+
+    void set(int requestNumber, MockResponse response) {
+        responses.put(requestNumber, response);
+        int last;
+        while ((last = lastPosition.get()) < requestNumber && !lastPosition.compareAndSet(last, requestNumber)) {
+            // retry until this or a later position is recorded
+        }
+    }
+
+    void append(MockResponse response) {
+        responses.put(lastPosition.incrementAndGet(), response);
+    }
+
+    ResponseRules getRules() {
+        return rules;
+    }
+
+    ResponseMix getMix() {
+        return mix;
+    }
+
+    /**
+     * Adds response to the mix, created with round-robin selection if there is none yet
+     *
+     * @param response response to add, null for a share of the default response
+     * @param selection selection of the mix from now on, null to keep the current one
+     */
+    void addToMix(MockResponse response, int weight, ResponseMix.Selection selection) {
+        ResponseMix current = mix;
+        if (current == null) {
+            current = new ResponseMix(selection != null ? selection : ResponseMix.Selection.ROUND_ROBIN);
+        } else if (selection != null) {
+            current = current.withSelection(selection);
+        }
+        mix = current.add(response, weight);
+    }
+
+    @Override
+    public String toString() {
+        final int maxLen = 10;
+        List<Integer> positions = new ArrayList<Integer>(responses.keySet());
+        Collections.sort(positions);
+
+        StringBuilder sb = new StringBuilder("[");
+        for (Integer position : positions.subList(0, Math.min(positions.size(), maxLen))) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(position).append('=').append(responses.get(position));
+        }
+        sb.append(']');
+        if (!rules.isEmpty()) {
+            sb.append(", rules=").append(rules);
+        }
+        if (mix != null) {
+            sb.append(", mix=").append(mix);
+        }
+        return sb.toString();
+    }
+
+}
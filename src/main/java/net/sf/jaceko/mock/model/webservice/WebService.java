@@ -22,6 +22,7 @@ package net.sf.jaceko.mock.model.webservice;
 import com.google.common.base.Objects;
 
 import net.sf.jaceko.mock.application.enums.ServiceType;
+import net.sf.jaceko.mock.model.request.RecordingMode;
 
 import java.util.Arrays;
 import java.util.Collection;
@@ -38,6 +39,10 @@ public class WebService {
 
     private ServiceType serviceType;
     private boolean enableResourcePaths = false;
+    private boolean pathTemplatesDeclared = false;
+    private Integer recordingCapacity;
+    private Long recordingMaxBytes;
+    private RecordingMode recordingMode;
 
     public WebService() {
         super();
@@ -82,17 +87,6 @@ public class WebService {
         return indxToOperationMap.get(indx);
     }
 
-    public WebserviceOperation getOperation(String name) {
-        Collection<WebserviceOperation> operations = getOperations();
-        for (WebserviceOperation operation : operations) {
-            if (operation.getOperationName().equals(name)) {
-                return operation;
-            }
-        }
-        return null;
-
-    }
-
     public Collection<WebserviceOperation> getOperations() {
         return indxToOperationMap.values();
     }
@@ -115,6 +109,21 @@ public class WebService {
     }
 
 
+    /**
+     * @return whether requests may contain resource paths, not just resource ids: when enabled, or when any
+     * operation declares a path template
+     */
+    public boolean acceptsResourcePaths() {
+        return enableResourcePaths || pathTemplatesDeclared;
+    }
+
+    /**
+     * Set when the service is configured, so that requests don't look for path templates
+     */
+    public void setPathTemplatesDeclared(boolean pathTemplatesDeclared) {
+        this.pathTemplatesDeclared = pathTemplatesDeclared;
+    }
+
     public boolean isIgnoreXmlDeclaration() {
         return ignoreXmlDeclaration;
     }
@@ -127,6 +136,39 @@ public class WebService {
         this.ignoreXmlDeclaration = ignoreXmlDeclaration;
     }
 
+    /**
+     * @return number of recorded requests retained per operation, null if not configured
+     */
+    public Integer getRecordingCapacity() {
+        return recordingCapacity;
+    }
+
+    public void setRecordingCapacity(Integer recordingCapacity) {
+        this.recordingCapacity = recordingCapacity;
+    }
+
+    /**
+     * @return approximate size limit of recorded requests retained per operation, null if not configured
+     */
+    public Long getRecordingMaxBytes() {
+        return recordingMaxBytes;
+    }
+
+    public void setRecordingMaxBytes(Long recordingMaxBytes) {
+        this.recordingMaxBytes = recordingMaxBytes;
+    }
+
+    /**
+     * @return recording mode of the service's operations, null if not configured
+     */
+    public RecordingMode getRecordingMode() {
+        return recordingMode;
+    }
+
+    public void setRecordingMode(RecordingMode recordingMode) {
+        this.recordingMode = recordingMode;
+    }
+
     public void setName(String name) {
         this.name = name;
     }
@@ -20,22 +20,24 @@
 package net.sf.jaceko.mock.model.webservice;
 
 import net.sf.jaceko.mock.exception.ClientFaultException;
+import net.sf.jaceko.mock.model.request.LatencyProfile;
 import net.sf.jaceko.mock.model.request.MockResponse;
-import net.sf.jaceko.mock.util.SOAPMessageParser;
-import org.apache.commons.collections.list.GrowthList;
+import net.sf.jaceko.mock.model.request.PathTemplate;
+import net.sf.jaceko.mock.model.request.RecordingMode;
+import net.sf.jaceko.mock.model.request.RequestContext;
+import net.sf.jaceko.mock.model.request.RequestPredicate;
+import net.sf.jaceko.mock.model.request.ResponseMix;
+import net.sf.jaceko.mock.model.request.ResponseRules;
 import org.apache.log4j.Logger;
-import org.w3c.dom.Node;
 
 import javax.ws.rs.core.MediaType;
 import java.util.HashMap;
 import java.util.Arrays;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.lang.String.format;
-import static java.util.Collections.synchronizedList;
 
 /**
  * Class representing an operation or "method" of a webservice. SOAP operations
@@ -47,27 +49,39 @@ public class WebserviceOperation {
     private static final Logger LOG = Logger.getLogger(WebserviceOperation.class);
 
     private String operationName;
+    private PathTemplate pathTemplate;
     private String defaultResponseFile;
     private String defaultResponseText;
     private byte[] defaultResponseBinaryContent;
     private int defaultResponseCode = 200;
     private String defaultResponseContentType = MediaType.TEXT_XML_TYPE.toString();
     private Map<String, String> defaultHeaders = new HashMap<String, String>();
-    private final AtomicInteger invocationNumber = new AtomicInteger(0);
+    private LatencyProfile configuredLatencyProfile;
+    private volatile LatencyProfile latencyProfile;
+    // rebuilt by every change of what it is built from, so requests only read it
+    private volatile MockResponse defaultResponse;
     private boolean binary = false;
+    private boolean template = false;
     private String[] nameSpaces;
-    private String request;
+    private Integer recordingCapacity;
+    private Long recordingMaxBytes;
+    private RecordingMode configuredRecordingMode;
+    private volatile RecordingMode recordingMode;
 
     private static final String MISSING_NAMESPACE = "Message doesn't contain namespace";
     private static final String INVALID_NAMESPACE = "The namespace of message doesn't match ";
 
 
-    @SuppressWarnings("unchecked")
-    private final List<MockResponse> customResponses = synchronizedList(new GrowthList());
+    private volatile ResponseSequence customResponses = new ResponseSequence();
+
+    private final ResponseRules configuredRules = new ResponseRules();
+
+    private volatile ResponseMix configuredMix = new ResponseMix(ResponseMix.Selection.ROUND_ROBIN);
 
 
     public WebserviceOperation() {
         super();
+        defaultResponse = buildDefaultResponse();
     }
 
     public static WebserviceOperationBuilder name(String operationName) {
@@ -88,12 +102,45 @@ public class WebserviceOperation {
         this.operationName = operationName;
     }
 
+    /**
+     * @return identifier of the operation in setup and verification requests: operation name, followed by
+     * segments of the path template if it has one, variables in braces, e.g. <code>GET_customers_{id}_orders</code>
+     */
+    public String getOperationId() {
+        if (pathTemplate == null || operationName == null) {
+            return operationName;
+        }
+        StringBuilder id = new StringBuilder(operationName);
+        for (int i = 0; i < pathTemplate.getDepth(); i++) {
+            id.append('_');
+            if (pathTemplate.isVariable(i)) {
+                id.append('{').append(pathTemplate.getSegment(i)).append('}');
+            } else {
+                id.append(pathTemplate.getSegment(i));
+            }
+        }
+        return id.toString();
+    }
+
+    /**
+     * @return template of resource paths served by this REST operation, null if it serves all paths not matching
+     * a template of another operation
+     */
+    public PathTemplate getPathTemplate() {
+        return pathTemplate;
+    }
+
+    public void setPathTemplate(PathTemplate pathTemplate) {
+        this.pathTemplate = pathTemplate;
+    }
+
     public String getDefaultResponseFile() {
         return defaultResponseFile;
     }
 
     public void setDefaultResponseFile(String defaultResponseFile) {
         this.defaultResponseFile = defaultResponseFile;
+        this.defaultResponse = buildDefaultResponse();
     }
 
     public String getDefaultResponseText() {
@@ -102,61 +149,191 @@ public class WebserviceOperation {
 
     public void setDefaultResponseText(String defaultResponseText) {
         this.defaultResponseText = defaultResponseText;
+        this.defaultResponse = buildDefaultResponse();
     }
 
     public MockResponse getResponse(int requestNumber) {
-        int index = requestNumber - 1;
-
-        validateNameSpace();
-
-        MockResponse mockResponse = null;
-        synchronized (customResponses) {
-            if (customResponses.size() < requestNumber || (mockResponse = customResponses.get(index)) == null) {
-                MockResponse response = MockResponse.body(defaultResponseText)
-                    .binaryBody(defaultResponseBinaryContent)
-                    .code(defaultResponseCode)
-                    .contentType(defaultResponseContentType)
-                    .build();
-
-                if(!getDefaultResponseHeaders().isEmpty()) {
-                    response.setHeaders(defaultHeaders);
-                }
-
-                if( isBinary() ) {
-                    // browser uses this as file name for download
-                    response.addHeader("Content-Disposition", "attachment; filename=" + defaultResponseFile);
-                }
-                return response;
-            }
-            return mockResponse;
+        return getResponse(requestNumber, null);
+    }
+
+    /**
+     * Validates namespace of the request (if any) and returns response for given invocation number
+     */
+    public MockResponse getResponse(int requestNumber, RequestContext request) {
+        validateNameSpace(request);
+        return getResponse(customResponses.current(), requestNumber, request);
+    }
+
+    /**
+     * Validates namespace of the request (if any), counts the invocation and returns response for it; number and
+     * response are taken from the same custom responses even if a {@link ResponseBatch} replaces them meanwhile
+     */
+    public MockResponse getNextResponse(RequestContext request) {
+        validateNameSpace(request);
+        ResponseSequence responses = customResponses.current();
+        return getResponse(responses, responses.nextInvocationNumber(), request);
+    }
+
+    /**
+     * Response primed for the invocation number takes precedence over one selected by content of the request,
+     * which takes precedence over a response mix; primed rules and mix over configured ones. Default response
+     * is served if none applies
+     */
+    private MockResponse getResponse(ResponseSequence responses, int requestNumber, RequestContext request) {
+        MockResponse mockResponse = responses.get(requestNumber);
+        if (mockResponse == null) {
+            mockResponse = responses.getRules().match(request);
+        }
+        if (mockResponse == null) {
+            mockResponse = configuredRules.match(request);
+        }
+        if (mockResponse == null) {
+            ResponseMix mix = responses.getMix();
+            mockResponse = (mix != null ? mix : configuredMix).next();
+        }
+        if (mockResponse == null) {
+            mockResponse = getDefaultResponse();
+        }
+        return mockResponse.render(request, requestNumber);
+    }
+
+    /**
+     * @return response served when no custom one is primed, built when the operation is configured
+     */
+    public MockResponse getDefaultResponse() {
+        return defaultResponse;
+    }
+
+    /**
+     * Default response is built once per change of configuration or latency and shared by all invocations
+     * which fall through to it, so it is immutable and carries its body already encoded; templates of it are
+     * compiled here
+     *
+     * @throws IllegalArgumentException if the operation is a template and default response text or headers are
+     *                                  not valid ones
+     */
+    private MockResponse buildDefaultResponse() {
+        Map<String, String> headers = new LinkedHashMap<String, String>(defaultHeaders);
+        if( isBinary() ) {
+            // browser uses this as file name for download
+            headers.put("Content-Disposition", "attachment; filename=" + defaultResponseFile);
         }
+
+        return MockResponse.body(defaultResponseText)
+            .binaryBody(defaultResponseBinaryContent)
+            .code(defaultResponseCode)
+            .contentType(defaultResponseContentType)
+            .latency(latencyProfile)
+            .headers(headers)
+            .template(template)
+            .precomputed()
+            .build();
     }
 
     public void setCustomResponse(MockResponse customResponse, int requestNumber) {
-        customResponse.setZeroCodeTo(defaultResponseCode);
-        customResponses.set(requestNumber - 1, customResponse);
+        prepareCustomResponse(customResponse, false);
+        customResponses.set(requestNumber, customResponse);
     }
 
     public void addCustomResponse(MockResponse customResponse) {
+        prepareCustomResponse(customResponse, false);
+        customResponses.append(customResponse);
+
+    }
+
+    /**
+     * Primes response served to requests meeting the condition until next {@link #init()}
+     */
+    public void addCustomResponseRule(RequestPredicate predicate, MockResponse customResponse) {
+        prepareCustomResponse(customResponse, false);
+        customResponses.getRules().add(predicate, customResponse);
+    }
+
+    /**
+     * Adds configured response served to requests meeting the condition; kept on {@link #init()}
+     */
+    public void addResponseRule(RequestPredicate predicate, MockResponse response) {
+        prepareCustomResponse(response, true);
+        configuredRules.add(predicate, response);
+    }
+
+    /**
+     * Primes response served, until next {@link #init()}, in proportion to its weight to requests no other custom
+     * response applies to; takes the place of the configured mix
+     *
+     * @param customResponse response to add, null for a share of the default response
+     * @param selection selection of the primed mix from now on, null to keep the current one
+     */
+    public void addCustomMixResponse(MockResponse customResponse, int weight, ResponseMix.Selection selection) {
+        if (customResponse != null) {
+            prepareCustomResponse(customResponse, false);
+        }
+        customResponses.addToMix(customResponse, weight, selection);
+    }
+
+    /**
+     * Adds configured response served in proportion to its weight; kept on {@link #init()}
+     *
+     * @param response response to add, null for a share of the default response
+     */
+    public void addMixResponse(MockResponse response, int weight) {
+        if (response != null) {
+            prepareCustomResponse(response, true);
+        }
+        configuredMix = configuredMix.add(response, weight);
+    }
+
+    public ResponseMix.Selection getMixSelection() {
+        return configuredMix.getSelection();
+    }
+
+    public void setMixSelection(ResponseMix.Selection selection) {
+        configuredMix = configuredMix.withSelection(selection);
+    }
+
+    /**
+     * Fills in code and latency the custom response leaves out; with init, from the configuration the operation
+     * returns to on {@link #init()}
+     */
+    void prepareCustomResponse(MockResponse customResponse, boolean init) {
         customResponse.setZeroCodeTo(defaultResponseCode);
-        customResponses.add(customResponse);
+        customResponse.setMissingLatencyTo(init ? configuredLatencyProfile : latencyProfile);
+    }
+
+    ResponseSequence getCustomResponses() {
+        return customResponses;
+    }
 
+    /**
+     * Installs custom responses staged by a {@link ResponseBatch}; they are served once the batch is activated,
+     * the current ones until then. With init, latency and recording mode also return to configured ones
+     */
+    void installCustomResponses(ResponseSequence responses, boolean init) {
+        responses.replacing(customResponses);
+        customResponses = responses;
+        if (init) {
+            latencyProfile = configuredLatencyProfile;
+            recordingMode = configuredRecordingMode;
+            defaultResponse = buildDefaultResponse();
+        }
     }
 
     public void init() {
-        customResponses.clear();
-        resetInvocationNumber();
+        customResponses = new ResponseSequence();
+        latencyProfile = configuredLatencyProfile;
+        recordingMode = configuredRecordingMode;
+        defaultResponse = buildDefaultResponse();
     }
 
     /**
      * increments and returns number of consecutive service invocations
      */
     public int getNextInvocationNumber() {
-        return invocationNumber.incrementAndGet();
+        return customResponses.current().nextInvocationNumber();
     }
 
     public void resetInvocationNumber() {
-        invocationNumber.set(0);
+        customResponses.current().resetInvocationNumber();
 
     }
 
@@ -166,6 +343,7 @@ public class WebserviceOperation {
 
     public void setDefaultResponseCode(int defaultResponseCode) {
         this.defaultResponseCode = defaultResponseCode;
+        this.defaultResponse = buildDefaultResponse();
     }
 
     public String getDefaultResponseContentType() {
@@ -174,6 +352,29 @@ public class WebserviceOperation {
 
     public void setDefaultResponseContentType(String defaultResponseContentType) {
         this.defaultResponseContentType = defaultResponseContentType;
+        this.defaultResponse = buildDefaultResponse();
+    }
+
+    public LatencyProfile getLatencyProfile() {
+        return latencyProfile;
+    }
+
+    /**
+     * Sets configured latency profile of the operation; applied to default responses and to custom
+     * responses primed without delay
+     */
+    public void setLatencyProfile(LatencyProfile latencyProfile) {
+        this.configuredLatencyProfile = latencyProfile;
+        this.latencyProfile = latencyProfile;
+        this.defaultResponse = buildDefaultResponse();
+    }
+
+    /**
+     * Overrides configured latency profile until next {@link #init()}; null disables latency
+     */
+    public void primeLatencyProfile(LatencyProfile latencyProfile) {
+        this.latencyProfile = latencyProfile;
+        this.defaultResponse = buildDefaultResponse();
     }
 
     public boolean isBinary() {
@@ -182,10 +383,25 @@ public class WebserviceOperation {
 
     public void setBinary(boolean binary) {
         this.binary = binary;
+        this.defaultResponse = buildDefaultResponse();
+    }
+
+    /**
+     * @return whether default response text and headers are templates (see
+     * {@link net.sf.jaceko.mock.model.request.ResponseTemplate})
+     */
+    public boolean isTemplate() {
+        return template;
+    }
+
+    public void setTemplate(boolean template) {
+        this.template = template;
+        this.defaultResponse = buildDefaultResponse();
     }
 
     public void setDefaultResponseBinaryContent(byte[] defaultResponseBinaryContent) {
         this.defaultResponseBinaryContent = defaultResponseBinaryContent;
+        this.defaultResponse = buildDefaultResponse();
     }
 
     public void setNameSpaces(String nameSpaces) {
@@ -203,30 +419,68 @@ public class WebserviceOperation {
         return nameSpaces;
     }
 
+    /**
+     * @return number of recorded requests retained for this operation, null to use service setting
+     */
+    public Integer getRecordingCapacity() {
+        return recordingCapacity;
+    }
+
+    public void setRecordingCapacity(Integer recordingCapacity) {
+        this.recordingCapacity = recordingCapacity;
+    }
+
+    /**
+     * @return approximate size limit of recorded requests retained for this operation, null to use service setting
+     */
+    public Long getRecordingMaxBytes() {
+        return recordingMaxBytes;
+    }
+
+    public void setRecordingMaxBytes(Long recordingMaxBytes) {
+        this.recordingMaxBytes = recordingMaxBytes;
+    }
+
+    /**
+     * @return recording mode of this operation, null to use service setting
+     */
+    public RecordingMode getRecordingMode() {
+        return recordingMode;
+    }
+
+    public void setRecordingMode(RecordingMode recordingMode) {
+        this.configuredRecordingMode = recordingMode;
+        this.recordingMode = recordingMode;
+    }
+
+    /**
+     * Overrides configured recording mode until next {@link #init()}; null falls back to service setting
+     */
+    public void primeRecordingMode(RecordingMode recordingMode) {
+        this.recordingMode = recordingMode;
+    }
+
     public byte[] getDefaultResponseBinaryContent() {
         return defaultResponseBinaryContent;
     }
 
-    private void validateNameSpace() {
-        Node rootElement;
-        try {
-            rootElement = SOAPMessageParser.getRequestMessageNode(request);
-        } catch (ClientFaultException e) {
-            LOG.debug("Message was not SOAP message, won't validate.");
-            return;
-        }
-
+    private void validateNameSpace(RequestContext request) {
         if (getNameSpaces() == null || getNameSpaces().length == 0) {
             LOG.debug("Nothing to validate...");
             return;
         }
-        if (rootElement.getNamespaceURI() == null || rootElement.getNamespaceURI().isEmpty()) {
+        String requestNamespace = request != null ? request.getNamespace() : null;
+        if (requestNamespace == null) {
+            LOG.debug("Message was not SOAP message, won't validate.");
+            return;
+        }
+        if (requestNamespace.isEmpty()) {
             throw new ClientFaultException(MISSING_NAMESPACE);
         }
 
         boolean match = false;
         for (String namespace : getNameSpaces()) {
-            if(rootElement.getNamespaceURI().equals(namespace)) match = true;
+            if(requestNamespace.equals(namespace)) match = true;
         }
 
         if(!match)
@@ -235,12 +489,10 @@ public class WebserviceOperation {
 
     @Override
     public String toString() {
-        final int maxLen = 10;
         return format(
-            "WebserviceOperation [operationName=%s, defaultResponseFile=%s, binary=%s, defaultResponseText=%s, defaultResponseCode=%s, defaultResponseContentType=%s, invocationNumber=%s, customResponses=%s, defaultHeaders=%s]",
+            "WebserviceOperation [operationName=%s, defaultResponseFile=%s, binary=%s, defaultResponseText=%s, defaultResponseCode=%s, defaultResponseContentType=%s, latencyProfile=%s, invocationNumber=%s, customResponses=%s, defaultHeaders=%s]",
             operationName, defaultResponseFile, binary, defaultResponseDebugText(), defaultResponseCode, defaultResponseContentType,
-            invocationNumber, customResponses != null ? customResponses.subList(0, Math.min(customResponses.size(), maxLen))
-                : null, getDefaultResponseHeaders());
+            latencyProfile, customResponses.current().getInvocationNumber(), customResponses.current(), getDefaultResponseHeaders());
     }
 
     private String defaultResponseDebugText() {
@@ -254,6 +506,7 @@ public class WebserviceOperation {
             String[] parts = header.split((":"));
             defaultHeaders.put(parts[0], parts[1]);
         }
+        defaultResponse = buildDefaultResponse();
     }
 
     public String getDefaultResponseHeaders() {
@@ -269,14 +522,6 @@ public class WebserviceOperation {
         return sb.substring(0, sb.length() - 1);
     }
 
-    public String getRequest() {
-        return request;
-    }
-
-    public void setRequest(String request) {
-        this.request = request;
-    }
-
     public static class WebserviceOperationBuilder {
         private String operationName;
         private String defaultResponseFile;
@@ -285,6 +530,7 @@ public class WebserviceOperation {
         private int defaultResponseCode;
         private String defaultResponseContentType;
         private String defaultResponseHeaders;
+        private LatencyProfile latencyProfile;
         private boolean binary;
 
         public WebserviceOperationBuilder operationName(String operationName) {
@@ -327,6 +573,11 @@ public class WebserviceOperation {
             return this;
         }
 
+        public WebserviceOperationBuilder latencyProfile(LatencyProfile latencyProfile) {
+            this.latencyProfile = latencyProfile;
+            return this;
+        }
+
         public WebserviceOperation build() {
             WebserviceOperation webserviceOperation = new WebserviceOperation();
             webserviceOperation.operationName = this.operationName;
@@ -339,6 +590,7 @@ public class WebserviceOperation {
             webserviceOperation.setBinary(binary);
             webserviceOperation.setDefaultResponseBinaryContent(defaultResponseBinaryContent);
             webserviceOperation.setDefaultResponseHeaders(defaultResponseHeaders);
+            webserviceOperation.setLatencyProfile(latencyProfile);
             return webserviceOperation;
         }
 
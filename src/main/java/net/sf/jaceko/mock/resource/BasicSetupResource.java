@@ -19,9 +19,16 @@
  */
 package net.sf.jaceko.mock.resource;
 
+import net.sf.jaceko.mock.model.request.LatencyProfile;
 import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.RecordingMode;
+import net.sf.jaceko.mock.model.request.RequestPredicate;
+import net.sf.jaceko.mock.model.request.ResponseMix;
+import net.sf.jaceko.mock.model.request.ResponseTemplate;
+import net.sf.jaceko.mock.model.request.TransportFault;
 import net.sf.jaceko.mock.service.MockSetupExecutor;
 import org.apache.commons.httpclient.HttpStatus;
+import org.jboss.resteasy.spi.BadRequestException;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
@@ -49,19 +56,32 @@ public abstract class BasicSetupResource {
     @Consumes({MediaType.TEXT_XML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
     public Response addResponse(@Context HttpHeaders headers, @PathParam("serviceName") String serviceName,
                                 @PathParam("operationId") String operationId, @QueryParam("code") int customResponseCode,
-                                @QueryParam("delay") int delaySec, @QueryParam("headers") String headersToPrime,
-                                String customResponseBody) {
+                                @QueryParam("delay") int delaySec, @QueryParam("latency") String latency,
+                                @QueryParam("headers") String headersToPrime, @QueryParam("template") boolean template,
+                                @QueryParam("fault") String fault, String customResponseBody) {
 
         Map<String, String> headersMap = parseHeadersToPrime(headersToPrime);
 
         mockSetupExecutor.addCustomResponse(
             serviceName,
             operationId,
-            MockResponse.body(customResponseBody).code(customResponseCode).contentType(headers.getMediaType())
-                .delaySec(delaySec).headers(headersMap).build());
+            buildCustomResponse(MockResponse.body(customResponseBody).code(customResponseCode).contentType(headers.getMediaType())
+                .delaySec(delaySec).latency(parseLatencyProfile(latency)).headers(headersMap)
+                .fault(parseTransportFault(fault)), template));
         return Response.status(HttpStatus.SC_OK).build();
     }
 
+    /**
+     * @param template whether body and header values are templates (see {@link ResponseTemplate}), compiled here
+     */
+    static MockResponse buildCustomResponse(MockResponse.MockResponseBuilder response, boolean template) {
+        try {
+            return response.template(template).build();
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
     static Map<String, String> parseHeadersToPrime(String headersToPrime) {
         Map<String, String> headersMap = new HashMap<String, String>();
 
@@ -84,19 +104,172 @@ public abstract class BasicSetupResource {
     @Consumes({MediaType.TEXT_XML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
     public Response setResponse(@Context HttpHeaders headers, @PathParam("serviceName") String serviceName,
                                 @PathParam("operationId") String operationId, @PathParam("requestInOrder") int requestInOrder,
-                                @QueryParam("code") int customResponseCode, @QueryParam("delay") int delaySec, @QueryParam("headers") String headersToPrime,
-                                String customResponseBody) {
+                                @QueryParam("code") int customResponseCode, @QueryParam("delay") int delaySec, @QueryParam("latency") String latency,
+                                @QueryParam("headers") String headersToPrime, @QueryParam("template") boolean template,
+                                @QueryParam("fault") String fault, String customResponseBody) {
         Map<String, String> headersMap = parseHeadersToPrime(headersToPrime);
 
         mockSetupExecutor.setCustomResponse(
             serviceName,
             operationId,
             requestInOrder,
-            MockResponse.body(customResponseBody).code(customResponseCode).delaySec(delaySec)
-                .contentType(headers.getMediaType()).headers(parseHeadersToPrime(headersToPrime)).build());
+            buildCustomResponse(MockResponse.body(customResponseBody).code(customResponseCode).delaySec(delaySec)
+                .latency(parseLatencyProfile(latency)).contentType(headers.getMediaType())
+                .headers(parseHeadersToPrime(headersToPrime)).fault(parseTransportFault(fault)), template));
         return Response.status(HttpStatus.SC_OK).build();
     }
 
+    /**
+     * Primes response served, until next init, to requests meeting the condition (see {@link RequestPredicate} for
+     * syntax) when no response is primed for their invocation number
+     */
+    @POST
+    @Path("/{operationId}/rules")
+    @Consumes({MediaType.TEXT_XML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
+    public Response addResponseRule(@Context HttpHeaders headers, @PathParam("serviceName") String serviceName,
+                                    @PathParam("operationId") String operationId, @QueryParam("when") String when,
+                                    @QueryParam("code") int customResponseCode, @QueryParam("delay") int delaySec,
+                                    @QueryParam("latency") String latency, @QueryParam("headers") String headersToPrime,
+                                    @QueryParam("template") boolean template, @QueryParam("fault") String fault,
+                                    String customResponseBody) {
+        mockSetupExecutor.addCustomResponseRule(
+            serviceName,
+            operationId,
+            parseRequestPredicate(when),
+            buildCustomResponse(MockResponse.body(customResponseBody).code(customResponseCode).contentType(headers.getMediaType())
+                .delaySec(delaySec).latency(parseLatencyProfile(latency)).headers(parseHeadersToPrime(headersToPrime))
+                .fault(parseTransportFault(fault)), template));
+        return Response.status(HttpStatus.SC_OK).build();
+    }
+
+    static RequestPredicate parseRequestPredicate(String when) {
+        try {
+            return RequestPredicate.parse(when);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    /**
+     * Adds response to the mix served, until next init, in proportion to the weights of its responses to requests
+     * no other custom response applies to (see {@link ResponseMix} for selections); with default, the share goes
+     * to the default response, served with the fault if one is given, and the body is ignored
+     */
+    @POST
+    @Path("/{operationId}/mix")
+    @Consumes({MediaType.TEXT_XML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
+    public Response addMixResponse(@Context HttpHeaders headers, @PathParam("serviceName") String serviceName,
+                                   @PathParam("operationId") String operationId, @DefaultValue("1") @QueryParam("weight") int weight,
+                                   @QueryParam("selection") String selection, @QueryParam("default") boolean defaultResponse,
+                                   @QueryParam("code") int customResponseCode, @QueryParam("delay") int delaySec,
+                                   @QueryParam("latency") String latency, @QueryParam("headers") String headersToPrime,
+                                   @QueryParam("template") boolean template, @QueryParam("fault") String fault,
+                                   String customResponseBody) {
+        if (weight <= 0) {
+            throw new BadRequestException("Weight of response in mix must be positive: " + weight);
+        }
+        TransportFault transportFault = parseTransportFault(fault);
+        MockResponse response = defaultResponse ? null : buildCustomResponse(MockResponse.body(customResponseBody)
+            .code(customResponseCode).contentType(headers.getMediaType()).delaySec(delaySec)
+            .latency(parseLatencyProfile(latency)).headers(parseHeadersToPrime(headersToPrime)).fault(transportFault), template);
+        ResponseMix.Selection mixSelection = parseMixSelection(selection);
+        try {
+            if (defaultResponse && transportFault != null) {
+                mockSetupExecutor.addCustomMixFault(serviceName, operationId, transportFault, weight, mixSelection);
+            } else {
+                mockSetupExecutor.addCustomMixResponse(serviceName, operationId, response, weight, mixSelection);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        return Response.status(HttpStatus.SC_OK).build();
+    }
+
+    static TransportFault parseTransportFault(String fault) {
+        if (fault == null || fault.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return TransportFault.parse(fault);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    static ResponseMix.Selection parseMixSelection(String selection) {
+        if (selection == null || selection.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return ResponseMix.Selection.parse(selection);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    /**
+     * Sets latency profile of the operation (see {@link LatencyProfile} for syntax) until next init; empty
+     * body switches latency off
+     */
+    @PUT
+    @Path("/{operationId}/latency")
+    @Consumes(MediaType.TEXT_PLAIN)
+    public Response setLatencyProfile(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId,
+                                      String latency) {
+        mockSetupExecutor.setLatencyProfile(serviceName, operationId, parseLatencyProfile(latency));
+        return Response.status(HttpStatus.SC_OK).build();
+    }
+
+    static LatencyProfile parseLatencyProfile(String latency) {
+        if (latency == null || latency.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return LatencyProfile.parse(latency);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    /**
+     * Changes how many recorded requests (and how many bytes of them) are retained for the operation;
+     * omitted parameters keep their current values
+     */
+    @PUT
+    @Path("/{operationId}/recording")
+    public Response setRecordingRetention(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId,
+                                          @QueryParam("capacity") Integer capacity, @QueryParam("maxBytes") Long maxBytes) {
+        if ((capacity != null && capacity < 0) || (maxBytes != null && maxBytes < 0)) {
+            throw new BadRequestException("Recording capacity and byte limit can't be negative");
+        }
+        mockSetupExecutor.setRecordingRetention(serviceName, operationId, capacity, maxBytes);
+        return Response.status(HttpStatus.SC_OK).build();
+    }
+
+    /**
+     * Sets recording mode of the operation (see {@link RecordingMode} for syntax) until next init; empty body
+     * falls back to the configured mode
+     */
+    @PUT
+    @Path("/{operationId}/recording-mode")
+    @Consumes(MediaType.TEXT_PLAIN)
+    public Response setRecordingMode(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId,
+                                     String recordingMode) {
+        mockSetupExecutor.setRecordingMode(serviceName, operationId, parseRecordingMode(recordingMode));
+        return Response.status(HttpStatus.SC_OK).build();
+    }
+
+    static RecordingMode parseRecordingMode(String recordingMode) {
+        if (recordingMode == null || recordingMode.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return RecordingMode.parse(recordingMode);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
     @POST
     @Path("/{operationId}/init")
     public Response initMock(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId) {
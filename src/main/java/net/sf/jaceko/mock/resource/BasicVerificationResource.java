@@ -19,21 +19,40 @@
  */
 package net.sf.jaceko.mock.resource;
 
+import net.sf.jaceko.mock.dto.RecordingStatsDto;
 import net.sf.jaceko.mock.model.request.MockRequest;
+import net.sf.jaceko.mock.model.request.RecordedRequestsQuery;
+import net.sf.jaceko.mock.service.RecordedRequestsCallback;
+import net.sf.jaceko.mock.service.RecordedRequestsStore;
 import net.sf.jaceko.mock.service.RecordedRequestsHolder;
+import net.sf.jaceko.mock.service.RecordingCounters;
+import org.jboss.resteasy.spi.AsynchronousResponse;
+import org.jboss.resteasy.spi.BadRequestException;
+import org.jboss.resteasy.spi.HttpRequest;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
 
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.MultivaluedMap;
-import javax.xml.bind.annotation.XmlElement;
-import javax.xml.bind.annotation.XmlRootElement;
+import javax.ws.rs.core.Response;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-
-import static java.text.MessageFormat.format;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 public class BasicVerificationResource {
+    /**
+     * longest time a client may wait for recorded requests
+     */
+    static final long MAX_AWAIT_TIMEOUT_MILLIS = 300000;
+
+    // suspended request must outlive the wait, otherwise the container times it out first
+    private static final long SUSPEND_TIMEOUT_MARGIN_MILLIS = 5000;
+
+    // no standard constant in JAX-RS 1.1
+    private static final int REQUEST_TIMEOUT = 408;
 
     protected RecordedRequestsHolder recordedRequestsHolder;
 
@@ -43,132 +62,230 @@ public class BasicVerificationResource {
 
     @GET
     @Path("/recorded-requests")
-    @Produces(MediaType.TEXT_XML)
-    public String getRecordedRequests(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId, @DefaultValue("") @QueryParam("requestElement") String requestElement) {
-
-        Collection<String> recordedRequests = recordedRequestsHolder.getRecordedRequestBodies(
-            serviceName, operationId);
-        return buildListXml(recordedRequests, "recorded-requests", requestElement, false);
+    @Produces({MediaType.TEXT_XML, MediaType.APPLICATION_JSON})
+    public Response getRecordedRequests(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId, @DefaultValue("") @QueryParam("requestElement") String requestElement,
+                                        @DefaultValue("0") @QueryParam("offset") int offset, @QueryParam("limit") Integer limit, @Context HttpHeaders httpHeaders) {
+        return buildListResponse(serviceName, operationId, RecordedRequestField.BODY, "recorded-requests", requestElement,
+            false, offset, limit, httpHeaders);
     }
 
+    /**
+     * Bodies of recorded requests meeting all given criteria, in the format of /recorded-requests
+     *
+     * @param headers     required headers as <code>name:value</code>
+     * @param queryParams required query parameters as <code>name=value</code>
+     * @param from        recording time lower bound in milliseconds since the epoch, inclusive
+     * @param to          recording time upper bound in milliseconds since the epoch, exclusive
+     */
     @GET
-    @Path("/recorded-request-headers")
-    @Produces(MediaType.TEXT_XML)
-    public RecordedRequestHeaders getRecordedRequestHeaders(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId) {
+    @Path("/recorded-requests/query")
+    @Produces({MediaType.TEXT_XML, MediaType.APPLICATION_JSON})
+    public Response queryRecordedRequests(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId,
+                                          @QueryParam("header") List<String> headers, @QueryParam("param") List<String> queryParams,
+                                          @QueryParam("pathPrefix") String resourcePathPrefix, @QueryParam("from") Long from, @QueryParam("to") Long to,
+                                          @QueryParam("xpath") String xpath, @QueryParam("jsonPath") String jsonPath, @QueryParam("jsonPathValue") String jsonPathValue,
+                                          @DefaultValue("") @QueryParam("requestElement") String requestElement,
+                                          @DefaultValue("0") @QueryParam("offset") int offset, @QueryParam("limit") Integer limit, @Context HttpHeaders httpHeaders) {
+        RecordedRequestsQuery query = new RecordedRequestsQuery()
+            .withResourcePathPrefix(resourcePathPrefix)
+            .recordedBetween(from, to);
+        if (headers != null) {
+            for (String header : headers) {
+                String[] nameAndValue = split(header, ':', "header");
+                query.withHeader(nameAndValue[0].trim(), nameAndValue[1].trim());
+            }
+        }
+        if (queryParams != null) {
+            for (String queryParam : queryParams) {
+                String[] nameAndValue = split(queryParam, '=', "param");
+                query.withQueryParam(nameAndValue[0], nameAndValue[1]);
+            }
+        }
+        try {
+            if (xpath != null) {
+                query.withXPath(xpath);
+            }
+            if (jsonPath != null) {
+                query.withJsonPath(jsonPath, jsonPathValue);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
 
-        Collection<MockRequest> recordedRequests = recordedRequestsHolder.getRecordedRequests(serviceName, operationId);
+        List<MockRequest> matching = page(recordedRequestsHolder.queryRecordedRequests(serviceName, operationId, query), offset, limit);
+        return buildResponse(RecordedRequestsOutput.values(matching, RecordedRequestField.BODY, "recorded-requests",
+            requestElement, false, isJsonRequested(httpHeaders)));
+    }
 
-        RecordedRequestHeaders recordedRequestHeaders = new RecordedRequestHeaders();
-        for (MockRequest recordedRequest : recordedRequests) {
-            recordedRequestHeaders.addRequestHeaders(recordedRequest.getHeaders());
+    private static String[] split(String criterion, char separator, String parameterName) {
+        int index = criterion.indexOf(separator);
+        if (index <= 0) {
+            throw new BadRequestException(parameterName + " must be given as name" + separator + "value: " + criterion);
         }
-
-        return recordedRequestHeaders;
+        return new String[]{criterion.substring(0, index), criterion.substring(index + 1)};
     }
 
+    /**
+     * Waits until at least <code>count</code> requests have been recorded for the operation since its recorded requests
+     * were last cleared, then returns them in the format of /recorded-requests. If the timeout elapses first, the
+     * requests recorded so far are returned with status 408. The request is suspended while waiting, so no container
+     * thread is held.
+     */
     @GET
-    @Path("/recorded-request-params")
-    @Produces(MediaType.TEXT_XML)
-    public String getRecordedUrlParams(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId) {
-        Collection<String> recordedUrlParams = recordedRequestsHolder.getRecordedUrlParams(
-            serviceName, operationId);
-        return buildRequestParamsXml(recordedUrlParams);
-    }
-
-    private String buildRequestParamsXml(Collection<String> recordedUrlParams) {
-        String rootElementName = "recorded-request-params";
-        String elementName = "recorded-request-param";
-        boolean surroundElementTextWithCdata = true;
-        return buildListXml(recordedUrlParams, rootElementName, elementName,
-            surroundElementTextWithCdata);
-    }
-
-    protected String buildListXml(Collection<String> elementValuesList, String rootElementName, String elementName, boolean surroundElementTextWithCdata) {
-        StringBuilder builder = new StringBuilder();
-        builder.append(format("<{0}>\n", rootElementName));
-        for (String urlQueryString : elementValuesList) {
-            if (elementNameSpecified(elementName)) {
-                builder.append(format("<{0}>", elementName));
-            }
-            if (surroundElementTextWithCdata) {
-                builder.append("<![CDATA[");
-            }
-            builder.append(urlQueryString);
-            if (surroundElementTextWithCdata) {
-                builder.append("]]>");
-            }
-            if (elementNameSpecified(elementName)) {
-                builder.append(format("</{0}>\n", elementName));
-            }
+    @Path("/recorded-requests/await")
+    @Produces({MediaType.TEXT_XML, MediaType.APPLICATION_JSON})
+    public Response awaitRecordedRequests(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId,
+                                          @DefaultValue("1") @QueryParam("count") int count, @DefaultValue("10000") @QueryParam("timeout") long timeout,
+                                          @DefaultValue("") @QueryParam("requestElement") final String requestElement, @Context HttpHeaders httpHeaders) {
+        if (count < 0 || timeout < 0 || timeout > MAX_AWAIT_TIMEOUT_MILLIS) {
+            throw new BadRequestException("count must not be negative and timeout must be between 0 and "
+                + MAX_AWAIT_TIMEOUT_MILLIS + " ms");
+        }
+        if (!recordedRequestsHolder.getRecordingMode(serviceName, operationId).isCounted()) {
+            throw new BadRequestException("Requests of operation " + operationId + " are not recorded");
+        }
+        final boolean json = isJsonRequested(httpHeaders);
+        if (recordedRequestsHolder.getRecordingCounters(serviceName, operationId).getInvocationCount() >= count) {
+            return buildAwaitResponse(recordedRequestsHolder.getRecordedRequests(serviceName, operationId), true, requestElement, json);
+        }
 
+        HttpRequest request = ResteasyProviderFactory.getContextData(HttpRequest.class);
+        if (request == null) {
+            // not dispatched by RESTEasy - nothing to suspend
+            return awaitOnCallingThread(serviceName, operationId, count, timeout, requestElement, json);
         }
-        builder.append(format("</{0}>", rootElementName));
-        return builder.toString();
+        final AsynchronousResponse asynchronousResponse = request.createAsynchronousResponse(timeout + SUSPEND_TIMEOUT_MARGIN_MILLIS);
+        recordedRequestsHolder.awaitRecordedRequests(serviceName, operationId, count, timeout, new RecordedRequestsCallback() {
+            @Override
+            public void onRecordedRequests(Collection<MockRequest> recordedRequests, boolean countReached) {
+                asynchronousResponse.setResponse(buildAwaitResponse(recordedRequests, countReached, requestElement, json));
+            }
+        });
+        return null;
     }
 
-    private boolean elementNameSpecified(String elementName) {
-        return elementName != null && !elementName.isEmpty();
+    private Response awaitOnCallingThread(String serviceName, String operationId, int count, long timeout,
+                                          final String requestElement, final boolean json) {
+        final BlockingQueue<Response> response = new ArrayBlockingQueue<Response>(1);
+        recordedRequestsHolder.awaitRecordedRequests(serviceName, operationId, count, timeout, new RecordedRequestsCallback() {
+            @Override
+            public void onRecordedRequests(Collection<MockRequest> recordedRequests, boolean countReached) {
+                response.add(buildAwaitResponse(recordedRequests, countReached, requestElement, json));
+            }
+        });
+        try {
+            return response.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for recorded requests", e);
+        }
     }
 
-    public void setRecordedRequestsHolder(RecordedRequestsHolder recordedRequestsHolder) {
-        this.recordedRequestsHolder = recordedRequestsHolder;
+    private Response buildAwaitResponse(Collection<MockRequest> recordedRequests, boolean countReached, String requestElement,
+                                        boolean json) {
+        RecordedRequestsOutput output = RecordedRequestsOutput.values(page(recordedRequests, 0, null), RecordedRequestField.BODY,
+            "recorded-requests", requestElement, false, json);
+        return Response.status(countReached ? Response.Status.OK.getStatusCode() : REQUEST_TIMEOUT)
+            .entity(output).type(output.getMediaType()).build();
     }
 
-    @XmlRootElement(name = "recorded-request-headers")
-    static class RecordedRequestHeaders {
-
-        @XmlElement(name = "single-request-recorded-headers")
-        private List<SingleRequestHeaders> recordedRequestHeader = new ArrayList<SingleRequestHeaders>();
-
-        public List<SingleRequestHeaders> getHeaders() {
-            return recordedRequestHeader;
-        }
+    @GET
+    @Path("/recorded-request-headers")
+    @Produces({MediaType.TEXT_XML, MediaType.APPLICATION_JSON})
+    public Response getRecordedRequestHeaders(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId,
+                                              @DefaultValue("0") @QueryParam("offset") int offset, @QueryParam("limit") Integer limit, @Context HttpHeaders httpHeaders) {
+        List<MockRequest> recordedRequests = getRecordedRequestsPage(serviceName, operationId, offset, limit);
+        return buildResponse(RecordedRequestsOutput.headers(recordedRequests, isJsonRequested(httpHeaders)));
+    }
 
-        public void addRequestHeaders(MultivaluedMap<String, String> headers) {
+    /**
+     * Recording time of each request (milliseconds since the epoch), its arrival on the monotonic nanosecond clock for
+     * measuring gaps between requests, and the time the mock took to answer it, from arrival until the response was
+     * written; service time is missing while the response is still being written or delayed
+     */
+    @GET
+    @Path("/recorded-request-timings")
+    @Produces({MediaType.TEXT_XML, MediaType.APPLICATION_JSON})
+    public Response getRecordedRequestTimings(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId,
+                                              @DefaultValue("0") @QueryParam("offset") int offset, @QueryParam("limit") Integer limit, @Context HttpHeaders httpHeaders) {
+        List<MockRequest> recordedRequests = getRecordedRequestsPage(serviceName, operationId, offset, limit);
+        return buildResponse(RecordedRequestsOutput.timings(recordedRequests, isJsonRequested(httpHeaders)));
+    }
 
-            SingleRequestHeaders singleRequestHeaders = new SingleRequestHeaders();
-            for (String headerName : headers.keySet()) {
-                RecordedHeader recordedHeader = new RecordedHeader(headerName, headers.getFirst(headerName));
-                singleRequestHeaders.addRecordedHeader(recordedHeader);
-            }
-            recordedRequestHeader.add(singleRequestHeaders);
-        }
+    @GET
+    @Path("/recorded-request-params")
+    @Produces({MediaType.TEXT_XML, MediaType.APPLICATION_JSON})
+    public Response getRecordedUrlParams(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId,
+                                         @DefaultValue("0") @QueryParam("offset") int offset, @QueryParam("limit") Integer limit, @Context HttpHeaders httpHeaders) {
+        return buildListResponse(serviceName, operationId, RecordedRequestField.QUERY_STRING, "recorded-request-params",
+            "recorded-request-param", true, offset, limit, httpHeaders);
     }
 
-    static class SingleRequestHeaders {
-        @XmlElement(name = "header")
-        private List<RecordedHeader> recordedHeaders = new ArrayList<RecordedHeader>();
+    /**
+     * Retention limits of the operation's recording and counters of requests received, recorded, evicted and
+     * dropped since last init
+     */
+    @GET
+    @Path("/recorded-requests-stats")
+    @Produces(MediaType.TEXT_XML)
+    public RecordingStatsDto getRecordingStats(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId) {
+        RecordedRequestsStore recordedRequests = recordedRequestsHolder.getRecordedRequestsStore(serviceName, operationId);
+
+        RecordingStatsDto stats = new RecordingStatsDto();
+        stats.setCapacity(recordedRequests.getCapacity());
+        stats.setMaxBytes(recordedRequests.getMaxBytes());
+        stats.setRetained(recordedRequests.getRetainedCount());
+        stats.setRetainedBytes(recordedRequests.getRetainedBytes());
+        stats.setRecorded(recordedRequests.getRecordedCount());
+        stats.setEvicted(recordedRequests.getEvictedCount());
+        stats.setDropped(recordedRequests.getDroppedCount());
+        RecordingCounters counters = recordedRequestsHolder.getRecordingCounters(serviceName, operationId);
+        stats.setInvocations(counters.getInvocationCount());
+        stats.setInvocationBytes(counters.getInvocationBytes());
+        return stats;
+    }
 
-        List<RecordedHeader> getRecordedHeaders() {
-            return recordedHeaders;
-        }
+    /**
+     * Streams one value of each recorded request of the page, as XML unless JSON is the preferred accepted type
+     */
+    protected Response buildListResponse(String serviceName, String operationId, RecordedRequestField field, String rootElementName,
+                                         String elementName, boolean surroundElementTextWithCdata, int offset, Integer limit, HttpHeaders httpHeaders) {
+        List<MockRequest> recordedRequests = getRecordedRequestsPage(serviceName, operationId, offset, limit);
+        return buildResponse(RecordedRequestsOutput.values(recordedRequests, field, rootElementName, elementName,
+            surroundElementTextWithCdata, isJsonRequested(httpHeaders)));
+    }
 
-        public void addRecordedHeader(RecordedHeader recordedHeader) {
-            recordedHeaders.add(recordedHeader);
-        }
+    private Response buildResponse(RecordedRequestsOutput output) {
+        return Response.ok(output, output.getMediaType()).build();
     }
 
-    static class RecordedHeader {
-        @XmlElement
-        private String name;
-        @XmlElement
-        private String value;
+    private List<MockRequest> getRecordedRequestsPage(String serviceName, String operationId, int offset, Integer limit) {
+        return page(recordedRequestsHolder.getRecordedRequests(serviceName, operationId), offset, limit);
+    }
 
-        RecordedHeader() {
+    private List<MockRequest> page(Collection<MockRequest> recordedRequests, int offset, Integer limit) {
+        if (offset < 0 || (limit != null && limit < 0)) {
+            throw new BadRequestException("offset and limit can't be negative");
         }
+        List<MockRequest> recordedRequestsList = recordedRequests instanceof List ? (List<MockRequest>) recordedRequests
+            : new ArrayList<MockRequest>(recordedRequests);
 
-        RecordedHeader(String name, String value) {
-            this.name = name;
-            this.value = value;
-        }
+        int from = Math.min(offset, recordedRequestsList.size());
+        int to = limit != null ? (int) Math.min((long) from + limit, recordedRequestsList.size()) : recordedRequestsList.size();
+        return recordedRequestsList.subList(from, to);
+    }
 
-        public String getName() {
-            return name;
+    private boolean isJsonRequested(HttpHeaders httpHeaders) {
+        if (httpHeaders == null || httpHeaders.getAcceptableMediaTypes().isEmpty()) {
+            return false;
         }
+        MediaType preferred = httpHeaders.getAcceptableMediaTypes().get(0);
+        return !preferred.isWildcardType() && !preferred.isWildcardSubtype()
+            && MediaType.APPLICATION_JSON_TYPE.isCompatible(preferred);
+    }
 
-        public String getValue() {
-            return value;
-        }
+    public void setRecordedRequestsHolder(RecordedRequestsHolder recordedRequestsHolder) {
+        this.recordedRequestsHolder = recordedRequestsHolder;
     }
 
-}
\ No newline at end of file
+}
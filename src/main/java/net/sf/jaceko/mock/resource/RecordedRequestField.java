@@ -0,0 +1,48 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.resource;
+
+import net.sf.jaceko.mock.model.request.MockRequest;
+
+/**
+ * Value of a recorded request listed by verification resources
+ */
+enum RecordedRequestField {
+    BODY {
+        @Override
+        String valueOf(MockRequest request) {
+            return request.getBody();
+        }
+    },
+    QUERY_STRING {
+        @Override
+        String valueOf(MockRequest request) {
+            return request.getQueryString();
+        }
+    },
+    RESOURCE_PATH {
+        @Override
+        String valueOf(MockRequest request) {
+            return request.getResourcePath();
+        }
+    };
+
+    abstract String valueOf(MockRequest request);
+}
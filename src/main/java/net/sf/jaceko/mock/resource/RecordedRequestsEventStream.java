@@ -0,0 +1,292 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.resource;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.sf.jaceko.mock.model.request.MockRequest;
+import net.sf.jaceko.mock.service.Delayer;
+import net.sf.jaceko.mock.service.RecordedRequestsHolder;
+import net.sf.jaceko.mock.service.RecordedRequestsSubscription;
+import net.sf.jaceko.mock.service.RecordedRequestsSubscription.RecordedRequest;
+import org.apache.log4j.Logger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes requests delivered to a subscription as server-sent events until the subscription is closed or the client
+ * goes away. Each request is sent as a <code>recorded-request</code> event with JSON data; requests dropped because
+ * the client did not keep up are reported by a <code>dropped</code> event carrying the total dropped so far.
+ * <p/>
+ * Events are delivered to a suspended request (see {@link #deliver(AsyncContext, Delayer)}), so a subscriber holds
+ * no thread while nothing is recorded; written as {@link StreamingOutput} only when the request can't be suspended.
+ */
+class RecordedRequestsEventStream implements StreamingOutput {
+    private static final String TEXT_EVENT_STREAM = "text/event-stream;charset=UTF-8";
+    static final MediaType TEXT_EVENT_STREAM_TYPE = MediaType.valueOf(TEXT_EVENT_STREAM);
+
+    private static final Logger LOG = Logger.getLogger(RecordedRequestsEventStream.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // writes wait for slow clients, so they are kept off the recording and the delayer's timer threads
+    private static final ExecutorService WRITER = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("mock-event-stream-writer-%d").setDaemon(true).build());
+
+    private final RecordedRequestsHolder recordedRequestsHolder;
+    private final RecordedRequestsSubscription subscription;
+    private final long heartbeatMillis;
+    private final AtomicBoolean deliveryScheduled = new AtomicBoolean();
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private AsyncContext asyncContext;
+    private Delayer delayer;
+    // guarded by this
+    private Writer asyncWriter;
+    private long reportedDroppedCount;
+
+    /**
+     * @param heartbeatMillis interval of comments sent while no request is recorded; they keep proxies from closing an
+     *                        idle connection and reveal clients that went away
+     */
+    RecordedRequestsEventStream(RecordedRequestsHolder recordedRequestsHolder, RecordedRequestsSubscription subscription,
+                                long heartbeatMillis) {
+        this.recordedRequestsHolder = recordedRequestsHolder;
+        this.subscription = subscription;
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        Writer writer = new OutputStreamWriter(output, UTF_8);
+        long reportedDroppedCount = 0;
+        try {
+            // commits the response so that the client sees the stream open before the first request is recorded
+            writer.write(": subscribed\n\n");
+            writer.flush();
+            while (true) {
+                RecordedRequest recordedRequest = subscription.poll(heartbeatMillis);
+                long droppedCount = subscription.getDroppedCount();
+                if (droppedCount > reportedDroppedCount) {
+                    writer.write("event: dropped\ndata: " + droppedCount + "\n\n");
+                    reportedDroppedCount = droppedCount;
+                }
+                if (recordedRequest != null) {
+                    writeEvent(writer, recordedRequest);
+                } else if (subscription.isClosed()) {
+                    writer.flush();
+                    return;
+                } else {
+                    writer.write(": heartbeat\n\n");
+                }
+                writer.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOG.debug("Recorded requests subscriber went away: " + e.getMessage());
+        } finally {
+            recordedRequestsHolder.unsubscribe(subscription);
+        }
+    }
+
+    /**
+     * Delivers events to the suspended request: requests are written by a writer thread as they are recorded and
+     * heartbeats are scheduled on the delayer. The request is completed once the client goes away.
+     */
+    void deliver(AsyncContext asyncContext, Delayer delayer) {
+        this.asyncContext = asyncContext;
+        this.delayer = delayer;
+        // the subscriber stays until it goes away
+        asyncContext.setTimeout(0);
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                finish();
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                finish();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                finish();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+        response.setContentType(TEXT_EVENT_STREAM);
+        response.setHeader("Cache-Control", "no-cache");
+        synchronized (this) {
+            try {
+                asyncWriter = new OutputStreamWriter(response.getOutputStream(), UTF_8);
+                // commits the response so that the client sees the stream open before the first request is recorded
+                asyncWriter.write(": subscribed\n\n");
+                asyncWriter.flush();
+            } catch (IOException e) {
+                LOG.debug("Recorded requests subscriber went away: " + e.getMessage());
+                finish();
+                return;
+            }
+        }
+        subscription.setListener(new Runnable() {
+            @Override
+            public void run() {
+                scheduleDelivery();
+            }
+        });
+        // requests recorded before the listener was set
+        scheduleDelivery();
+        scheduleHeartbeat();
+    }
+
+    private void scheduleDelivery() {
+        if (deliveryScheduled.compareAndSet(false, true)) {
+            WRITER.execute(new Runnable() {
+                @Override
+                public void run() {
+                    deliveryScheduled.set(false);
+                    writeBuffered(false);
+                }
+            });
+        }
+    }
+
+    private void scheduleHeartbeat() {
+        delayer.delayMillis(heartbeatMillis, new Runnable() {
+            @Override
+            public void run() {
+                WRITER.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        writeBuffered(true);
+                        if (!finished.get()) {
+                            scheduleHeartbeat();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private synchronized void writeBuffered(boolean heartbeat) {
+        if (finished.get()) {
+            return;
+        }
+        try {
+            RecordedRequest recordedRequest;
+            while ((recordedRequest = subscription.poll()) != null) {
+                writeDroppedCount(asyncWriter);
+                writeEvent(asyncWriter, recordedRequest);
+            }
+            writeDroppedCount(asyncWriter);
+            if (heartbeat) {
+                // also reveals clients that went away
+                asyncWriter.write(": heartbeat\n\n");
+            }
+            asyncWriter.flush();
+        } catch (IOException e) {
+            LOG.debug("Recorded requests subscriber went away: " + e.getMessage());
+            finish();
+        }
+    }
+
+    private void writeDroppedCount(Writer writer) throws IOException {
+        long droppedCount = subscription.getDroppedCount();
+        if (droppedCount > reportedDroppedCount) {
+            writer.write("event: dropped\ndata: " + droppedCount + "\n\n");
+            reportedDroppedCount = droppedCount;
+        }
+    }
+
+    private void finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        recordedRequestsHolder.unsubscribe(subscription);
+        try {
+            asyncContext.complete();
+        } catch (IllegalStateException e) {
+            // request already completed by the container
+            LOG.debug("Recorded requests stream completed before its subscriber went away", e);
+        }
+    }
+
+    private static void writeEvent(Writer writer, RecordedRequest recordedRequest) throws IOException {
+        MockRequest request = recordedRequest.getRequest();
+        writer.write("event: recorded-request\ndata: {\"service\":");
+        RecordedRequestsOutput.writeJsonString(writer, recordedRequest.getServiceName());
+        writer.write(",\"operation\":");
+        RecordedRequestsOutput.writeJsonString(writer, recordedRequest.getOperationId());
+        writer.write(",\"recordedAt\":" + request.getRecordedAt() + ",\"resourcePath\":");
+        RecordedRequestsOutput.writeJsonString(writer, request.getResourcePath());
+        writer.write(",\"queryString\":");
+        RecordedRequestsOutput.writeJsonString(writer, request.getQueryString());
+        writer.write(",\"headers\":");
+        writeHeaders(writer, request.getHeaders());
+        writer.write(",\"body\":");
+        RecordedRequestsOutput.writeJsonString(writer, request.getBody());
+        writer.write("}\n\n");
+    }
+
+    static void writeHeaders(Writer writer, MultivaluedMap<String, String> headers) throws IOException {
+        if (headers == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('{');
+        boolean first = true;
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            RecordedRequestsOutput.writeJsonString(writer, header.getKey());
+            writer.write(":[");
+            List<String> values = header.getValue();
+            for (int i = 0; values != null && i < values.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                RecordedRequestsOutput.writeJsonString(writer, values.get(i));
+            }
+            writer.write(']');
+        }
+        writer.write('}');
+    }
+}
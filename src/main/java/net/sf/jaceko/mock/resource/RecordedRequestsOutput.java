@@ -0,0 +1,360 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.resource;
+
+import net.sf.jaceko.mock.model.request.MockRequest;
+import net.sf.jaceko.mock.model.request.RequestTiming;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes recorded requests straight to the response while walking them, so that verification of large recordings
+ * does not build the whole document in memory. XML output is byte for byte the one verification resources always
+ * returned; JSON output carries the same values.
+ */
+abstract class RecordedRequestsOutput implements StreamingOutput {
+    static final MediaType APPLICATION_JSON_UTF8_TYPE = MediaType.valueOf(MediaType.APPLICATION_JSON + ";charset=UTF-8");
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    protected final List<MockRequest> requests;
+    protected final boolean json;
+
+    private RecordedRequestsOutput(List<MockRequest> requests, boolean json) {
+        this.requests = requests;
+        this.json = json;
+    }
+
+    /**
+     * One element per request holding a single value of it, e.g. &lt;recorded-request-params&gt; list
+     *
+     * @param elementName element surrounding each value, none if empty
+     */
+    static RecordedRequestsOutput values(List<MockRequest> requests, RecordedRequestField field, String rootElementName,
+                                         String elementName, boolean surroundElementTextWithCdata, boolean json) {
+        return new ValuesOutput(requests, field, rootElementName, elementName, surroundElementTextWithCdata, json);
+    }
+
+    /**
+     * First value of each header of each request, in the format JAXB used to marshal them
+     */
+    static RecordedRequestsOutput headers(List<MockRequest> requests, boolean json) {
+        return new HeadersOutput(requests, json);
+    }
+
+    /**
+     * Recording time, monotonic arrival time and server-side service time of each request
+     */
+    static RecordedRequestsOutput timings(List<MockRequest> requests, boolean json) {
+        return new TimingsOutput(requests, json);
+    }
+
+    MediaType getMediaType() {
+        return json ? APPLICATION_JSON_UTF8_TYPE : MediaType.TEXT_XML_TYPE;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, json ? UTF_8 : getXmlCharset()));
+        if (json) {
+            writeJson(writer);
+        } else {
+            writeXml(writer);
+        }
+        writer.flush();
+    }
+
+    protected abstract Charset getXmlCharset();
+
+    protected abstract void writeXml(Writer writer) throws IOException;
+
+    protected abstract void writeJson(Writer writer) throws IOException;
+
+    protected static void writeJsonString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+
+    private static final class ValuesOutput extends RecordedRequestsOutput {
+        private final RecordedRequestField field;
+        private final String rootElementName;
+        private final String elementName;
+        private final boolean surroundElementTextWithCdata;
+
+        private ValuesOutput(List<MockRequest> requests, RecordedRequestField field, String rootElementName,
+                             String elementName, boolean surroundElementTextWithCdata, boolean json) {
+            super(requests, json);
+            this.field = field;
+            this.rootElementName = rootElementName;
+            this.elementName = elementName;
+            this.surroundElementTextWithCdata = surroundElementTextWithCdata;
+        }
+
+        /**
+         * text/xml strings used to be written in platform encoding
+         */
+        @Override
+        protected Charset getXmlCharset() {
+            return Charset.defaultCharset();
+        }
+
+        @Override
+        protected void writeXml(Writer writer) throws IOException {
+            boolean elementNameSpecified = elementName != null && !elementName.isEmpty();
+            writer.write('<');
+            writer.write(rootElementName);
+            writer.write(">\n");
+            for (MockRequest request : requests) {
+                if (elementNameSpecified) {
+                    writer.write('<');
+                    writer.write(elementName);
+                    writer.write('>');
+                }
+                if (surroundElementTextWithCdata) {
+                    writer.write("<![CDATA[");
+                }
+                writer.write(String.valueOf(field.valueOf(request)));
+                if (surroundElementTextWithCdata) {
+                    writer.write("]]>");
+                }
+                if (elementNameSpecified) {
+                    writer.write("</");
+                    writer.write(elementName);
+                    writer.write(">\n");
+                }
+            }
+            writer.write("</");
+            writer.write(rootElementName);
+            writer.write('>');
+        }
+
+        @Override
+        protected void writeJson(Writer writer) throws IOException {
+            writer.write('{');
+            writeJsonString(writer, rootElementName);
+            writer.write(":[");
+            boolean first = true;
+            for (MockRequest request : requests) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                writeJsonString(writer, field.valueOf(request));
+            }
+            writer.write("]}");
+        }
+    }
+
+    private static final class HeadersOutput extends RecordedRequestsOutput {
+        private static final String ROOT_ELEMENT_NAME = "recorded-request-headers";
+        private static final String REQUEST_ELEMENT_NAME = "single-request-recorded-headers";
+
+        private HeadersOutput(List<MockRequest> requests, boolean json) {
+            super(requests, json);
+        }
+
+        @Override
+        protected Charset getXmlCharset() {
+            return UTF_8;
+        }
+
+        @Override
+        protected void writeXml(Writer writer) throws IOException {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+            if (requests.isEmpty()) {
+                writer.write("<" + ROOT_ELEMENT_NAME + "/>");
+                return;
+            }
+            writer.write("<" + ROOT_ELEMENT_NAME + ">");
+            for (MockRequest request : requests) {
+                Map<String, List<String>> headers = headersOf(request);
+                if (headers.isEmpty()) {
+                    writer.write("<" + REQUEST_ELEMENT_NAME + "/>");
+                    continue;
+                }
+                writer.write("<" + REQUEST_ELEMENT_NAME + ">");
+                for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                    writer.write("<header><name>");
+                    writeXmlText(writer, header.getKey());
+                    writer.write("</name>");
+                    String value = firstValue(header.getValue());
+                    if (value != null) {
+                        writer.write("<value>");
+                        writeXmlText(writer, value);
+                        writer.write("</value>");
+                    }
+                    writer.write("</header>");
+                }
+                writer.write("</" + REQUEST_ELEMENT_NAME + ">");
+            }
+            writer.write("</" + ROOT_ELEMENT_NAME + ">");
+        }
+
+        @Override
+        protected void writeJson(Writer writer) throws IOException {
+            writer.write("{\"" + ROOT_ELEMENT_NAME + "\":[");
+            for (int i = 0; i < requests.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write('[');
+                boolean first = true;
+                for (Map.Entry<String, List<String>> header : headersOf(requests.get(i)).entrySet()) {
+                    if (!first) {
+                        writer.write(',');
+                    }
+                    first = false;
+                    writer.write("{\"name\":");
+                    writeJsonString(writer, header.getKey());
+                    writer.write(",\"value\":");
+                    writeJsonString(writer, firstValue(header.getValue()));
+                    writer.write('}');
+                }
+                writer.write(']');
+            }
+            writer.write("]}");
+        }
+
+        private static Map<String, List<String>> headersOf(MockRequest request) {
+            MultivaluedMap<String, String> headers = request.getHeaders();
+            return headers != null ? headers : Collections.<String, List<String>>emptyMap();
+        }
+
+        private static String firstValue(List<String> values) {
+            return values != null && !values.isEmpty() ? values.get(0) : null;
+        }
+
+        /**
+         * Escapes the characters JAXB escapes in element text
+         */
+        private static void writeXmlText(Writer writer, String text) throws IOException {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '&':
+                        writer.write("&amp;");
+                        break;
+                    case '<':
+                        writer.write("&lt;");
+                        break;
+                    case '>':
+                        writer.write("&gt;");
+                        break;
+                    case '\r':
+                        writer.write("&#xD;");
+                        break;
+                    default:
+                        writer.write(c);
+                }
+            }
+        }
+    }
+
+    private static final class TimingsOutput extends RecordedRequestsOutput {
+        private static final String ROOT_ELEMENT_NAME = "recorded-request-timings";
+        private static final String REQUEST_ELEMENT_NAME = "recorded-request-timing";
+
+        private TimingsOutput(List<MockRequest> requests, boolean json) {
+            super(requests, json);
+        }
+
+        @Override
+        protected Charset getXmlCharset() {
+            return UTF_8;
+        }
+
+        @Override
+        protected void writeXml(Writer writer) throws IOException {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+            writer.write("<" + ROOT_ELEMENT_NAME + ">");
+            for (MockRequest request : requests) {
+                writer.write("<" + REQUEST_ELEMENT_NAME + "><recorded-at>" + request.getRecordedAt() + "</recorded-at>");
+                RequestTiming timing = request.getTiming();
+                if (timing != null) {
+                    writer.write("<arrival-nanos>" + timing.getArrivalNanos() + "</arrival-nanos>");
+                    Long serviceTimeNanos = timing.getServiceTimeNanos();
+                    if (serviceTimeNanos != null) {
+                        writer.write("<service-time-nanos>" + serviceTimeNanos + "</service-time-nanos>");
+                    }
+                }
+                writer.write("</" + REQUEST_ELEMENT_NAME + ">");
+            }
+            writer.write("</" + ROOT_ELEMENT_NAME + ">");
+        }
+
+        @Override
+        protected void writeJson(Writer writer) throws IOException {
+            writer.write("{\"" + ROOT_ELEMENT_NAME + "\":[");
+            for (int i = 0; i < requests.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                MockRequest request = requests.get(i);
+                RequestTiming timing = request.getTiming();
+                writer.write("{\"recordedAt\":" + request.getRecordedAt()
+                    + ",\"arrivalNanos\":" + (timing != null ? timing.getArrivalNanos() : null)
+                    + ",\"serviceTimeNanos\":" + (timing != null ? timing.getServiceTimeNanos() : null) + "}");
+            }
+            writer.write("]}");
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.resource;
+
+import net.sf.jaceko.mock.service.Delayer;
+import net.sf.jaceko.mock.service.RecordedRequestsHolder;
+import net.sf.jaceko.mock.service.RecordedRequestsSubscription;
+import org.jboss.resteasy.spi.BadRequestException;
+import org.jboss.resteasy.spi.HttpRequest;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.Response;
+
+/**
+ * Live tail of requests recorded for all mocked services
+ */
+@Path("/services/recorded-requests/live")
+public class RecordedRequestsTailResource {
+    /**
+     * largest number of requests buffered for a single subscriber
+     */
+    static final int MAX_BUFFER_SIZE = 100000;
+
+    private static final long HEARTBEAT_MILLIS = 15000;
+
+    private RecordedRequestsHolder recordedRequestsHolder;
+    private Delayer delayer;
+
+    /**
+     * Streams requests recorded from now on as server-sent events, optionally only those of given service and
+     * operation. Up to <code>buffer</code> requests are held for a client that reads slower than requests are
+     * recorded, after that the oldest ones are dropped. The request is suspended, so no worker thread is held
+     * while the client is subscribed.
+     */
+    @GET
+    @Produces("text/event-stream")
+    public Response streamRecordedRequests(@QueryParam("service") String serviceName, @QueryParam("operation") String operationId,
+                                           @DefaultValue("1000") @QueryParam("buffer") int bufferSize) {
+        if (bufferSize < 1 || bufferSize > MAX_BUFFER_SIZE) {
+            throw new BadRequestException("buffer must be between 1 and " + MAX_BUFFER_SIZE);
+        }
+        RecordedRequestsSubscription subscription = recordedRequestsHolder.subscribe(serviceName, operationId, bufferSize);
+        RecordedRequestsEventStream stream = new RecordedRequestsEventStream(recordedRequestsHolder, subscription, HEARTBEAT_MILLIS);
+
+        HttpRequest request = ResteasyProviderFactory.getContextData(HttpRequest.class);
+        HttpServletRequest servletRequest = ResteasyProviderFactory.getContextData(HttpServletRequest.class);
+        if (request == null || servletRequest == null || delayer == null) {
+            // not dispatched by RESTEasy - nothing to suspend
+            return Response.ok(stream, RecordedRequestsEventStream.TEXT_EVENT_STREAM_TYPE).header("Cache-Control", "no-cache")
+                .build();
+        }
+        // timeout is lifted by the stream, which completes the request when the client goes away
+        request.createAsynchronousResponse(HEARTBEAT_MILLIS);
+        stream.deliver(servletRequest.getAsyncContext(), delayer);
+        return null;
+    }
+
+    public void setRecordedRequestsHolder(RecordedRequestsHolder recordedRequestsHolder) {
+        this.recordedRequestsHolder = recordedRequestsHolder;
+    }
+
+    public void setDelayer(Delayer delayer) {
+        this.delayer = delayer;
+    }
+}
@@ -0,0 +1,392 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.resource;
+
+import net.sf.jaceko.mock.application.enums.ServiceType;
+import net.sf.jaceko.mock.model.request.MockRequest;
+import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.RequestTiming;
+import net.sf.jaceko.mock.model.webservice.WebService;
+import net.sf.jaceko.mock.model.webservice.WebserviceOperation;
+import net.sf.jaceko.mock.service.RecordedRequestsHolder;
+import net.sf.jaceko.mock.util.QueryStringParser;
+import net.sf.jaceko.mock.util.Utf8;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.xml.bind.DatatypeConverter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes every request recorded for the given services, with the response served to it, straight to the response
+ * while walking the recorded requests - journaled requests are decoded one at a time, so exports of any size run in
+ * constant memory. Output is optionally gzipped on the fly.
+ */
+abstract class RecordedTrafficExport implements StreamingOutput {
+    static final MediaType APPLICATION_JSON_LINES_TYPE = MediaType.valueOf("application/x-ndjson;charset=UTF-8");
+    static final MediaType APPLICATION_GZIP_TYPE = MediaType.valueOf("application/gzip");
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String BASE64 = "base64";
+
+    private final RecordedRequestsHolder recordedRequestsHolder;
+    private final Collection<WebService> services;
+    private final boolean gzip;
+
+    private RecordedTrafficExport(RecordedRequestsHolder recordedRequestsHolder, Collection<WebService> services, boolean gzip) {
+        this.recordedRequestsHolder = recordedRequestsHolder;
+        this.services = services;
+        this.gzip = gzip;
+    }
+
+    /**
+     * HAR 1.2 log with one entry per request
+     *
+     * @param baseUri base URI of the mock application, used to rebuild request URLs
+     */
+    static RecordedTrafficExport har(RecordedRequestsHolder recordedRequestsHolder, Collection<WebService> services,
+                                     String baseUri, boolean gzip) {
+        return new HarExport(recordedRequestsHolder, services, baseUri, gzip);
+    }
+
+    /**
+     * One JSON object per line and request, carrying the values of recorded-request events of the live tail and the
+     * response served
+     */
+    static RecordedTrafficExport jsonLines(RecordedRequestsHolder recordedRequestsHolder, Collection<WebService> services,
+                                           boolean gzip) {
+        return new JsonLinesExport(recordedRequestsHolder, services, gzip);
+    }
+
+    MediaType getMediaType() {
+        return gzip ? APPLICATION_GZIP_TYPE : getContentMediaType();
+    }
+
+    String getFileName() {
+        return "recorded-requests." + getFileExtension() + (gzip ? ".gz" : "");
+    }
+
+    protected abstract MediaType getContentMediaType();
+
+    protected abstract String getFileExtension();
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        GZIPOutputStream gzipOutput = gzip ? new GZIPOutputStream(output, BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzipOutput != null ? gzipOutput : output, UTF_8), BUFFER_SIZE);
+        writeStart(writer);
+        for (WebService service : services) {
+            for (WebserviceOperation operation : service.getOperations()) {
+                String operationId = operation.getOperationId();
+                for (MockRequest request : recordedRequestsHolder.getRecordedRequests(service.getName(), operationId)) {
+                    writeRequest(writer, service, operationId, request);
+                }
+            }
+        }
+        writeEnd(writer);
+        writer.flush();
+        if (gzipOutput != null) {
+            gzipOutput.finish();
+        }
+    }
+
+    protected abstract void writeStart(Writer writer) throws IOException;
+
+    protected abstract void writeRequest(Writer writer, WebService service, String operationId, MockRequest request)
+        throws IOException;
+
+    protected abstract void writeEnd(Writer writer) throws IOException;
+
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        RecordedRequestsOutput.writeJsonString(writer, value);
+    }
+
+    private static String getContentType(MultivaluedMap<String, String> headers) {
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(header.getKey()) && header.getValue() != null
+                && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * milliseconds with microsecond precision
+     */
+    private static String toMillis(long nanos) {
+        long micros = nanos / 1000;
+        String fraction = Long.toString(1000 + micros % 1000).substring(1);
+        return micros / 1000 + "." + fraction;
+    }
+
+    private static final class JsonLinesExport extends RecordedTrafficExport {
+
+        private JsonLinesExport(RecordedRequestsHolder recordedRequestsHolder, Collection<WebService> services, boolean gzip) {
+            super(recordedRequestsHolder, services, gzip);
+        }
+
+        @Override
+        protected MediaType getContentMediaType() {
+            return APPLICATION_JSON_LINES_TYPE;
+        }
+
+        @Override
+        protected String getFileExtension() {
+            return "jsonl";
+        }
+
+        @Override
+        protected void writeStart(Writer writer) {
+        }
+
+        @Override
+        protected void writeRequest(Writer writer, WebService service, String operationId, MockRequest request)
+            throws IOException {
+            writer.write("{\"service\":");
+            writeJsonString(writer, service.getName());
+            writer.write(",\"operation\":");
+            writeJsonString(writer, operationId);
+            writer.write(",\"recordedAt\":" + request.getRecordedAt() + ",\"resourcePath\":");
+            writeJsonString(writer, request.getResourcePath());
+            writer.write(",\"queryString\":");
+            writeJsonString(writer, request.getQueryString());
+            writer.write(",\"headers\":");
+            RecordedRequestsEventStream.writeHeaders(writer, request.getHeaders());
+            writer.write(",\"body\":");
+            writeJsonString(writer, request.getBody());
+            RequestTiming timing = request.getTiming();
+            Long serviceTimeNanos = timing != null ? timing.getServiceTimeNanos() : null;
+            writer.write(",\"serviceTimeNanos\":" + serviceTimeNanos + ",\"response\":");
+            writeResponse(writer, request.getResponse());
+            writer.write("}\n");
+        }
+
+        private void writeResponse(Writer writer, MockResponse response) throws IOException {
+            if (response == null) {
+                writer.write("null");
+                return;
+            }
+            writer.write("{\"code\":" + response.getCode() + ",\"contentType\":");
+            writeJsonString(writer, response.getContentType());
+            writer.write(",\"headers\":{");
+            if (response.getHeaders() != null) {
+                boolean first = true;
+                for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                    if (!first) {
+                        writer.write(',');
+                    }
+                    first = false;
+                    writeJsonString(writer, header.getKey());
+                    writer.write(':');
+                    writeJsonString(writer, header.getValue());
+                }
+            }
+            writer.write("},\"body\":");
+            if (response.isBinary()) {
+                writeJsonString(writer, DatatypeConverter.printBase64Binary(response.getBinaryBody()));
+                writer.write(",\"encoding\":\"" + BASE64 + "\"");
+            } else {
+                writeJsonString(writer, response.getBody());
+            }
+            writer.write('}');
+        }
+
+        @Override
+        protected void writeEnd(Writer writer) {
+        }
+    }
+
+    private static final class HarExport extends RecordedTrafficExport {
+        private static final String HTTP_VERSION = "HTTP/1.1";
+
+        private final String baseUri;
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        private boolean firstEntry = true;
+
+        private HarExport(RecordedRequestsHolder recordedRequestsHolder, Collection<WebService> services, String baseUri,
+                          boolean gzip) {
+            super(recordedRequestsHolder, services, gzip);
+            this.baseUri = baseUri.endsWith("/") ? baseUri : baseUri + "/";
+            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        }
+
+        @Override
+        protected MediaType getContentMediaType() {
+            return RecordedRequestsOutput.APPLICATION_JSON_UTF8_TYPE;
+        }
+
+        @Override
+        protected String getFileExtension() {
+            return "har";
+        }
+
+        @Override
+        protected void writeStart(Writer writer) throws IOException {
+            String version = RecordedTrafficExport.class.getPackage().getImplementationVersion();
+            writer.write("{\"log\":{\"version\":\"1.2\",\"creator\":{\"name\":\"http-api-mock\",\"version\":");
+            writeJsonString(writer, version != null ? version : "");
+            writer.write("},\"entries\":[");
+        }
+
+        @Override
+        protected void writeRequest(Writer writer, WebService service, String operationId, MockRequest request)
+            throws IOException {
+            if (!firstEntry) {
+                writer.write(',');
+            }
+            firstEntry = false;
+            RequestTiming timing = request.getTiming();
+            Long serviceTimeNanos = timing != null ? timing.getServiceTimeNanos() : null;
+            String time = toMillis(serviceTimeNanos != null ? serviceTimeNanos : 0);
+
+            writer.write("\n{\"startedDateTime\":");
+            writeJsonString(writer, dateFormat.format(new Date(request.getRecordedAt())));
+            writer.write(",\"time\":" + time + ",\"request\":");
+            writeHarRequest(writer, service, operationId, request);
+            writer.write(",\"response\":");
+            writeHarResponse(writer, request.getResponse());
+            writer.write(",\"cache\":{},\"timings\":{\"send\":0,\"wait\":" + time + ",\"receive\":0},\"_service\":");
+            writeJsonString(writer, service.getName());
+            writer.write(",\"_operation\":");
+            writeJsonString(writer, operationId);
+            writer.write('}');
+        }
+
+        private void writeHarRequest(Writer writer, WebService service, String operationId, MockRequest request)
+            throws IOException {
+            boolean rest = service.getServiceType() == ServiceType.REST;
+            writer.write("{\"method\":");
+            writeJsonString(writer, rest ? operationId : "POST");
+            writer.write(",\"url\":");
+            writeJsonString(writer, getUrl(service, request));
+            writer.write(",\"httpVersion\":\"" + HTTP_VERSION + "\",\"cookies\":[],\"headers\":[");
+            MultivaluedMap<String, String> headers = request.getHeaders();
+            boolean first = true;
+            if (headers != null) {
+                for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                    for (int i = 0; header.getValue() != null && i < header.getValue().size(); i++) {
+                        first = writeNameValue(writer, first, header.getKey(), header.getValue().get(i));
+                    }
+                }
+            }
+            writer.write("],\"queryString\":[");
+            first = true;
+            for (Map.Entry<String, List<String>> param : QueryStringParser.parse(request.getQueryString()).entrySet()) {
+                for (String value : param.getValue()) {
+                    first = writeNameValue(writer, first, param.getKey(), value);
+                }
+            }
+            writer.write(']');
+            String body = request.getBody();
+            if (body != null) {
+                String mimeType = getContentType(headers);
+                writer.write(",\"postData\":{\"mimeType\":");
+                writeJsonString(writer, mimeType != null ? mimeType : "");
+                writer.write(",\"text\":");
+                writeJsonString(writer, body);
+                writer.write('}');
+            }
+            writer.write(",\"headersSize\":-1,\"bodySize\":" + Utf8.encodedLength(body) + "}");
+        }
+
+        private String getUrl(WebService service, MockRequest request) {
+            StringBuilder url = new StringBuilder(baseUri).append("services/").append(service.getServiceType())
+                .append('/').append(service.getName()).append("/endpoint");
+            String resourcePath = request.getResourcePath();
+            if (resourcePath != null && !resourcePath.isEmpty()) {
+                url.append('/').append(resourcePath);
+            }
+            String queryString = request.getQueryString();
+            if (queryString != null && !queryString.isEmpty()) {
+                url.append('?').append(queryString);
+            }
+            return url.toString();
+        }
+
+        private void writeHarResponse(Writer writer, MockResponse response) throws IOException {
+            if (response == null) {
+                // response not recorded - HAR requires one, 0 status marks it unknown
+                writer.write("{\"status\":0,\"statusText\":\"\",\"httpVersion\":\"" + HTTP_VERSION
+                    + "\",\"cookies\":[],\"headers\":[],\"content\":{\"size\":0,\"mimeType\":\"\"},"
+                    + "\"redirectURL\":\"\",\"headersSize\":-1,\"bodySize\":-1}");
+                return;
+            }
+            Response.Status status = Response.Status.fromStatusCode(response.getCode());
+            writer.write("{\"status\":" + response.getCode() + ",\"statusText\":");
+            writeJsonString(writer, status != null ? status.getReasonPhrase() : "");
+            writer.write(",\"httpVersion\":\"" + HTTP_VERSION + "\",\"cookies\":[],\"headers\":[");
+            boolean first = true;
+            if (response.getHeaders() != null) {
+                for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                    first = writeNameValue(writer, first, header.getKey(), header.getValue());
+                }
+            }
+            long size = response.isBinary() ? response.getBinaryBody().length : Utf8.encodedLength(response.getBody());
+            writer.write("],\"content\":{\"size\":" + size + ",\"mimeType\":");
+            writeJsonString(writer, response.getContentType() != null ? response.getContentType() : "");
+            if (response.isBinary()) {
+                writer.write(",\"text\":");
+                writeJsonString(writer, DatatypeConverter.printBase64Binary(response.getBinaryBody()));
+                writer.write(",\"encoding\":\"" + BASE64 + "\"");
+            } else if (response.getBody() != null) {
+                writer.write(",\"text\":");
+                writeJsonString(writer, response.getBody());
+            }
+            writer.write("},\"redirectURL\":\"\",\"headersSize\":-1,\"bodySize\":" + size + "}");
+        }
+
+        private static boolean writeNameValue(Writer writer, boolean first, String name, String value) throws IOException {
+            if (!first) {
+                writer.write(',');
+            }
+            writer.write("{\"name\":");
+            writeJsonString(writer, name);
+            writer.write(",\"value\":");
+            writeJsonString(writer, value != null ? value : "");
+            writer.write('}');
+            return false;
+        }
+
+        @Override
+        protected void writeEnd(Writer writer) throws IOException {
+            writer.write("\n]}}\n");
+        }
+    }
+}
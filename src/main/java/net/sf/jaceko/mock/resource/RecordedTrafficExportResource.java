@@ -0,0 +1,79 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.resource;
+
+import net.sf.jaceko.mock.model.webservice.WebService;
+import net.sf.jaceko.mock.service.MockConfigurationHolder;
+import net.sf.jaceko.mock.service.RecordedRequestsHolder;
+import org.jboss.resteasy.spi.BadRequestException;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Export of requests recorded for all mocked services
+ */
+@Path("/services/recorded-requests/export")
+public class RecordedTrafficExportResource {
+    static final String FORMAT_HAR = "har";
+    static final String FORMAT_JSON_LINES = "jsonl";
+
+    private MockConfigurationHolder configurationHolder;
+    private RecordedRequestsHolder recordedRequestsHolder;
+
+    /**
+     * Streams requests recorded for the service (all services if not given) together with the responses served, as
+     * HAR 1.2 or as JSON Lines; gzipped if asked to
+     */
+    @GET
+    public Response exportRecordedRequests(@QueryParam("service") String serviceName,
+                                           @DefaultValue(FORMAT_HAR) @QueryParam("format") String format,
+                                           @DefaultValue("false") @QueryParam("gzip") boolean gzip, @Context UriInfo uriInfo) {
+        Collection<WebService> services = serviceName != null
+            ? Collections.singleton(configurationHolder.getWebService(serviceName))
+            : configurationHolder.getWebServices();
+
+        RecordedTrafficExport export;
+        if (FORMAT_HAR.equals(format)) {
+            export = RecordedTrafficExport.har(recordedRequestsHolder, services, uriInfo.getBaseUri().toString(), gzip);
+        } else if (FORMAT_JSON_LINES.equals(format)) {
+            export = RecordedTrafficExport.jsonLines(recordedRequestsHolder, services, gzip);
+        } else {
+            throw new BadRequestException("format must be " + FORMAT_HAR + " or " + FORMAT_JSON_LINES);
+        }
+        return Response.ok(export, export.getMediaType())
+            .header("Content-Disposition", "attachment; filename=" + export.getFileName()).build();
+    }
+
+    public void setConfigurationHolder(MockConfigurationHolder configurationHolder) {
+        this.configurationHolder = configurationHolder;
+    }
+
+    public void setRecordedRequestsHolder(RecordedRequestsHolder recordedRequestsHolder) {
+        this.recordedRequestsHolder = recordedRequestsHolder;
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.resource;
+
+import net.sf.jaceko.mock.dto.PrimedResponseDto;
+import net.sf.jaceko.mock.dto.PrimedResponsesDto;
+import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.PrimedResponse;
+import net.sf.jaceko.mock.service.MockSetupExecutor;
+import org.apache.commons.httpclient.HttpStatus;
+import org.jboss.resteasy.spi.BadRequestException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Priming of custom responses of many operations of any services in one request
+ */
+@Path("/services/responses")
+public class ResponseBatchResource {
+
+    private MockSetupExecutor mockSetupExecutor;
+
+    /**
+     * Validates all responses and primes them at once; with init, primed operations are first initialized (custom
+     * responses, invocation numbers and recorded requests cleared) in the same step
+     */
+    @POST
+    @Consumes({MediaType.TEXT_XML, MediaType.APPLICATION_XML})
+    public Response primeResponses(@DefaultValue("false") @QueryParam("init") boolean init, PrimedResponsesDto responses) {
+        if (responses == null) {
+            throw new BadRequestException("responses to prime are missing");
+        }
+        mockSetupExecutor.primeResponses(toPrimedResponses(responses), init);
+        return Response.status(HttpStatus.SC_OK).build();
+    }
+
+    /**
+     * Same as {@link #primeResponses(boolean, PrimedResponsesDto)} with responses given as JSON object having a
+     * "responses" array of objects with fields named as the XML attributes
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response primeJsonResponses(@DefaultValue("false") @QueryParam("init") boolean init, String responses) {
+        return primeResponses(init, parseJson(responses));
+    }
+
+    static PrimedResponsesDto parseJson(String json) {
+        PrimedResponsesDto responses = new PrimedResponsesDto();
+        try {
+            JSONArray array = new JSONObject(json).getJSONArray("responses");
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject object = array.getJSONObject(i);
+                PrimedResponseDto response = new PrimedResponseDto();
+                response.setService(object.optString("service", null));
+                response.setOperation(object.optString("operation", null));
+                response.setPosition(object.has("position") ? object.getInt("position") : null);
+                response.setCode(object.optInt("code"));
+                response.setDelay(object.optInt("delay"));
+                response.setLatency(object.optString("latency", null));
+                response.setContentType(object.optString("content-type", null));
+                response.setBody(object.optString("body", null));
+                response.setTemplate(object.optBoolean("template"));
+                response.setWhen(object.optString("when", null));
+                JSONObject headers = object.optJSONObject("headers");
+                if (headers != null) {
+                    for (Iterator<?> names = headers.keys(); names.hasNext(); ) {
+                        String name = (String) names.next();
+                        response.getHeaders().add(new PrimedResponseDto.HeaderDto(name, headers.getString(name)));
+                    }
+                }
+                responses.getResponses().add(response);
+            }
+        } catch (JSONException e) {
+            throw new BadRequestException("invalid responses: " + e.getMessage());
+        }
+        return responses;
+    }
+
+    static List<PrimedResponse> toPrimedResponses(PrimedResponsesDto responses) {
+        List<PrimedResponse> primedResponses = new ArrayList<PrimedResponse>(responses.getResponses().size());
+        for (PrimedResponseDto response : responses.getResponses()) {
+            if (response.getService() == null || response.getOperation() == null) {
+                throw new BadRequestException("service and operation of response are required: " + response);
+            }
+            if (response.getPosition() != null && response.getPosition() < 1) {
+                throw new BadRequestException("position of response must be at least 1: " + response);
+            }
+            if (response.getPosition() != null && response.getWhen() != null) {
+                throw new BadRequestException("response can have either position or condition: " + response);
+            }
+            Map<String, String> headers = new LinkedHashMap<String, String>();
+            for (PrimedResponseDto.HeaderDto header : response.getHeaders()) {
+                headers.put(header.getName(), header.getValue());
+            }
+            primedResponses.add(new PrimedResponse(response.getService(), response.getOperation(), response.getPosition(),
+                BasicSetupResource.buildCustomResponse(MockResponse.body(response.getBody()).code(response.getCode())
+                    .delaySec(response.getDelay()).latency(BasicSetupResource.parseLatencyProfile(response.getLatency()))
+                    .contentType(response.getContentType()).headers(headers), response.isTemplate()),
+                response.getWhen() != null ? BasicSetupResource.parseRequestPredicate(response.getWhen()) : null));
+        }
+        return primedResponses;
+    }
+
+    public void setMockSetupExecutor(MockSetupExecutor mockSetupExecutor) {
+        this.mockSetupExecutor = mockSetupExecutor;
+    }
+}
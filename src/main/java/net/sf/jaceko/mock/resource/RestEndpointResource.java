@@ -22,6 +22,7 @@ import net.sf.jaceko.mock.application.enums.HttpMethod;
 import net.sf.jaceko.mock.application.enums.ServiceType;
 import net.sf.jaceko.mock.dto.OperationDto;
 import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.service.Delayer;
 import net.sf.jaceko.mock.service.MockConfigurationHolder;
 import net.sf.jaceko.mock.service.RequestExecutor;
 import org.apache.log4j.Logger;
@@ -43,6 +44,7 @@ public class RestEndpointResource {
 
     private RequestExecutor svcLayer;
     private MockConfigurationHolder configurationHolder;
+    private Delayer delayer;
 
     @GET
     @Produces({MediaType.TEXT_XML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
@@ -51,7 +53,7 @@ public class RestEndpointResource {
     }
 
     @GET
-    @Path("/{postfix: (([^/]+?(/)?)+?)}")
+    @Path("/{postfix: .+}")
     public Response performGetRequest(@PathParam("serviceName") String serviceName, @Context HttpServletRequest request,
                                       @PathParam("postfix") String resourcePath, @Context HttpHeaders headers) {
         MockResponse mockResponse;
@@ -85,7 +87,7 @@ public class RestEndpointResource {
     }
 
     @POST
-    @Path("/{postfix: (([^/]+?(/)?)+?)}")
+    @Path("/{postfix: .+}")
     @Consumes({"text/*", "application/*", "multipart/*"})
     public Response performPostRequest(@PathParam("serviceName") String serviceName,
                                        @Context HttpServletRequest httpServletRequest, @PathParam("postfix") String resourcePath, @Context HttpHeaders headers, String request) {
@@ -104,7 +106,7 @@ public class RestEndpointResource {
     }
 
     @PUT
-    @Path("/{postfix: (([^/]+?(/)?)+?)}")
+    @Path("/{postfix: .+}")
     @Consumes({"text/*", "application/*"})
     public Response performPutRequest(@PathParam("serviceName") String serviceName, @PathParam("postfix") String resourcePath,
                                       @Context HttpHeaders headers, String request) {
@@ -120,7 +122,7 @@ public class RestEndpointResource {
     }
 
     @DELETE
-    @Path("/{postfix: (([^/]+?(/)?)+?)}")
+    @Path("/{postfix: .+}")
     public Response performDeleteRequest(@PathParam("serviceName") String serviceName, @PathParam("postfix") String resourcePath, @Context HttpHeaders headers) {
         validateResourcePath(serviceName, resourcePath);
         MockResponse mockResponse = svcLayer.performRequest(serviceName, HttpMethod.DELETE.toString(), "", null, resourcePath, headers.getRequestHeaders());
@@ -130,7 +132,7 @@ public class RestEndpointResource {
     }
 
     private Response buildWebserviceResponse(MockResponse mockResponse) {
-        return RestEndpointResourceUtil.buildWebserviceResponse(mockResponse);
+        return RestEndpointResourceUtil.serveResponse(delayer, mockResponse);
     }
 
     private void validateResourcePath(String serviceName, String resourcePath) {
@@ -159,4 +161,8 @@ public class RestEndpointResource {
     public void setMockConfigurationHolder(MockConfigurationHolder configurationHolder) {
         this.configurationHolder = configurationHolder;
     }
+
+    public void setDelayer(Delayer delayer) {
+        this.delayer = delayer;
+    }
 }
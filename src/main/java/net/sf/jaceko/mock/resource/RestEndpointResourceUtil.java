@@ -22,18 +22,68 @@ package net.sf.jaceko.mock.resource;
 
 import net.sf.jaceko.mock.model.request.MockResponse;
 import net.sf.jaceko.mock.model.webservice.WebService;
+import net.sf.jaceko.mock.service.Delayer;
+import org.jboss.resteasy.spi.AsynchronousResponse;
+import org.jboss.resteasy.spi.HttpRequest;
 import org.jboss.resteasy.spi.NotFoundException;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
 
 import javax.ws.rs.core.Response;
 import java.util.Map;
 
 final class RestEndpointResourceUtil {
 
+    // suspended request must outlive the delay, otherwise the container times it out first
+    private static final long SUSPEND_TIMEOUT_MARGIN_MILIS = 5000;
+
+    /**
+     * Returns response to be sent immediately, or suspends current request and returns null if response
+     * is delayed. Suspended request is completed by the delayer's timer, so no container thread is held
+     * during the delay.
+     */
+    static Response delayResponse(Delayer delayer, long delayMillis, final Response response) {
+        if (delayMillis <= 0) {
+            return response;
+        }
+
+        HttpRequest request = ResteasyProviderFactory.getContextData(HttpRequest.class);
+        if (request == null) {
+            // not dispatched by RESTEasy - nothing to suspend
+            delayer.delayMillis(delayMillis);
+            return response;
+        }
+
+        final AsynchronousResponse asynchronousResponse = request.createAsynchronousResponse(
+            delayMillis + SUSPEND_TIMEOUT_MARGIN_MILIS);
+        delayer.delayMillis(delayMillis, new Runnable() {
+            @Override
+            public void run() {
+                asynchronousResponse.setResponse(response);
+            }
+        });
+        return null;
+    }
+
+    /**
+     * Returns response to be sent immediately, or suspends current request and returns null if response is delayed
+     * or served with a transport fault
+     */
+    static Response serveResponse(Delayer delayer, MockResponse mockResponse) {
+        long delayMillis = mockResponse.sampleDelayMillis();
+        if (mockResponse.getFault() != null) {
+            return TransportFaultInjector.injectFault(delayer, delayMillis, mockResponse);
+        }
+        return delayResponse(delayer, delayMillis, buildWebserviceResponse(mockResponse));
+    }
+
     static Response buildWebserviceResponse(MockResponse mockResponse) {
         Object responseEntity;
 
         if( mockResponse.isBinary() ) {
             responseEntity = mockResponse.getBinaryBody();
+        } else if (mockResponse.getEncodedBody() != null) {
+            // written to the output stream as is
+            responseEntity = mockResponse.getEncodedBody();
         } else {
             responseEntity = mockResponse.getBody();
         }
@@ -47,7 +97,7 @@ final class RestEndpointResourceUtil {
     static void validateResourcePath(WebService webService, String resourcePath) {
         if (resourcePath != null && resourcePath.indexOf("/") > 0) {
 
-            if (!webService.isEnableResourcePaths()) {
+            if (!webService.acceptsResourcePaths()) {
                 throw new NotFoundException("Resource paths not enabled for " + webService.getName() + " but request contained path " + resourcePath);
             }
         }
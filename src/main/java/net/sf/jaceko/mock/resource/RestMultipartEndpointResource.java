@@ -22,6 +22,7 @@ package net.sf.jaceko.mock.resource;
 
 import net.sf.jaceko.mock.application.enums.HttpMethod;
 import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.service.Delayer;
 import net.sf.jaceko.mock.service.MockConfigurationHolder;
 import net.sf.jaceko.mock.service.RequestExecutor;
 import org.apache.log4j.Logger;
@@ -48,6 +49,7 @@ public class RestMultipartEndpointResource {
 
     private RequestExecutor svcLayer;
     private MockConfigurationHolder configurationHolder;
+    private Delayer delayer;
 
 
     @PUT
@@ -57,7 +59,7 @@ public class RestMultipartEndpointResource {
     }
 
     @PUT
-    @Path("/{postfix: (([^/]+?(/)?)+?)}")
+    @Path("/{postfix: .+}")
     @Consumes({"multipart/*"})
     public Response performPutRequest(@PathParam("serviceName") String serviceName, @Context HttpServletRequest httpServletRequest, @PathParam("postfix") String resourcePath,
                                       @Context HttpHeaders headers, MultipartInput request) {
@@ -76,7 +78,7 @@ public class RestMultipartEndpointResource {
 
 
     @POST
-    @Path("/{postfix: (([^/]+?(/)?)+?)}")
+    @Path("/{postfix: .+}")
     @Consumes({"multipart/*"})
     public Response performPostRequest(@PathParam("serviceName") String serviceName,
                                        @Context HttpServletRequest httpServletRequest, @PathParam("postfix") String resourcePath, @Context HttpHeaders headers, MultipartInput request) {
@@ -97,6 +99,10 @@ public class RestMultipartEndpointResource {
         this.configurationHolder = configurationHolder;
     }
 
+    public void setDelayer(Delayer delayer) {
+        this.delayer = delayer;
+    }
+
     private String identifyNonBinaryPart(MultipartInput request) {
         final List<InputPart> parts = request.getParts();
 
@@ -124,7 +130,7 @@ public class RestMultipartEndpointResource {
     }
 
     private Response buildWebserviceResponse(MockResponse mockResponse) {
-        return RestEndpointResourceUtil.buildWebserviceResponse(mockResponse);
+        return RestEndpointResourceUtil.serveResponse(delayer, mockResponse);
     }
 
     private void validateResourcePath(String serviceName, String resourcePath) {
@@ -23,12 +23,16 @@ import net.sf.jaceko.mock.model.webservice.WebService;
 import net.sf.jaceko.mock.service.MockConfigurationHolder;
 import org.jboss.resteasy.spi.NotFoundException;
 
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
-import java.util.Collection;
+import javax.ws.rs.core.Response;
 
 @Path("/services/REST/{serviceName}/operations/{operationId}")
 public class RestServiceMockVerificationResource extends BasicVerificationResource {
@@ -37,36 +41,34 @@ public class RestServiceMockVerificationResource extends BasicVerificationResour
 
     @GET
     @Path("/recorded-resource-ids")
-    @Produces(MediaType.TEXT_XML)
-    public String getRecordedResourceIds(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId) {
+    @Produces({MediaType.TEXT_XML, MediaType.APPLICATION_JSON})
+    public Response getRecordedResourceIds(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId,
+                                           @DefaultValue("0") @QueryParam("offset") int offset, @QueryParam("limit") Integer limit, @Context HttpHeaders httpHeaders) {
         WebService service = configurationHolder.getWebService(serviceName);
-        if (service == null || service.isEnableResourcePaths()) {
+        if (service == null || service.acceptsResourcePaths()) {
             throw new NotFoundException("recorder-resource-ids not available for " + serviceName);
         }
-        Collection<String> recordedResourceIds = recordedRequestsHolder
-            .getRecordedResourcePaths(serviceName, operationId);
         String rootElementName = "recorded-resource-ids";
         String elementName = "recorded-resource-id";
         boolean surroundElementTextWithCdata = false;
-        return buildListXml(recordedResourceIds, rootElementName, elementName,
-            surroundElementTextWithCdata);
+        return buildListResponse(serviceName, operationId, RecordedRequestField.RESOURCE_PATH, rootElementName, elementName,
+            surroundElementTextWithCdata, offset, limit, httpHeaders);
     }
 
     @GET
     @Path("/recorded-resource-paths")
-    @Produces(MediaType.TEXT_XML)
-    public String getRecordedResourcePaths(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId) {
+    @Produces({MediaType.TEXT_XML, MediaType.APPLICATION_JSON})
+    public Response getRecordedResourcePaths(@PathParam("serviceName") String serviceName, @PathParam("operationId") String operationId,
+                                             @DefaultValue("0") @QueryParam("offset") int offset, @QueryParam("limit") Integer limit, @Context HttpHeaders httpHeaders) {
         WebService service = configurationHolder.getWebService(serviceName);
-        if (service == null || !service.isEnableResourcePaths()) {
+        if (service == null || !service.acceptsResourcePaths()) {
             throw new NotFoundException("recorder-resource-paths not available for " + serviceName);
         }
-        Collection<String> recordedResourcePaths = recordedRequestsHolder
-            .getRecordedResourcePaths(serviceName, operationId);
         String rootElementName = "recorded-resource-paths";
         String elementName = "recorded-resource-path";
         boolean surroundElementTextWithCdata = false;
-        return buildListXml(recordedResourcePaths, rootElementName, elementName,
-            surroundElementTextWithCdata);
+        return buildListResponse(serviceName, operationId, RecordedRequestField.RESOURCE_PATH, rootElementName, elementName,
+            surroundElementTextWithCdata, offset, limit, httpHeaders);
     }
 
 
@@ -63,8 +63,8 @@ public class ServicesResource {
             Collection<WebserviceOperation> operations = webService.getOperations();
             for (WebserviceOperation operation : operations) {
                 OperationRefDto operationRef = new OperationRefDto();
-                operationRef.setName(operation.getOperationName());
-                operationRef.setUri(getOperationUri(serviceUri, operation.getOperationName()));
+                operationRef.setName(operation.getOperationId());
+                operationRef.setUri(getOperationUri(serviceUri, operation.getOperationId()));
                 webServiceDto.getOperationRefs().add(operationRef);
             }
 
@@ -117,7 +117,7 @@ public class ServicesResource {
 
         if (svcType == ServiceType.REST) {
 
-            if (service.isEnableResourcePaths()) {
+            if (service.acceptsResourcePaths()) {
                 ResourceRefDto recordedResourcePaths = new ResourceRefDto(operationUri, "/recorded-resource-paths", HttpMethod.GET,
                     "recorded resource paths");
                 verificationResources.add(recordedResourcePaths);
@@ -129,7 +129,7 @@ public class ServicesResource {
         }
 
         OperationDto operationDto = new OperationDto();
-        operationDto.setName(webServiceOperation.getOperationName());
+        operationDto.setName(webServiceOperation.getOperationId());
         operationDto.setSetupResources(newArrayList(initResourceRef, postResponseResourceRef, set1stResponseResourceRef,
             set2ndResponseResourceRef));
         operationDto.setVerificationResources(verificationResources);
@@ -162,7 +162,8 @@ public class ServicesResource {
         StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append(serviceUri);
         stringBuilder.append("/operations/");
-        stringBuilder.append(operationName);
+        // ids of operations declaring a path template have their variables in braces
+        stringBuilder.append(operationName.replace("{", "%7B").replace("}", "%7D"));
         return stringBuilder.toString();
     }
 
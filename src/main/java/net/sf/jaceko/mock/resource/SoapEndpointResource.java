@@ -21,6 +21,8 @@ package net.sf.jaceko.mock.resource;
 
 import net.sf.jaceko.mock.exception.ClientFaultException;
 import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.RequestContext;
+import net.sf.jaceko.mock.service.Delayer;
 import net.sf.jaceko.mock.service.MockConfigurationHolder;
 import net.sf.jaceko.mock.service.RequestExecutor;
 import net.sf.jaceko.mock.util.SOAPMessageParser;
@@ -34,8 +36,8 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.xml.namespace.QName;
 import java.io.IOException;
-import java.util.Map;
 
 @Path("/services/SOAP/{serviceName}/endpoint")
 public class SoapEndpointResource {
@@ -43,6 +45,7 @@ public class SoapEndpointResource {
 
     private RequestExecutor service;
     private MockConfigurationHolder configurationHolder;
+    private Delayer delayer;
 
 
     @POST
@@ -75,48 +78,21 @@ public class SoapEndpointResource {
     public Response performRequest(@PathParam("serviceName") String serviceName, @Context HttpServletRequest httpServletRequest,
                                    String request, @Context HttpHeaders headers) {
         LOG.debug("serviceName: " + serviceName + ", request:" + request);
-        String requestMessageName = SOAPMessageParser.extractRequestMessageName(request);
+        QName requestMessageName = SOAPMessageParser.extractRequestMessageQName(request);
+        RequestContext requestContext = new RequestContext(request, requestMessageName, httpServletRequest.getQueryString(),
+            null, headers.getRequestHeaders());
 
         String responseBody = null;
         int code = 200;
-        MockResponse response = service.performRequest(serviceName, requestMessageName,
-            request, httpServletRequest.getQueryString(), null, headers.getRequestHeaders());
+        MockResponse response = service.performRequest(serviceName, requestMessageName.getLocalPart(), requestContext);
         if (response != null) {
-            return buildWebserviceResponse(response);
+            return RestEndpointResourceUtil.serveResponse(delayer, response);
         }
         LOG.debug("serviceName: " + serviceName + ", response:" + responseBody + " ,code: " + code);
 
         return null;
     }
 
-    private Response buildWebserviceResponse(MockResponse mockResponse) {
-        Object responseEntity;
-
-        if(mockResponse.isBinary()) {
-            responseEntity = mockResponse.getBinaryBody();
-        } else {
-            responseEntity = mockResponse.getBody();
-        }
-        Response.ResponseBuilder responseBuilder = Response.status(mockResponse.getCode()).entity(responseEntity).type(mockResponse.getContentType());
-
-        addHeadersToResponse(mockResponse.getHeaders(), responseBuilder);
-
-        return responseBuilder.build();
-    }
-
-    private void addHeadersToResponse(Map<String, String> headersToReturn, Response.ResponseBuilder responseBuilder) {
-        if (headersToReturn != null) {
-
-            for (String headerKey : headersToReturn.keySet()) {
-                String headerValue = headersToReturn.get(headerKey);
-                responseBuilder.header(headerKey, headerValue);
-            }
-        }
-    }
-
-
-
-
     public void setConfigurationHolder(MockConfigurationHolder configurationHolder) {
         this.configurationHolder = configurationHolder;
     }
@@ -125,4 +101,8 @@ public class SoapEndpointResource {
         this.service = service;
     }
 
+    public void setDelayer(Delayer delayer) {
+        this.delayer = delayer;
+    }
+
 }
@@ -0,0 +1,306 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.resource;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.TransportFault;
+import net.sf.jaceko.mock.service.Delayer;
+import org.apache.log4j.Logger;
+import org.jboss.resteasy.spi.HttpRequest;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestWrapper;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves responses having a {@link TransportFault}. The container can only send well-formed responses, so the
+ * request is suspended, the fault is written through the Jetty connection of the request (as in the Jetty
+ * configuration of the README) and the connection is aborted before the request is completed. In containers
+ * not exposing the connection responses are served without their faults.
+ */
+final class TransportFaultInjector {
+    private static final Logger LOG = Logger.getLogger(TransportFaultInjector.class);
+
+    private static final Charset HEADER_CHARSET = Charset.forName("ISO-8859-1");
+    private static final String CRLF = "\r\n";
+    private static final String MALFORMED_CHUNK_SIZE = "zz";
+    private static final String LAST_CHUNK = "0" + CRLF + CRLF;
+
+    // fault not taken by the client within this time is dropped and the connection aborted
+    private static final long WRITE_TIMEOUT_MILIS = 10000;
+
+    // suspended request must outlive the fault, otherwise the container times it out and writes a response first
+    private static final long SUSPEND_TIMEOUT_MARGIN_MILIS = WRITE_TIMEOUT_MILIS + 5000;
+
+    // writes wait for slow clients, so they are kept off the delayer's timer threads
+    private static final ExecutorService WRITER = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat("mock-fault-writer-%d").setDaemon(true).build());
+
+    private TransportFaultInjector() {
+    }
+
+    /**
+     * Suspends current request and serves the fault of the response after given delay; returns null. Response
+     * is returned as is, to be sent normally, if the connection of the request can't be reached
+     */
+    static Response injectFault(final Delayer delayer, long delayMillis, final MockResponse mockResponse) {
+        HttpRequest request = ResteasyProviderFactory.getContextData(HttpRequest.class);
+        HttpServletRequest servletRequest = ResteasyProviderFactory.getContextData(HttpServletRequest.class);
+        final JettyConnection connection = JettyConnection.of(servletRequest);
+        if (request == null || connection == null) {
+            LOG.warn("Connection of the request not reachable, response served without fault " + mockResponse.getFault());
+            return RestEndpointResourceUtil.delayResponse(delayer, delayMillis,
+                RestEndpointResourceUtil.buildWebserviceResponse(mockResponse));
+        }
+
+        request.createAsynchronousResponse(delayMillis + mockResponse.getFault().getStallMillis()
+            + SUSPEND_TIMEOUT_MARGIN_MILIS);
+        final AsyncContext asyncContext = servletRequest.getAsyncContext();
+        delayer.delayMillis(delayMillis, new Runnable() {
+            @Override
+            public void run() {
+                WRITER.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        injectFault(delayer, connection, mockResponse, asyncContext);
+                    }
+                });
+            }
+        });
+        return null;
+    }
+
+    private static void injectFault(Delayer delayer, final JettyConnection connection, MockResponse mockResponse,
+                                    final AsyncContext asyncContext) {
+        TransportFault fault = mockResponse.getFault();
+        try {
+            if (fault.getType() == TransportFault.Type.RESET) {
+                connection.resetOnClose();
+            }
+            if (!connection.write(faultBytes(mockResponse), WRITE_TIMEOUT_MILIS)) {
+                LOG.debug("Client did not take fault " + fault + " within " + WRITE_TIMEOUT_MILIS + " ms");
+            } else if (fault.getType() == TransportFault.Type.STALL) {
+                delayer.delayMillis(fault.getStallMillis(), new Runnable() {
+                    @Override
+                    public void run() {
+                        WRITER.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                abort(connection, asyncContext);
+                            }
+                        });
+                    }
+                });
+                return;
+            }
+        } catch (IOException e) {
+            LOG.debug("Client closed connection before fault " + fault + " was sent", e);
+        }
+        abort(connection, asyncContext);
+    }
+
+    /**
+     * Closes the connection, then completes the suspended request; the container finds the connection closed
+     * and sends nothing more
+     */
+    private static void abort(JettyConnection connection, AsyncContext asyncContext) {
+        try {
+            connection.abort();
+        } catch (IOException e) {
+            LOG.debug("Error closing faulty connection", e);
+        }
+        try {
+            asyncContext.complete();
+        } catch (IllegalStateException e) {
+            // request already timed out
+            LOG.debug("Faulty request completed before connection was closed", e);
+        }
+    }
+
+    /**
+     * @return bytes sent to the client before the connection is closed (or held, for {@link TransportFault.Type#STALL})
+     */
+    static byte[] faultBytes(MockResponse mockResponse) {
+        byte[] body = mockResponse.encodeBody();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        switch (mockResponse.getFault().getType()) {
+            case STALL:
+                writeHead(bytes, mockResponse, "Content-Length: " + body.length);
+                break;
+            case CLOSE_AFTER:
+                writeHead(bytes, mockResponse, "Content-Length: " + body.length);
+                bytes.write(body, 0, Math.min(body.length, mockResponse.getFault().getBodyBytes()));
+                break;
+            case MALFORMED_CHUNKED:
+                writeHead(bytes, mockResponse, "Transfer-Encoding: chunked");
+                writeAscii(bytes, MALFORMED_CHUNK_SIZE + CRLF);
+                bytes.write(body, 0, body.length);
+                writeAscii(bytes, CRLF + LAST_CHUNK);
+                break;
+            default:
+                // nothing is sent before reset or close
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeHead(ByteArrayOutputStream bytes, MockResponse mockResponse, String framingHeader) {
+        Response.Status status = Response.Status.fromStatusCode(mockResponse.getCode());
+        StringBuilder head = new StringBuilder("HTTP/1.1 ").append(mockResponse.getCode());
+        head.append(' ').append(status != null ? status.getReasonPhrase() : "").append(CRLF);
+        if (mockResponse.getContentType() != null) {
+            head.append("Content-Type: ").append(mockResponse.getContentType()).append(CRLF);
+        }
+        if (mockResponse.getHeaders() != null) {
+            for (Map.Entry<String, String> header : mockResponse.getHeaders().entrySet()) {
+                if (header.getValue() != null) {
+                    head.append(header.getKey()).append(": ").append(header.getValue()).append(CRLF);
+                }
+            }
+        }
+        head.append(framingHeader).append(CRLF);
+        head.append("Connection: close").append(CRLF).append(CRLF);
+        writeAscii(bytes, head.toString());
+    }
+
+    private static void writeAscii(ByteArrayOutputStream bytes, String text) {
+        byte[] encoded = text.getBytes(HEADER_CHARSET);
+        bytes.write(encoded, 0, encoded.length);
+    }
+
+    /**
+     * Jetty connection of a request, used through reflection so the mock doesn't depend on Jetty. Bytes are
+     * written and the connection closed through its end point, which the Jetty selector keeps track of, and
+     * the response is marked as not persistent, so the connection is not reused when the request completes.
+     */
+    private static final class JettyConnection {
+        private final Object endPoint;
+        private final Object generator;
+        private final Method flush;
+        private final Method blockWritable;
+        private final Method close;
+        private final Method getTransport;
+        private final Method length;
+        private final Method setPersistent;
+        private final Constructor<?> newBuffer;
+
+        private JettyConnection(Object connection) throws Exception {
+            ClassLoader jetty = connection.getClass().getClassLoader();
+            Class<?> endPointClass = jetty.loadClass("org.eclipse.jetty.io.EndPoint");
+            Class<?> bufferClass = jetty.loadClass("org.eclipse.jetty.io.Buffer");
+            Class<?> generatorClass = jetty.loadClass("org.eclipse.jetty.http.Generator");
+            endPoint = connection.getClass().getMethod("getEndPoint").invoke(connection);
+            generator = connection.getClass().getMethod("getGenerator").invoke(connection);
+            flush = endPointClass.getMethod("flush", bufferClass);
+            blockWritable = endPointClass.getMethod("blockWritable", long.class);
+            close = endPointClass.getMethod("close");
+            getTransport = endPointClass.getMethod("getTransport");
+            length = bufferClass.getMethod("length");
+            setPersistent = generatorClass.getMethod("setPersistent", boolean.class);
+            newBuffer = jetty.loadClass("org.eclipse.jetty.io.ByteArrayBuffer").getConstructor(byte[].class);
+        }
+
+        /**
+         * @return connection of given request, null if the container does not expose it
+         */
+        static JettyConnection of(ServletRequest request) {
+            while (request instanceof ServletRequestWrapper) {
+                request = ((ServletRequestWrapper) request).getRequest();
+            }
+            if (request == null) {
+                return null;
+            }
+            try {
+                // org.eclipse.jetty.server.Request -> AbstractHttpConnection
+                return new JettyConnection(request.getClass().getMethod("getConnection").invoke(request));
+            } catch (Exception e) {
+                // not a Jetty request, or one without connection
+                return null;
+            }
+        }
+
+        /**
+         * Writes all bytes, waiting for the client to take them at most given time in total
+         *
+         * @return false if the client did not take all bytes in time
+         */
+        boolean write(byte[] bytes, long timeoutMillis) throws IOException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            Object buffer;
+            try {
+                buffer = newBuffer.newInstance((Object) bytes);
+            } catch (Exception e) {
+                throw new IOException("Unable to create Jetty buffer: " + e);
+            }
+            while ((Integer) call(length, buffer) > 0) {
+                if ((Integer) call(flush, endPoint, buffer) == 0) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0 || !(Boolean) call(blockWritable, endPoint, remaining)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Makes closing the connection reset it (TCP RST) instead of ending it normally
+         */
+        void resetOnClose() throws IOException {
+            Object transport = call(getTransport, endPoint);
+            if (transport instanceof SocketChannel) {
+                // closing with zero linger time sends RST instead of FIN
+                ((SocketChannel) transport).socket().setSoLinger(true, 0);
+            }
+        }
+
+        void abort() throws IOException {
+            call(setPersistent, generator, false);
+            call(close, endPoint);
+        }
+
+        private static Object call(Method method, Object target, Object... args) throws IOException {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Jetty call " + method.getName() + " failed: " + e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new IOException("Jetty call " + method.getName() + " not accessible: " + e);
+            }
+        }
+    }
+
+}
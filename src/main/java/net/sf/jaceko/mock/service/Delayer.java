@@ -19,21 +19,76 @@
  */
 package net.sf.jaceko.mock.service;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.log4j.Logger;
 
 import java.text.MessageFormat;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Delays completion of mock responses. Delayed work is scheduled on a small shared timer instead of
+ * sleeping on the calling (servlet worker) thread, so any number of delayed requests can be held open
+ * by a handful of threads.
+ */
 public class Delayer {
     private static final Logger LOG = Logger.getLogger(Delayer.class);
-    private static final int MILIS_IN_SEC = 1000;
 
-    public void delaySec(int sec) {
+    private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(
+        Runtime.getRuntime().availableProcessors(),
+        new ThreadFactoryBuilder().setNameFormat("mock-delayer-%d").setDaemon(true).build());
+
+    /**
+     * Runs task after given number of milliseconds on one of the timer threads. Task is run immediately on
+     * the calling thread if no delay is requested.
+     */
+    public void delayMillis(long millis, Runnable task) {
+        if (millis <= 0) {
+            task.run();
+            return;
+        }
+        LOG.debug(MessageFormat.format("Delaying request for {0,number,#} ms.", millis));
+        timer.schedule(task, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs task after given number of milliseconds on one of the timer threads, unless it is cancelled first
+     *
+     * @return scheduled task, to be passed to {@link #cancel(Future)}
+     */
+    public Future<?> schedule(long millis, Runnable task) {
+        return timer.schedule(task, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancels task scheduled by {@link #schedule(long, Runnable)} unless it already started, and takes it off the
+     * timer's queue
+     */
+    public void cancel(Future<?> scheduled) {
+        if (scheduled.cancel(false)) {
+            timer.remove((Runnable) scheduled);
+        }
+    }
+
+    /**
+     * Runs task on one of the timer threads as soon as one is free
+     */
+    public void execute(Runnable task) {
+        timer.execute(task);
+    }
+
+    /**
+     * Blocks the calling thread for given number of milliseconds; used only when a request cannot be
+     * suspended
+     */
+    public void delayMillis(long millis) {
 
-        if (sec == 0)
+        if (millis <= 0)
             return;
-        LOG.debug(MessageFormat.format("Delaying request for {0} seconds.", sec));
+        LOG.debug(MessageFormat.format("Delaying request for {0,number,#} ms.", millis));
         try {
-            Thread.sleep(sec * MILIS_IN_SEC);
+            Thread.sleep(millis);
         } catch (InterruptedException e) {
             // do nothing
         }
@@ -0,0 +1,237 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.model.request.MockRequest;
+import net.sf.jaceko.mock.model.request.RecordedRequestsQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Store indexing the requests recorded into another store, so that queries only look at requests having the
+ * queried header values, query parameters or resource path prefix. Requests are indexed by the queries themselves,
+ * recording only adds them to the other store.
+ */
+class IndexedRecordedRequestsStore implements RecordedRequestsStore {
+    /**
+     * returned by {@link #add(MockRequest)} once the store is being replaced; the request belongs to the replacement
+     */
+    static final long SEALED = -2;
+
+    private final RecordedRequestsStore store;
+    private final RecordedRequestsIndex index = new RecordedRequestsIndex();
+    private final RecordingCounters counters;
+
+    // requests being added; sealing waits until those which missed the seal are in the store
+    private final AtomicInteger writers = new AtomicInteger();
+    private volatile boolean sealed;
+    private final CountDownLatch replaced = new CountDownLatch(1);
+
+    /**
+     * @param store store to index; requests it already holds are indexed too, by the first query
+     */
+    IndexedRecordedRequestsStore(RecordedRequestsStore store) {
+        this(store, new RecordingCounters());
+    }
+
+    /**
+     * @param counters counters of requests received by the operation, carried over from the store this one replaces
+     */
+    IndexedRecordedRequestsStore(RecordedRequestsStore store, RecordingCounters counters) {
+        this.store = store;
+        this.counters = counters;
+    }
+
+    RecordedRequestsStore getStore() {
+        return store;
+    }
+
+    RecordingCounters getCounters() {
+        return counters;
+    }
+
+    /**
+     * @return sequence number of the request, -1 if it was dropped, {@link #SEALED} if it was not added because
+     * the store is being replaced
+     */
+    @Override
+    public long add(MockRequest request) {
+        writers.incrementAndGet();
+        try {
+            return sealed ? SEALED : store.add(request);
+        } finally {
+            writers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stops adding requests to the store and waits for adds in progress, so that the store holds every request
+     * added to it until it is replaced. Adds from now on return {@link #SEALED}
+     */
+    void seal() {
+        sealed = true;
+        while (writers.get() > 0) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Releases adds waiting in {@link #awaitReplacement()}; called once the replacement is in place
+     */
+    void replaced() {
+        replaced.countDown();
+    }
+
+    void awaitReplacement() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                replaced.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return retained requests matching the query, oldest first
+     */
+    List<MockRequest> query(RecordedRequestsQuery query) {
+        long[] candidates;
+        synchronized (index) {
+            index.update(store);
+            candidates = getCandidates(query);
+        }
+        List<MockRequest> matching = new ArrayList<MockRequest>();
+        if (candidates == null) {
+            for (MockRequest request : store.getRequests()) {
+                if (query.matches(request)) {
+                    matching.add(request);
+                }
+            }
+            return matching;
+        }
+        for (long sequence : candidates) {
+            MockRequest request = store.get(sequence);
+            if (request != null && query.matches(request)) {
+                matching.add(request);
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * @return smallest set of sequence numbers known to meet one indexed criterion, null if the query has none
+     * or none of its criteria is indexed
+     */
+    private long[] getCandidates(RecordedRequestsQuery query) {
+        long firstSequence = store.getFirstSequence();
+        long[] candidates = null;
+        for (Map.Entry<String, List<String>> header : query.getHeaders().entrySet()) {
+            for (String value : header.getValue()) {
+                candidates = smaller(candidates, index.getHeaderPostings(header.getKey(), value, firstSequence));
+            }
+        }
+        for (Map.Entry<String, List<String>> param : query.getQueryParams().entrySet()) {
+            for (String value : param.getValue()) {
+                candidates = smaller(candidates, index.getQueryParamPostings(param.getKey(), value, firstSequence));
+            }
+        }
+        if (query.getResourcePathPrefix() != null) {
+            candidates = smaller(candidates, index.getResourcePathPostings(query.getResourcePathPrefix(), firstSequence));
+        }
+        return candidates;
+    }
+
+    private static long[] smaller(long[] candidates, long[] postings) {
+        if (postings == null) {
+            return candidates;
+        }
+        return candidates == null || postings.length < candidates.length ? postings : candidates;
+    }
+
+    @Override
+    public List<MockRequest> getRequests() {
+        return store.getRequests();
+    }
+
+    @Override
+    public MockRequest get(long sequence) {
+        return store.get(sequence);
+    }
+
+    @Override
+    public long getFirstSequence() {
+        return store.getFirstSequence();
+    }
+
+    @Override
+    public long getNextSequence() {
+        return store.getNextSequence();
+    }
+
+    @Override
+    public IndexedRecordedRequestsStore cleared() {
+        return new IndexedRecordedRequestsStore(store.cleared());
+    }
+
+    @Override
+    public int getCapacity() {
+        return store.getCapacity();
+    }
+
+    @Override
+    public long getMaxBytes() {
+        return store.getMaxBytes();
+    }
+
+    @Override
+    public int getRetainedCount() {
+        return store.getRetainedCount();
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        return store.getRetainedBytes();
+    }
+
+    @Override
+    public long getRecordedCount() {
+        return store.getRecordedCount();
+    }
+
+    @Override
+    public long getEvictedCount() {
+        return store.getEvictedCount();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return store.getDroppedCount();
+    }
+}
@@ -24,27 +24,34 @@ import net.sf.jaceko.mock.model.webservice.WebserviceOperation;
 import org.jboss.resteasy.spi.NotFoundException;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 
 public class MockConfigurationHolder {
 
-    private Map<String, WebService> servicesMap = new HashMap<String, WebService>();
+    /**
+     * replaced as a whole on configuration load, so lookups never lock and never see a partially built table
+     */
+    private volatile RoutingTable routingTable = RoutingTable.EMPTY;
+
+    private String recordingJournalDirectory;
+    private int recordingJournalSegmentBytes = RecordingJournal.DEFAULT_SEGMENT_BYTES;
+    private int recordingJournalMaxSegments = RecordingJournal.DEFAULT_MAX_SEGMENTS;
+    private boolean recordingPipelineEnabled;
+    private int recordingPipelineRingSize = RecordingPipeline.DEFAULT_RING_SIZE;
 
     public void setWebServices(Collection<WebService> services) {
-        servicesMap = new HashMap<String, WebService>();
-        for (WebService soapService : services) {
-            servicesMap.put(soapService.getName(), soapService);
-        }
+        routingTable = new RoutingTable(services);
     }
 
     public Collection<WebService> getWebServices() {
-        return servicesMap.values();
+        return routingTable.getWebServices();
     }
 
     public WebserviceOperation getWebServiceOperation(String serviceName, String operationId) {
-        WebService service = getWebService(serviceName);
-        WebserviceOperation operation = service.getOperation(operationId);
+        RoutingTable routes = routingTable;
+        if (routes.getWebService(serviceName) == null) {
+            throw new NotFoundException("Undefined webservice:" + serviceName);
+        }
+        WebserviceOperation operation = routes.getOperation(serviceName, operationId);
 
         if (operation == null) {
             throw new NotFoundException("Undefined webservice operation: operationId:" + operationId + " of service: "
@@ -54,8 +61,25 @@ public class MockConfigurationHolder {
 
     }
 
+    /**
+     * @param httpMethod HTTP method of a REST request
+     * @return operation declaring a path template matched by the resource path, otherwise the operation of the method
+     */
+    public WebserviceOperation getRestOperation(String serviceName, String httpMethod, String resourcePath) {
+        RoutingTable routes = routingTable;
+        if (routes.getWebService(serviceName) == null) {
+            throw new NotFoundException("Undefined webservice:" + serviceName);
+        }
+        WebserviceOperation operation = routes.routeOperation(serviceName, httpMethod, resourcePath);
+        if (operation == null) {
+            throw new NotFoundException("Undefined webservice operation: operationId:" + httpMethod + " of service: "
+                + serviceName);
+        }
+        return operation;
+    }
+
     public WebService getWebService(String serviceName) {
-        WebService service = servicesMap.get(serviceName);
+        WebService service = routingTable.getWebService(serviceName);
         if (service == null) {
             throw new NotFoundException("Undefined webservice:" + serviceName);
         }
@@ -63,4 +87,50 @@ public class MockConfigurationHolder {
 
     }
 
+    /**
+     * @return directory of the recording journal, null if requests are recorded in memory only
+     */
+    public String getRecordingJournalDirectory() {
+        return recordingJournalDirectory;
+    }
+
+    public void setRecordingJournalDirectory(String recordingJournalDirectory) {
+        this.recordingJournalDirectory = recordingJournalDirectory;
+    }
+
+    public int getRecordingJournalSegmentBytes() {
+        return recordingJournalSegmentBytes;
+    }
+
+    public void setRecordingJournalSegmentBytes(int recordingJournalSegmentBytes) {
+        this.recordingJournalSegmentBytes = recordingJournalSegmentBytes;
+    }
+
+    public int getRecordingJournalMaxSegments() {
+        return recordingJournalMaxSegments;
+    }
+
+    public void setRecordingJournalMaxSegments(int recordingJournalMaxSegments) {
+        this.recordingJournalMaxSegments = recordingJournalMaxSegments;
+    }
+
+    /**
+     * @return true if requests are recorded asynchronously through a {@link RecordingPipeline}
+     */
+    public boolean isRecordingPipelineEnabled() {
+        return recordingPipelineEnabled;
+    }
+
+    public void setRecordingPipelineEnabled(boolean recordingPipelineEnabled) {
+        this.recordingPipelineEnabled = recordingPipelineEnabled;
+    }
+
+    public int getRecordingPipelineRingSize() {
+        return recordingPipelineRingSize;
+    }
+
+    public void setRecordingPipelineRingSize(int recordingPipelineRingSize) {
+        this.recordingPipelineRingSize = recordingPipelineRingSize;
+    }
+
 }
@@ -19,33 +19,121 @@
  */
 package net.sf.jaceko.mock.service;
 
+import net.sf.jaceko.mock.model.request.LatencyProfile;
 import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.PrimedResponse;
+import net.sf.jaceko.mock.model.request.RecordingMode;
+import net.sf.jaceko.mock.model.request.RequestPredicate;
+import net.sf.jaceko.mock.model.request.ResponseMix;
+import net.sf.jaceko.mock.model.request.TransportFault;
+import net.sf.jaceko.mock.model.webservice.ResponseBatch;
 import net.sf.jaceko.mock.model.webservice.WebserviceOperation;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class MockSetupExecutor {
     private MockConfigurationHolder configurationHolder;
     private RecordedRequestsHolder recordedRequestsHolder;
 
 
-    public void setCustomResponse(String serviceName, String operationId, int requestInOrder, MockResponse response) {
+    public synchronized void setCustomResponse(String serviceName, String operationId, int requestInOrder, MockResponse response) {
         WebserviceOperation serviceOperation = configurationHolder.getWebServiceOperation(serviceName, operationId);
         serviceOperation.setCustomResponse(response, requestInOrder);
         serviceOperation.resetInvocationNumber();
 
     }
 
-    public void addCustomResponse(String serviceName, String operationId, MockResponse response) {
+    public synchronized void addCustomResponse(String serviceName, String operationId, MockResponse response) {
         WebserviceOperation serviceOperation = configurationHolder.getWebServiceOperation(serviceName, operationId);
         serviceOperation.addCustomResponse(response);
 
     }
 
-    public void initMock(String serviceName, String operationId) {
+    public synchronized void addCustomResponseRule(String serviceName, String operationId, RequestPredicate when, MockResponse response) {
+        WebserviceOperation serviceOperation = configurationHolder.getWebServiceOperation(serviceName, operationId);
+        serviceOperation.addCustomResponseRule(when, response);
+    }
+
+    /**
+     * @param response response to add to the mix, null for a share of the default response
+     * @param selection selection of the mix from now on, null to keep the current one
+     */
+    public synchronized void addCustomMixResponse(String serviceName, String operationId, MockResponse response, int weight,
+                                                  ResponseMix.Selection selection) {
+        WebserviceOperation serviceOperation = configurationHolder.getWebServiceOperation(serviceName, operationId);
+        serviceOperation.addCustomMixResponse(response, weight, selection);
+    }
+
+    /**
+     * Adds share of the default response served with given fault to the mix
+     *
+     * @param selection selection of the mix from now on, null to keep the current one
+     */
+    public synchronized void addCustomMixFault(String serviceName, String operationId, TransportFault fault, int weight,
+                                               ResponseMix.Selection selection) {
+        WebserviceOperation serviceOperation = configurationHolder.getWebServiceOperation(serviceName, operationId);
+        serviceOperation.addCustomMixResponse(serviceOperation.getDefaultResponse().withFault(fault), weight, selection);
+    }
+
+    public void setLatencyProfile(String serviceName, String operationId, LatencyProfile latencyProfile) {
+        WebserviceOperation serviceOperation = configurationHolder.getWebServiceOperation(serviceName, operationId);
+        serviceOperation.primeLatencyProfile(latencyProfile);
+    }
+
+    public void setRecordingRetention(String serviceName, String operationId, Integer capacity, Long maxBytes) {
+        recordedRequestsHolder.setRetention(serviceName, operationId, capacity, maxBytes);
+    }
+
+    public void setRecordingMode(String serviceName, String operationId, RecordingMode recordingMode) {
+        WebserviceOperation serviceOperation = configurationHolder.getWebServiceOperation(serviceName, operationId);
+        serviceOperation.primeRecordingMode(recordingMode);
+    }
+
+    public synchronized void initMock(String serviceName, String operationId) {
         recordedRequestsHolder.clearRecordedRequests(serviceName, operationId);
         WebserviceOperation serviceOperation = configurationHolder.getWebServiceOperation(serviceName, operationId);
         serviceOperation.init();
     }
 
+    /**
+     * Primes all given responses at once: requests get either the responses in effect before or all of the new
+     * ones. With init, operations primed are initialized as by {@link #initMock(String, String)} in the same step,
+     * their recordings cleared right as the new responses take effect. Nothing is primed if any of the operations
+     * is undefined
+     */
+    public synchronized void primeResponses(List<PrimedResponse> responses, boolean init) {
+        ResponseBatch batch = new ResponseBatch(init);
+        final Map<WebserviceOperation, PrimedResponse> primedOperations = new LinkedHashMap<WebserviceOperation, PrimedResponse>();
+        for (PrimedResponse primed : responses) {
+            WebserviceOperation serviceOperation = configurationHolder.getWebServiceOperation(primed.getServiceName(),
+                primed.getOperationId());
+            if (primed.getWhen() != null) {
+                batch.addResponseRule(serviceOperation, primed.getWhen(), primed.getResponse());
+            } else if (primed.getRequestInOrder() != null) {
+                batch.setResponse(serviceOperation, primed.getRequestInOrder(), primed.getResponse());
+            } else {
+                batch.addResponse(serviceOperation, primed.getResponse());
+            }
+            if (!primedOperations.containsKey(serviceOperation)) {
+                primedOperations.put(serviceOperation, primed);
+            }
+        }
+        if (!init) {
+            batch.install();
+            return;
+        }
+        batch.install(new Runnable() {
+            @Override
+            public void run() {
+                for (PrimedResponse primed : primedOperations.values()) {
+                    recordedRequestsHolder.clearRecordedRequests(primed.getServiceName(), primed.getOperationId());
+                }
+            }
+        });
+    }
+
     public void setMockserviceConfiguration(MockConfigurationHolder configurationHolder) {
         this.configurationHolder = configurationHolder;
     }
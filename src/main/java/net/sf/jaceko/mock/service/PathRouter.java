@@ -0,0 +1,180 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.model.request.PathTemplate;
+import net.sf.jaceko.mock.model.webservice.WebserviceOperation;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Path templates of REST operations of a service compiled into a segment trie per HTTP method. A resource path
+ * is routed by walking its segments, so lookup cost depends on path depth, not on the number of templates.
+ * Literal segments take precedence over variables. Built once per configuration load and not modified afterwards.
+ * <p/>
+ * Templates are added to a trie whose literal and variable branches may both match a path; once all are added the
+ * trie is compiled into one where every node stands for all template prefixes the path walked so far matches, so
+ * routing never has to go back and try another branch. The router only routes after that.
+ */
+final class PathRouter {
+
+    private Map<String, Node> roots = new HashMap<String, Node>();
+    private final Map<String, State> compiledRoots = new HashMap<String, State>();
+
+    /**
+     * @return false if another operation already declared the same template for the method
+     * @throws IllegalStateException if the router is already compiled
+     */
+    boolean add(String httpMethod, PathTemplate template, WebserviceOperation operation) {
+        if (roots == null) {
+            throw new IllegalStateException("Path router already compiled");
+        }
+        Node root = roots.get(httpMethod);
+        if (root == null) {
+            root = new Node();
+            roots.put(httpMethod, root);
+        }
+        Node node = root;
+        StringBuilder shape = new StringBuilder(template.getDepth());
+        for (int i = 0; i < template.getDepth(); i++) {
+            node = template.isVariable(i) ? node.variableChild() : node.literalChild(template.getSegment(i));
+            shape.append(template.isVariable(i) ? '1' : '0');
+        }
+        if (node.operation != null) {
+            return false;
+        }
+        node.operation = operation;
+        node.shape = shape.toString();
+        return true;
+    }
+
+    /**
+     * Compiles templates added so far; no more can be added afterwards
+     */
+    void compile() {
+        if (roots == null) {
+            return;
+        }
+        for (Map.Entry<String, Node> root : roots.entrySet()) {
+            compiledRoots.put(root.getKey(), compile(Collections.singleton(root.getValue()), new HashMap<Set<Node>, State>()));
+        }
+        roots = null;
+    }
+
+    boolean isEmpty() {
+        return compiledRoots.isEmpty() && (roots == null || roots.isEmpty());
+    }
+
+    /**
+     * @return operation whose template matches the path, null if there is none or the router is not compiled yet
+     */
+    WebserviceOperation route(String httpMethod, String resourcePath) {
+        State state = compiledRoots.get(httpMethod);
+        if (state == null || resourcePath == null) {
+            return null;
+        }
+        for (String segment : PathTemplate.split(resourcePath)) {
+            State next = state.literals.get(segment);
+            state = next != null ? next : state.variable;
+            if (state == null) {
+                return null;
+            }
+        }
+        return state.operation;
+    }
+
+    /**
+     * @param nodes trie nodes reached by the same path
+     * @return state routing the rest of the path as all of the nodes together would
+     */
+    private static State compile(Set<Node> nodes, Map<Set<Node>, State> compiled) {
+        State state = compiled.get(nodes);
+        if (state != null) {
+            return state;
+        }
+        state = new State();
+        compiled.put(nodes, state);
+
+        Set<Node> variables = new HashSet<Node>();
+        Set<String> literals = new HashSet<String>();
+        Node preferred = null;
+        for (Node node : nodes) {
+            if (node.variable != null) {
+                variables.add(node.variable);
+            }
+            literals.addAll(node.literals.keySet());
+            // of templates matching the same path, the one having a literal where the other has a variable wins
+            if (node.operation != null && (preferred == null || node.shape.compareTo(preferred.shape) < 0)) {
+                preferred = node;
+            }
+        }
+        state.operation = preferred != null ? preferred.operation : null;
+        for (String literal : literals) {
+            Set<Node> children = new HashSet<Node>(variables);
+            for (Node node : nodes) {
+                Node child = node.literals.get(literal);
+                if (child != null) {
+                    children.add(child);
+                }
+            }
+            state.literals.put(literal, compile(children, compiled));
+        }
+        state.variable = variables.isEmpty() ? null : compile(variables, compiled);
+        return state;
+    }
+
+    private static final class Node {
+        private final Map<String, Node> literals = new HashMap<String, Node>();
+        private Node variable;
+        private WebserviceOperation operation;
+        // template of the operation, one character per segment: 0 for a literal, 1 for a variable
+        private String shape;
+
+        Node literalChild(String segment) {
+            Node child = literals.get(segment);
+            if (child == null) {
+                child = new Node();
+                literals.put(segment, child);
+            }
+            return child;
+        }
+
+        Node variableChild() {
+            if (variable == null) {
+                variable = new Node();
+            }
+            return variable;
+        }
+    }
+
+    /**
+     * Node of the compiled trie
+     */
+    private static final class State {
+        private final Map<String, State> literals = new HashMap<String, State>();
+        private State variable;
+        private WebserviceOperation operation;
+    }
+
+}
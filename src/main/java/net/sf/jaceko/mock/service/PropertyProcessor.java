@@ -22,6 +22,13 @@ package net.sf.jaceko.mock.service;
 import net.sf.jaceko.mock.application.enums.HttpMethod;
 import net.sf.jaceko.mock.application.enums.ServiceType;
 import net.sf.jaceko.mock.exception.ServiceNotConfiguredException;
+import net.sf.jaceko.mock.model.request.LatencyProfile;
+import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.PathTemplate;
+import net.sf.jaceko.mock.model.request.RecordingMode;
+import net.sf.jaceko.mock.model.request.RequestPredicate;
+import net.sf.jaceko.mock.model.request.ResponseMix;
+import net.sf.jaceko.mock.model.request.TransportFault;
 import net.sf.jaceko.mock.model.webservice.WebService;
 import net.sf.jaceko.mock.model.webservice.WebserviceOperation;
 import net.sf.jaceko.mock.util.FileReader;
@@ -47,10 +54,27 @@ import java.util.regex.Pattern;
  * SERVICE[0].OPERATION[0].DEFAULT_RESPONSE=reserve_response.xml
  * SERVICE[0].OPERATION[1].INPUT_MESSAGE=confirmRequest
  * SERVICE[0].OPERATION[1].DEFAULT_RESPONSE=confirm_response.xml
+ * SERVICE[0].OPERATION[1].RULE[0].WHEN=xpath://seat=A1
+ * SERVICE[0].OPERATION[1].RULE[0].RESPONSE=seat_taken_response.xml
+ * SERVICE[0].OPERATION[1].RULE[0].RESPONSE_CODE=409
+ * SERVICE[0].OPERATION[1].RESPONSE_MIX=weighted
+ * SERVICE[0].OPERATION[1].MIX[0].WEIGHT=95
+ * SERVICE[0].OPERATION[1].MIX[1].WEIGHT=5
+ * SERVICE[0].OPERATION[1].MIX[1].RESPONSE_CODE=503
+ * SERVICE[0].OPERATION[1].MIX[2].WEIGHT=1
+ * SERVICE[0].OPERATION[1].MIX[2].FAULT=reset
  *
  * SERVICE[1].NAME=mptu
  * SERVICE[1].WSDL=mptu.wsdl
  *
+ * SERVICE[2].NAME=customers
+ * SERVICE[2].TYPE=REST
+ * SERVICE[2].OPERATION[0].HTTP_METHOD=GET
+ * SERVICE[2].OPERATION[0].PATH=/customers/{id}/orders/{orderId}
+ * SERVICE[2].OPERATION[0].DEFAULT_RESPONSE=order_response.json
+ *
+ * RECORDING_JOURNAL.DIRECTORY=/var/lib/mock/journal
+ * RECORDING_PIPELINE.ENABLED=true
  * </pre>
  */
 public class PropertyProcessor {
@@ -64,6 +88,8 @@ public class PropertyProcessor {
 
     private static final String DEFAULT_RESPONSE_CODE = "DEFAULT_RESPONSE_CODE";
 
+    private static final String LATENCY_PROFILE = "LATENCY_PROFILE";
+
     private static final String DEFAULT_RESPONSE_CONTENT_TYPE = "DEFAULT_RESPONSE_CONTENT_TYPE";
 
     private static final String DEFAULT_RESPONSE_HEADERS = "DEFAULT_RESPONSE_HEADERS";
@@ -82,8 +108,48 @@ public class PropertyProcessor {
     
     private static final String NAMESPACE = "NAMESPACE";
 
+    private static final String TEMPLATE = "TEMPLATE";
+
+    private static final String PATH = "PATH";
+
+    private static final String RECORDING_CAPACITY = "RECORDING_CAPACITY";
+
+    private static final String RECORDING_MAX_BYTES = "RECORDING_MAX_BYTES";
+
+    private static final String RECORDING_MODE = "RECORDING_MODE";
+
+    private static final String RECORDING_JOURNAL = "RECORDING_JOURNAL";
+
+    private static final String JOURNAL_DIRECTORY = "DIRECTORY";
+
+    private static final String JOURNAL_SEGMENT_SIZE = "SEGMENT_SIZE";
+
+    private static final String JOURNAL_MAX_SEGMENTS = "MAX_SEGMENTS";
+
+    private static final String RECORDING_PIPELINE = "RECORDING_PIPELINE";
+
+    private static final String PIPELINE_ENABLED = "ENABLED";
+
+    private static final String PIPELINE_RING_SIZE = "RING_SIZE";
+
+    private static final String RULE_WHEN = "WHEN";
+
+    private static final String RULE_RESPONSE = "RESPONSE";
+
+    private static final String RULE_RESPONSE_CODE = "RESPONSE_CODE";
+
+    private static final String RULE_RESPONSE_CONTENT_TYPE = "RESPONSE_CONTENT_TYPE";
+
+    private static final String RESPONSE_MIX = "RESPONSE_MIX";
+
+    private static final String MIX_WEIGHT = "WEIGHT";
+
+    private static final String RESPONSE_FAULT = "FAULT";
+
     private static final Pattern SERVICE_PATTERN = Pattern.compile("^SERVICE\\[([0-9]+)\\]$");
     private static final Pattern OPERATION_PATTERN = Pattern.compile("^OPERATION\\[([0-9]+)\\]$");
+    private static final Pattern RULE_PATTERN = Pattern.compile("^RULE\\[([0-9]+)\\]$");
+    private static final Pattern MIX_PATTERN = Pattern.compile("^MIX\\[([0-9]+)\\]$");
 
     private final WsdlProcessor wsdlProcessor = new WsdlProcessor();
 
@@ -99,6 +165,11 @@ public class PropertyProcessor {
         properties.load(reader);
         final Set<Object> keySet = properties.keySet();
         final Map<Integer, WebService> services = new HashMap<Integer, WebService>();
+        final MockConfigurationHolder configuration = new MockConfigurationHolder();
+        final Map<WebserviceOperation, SortedMap<Integer, CustomResponseProperties>> rules =
+            new HashMap<WebserviceOperation, SortedMap<Integer, CustomResponseProperties>>();
+        final Map<WebserviceOperation, SortedMap<Integer, CustomResponseProperties>> mixes =
+            new HashMap<WebserviceOperation, SortedMap<Integer, CustomResponseProperties>>();
 
         for (final Iterator<Object> iterator = keySet.iterator(); iterator.hasNext(); ) {
             final String propertyKey = (String) iterator.next();
@@ -117,10 +188,24 @@ public class PropertyProcessor {
                         // operation part
                         final WebserviceOperation operation = getOperationFromService(service, operationIndex);
                         final String operationProperty = propertyKeyParts[2];
-                        setOperationProperties(operation, operationProperty, propertyValue);
+                        final int ruleIndex = getRuleIndex(operationProperty);
+                        final int mixIndex = getMixIndex(operationProperty);
+                        if (ruleIndex >= 0 && propertyKeyParts.length >= 4) {
+                            setCustomResponseProperties(getCustomResponse(rules, operation, ruleIndex), propertyKeyParts[3],
+                                propertyValue);
+                        } else if (mixIndex >= 0 && propertyKeyParts.length >= 4) {
+                            setCustomResponseProperties(getCustomResponse(mixes, operation, mixIndex), propertyKeyParts[3],
+                                propertyValue);
+                        } else {
+                            setOperationProperties(operation, operationProperty, propertyValue);
+                        }
                     } else {
                         setServiceProperties(service, serviceVariable, propertyValue);
                     }
+                } else if (propertyKeyParts[0].equals(RECORDING_JOURNAL)) {
+                    setRecordingJournalProperties(configuration, propertyKeyParts[1], propertyValue);
+                } else if (propertyKeyParts[0].equals(RECORDING_PIPELINE)) {
+                    setRecordingPipelineProperties(configuration, propertyKeyParts[1], propertyValue);
                 }
 
             }
@@ -128,12 +213,20 @@ public class PropertyProcessor {
 
         // This be here to ensure that if operation has binary flag, it is read at this point.
         for(WebService service : services.values() ) {
+            boolean pathTemplatesDeclared = false;
             for(WebserviceOperation operation : service.getOperations()) {
+                pathTemplatesDeclared |= operation.getPathTemplate() != null;
                 setDefaultResponseText(operation);
+                if (rules.containsKey(operation)) {
+                    addResponseRules(operation, rules.get(operation).values());
+                }
+                if (mixes.containsKey(operation)) {
+                    addMixResponses(operation, mixes.get(operation).values());
+                }
             }
+            service.setPathTemplatesDeclared(pathTemplatesDeclared);
         }
 
-        final MockConfigurationHolder configuration = new MockConfigurationHolder();
         configuration.setWebServices(services.values());
 
         return configuration;
@@ -158,9 +251,51 @@ public class PropertyProcessor {
             service.setIgnoreXmlDeclaration(Boolean.valueOf(propertyValue));
         } else if (serviceProperty.equals(ENABLE_RESOURCE_PATHS)) {
             service.setEnableResourcePaths(Boolean.valueOf(propertyValue));
+        } else if (serviceProperty.equals(RECORDING_CAPACITY)) {
+            service.setRecordingCapacity(parseRecordingCapacity(propertyValue));
+        } else if (serviceProperty.equals(RECORDING_MAX_BYTES)) {
+            service.setRecordingMaxBytes(parseRecordingMaxBytes(propertyValue));
+        } else if (serviceProperty.equals(RECORDING_MODE)) {
+            service.setRecordingMode(parseRecordingMode(propertyValue));
+        }
+    }
+
+    private void setRecordingJournalProperties(final MockConfigurationHolder configuration, final String journalProperty,
+                                               final String propertyValue) {
+        if (journalProperty.equals(JOURNAL_DIRECTORY)) {
+            configuration.setRecordingJournalDirectory(propertyValue);
+        } else if (journalProperty.equals(JOURNAL_SEGMENT_SIZE)) {
+            configuration.setRecordingJournalSegmentBytes(parsePositiveInt(propertyValue, "Illegal journal segment size: "));
+        } else if (journalProperty.equals(JOURNAL_MAX_SEGMENTS)) {
+            configuration.setRecordingJournalMaxSegments(parsePositiveInt(propertyValue, "Illegal journal segment count: "));
+        } else {
+            LOG.warn("Unidentified recording journal property: " + journalProperty);
+        }
+    }
+
+    private void setRecordingPipelineProperties(final MockConfigurationHolder configuration, final String pipelineProperty,
+                                                final String propertyValue) {
+        if (pipelineProperty.equals(PIPELINE_ENABLED)) {
+            configuration.setRecordingPipelineEnabled(Boolean.valueOf(propertyValue));
+        } else if (pipelineProperty.equals(PIPELINE_RING_SIZE)) {
+            configuration.setRecordingPipelineRingSize(parsePositiveInt(propertyValue, "Illegal recording pipeline ring size: "));
+        } else {
+            LOG.warn("Unidentified recording pipeline property: " + pipelineProperty);
         }
     }
 
+    private int parsePositiveInt(final String propertyValue, final String errorMessage) {
+        try {
+            final int value = Integer.parseInt(propertyValue);
+            if (value > 0) {
+                return value;
+            }
+        } catch (final NumberFormatException e) {
+            // reported below
+        }
+        throw new ServiceNotConfiguredException(errorMessage + propertyValue);
+    }
+
     private WebService getService(final Map<Integer, WebService> services, final int serviceIndex) {
         WebService service = services.get(serviceIndex);
         if (service == null) {
@@ -176,6 +311,12 @@ public class PropertyProcessor {
             operation.setDefaultResponseFile(propertyValue);
         } else if (operationProperty.equals(DEFAULT_RESPONSE_CODE)) {
             operation.setDefaultResponseCode(Integer.valueOf(propertyValue));
+        } else if (operationProperty.equals(LATENCY_PROFILE)) {
+            try {
+                operation.setLatencyProfile(LatencyProfile.parse(propertyValue));
+            } catch (IllegalArgumentException e) {
+                throw new ServiceNotConfiguredException(e.getMessage());
+            }
         } else if (operationProperty.equals(DEFAULT_RESPONSE_CONTENT_TYPE)) {
             try {
                 operation.setDefaultResponseContentType(propertyValue);
@@ -184,7 +325,11 @@ public class PropertyProcessor {
             }
 
         } else if(operationProperty.equals(DEFAULT_RESPONSE_HEADERS)) {
-            operation.setDefaultResponseHeaders(propertyValue);
+            try {
+                operation.setDefaultResponseHeaders(propertyValue);
+            } catch (IllegalArgumentException e) {
+                throw invalidDefaultResponseTemplate(operation, e);
+            }
         } else if (operationProperty.equals(INPUT_MESSAGE)) {
             operation.setOperationName(propertyValue);
         } else if (operationProperty.equals(HTTP_METHOD)) {
@@ -198,22 +343,179 @@ public class PropertyProcessor {
             operation.setBinary(Boolean.valueOf(propertyValue));
         } else if (operationProperty.equals(NAMESPACE)) {
             operation.setNameSpaces(propertyValue);
+        } else if (operationProperty.equals(TEMPLATE)) {
+            try {
+                operation.setTemplate(Boolean.valueOf(propertyValue));
+            } catch (IllegalArgumentException e) {
+                throw invalidDefaultResponseTemplate(operation, e);
+            }
+        } else if (operationProperty.equals(PATH)) {
+            try {
+                operation.setPathTemplate(PathTemplate.parse(propertyValue));
+            } catch (IllegalArgumentException e) {
+                throw new ServiceNotConfiguredException(e.getMessage());
+            }
+        } else if (operationProperty.equals(RESPONSE_MIX)) {
+            try {
+                operation.setMixSelection(ResponseMix.Selection.parse(propertyValue));
+            } catch (IllegalArgumentException e) {
+                throw new ServiceNotConfiguredException(e.getMessage());
+            }
+        } else if (operationProperty.equals(RECORDING_CAPACITY)) {
+            operation.setRecordingCapacity(parseRecordingCapacity(propertyValue));
+        } else if (operationProperty.equals(RECORDING_MAX_BYTES)) {
+            operation.setRecordingMaxBytes(parseRecordingMaxBytes(propertyValue));
+        } else if (operationProperty.equals(RECORDING_MODE)) {
+            operation.setRecordingMode(parseRecordingMode(propertyValue));
         } else {
             LOG.warn("Unidentified operation property: " + operationProperty);
         }
     }
 
+    private Integer parseRecordingCapacity(final String propertyValue) {
+        try {
+            final int capacity = Integer.parseInt(propertyValue);
+            if (capacity >= 0) {
+                return capacity;
+            }
+        } catch (final NumberFormatException e) {
+            // reported below
+        }
+        throw new ServiceNotConfiguredException("Illegal recording capacity: " + propertyValue);
+    }
+
+    private Long parseRecordingMaxBytes(final String propertyValue) {
+        try {
+            final long maxBytes = Long.parseLong(propertyValue);
+            if (maxBytes >= 0) {
+                return maxBytes;
+            }
+        } catch (final NumberFormatException e) {
+            // reported below
+        }
+        throw new ServiceNotConfiguredException("Illegal recording byte limit: " + propertyValue);
+    }
+
+    private RecordingMode parseRecordingMode(final String propertyValue) {
+        try {
+            return RecordingMode.parse(propertyValue);
+        } catch (IllegalArgumentException e) {
+            throw new ServiceNotConfiguredException(e.getMessage());
+        }
+    }
+
     private void setDefaultResponseText(final WebserviceOperation operation) {
         if( operation.isBinary() ) {
             operation.setDefaultResponseBinaryContent(fileReader.readBinaryFileContents(operation.getDefaultResponseFile()));
         } else {
             final String fileText = fileReader.readFileContents(operation.getDefaultResponseFile());
             if (fileText != null) {
-                operation.setDefaultResponseText(fileText);
+                try {
+                    // builds the default response, compiling its template once, at startup
+                    operation.setDefaultResponseText(fileText);
+                } catch (IllegalArgumentException e) {
+                    throw invalidDefaultResponseTemplate(operation, e);
+                }
+            }
+        }
+    }
+
+    private static ServiceNotConfiguredException invalidDefaultResponseTemplate(final WebserviceOperation operation,
+                                                                                final IllegalArgumentException e) {
+        return new ServiceNotConfiguredException("Invalid default response template of operation "
+            + operation.getOperationName() + ": " + e.getMessage());
+    }
+
+
+    private CustomResponseProperties getCustomResponse(
+        final Map<WebserviceOperation, SortedMap<Integer, CustomResponseProperties>> responses,
+        final WebserviceOperation operation, final int index) {
+        SortedMap<Integer, CustomResponseProperties> operationResponses = responses.get(operation);
+        if (operationResponses == null) {
+            operationResponses = new TreeMap<Integer, CustomResponseProperties>();
+            responses.put(operation, operationResponses);
+        }
+        CustomResponseProperties response = operationResponses.get(index);
+        if (response == null) {
+            response = new CustomResponseProperties();
+            operationResponses.put(index, response);
+        }
+        return response;
+    }
+
+    private void setCustomResponseProperties(final CustomResponseProperties response, final String responseProperty,
+                                             final String propertyValue) {
+        if (responseProperty.equals(RULE_WHEN)) {
+            response.when = propertyValue;
+        } else if (responseProperty.equals(MIX_WEIGHT)) {
+            response.weight = Integer.valueOf(propertyValue);
+        } else if (responseProperty.equals(RULE_RESPONSE)) {
+            response.responseFile = propertyValue;
+        } else if (responseProperty.equals(RULE_RESPONSE_CODE)) {
+            response.code = Integer.valueOf(propertyValue);
+        } else if (responseProperty.equals(RULE_RESPONSE_CONTENT_TYPE)) {
+            response.contentType = propertyValue;
+        } else if (responseProperty.equals(LATENCY_PROFILE)) {
+            response.latency = propertyValue;
+        } else if (responseProperty.equals(RESPONSE_FAULT)) {
+            response.fault = propertyValue;
+        } else {
+            LOG.warn("Unidentified custom response property: " + responseProperty);
+        }
+    }
+
+    /**
+     * Adds rules in order of their indexes, so lower index takes precedence; responses are read from files
+     * and, for template operations, compiled at startup
+     */
+    private void addResponseRules(final WebserviceOperation operation, final Collection<CustomResponseProperties> rules) {
+        for (CustomResponseProperties rule : rules) {
+            try {
+                final RequestPredicate predicate = RequestPredicate.parse(rule.when);
+                operation.addResponseRule(predicate, buildCustomResponse(operation, rule, null));
+            } catch (IllegalArgumentException e) {
+                throw new ServiceNotConfiguredException("Invalid response rule of operation "
+                    + operation.getOperationName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Adds responses of the mix in order of their indexes; one having nothing but weight is a share of the
+     * default response, one without response file has the default response text
+     */
+    private void addMixResponses(final WebserviceOperation operation, final Collection<CustomResponseProperties> mix) {
+        for (CustomResponseProperties response : mix) {
+            try {
+                final int weight = response.weight != null ? response.weight : 1;
+                operation.addMixResponse(response.isDefault() ? null
+                    : buildCustomResponse(operation, response, operation.getDefaultResponseText()), weight);
+            } catch (IllegalArgumentException e) {
+                throw new ServiceNotConfiguredException("Invalid response mix of operation "
+                    + operation.getOperationName() + ": " + e.getMessage());
             }
         }
     }
 
+    /**
+     * @param defaultText response text if no response file is given
+     * @throws IllegalArgumentException if latency profile, fault or template of the response is not valid
+     */
+    private MockResponse buildCustomResponse(final WebserviceOperation operation, final CustomResponseProperties response,
+                                             final String defaultText) {
+        final String responseText = response.responseFile != null ? fileReader.readFileContents(response.responseFile)
+            : defaultText;
+        if (response.responseFile != null && responseText == null) {
+            throw new ServiceNotConfiguredException("Response file not found: " + response.responseFile);
+        }
+        return MockResponse.body(responseText)
+            .code(response.code != null ? response.code : operation.getDefaultResponseCode())
+            .contentType(response.contentType != null ? response.contentType : operation.getDefaultResponseContentType())
+            .latency(response.latency != null ? LatencyProfile.parse(response.latency) : null)
+            .fault(response.fault != null ? TransportFault.parse(response.fault) : null)
+            .template(operation.isTemplate())
+            .build();
+    }
 
     private WebserviceOperation getOperationFromService(final WebService service, final int operationIndex) {
         WebserviceOperation operation = service.getOperation(operationIndex);
@@ -229,6 +531,14 @@ public class PropertyProcessor {
         return extractIndex(keyPart, pattern);
     }
 
+    int getRuleIndex(final String keyPart) {
+        return extractIndex(keyPart, RULE_PATTERN);
+    }
+
+    int getMixIndex(final String keyPart) {
+        return extractIndex(keyPart, MIX_PATTERN);
+    }
+
     int getServiceIndex(final String keyPart) {
         final Pattern pattern = SERVICE_PATTERN;
         return extractIndex(keyPart, pattern);
@@ -257,4 +567,21 @@ public class PropertyProcessor {
         this.fileReader = fileReader;
     }
 
+    /**
+     * Properties of a response of a rule or a mix, collected until the whole file is read
+     */
+    private static final class CustomResponseProperties {
+        private String when;
+        private Integer weight;
+        private String responseFile;
+        private Integer code;
+        private String contentType;
+        private String latency;
+        private String fault;
+
+        boolean isDefault() {
+            return responseFile == null && code == null && contentType == null && latency == null && fault == null;
+        }
+    }
+
 }
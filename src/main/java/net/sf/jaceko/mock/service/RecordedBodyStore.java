@@ -0,0 +1,140 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.model.request.RecordedBody;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Content-addressed store of recorded bodies, so that recordings of the same body share it. Bodies are looked up
+ * by length and a 128-bit hash of their text, reused only if their content is the same, and held weakly, so a body
+ * is dropped from the store once no recording refers to it any more.
+ */
+public class RecordedBodyStore {
+    private final ConcurrentMap<ContentKey, BodyReference> bodies = new ConcurrentHashMap<ContentKey, BodyReference>();
+    private final ReferenceQueue<RecordedBody> collected = new ReferenceQueue<RecordedBody>();
+
+    /**
+     * @return body holding given text, shared with other recordings of the same text where worthwhile; null if text
+     * is null
+     */
+    public RecordedBody intern(String text) {
+        if (text == null || text.length() < RecordedBody.DEDUPLICATION_THRESHOLD) {
+            return RecordedBody.of(text);
+        }
+        expungeCollected();
+        ContentKey key = ContentKey.of(text);
+        while (true) {
+            BodyReference reference = bodies.get(key);
+            RecordedBody body = reference != null ? reference.get() : null;
+            if (body != null) {
+                // the hash only finds the candidate; a body of colliding content is kept apart
+                return body.hasText(text) ? body : RecordedBody.of(text);
+            }
+            RecordedBody stored = RecordedBody.of(text);
+            BodyReference storedReference = new BodyReference(key, stored, collected);
+            boolean added = reference == null
+                ? bodies.putIfAbsent(key, storedReference) == null
+                : bodies.replace(key, reference, storedReference);
+            if (added) {
+                return stored;
+            }
+        }
+    }
+
+    int size() {
+        expungeCollected();
+        return bodies.size();
+    }
+
+    private void expungeCollected() {
+        BodyReference reference;
+        while ((reference = (BodyReference) collected.poll()) != null) {
+            bodies.remove(reference.key, reference);
+        }
+    }
+
+    private static final class BodyReference extends WeakReference<RecordedBody> {
+        private final ContentKey key;
+
+        private BodyReference(ContentKey key, RecordedBody body, ReferenceQueue<RecordedBody> collected) {
+            super(body, collected);
+            this.key = key;
+        }
+    }
+
+    private static final class ContentKey {
+        private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+        private static final long FNV_PRIME = 0x100000001b3L;
+        private static final long MIX_MULTIPLIER = 0x9e3779b97f4a7c15L;
+
+        private final int length;
+        private final long hash1;
+        private final long hash2;
+
+        private ContentKey(int length, long hash1, long hash2) {
+            this.length = length;
+            this.hash1 = hash1;
+            this.hash2 = hash2;
+        }
+
+        /**
+         * Two independent 64-bit hashes computed in a single pass: FNV-1a and a multiplicative one finished by the
+         * MurmurHash3 mixer
+         */
+        static ContentKey of(String text) {
+            long hash1 = FNV_OFFSET_BASIS;
+            long hash2 = text.length();
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                hash1 = (hash1 ^ c) * FNV_PRIME;
+                hash2 = (hash2 + c) * MIX_MULTIPLIER;
+            }
+            return new ContentKey(text.length(), hash1, mix(hash2));
+        }
+
+        private static long mix(long hash) {
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ContentKey)) {
+                return false;
+            }
+            ContentKey key = (ContentKey) other;
+            return length == key.length && hash1 == key.hash1 && hash2 == key.hash2;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash1 ^ (hash1 >>> 32));
+        }
+    }
+}
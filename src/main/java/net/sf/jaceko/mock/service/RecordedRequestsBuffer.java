@@ -0,0 +1,254 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.model.request.MockRequest;
+import net.sf.jaceko.mock.model.request.RecordedBody;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-capacity ring of requests recorded for one operation. When the ring is full the oldest request is
+ * overwritten; when a byte limit is set the oldest requests are also evicted until the retained ones fit.
+ * Appends only claim a sequence number and swap a slot, so concurrent callers never wait for each other.
+ */
+public class RecordedRequestsBuffer implements RecordedRequestsStore {
+
+    private final int capacity;
+    private final long maxBytes;
+
+    private final AtomicReferenceArray<Slot> slots;
+    // next sequence number to be claimed by an append
+    private final AtomicLong head = new AtomicLong();
+    // requests below this sequence number were evicted to honour the byte limit
+    private final AtomicLong tail = new AtomicLong();
+
+    private final AtomicInteger retainedCount = new AtomicInteger();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * @param capacity maximum number of retained requests
+     * @param maxBytes maximum approximate size of retained requests, 0 for no limit
+     */
+    public RecordedRequestsBuffer(int capacity, long maxBytes) {
+        if (capacity < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("Recording capacity and byte limit can't be negative");
+        }
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        this.slots = new AtomicReferenceArray<Slot>(capacity);
+    }
+
+    /**
+     * @return sequence number of the request, -1 if it was dropped because it can never fit into this buffer
+     */
+    @Override
+    public long add(MockRequest request) {
+        long size = sizeOf(request);
+        if (capacity == 0 || (maxBytes > 0 && size > maxBytes)) {
+            droppedCount.incrementAndGet();
+            return -1;
+        }
+
+        long sequence = head.getAndIncrement();
+        Slot slot = new Slot(sequence, request, size);
+        int index = indexOf(sequence);
+        while (true) {
+            Slot previous = slots.get(index);
+            if (previous != null && previous.sequence > sequence) {
+                // a writer one lap ahead already took the slot - this request is the older one
+                evictedCount.incrementAndGet();
+                return sequence;
+            }
+            if (slots.compareAndSet(index, previous, slot)) {
+                retainedCount.incrementAndGet();
+                retainedBytes.addAndGet(size);
+                if (previous != null) {
+                    released(previous);
+                }
+                break;
+            }
+        }
+
+        if (sequence < tail.get()) {
+            // byte eviction moved past this sequence while it was being written
+            remove(index, slot);
+        }
+        if (maxBytes > 0) {
+            evictUntilWithinLimit();
+        }
+        return sequence;
+    }
+
+    private void evictUntilWithinLimit() {
+        while (retainedBytes.get() > maxBytes) {
+            long oldest = tail.get();
+            if (oldest >= head.get()) {
+                return;
+            }
+            if (tail.compareAndSet(oldest, oldest + 1)) {
+                int index = indexOf(oldest);
+                Slot slot = slots.get(index);
+                if (slot != null && slot.sequence == oldest) {
+                    remove(index, slot);
+                }
+            }
+        }
+    }
+
+    private void remove(int index, Slot slot) {
+        if (slots.compareAndSet(index, slot, null)) {
+            released(slot);
+        }
+    }
+
+    private void released(Slot slot) {
+        retainedCount.decrementAndGet();
+        retainedBytes.addAndGet(-slot.size);
+        evictedCount.incrementAndGet();
+    }
+
+    /**
+     * @return retained requests, oldest first
+     */
+    @Override
+    public List<MockRequest> getRequests() {
+        long last = head.get();
+        long first = Math.max(Math.max(0, last - capacity), tail.get());
+
+        List<MockRequest> requests = new ArrayList<MockRequest>((int) Math.max(0, last - first));
+        for (long sequence = first; sequence < last; sequence++) {
+            Slot slot = slots.get(indexOf(sequence));
+            if (slot != null && slot.sequence == sequence) {
+                requests.add(slot.request);
+            }
+        }
+        return requests;
+    }
+
+    @Override
+    public MockRequest get(long sequence) {
+        if (sequence < getFirstSequence() || sequence >= head.get()) {
+            return null;
+        }
+        Slot slot = slots.get(indexOf(sequence));
+        return slot != null && slot.sequence == sequence ? slot.request : null;
+    }
+
+    @Override
+    public long getFirstSequence() {
+        return Math.max(Math.max(0, head.get() - capacity), tail.get());
+    }
+
+    @Override
+    public long getNextSequence() {
+        return head.get();
+    }
+
+    private int indexOf(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    /**
+     * approximate heap footprint of the request strings including header names and values, two bytes per
+     * character; bodies count with their full length even if they are compressed or shared with other requests
+     */
+    static long sizeOf(MockRequest request) {
+        RecordedBody body = request.getRecordedBody();
+        long length = (body != null ? body.length() : 0) + length(request.getQueryString()) + length(request.getResourcePath());
+        MultivaluedMap<String, String> headers = request.getHeaders();
+        if (headers != null) {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                length += length(header.getKey());
+                if (header.getValue() != null) {
+                    for (String value : header.getValue()) {
+                        length += length(value);
+                    }
+                }
+            }
+        }
+        return 2L * length;
+    }
+
+    private static int length(String text) {
+        return text != null ? text.length() : 0;
+    }
+
+    @Override
+    public RecordedRequestsBuffer cleared() {
+        return new RecordedRequestsBuffer(capacity, maxBytes);
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public int getRetainedCount() {
+        return retainedCount.get();
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    @Override
+    public long getRecordedCount() {
+        return head.get() + droppedCount.get();
+    }
+
+    @Override
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private static final class Slot {
+        private final long sequence;
+        private final MockRequest request;
+        private final long size;
+
+        private Slot(long sequence, MockRequest request, long size) {
+            this.sequence = sequence;
+            this.request = request;
+            this.size = size;
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.model.request.MockRequest;
+
+import java.util.Collection;
+
+/**
+ * Receives recorded requests of an operation once an awaited number of them has been recorded, or once waiting
+ * for them timed out
+ */
+public interface RecordedRequestsCallback {
+
+    /**
+     * @param recordedRequests requests retained for the operation, oldest first
+     * @param countReached     false if waiting timed out before the awaited number of requests was recorded
+     */
+    void onRecordedRequests(Collection<MockRequest> recordedRequests, boolean countReached);
+
+}
@@ -20,55 +20,271 @@
 package net.sf.jaceko.mock.service;
 
 import net.sf.jaceko.mock.model.request.MockRequest;
+import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.RecordedBody;
+import net.sf.jaceko.mock.model.request.RecordedRequestsQuery;
+import net.sf.jaceko.mock.model.request.RecordingMode;
+import net.sf.jaceko.mock.model.request.RequestContext;
+import net.sf.jaceko.mock.model.request.RequestTiming;
+import net.sf.jaceko.mock.model.webservice.WebService;
+import net.sf.jaceko.mock.model.webservice.WebserviceOperation;
+
+import org.jboss.resteasy.spi.BadRequestException;
 
 import javax.ws.rs.core.MultivaluedMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-
-import static java.util.Collections.synchronizedList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class RecordedRequestsHolder {
+    /**
+     * number of requests retained per operation unless configured otherwise
+     */
+    public static final int DEFAULT_RECORDING_CAPACITY = 10000;
+
     private MockConfigurationHolder configurationHolder;
+    private RecordingJournal recordingJournal;
+    private RecordedBodyStore recordedBodyStore;
+    private RecordingPipeline recordingPipeline;
+    private Delayer delayer;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, IndexedRecordedRequestsStore>> recordedRequestsMap = new ConcurrentHashMap<String, ConcurrentMap<String, IndexedRecordedRequestsStore>>();
 
-    private final ConcurrentMap<String, ConcurrentMap<String, Collection<MockRequest>>> recordedRequestsMap = new ConcurrentHashMap<String, ConcurrentMap<String, Collection<MockRequest>>>();
+    private final ConcurrentMap<String, ConcurrentMap<String, Queue<RecordingWaiter>>> waitersMap = new ConcurrentHashMap<String, ConcurrentMap<String, Queue<RecordingWaiter>>>();
 
+    private final List<RecordedRequestsSubscription> subscriptions = new CopyOnWriteArrayList<RecordedRequestsSubscription>();
+
+    @SuppressWarnings("unchecked")
     public void recordRequest(String serviceName, String operationId, String requestBody, String queryString, String resourcePath, MultivaluedMap headers) {
-        ConcurrentMap<String, Collection<MockRequest>> requestsPerOperationMap = fetchRequestsPerOperationMap(serviceName);
+        recordRequest(serviceName, operationId, new RequestContext(requestBody, null, queryString, resourcePath, headers));
+    }
+
+    /**
+     * Records request of the operation; with a recording pipeline the request is only published here and stored by the
+     * pipeline's consumer thread
+     */
+    public void recordRequest(String serviceName, String operationId, RequestContext requestContext) {
+        recordRequest(serviceName, operationId, requestContext, null);
+    }
 
-        Collection<MockRequest> recordedRequests = fetchRecordedRequests(operationId, requestsPerOperationMap);
+    /**
+     * @param timing server-side timing of the request, completed once its response is written; null if unknown
+     */
+    public void recordRequest(String serviceName, String operationId, RequestContext requestContext, RequestTiming timing) {
+        recordRequest(serviceName, operationId, requestContext, timing, null);
+    }
 
-        requestBody = processXmlDeclaration(serviceName, requestBody);
-        MockRequest request = new MockRequest(requestBody, queryString, resourcePath, headers);
-        recordedRequests.add(request);
+    /**
+     * Counts the request and records as much of it as the operation's recording mode asks for
+     *
+     * @param response response served to the request, null if unknown
+     */
+    public void recordRequest(String serviceName, String operationId, RequestContext requestContext, RequestTiming timing,
+                              MockResponse response) {
+        RecordingMode mode = getRecordingMode(serviceName, operationId);
+        if (!mode.isCounted()) {
+            return;
+        }
+        long invocation = fetchRecordedRequests(serviceName, operationId).getCounters()
+            .count(requestContext.getEncodedBodyLength());
+        if (!mode.isRecorded(invocation)) {
+            // awaited requests are counted, not only the recorded ones
+            signalWaiters(serviceName, operationId);
+            return;
+        }
+        if (!mode.isBodyRecorded()) {
+            requestContext = requestContext.withoutBody();
+        }
+        if (recordingPipeline != null) {
+            recordingPipeline.publish(serviceName, operationId, requestContext, timing, response);
+        } else {
+            storeRequest(serviceName, operationId, requestContext, timing, response, System.currentTimeMillis());
+        }
     }
 
-    private String processXmlDeclaration(String serviceName, String requestBody) {
-        if (requestBody != null &&
-            configurationHolder.getWebService(serviceName).isIgnoreXmlDeclaration()) {
-            int start = requestBody.indexOf("<?xml");
-            if (start >= 0) {
-                int end = requestBody.indexOf("?>");
-                if (end > 0) {
-                    return requestBody.substring(end + 2);
+    /**
+     * @return recording mode of the operation, falling back to the service's one; full recording if neither is set
+     */
+    public RecordingMode getRecordingMode(String serviceName, String operationId) {
+        WebserviceOperation operation = configurationHolder.getWebServiceOperation(serviceName, operationId);
+        RecordingMode mode = operation != null ? operation.getRecordingMode() : null;
+        if (mode == null) {
+            WebService service = configurationHolder.getWebService(serviceName);
+            mode = service != null ? service.getRecordingMode() : null;
+        }
+        return mode != null ? mode : RecordingMode.FULL;
+    }
+
+    void storeRequest(String serviceName, String operationId, RequestContext requestContext, RequestTiming timing,
+                      MockResponse response, long recordedAt) {
+        String requestBody = processXmlDeclaration(serviceName, requestContext);
+        RecordedBody body = recordedBodyStore != null ? recordedBodyStore.intern(requestBody) : RecordedBody.of(requestBody);
+        MockRequest request = new MockRequest(body, requestContext.getQueryString(), requestContext.getResourcePath(),
+            requestContext.getHeaders(), recordedAt, timing, response);
+        IndexedRecordedRequestsStore recordedRequests = fetchRecordedRequests(serviceName, operationId);
+        while (recordedRequests.add(request) == IndexedRecordedRequestsStore.SEALED) {
+            // retention is being changed - the request goes to the resized store
+            recordedRequests.awaitReplacement();
+            recordedRequests = fetchRecordedRequests(serviceName, operationId);
+        }
+
+        signalWaiters(serviceName, operationId);
+        if (!subscriptions.isEmpty()) {
+            publish(serviceName, operationId, request);
+        }
+    }
+
+    /**
+     * Subscribes to requests recorded from now on
+     *
+     * @param serviceName only requests of this service are delivered, all services if null
+     * @param operationId only requests of this operation are delivered, all operations if null
+     * @param capacity    number of requests buffered for the subscriber before the oldest ones are dropped
+     */
+    public RecordedRequestsSubscription subscribe(String serviceName, String operationId, int capacity) {
+        if (serviceName != null && operationId != null) {
+            configurationHolder.getWebServiceOperation(serviceName, operationId);
+        } else if (serviceName != null) {
+            configurationHolder.getWebService(serviceName);
+        }
+        RecordedRequestsSubscription subscription = new RecordedRequestsSubscription(serviceName, operationId, capacity);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public void unsubscribe(RecordedRequestsSubscription subscription) {
+        subscription.close();
+        subscriptions.remove(subscription);
+    }
+
+    private void publish(String serviceName, String operationId, MockRequest request) {
+        RecordedRequestsSubscription.RecordedRequest recordedRequest = null;
+        for (RecordedRequestsSubscription subscription : subscriptions) {
+            if (subscription.accepts(serviceName, operationId)) {
+                if (recordedRequest == null) {
+                    recordedRequest = new RecordedRequestsSubscription.RecordedRequest(serviceName, operationId, request);
                 }
+                subscription.offer(recordedRequest);
             }
         }
-        return requestBody;
     }
 
-    private Collection<MockRequest> fetchRecordedRequests(String operationId,
-                                                          ConcurrentMap<String, Collection<MockRequest>> requestsPerOperationMap) {
-        requestsPerOperationMap.putIfAbsent(operationId, synchronizedList(new ArrayList<MockRequest>()));
-        return requestsPerOperationMap.get(operationId);
+    /**
+     * Calls back as soon as at least the given number of requests has been received by the operation since its
+     * recorded requests were last cleared, or when the timeout elapses; in sampled and count-only recording modes
+     * requests which are only counted count too. No thread is held while waiting; callbacks are run on the
+     * delayer's threads.
+     *
+     * @throws BadRequestException if recording of the operation is off, so requests are not even counted
+     */
+    public void awaitRecordedRequests(String serviceName, String operationId, int count, long timeoutMillis,
+                                      RecordedRequestsCallback callback) {
+        configurationHolder.getWebServiceOperation(serviceName, operationId);
+        if (!getRecordingMode(serviceName, operationId).isCounted()) {
+            throw new BadRequestException("Requests of operation " + operationId + " are not recorded");
+        }
+        awaitRecordingPipeline();
+        Queue<RecordingWaiter> waiters = fetchWaiters(serviceName, operationId);
+        RecordingWaiter waiter = new RecordingWaiter(serviceName, operationId, count, callback, waiters);
+        waiters.add(waiter);
+        // requests may have been recorded before the waiter was added
+        signalWaiters(serviceName, operationId, waiters);
+        waiter.scheduleTimeout(timeoutMillis);
+    }
+
+    private void signalWaiters(String serviceName, String operationId) {
+        Queue<RecordingWaiter> waiters = getWaiters(serviceName, operationId);
+        if (waiters != null && !waiters.isEmpty()) {
+            signalWaiters(serviceName, operationId, waiters);
+        }
+    }
+
+    private void signalWaiters(String serviceName, String operationId, Queue<RecordingWaiter> waiters) {
+        long receivedCount = fetchRecordedRequests(serviceName, operationId).getCounters().getInvocationCount();
+        for (RecordingWaiter waiter : waiters) {
+            if (receivedCount >= waiter.count) {
+                waiter.complete(true);
+            }
+        }
+    }
+
+    private Queue<RecordingWaiter> getWaiters(String serviceName, String operationId) {
+        Map<String, Queue<RecordingWaiter>> waitersPerOperationMap = waitersMap.get(serviceName);
+        return waitersPerOperationMap != null ? waitersPerOperationMap.get(operationId) : null;
+    }
+
+    private Queue<RecordingWaiter> fetchWaiters(String serviceName, String operationId) {
+        ConcurrentMap<String, Queue<RecordingWaiter>> waitersPerOperationMap = waitersMap.get(serviceName);
+        if (waitersPerOperationMap == null) {
+            waitersMap.putIfAbsent(serviceName, new ConcurrentHashMap<String, Queue<RecordingWaiter>>());
+            waitersPerOperationMap = waitersMap.get(serviceName);
+        }
+        Queue<RecordingWaiter> waiters = waitersPerOperationMap.get(operationId);
+        if (waiters == null) {
+            waitersPerOperationMap.putIfAbsent(operationId, new ConcurrentLinkedQueue<RecordingWaiter>());
+            waiters = waitersPerOperationMap.get(operationId);
+        }
+        return waiters;
+    }
+
+    private String processXmlDeclaration(String serviceName, RequestContext requestContext) {
+        if (requestContext.getXmlDeclarationEnd() > 0 &&
+            configurationHolder.getWebService(serviceName).isIgnoreXmlDeclaration()) {
+            return requestContext.getBodyWithoutXmlDeclaration();
+        }
+        return requestContext.getBody();
+    }
+
+    private IndexedRecordedRequestsStore fetchRecordedRequests(String serviceName, String operationId) {
+        ConcurrentMap<String, IndexedRecordedRequestsStore> requestsPerOperationMap = fetchRequestsPerOperationMap(serviceName);
+        IndexedRecordedRequestsStore recordedRequests = requestsPerOperationMap.get(operationId);
+        if (recordedRequests == null) {
+            requestsPerOperationMap.putIfAbsent(operationId,
+                new IndexedRecordedRequestsStore(newRecordedRequestsStore(serviceName, operationId)));
+            recordedRequests = requestsPerOperationMap.get(operationId);
+        }
+        return recordedRequests;
+    }
+
+    private ConcurrentMap<String, IndexedRecordedRequestsStore> fetchRequestsPerOperationMap(String serviceName) {
+        ConcurrentMap<String, IndexedRecordedRequestsStore> requestsPerOperationMap = recordedRequestsMap.get(serviceName);
+        if (requestsPerOperationMap == null) {
+            recordedRequestsMap.putIfAbsent(serviceName, new ConcurrentHashMap<String, IndexedRecordedRequestsStore>());
+            requestsPerOperationMap = recordedRequestsMap.get(serviceName);
+        }
+        return requestsPerOperationMap;
     }
 
-    private ConcurrentMap<String, Collection<MockRequest>> fetchRequestsPerOperationMap(String serviceName) {
-        recordedRequestsMap.putIfAbsent(serviceName, new ConcurrentHashMap<String, Collection<MockRequest>>());
-        return recordedRequestsMap.get(serviceName);
+    /**
+     * Journals requests when a recording journal is configured; otherwise sizes in-memory buffer by the
+     * operation's retention properties, falling back to the service's ones
+     */
+    private RecordedRequestsStore newRecordedRequestsStore(String serviceName, String operationId) {
+        if (recordingJournal != null) {
+            return recordingJournal.getRecordedRequests(serviceName, operationId);
+        }
+        WebService service = configurationHolder.getWebService(serviceName);
+        WebserviceOperation operation = configurationHolder.getWebServiceOperation(serviceName, operationId);
+
+        Integer capacity = operation != null ? operation.getRecordingCapacity() : null;
+        if (capacity == null && service != null) {
+            capacity = service.getRecordingCapacity();
+        }
+        Long maxBytes = operation != null ? operation.getRecordingMaxBytes() : null;
+        if (maxBytes == null && service != null) {
+            maxBytes = service.getRecordingMaxBytes();
+        }
+        return new RecordedRequestsBuffer(capacity != null ? capacity : DEFAULT_RECORDING_CAPACITY,
+            maxBytes != null ? maxBytes : 0);
     }
 
     public Collection<String> getRecordedRequestBodies(String serviceName, String operationId) {
@@ -92,37 +308,203 @@ public class RecordedRequestsHolder {
         return recordedRequestParams;
     }
 
+    /**
+     * @return snapshot of requests currently retained for the operation, oldest first
+     */
     public Collection<MockRequest> getRecordedRequests(String serviceName, String operationId) {
         configurationHolder.getWebServiceOperation(serviceName, operationId);
-        Map<String, Collection<MockRequest>> requestsPerOperationMap = recordedRequestsMap.get(serviceName);
-        if (requestsPerOperationMap == null) {
+        awaitRecordingPipeline();
+        IndexedRecordedRequestsStore recordedRequests = getExistingRecordedRequests(serviceName, operationId);
+        if (recordedRequests == null) {
             return Collections.emptyList();
         }
-        Collection<MockRequest> recordedRequests = requestsPerOperationMap.get(operationId);
+        return recordedRequests.getRequests();
+    }
+
+    /**
+     * @return requests currently retained for the operation which match the query, oldest first
+     */
+    public List<MockRequest> queryRecordedRequests(String serviceName, String operationId, RecordedRequestsQuery query) {
+        configurationHolder.getWebServiceOperation(serviceName, operationId);
+        awaitRecordingPipeline();
+        IndexedRecordedRequestsStore recordedRequests = getExistingRecordedRequests(serviceName, operationId);
         if (recordedRequests == null) {
             return Collections.emptyList();
         }
-        return recordedRequests;
+        return recordedRequests.query(query);
+    }
+
+    /**
+     * Makes requests published to the recording pipeline before this call visible to the caller
+     */
+    private void awaitRecordingPipeline() {
+        if (recordingPipeline != null) {
+            recordingPipeline.awaitPublished();
+        }
+    }
+
+    private IndexedRecordedRequestsStore getExistingRecordedRequests(String serviceName, String operationId) {
+        Map<String, IndexedRecordedRequestsStore> requestsPerOperationMap = recordedRequestsMap.get(serviceName);
+        return requestsPerOperationMap != null ? requestsPerOperationMap.get(operationId) : null;
     }
 
     public Collection<String> getRecordedResourcePaths(String serviceName, String operationId) {
         Collection<MockRequest> recordedRequests = getRecordedRequests(serviceName, operationId);
 
         Collection<String> recordedResourcePaths = new ArrayList<String>();
-        synchronized (recordedRequests) {
-            for (MockRequest request : recordedRequests) {
-                recordedResourcePaths.add(request.getResourcePath());
-            }
+        for (MockRequest request : recordedRequests) {
+            recordedResourcePaths.add(request.getResourcePath());
         }
         return recordedResourcePaths;
     }
 
-    public void clearRecordedRequests(String serviceName, String operationId) {
-        getRecordedRequests(serviceName, operationId).clear();
+    /**
+     * @return recorded requests store of the operation, for its retention limits and counters
+     */
+    public RecordedRequestsStore getRecordedRequestsStore(String serviceName, String operationId) {
+        configurationHolder.getWebServiceOperation(serviceName, operationId);
+        awaitRecordingPipeline();
+        return fetchRecordedRequests(serviceName, operationId);
+    }
+
+    /**
+     * @return counters of requests received by the operation since its recorded requests were last cleared,
+     * maintained in every recording mode except off
+     */
+    public RecordingCounters getRecordingCounters(String serviceName, String operationId) {
+        configurationHolder.getWebServiceOperation(serviceName, operationId);
+        return fetchRecordedRequests(serviceName, operationId).getCounters();
+    }
+
+    /**
+     * Clears recorded requests and counters of the operation; retention limits are kept. Holds the lock of
+     * {@link #setRetention}, so that neither replaces the store the other one has just replaced
+     */
+    public synchronized void clearRecordedRequests(String serviceName, String operationId) {
+        configurationHolder.getWebServiceOperation(serviceName, operationId);
+        awaitRecordingPipeline();
+        Map<String, IndexedRecordedRequestsStore> requestsPerOperationMap = recordedRequestsMap.get(serviceName);
+        if (requestsPerOperationMap != null) {
+            IndexedRecordedRequestsStore recordedRequests = requestsPerOperationMap.get(operationId);
+            if (recordedRequests != null) {
+                requestsPerOperationMap.put(operationId, recordedRequests.cleared());
+            }
+        }
+    }
+
+    /**
+     * Overrides retention of the operation; the most recent requests which fit the new limits are kept. Requests
+     * recorded meanwhile wait until the resized store is in place
+     *
+     * @param capacity new capacity, null to keep the current one
+     * @param maxBytes new byte limit (0 for none), null to keep the current one
+     * @throws BadRequestException if requests of the operation are journaled, journal retention is configured globally
+     */
+    public synchronized void setRetention(String serviceName, String operationId, Integer capacity, Long maxBytes) {
+        configurationHolder.getWebServiceOperation(serviceName, operationId);
+        awaitRecordingPipeline();
+        IndexedRecordedRequestsStore recordedRequests = fetchRecordedRequests(serviceName, operationId);
+        RecordedRequestsStore store = recordedRequests.getStore();
+        if (!(store instanceof RecordedRequestsBuffer)) {
+            throw new BadRequestException("Retention of journaled requests is set by journal configuration");
+        }
+        RecordedRequestsBuffer current = (RecordedRequestsBuffer) store;
+        IndexedRecordedRequestsStore resized = new IndexedRecordedRequestsStore(new RecordedRequestsBuffer(
+            capacity != null ? capacity : current.getCapacity(), maxBytes != null ? maxBytes : current.getMaxBytes()),
+            recordedRequests.getCounters());
+        recordedRequests.seal();
+        try {
+            for (MockRequest request : current.getRequests()) {
+                resized.add(request);
+            }
+            fetchRequestsPerOperationMap(serviceName).put(operationId, resized);
+        } finally {
+            recordedRequests.replaced();
+        }
     }
 
     public void setMockserviceConfiguration(MockConfigurationHolder configurationHolder) {
         this.configurationHolder = configurationHolder;
     }
 
+    public void setRecordingJournal(RecordingJournal recordingJournal) {
+        this.recordingJournal = recordingJournal;
+    }
+
+    /**
+     * Shares bodies of recorded requests between recordings of the same content; without it each recording
+     * keeps its own body
+     */
+    public void setRecordedBodyStore(RecordedBodyStore recordedBodyStore) {
+        this.recordedBodyStore = recordedBodyStore;
+    }
+
+    /**
+     * Switches to asynchronous recording; the pipeline's consumer is started storing requests in this holder
+     */
+    public void setRecordingPipeline(RecordingPipeline recordingPipeline) {
+        recordingPipeline.start(this);
+        this.recordingPipeline = recordingPipeline;
+    }
+
+    public void setDelayer(Delayer delayer) {
+        this.delayer = delayer;
+    }
+
+    /**
+     * Pending await of recorded requests, completed exactly once by whichever of recording and timeout comes first
+     */
+    private final class RecordingWaiter {
+        private final String serviceName;
+        private final String operationId;
+        private final int count;
+        private final RecordedRequestsCallback callback;
+        private final Queue<RecordingWaiter> waiters;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile Future<?> timeout;
+
+        private RecordingWaiter(String serviceName, String operationId, int count, RecordedRequestsCallback callback,
+                                Queue<RecordingWaiter> waiters) {
+            this.serviceName = serviceName;
+            this.operationId = operationId;
+            this.count = count;
+            this.callback = callback;
+            this.waiters = waiters;
+        }
+
+        private void complete(final boolean countReached) {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            waiters.remove(this);
+            Future<?> scheduledTimeout = timeout;
+            if (scheduledTimeout != null) {
+                delayer.cancel(scheduledTimeout);
+            }
+            delayer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onRecordedRequests(getRecordedRequests(serviceName, operationId), countReached);
+                }
+            });
+        }
+
+        /**
+         * Timeout of a waiter already completed, or completed while it is being scheduled, is cancelled here, as
+         * completion may not have found it
+         */
+        private void scheduleTimeout(long timeoutMillis) {
+            Future<?> scheduledTimeout = delayer.schedule(timeoutMillis, new Runnable() {
+                @Override
+                public void run() {
+                    complete(false);
+                }
+            });
+            timeout = scheduledTimeout;
+            if (completed.get()) {
+                delayer.cancel(scheduledTimeout);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,255 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.model.request.MockRequest;
+import net.sf.jaceko.mock.util.QueryStringParser;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Secondary indexes of one operation's recorded requests: sequence numbers of requests by header value, by query
+ * parameter value and by resource path. The index is brought up to date by queries, so recording never waits for
+ * it. Header and query parameter names with more than {@link #MAX_INDEXED_VALUES} distinct values (request ids,
+ * timestamps), and resource paths once there are more than that many, are no longer indexed, which keeps the
+ * index small however many requests are retained. Not thread-safe: callers synchronize.
+ */
+class RecordedRequestsIndex {
+    static final int MAX_INDEXED_VALUES = 4096;
+    private static final int SWEEP_INTERVAL = 4096;
+
+    private final Dimension headers = new Dimension();
+    private final Dimension queryParams = new Dimension();
+    private NavigableMap<String, Postings> resourcePaths = new TreeMap<String, Postings>();
+
+    // requests below this sequence number were looked at, apart from pending ones
+    private long nextSequence;
+    // sequence numbers claimed but not yet recorded when the index was brought up to date
+    private long[] pending = new long[0];
+    private long sweptBefore;
+
+    /**
+     * Indexes requests recorded into the store since the last call
+     */
+    void update(RecordedRequestsStore store) {
+        long firstSequence = store.getFirstSequence();
+        long lastSequence = store.getNextSequence();
+        long[] stillPending = new long[0];
+        for (long sequence : pending) {
+            stillPending = index(store, sequence, firstSequence, stillPending);
+        }
+        for (long sequence = Math.max(nextSequence, firstSequence); sequence < lastSequence; sequence++) {
+            stillPending = index(store, sequence, firstSequence, stillPending);
+        }
+        pending = stillPending;
+        nextSequence = Math.max(nextSequence, lastSequence);
+
+        if (firstSequence - sweptBefore >= SWEEP_INTERVAL) {
+            headers.sweep(firstSequence);
+            queryParams.sweep(firstSequence);
+            if (resourcePaths != null) {
+                sweep(resourcePaths, firstSequence);
+            }
+            sweptBefore = firstSequence;
+        }
+    }
+
+    private long[] index(RecordedRequestsStore store, long sequence, long firstSequence, long[] stillPending) {
+        if (sequence < firstSequence) {
+            return stillPending;
+        }
+        MockRequest request = store.get(sequence);
+        if (request == null) {
+            // being recorded by another thread
+            long[] appended = Arrays.copyOf(stillPending, stillPending.length + 1);
+            appended[stillPending.length] = sequence;
+            return appended;
+        }
+        add(sequence, request);
+        return stillPending;
+    }
+
+    private void add(long sequence, MockRequest request) {
+        MultivaluedMap<String, String> requestHeaders = request.getHeaders();
+        if (requestHeaders != null) {
+            for (Map.Entry<String, List<String>> header : requestHeaders.entrySet()) {
+                headers.add(header.getKey().toLowerCase(Locale.ENGLISH), header.getValue(), sequence);
+            }
+        }
+        if (request.getQueryString() != null) {
+            for (Map.Entry<String, List<String>> param : QueryStringParser.parse(request.getQueryString()).entrySet()) {
+                queryParams.add(param.getKey(), param.getValue(), sequence);
+            }
+        }
+        if (request.getResourcePath() != null && resourcePaths != null) {
+            addPosting(resourcePaths, request.getResourcePath(), sequence);
+            if (resourcePaths.size() > MAX_INDEXED_VALUES) {
+                resourcePaths = null;
+            }
+        }
+    }
+
+    /**
+     * @return sequence numbers of requests having the header value, ascending; null if the header is not indexed
+     */
+    long[] getHeaderPostings(String name, String value, long firstSequence) {
+        return headers.getPostings(name.toLowerCase(Locale.ENGLISH), value, firstSequence);
+    }
+
+    /**
+     * @return sequence numbers of requests having the query parameter value, ascending; null if the parameter is
+     * not indexed
+     */
+    long[] getQueryParamPostings(String name, String value, long firstSequence) {
+        return queryParams.getPostings(name, value, firstSequence);
+    }
+
+    /**
+     * @return sequence numbers of requests whose resource path starts with the prefix, ascending; null if resource
+     * paths are not indexed
+     */
+    long[] getResourcePathPostings(String prefix, long firstSequence) {
+        if (resourcePaths == null) {
+            return null;
+        }
+        Map<String, Postings> matching = resourcePaths.subMap(prefix, true, prefix + Character.MAX_VALUE, true);
+        long[] sequences = new long[0];
+        for (Postings postings : matching.values()) {
+            long[] pathSequences = postings.snapshot(firstSequence);
+            long[] merged = Arrays.copyOf(sequences, sequences.length + pathSequences.length);
+            System.arraycopy(pathSequences, 0, merged, sequences.length, pathSequences.length);
+            sequences = merged;
+        }
+        Arrays.sort(sequences);
+        return sequences;
+    }
+
+    private static void sweep(Map<String, Postings> index, long firstSequence) {
+        for (Iterator<Postings> iterator = index.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().trim(firstSequence)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void addPosting(Map<String, Postings> index, String key, long sequence) {
+        Postings postings = index.get(key);
+        if (postings == null) {
+            postings = new Postings();
+            index.put(key, postings);
+        }
+        postings.add(sequence);
+    }
+
+    /**
+     * Postings of values of named headers or query parameters
+     */
+    private static final class Dimension {
+        private final Map<String, Map<String, Postings>> names = new HashMap<String, Map<String, Postings>>();
+        private final Set<String> unindexedNames = new HashSet<String>();
+
+        void add(String name, List<String> values, long sequence) {
+            if (values == null || unindexedNames.contains(name)) {
+                return;
+            }
+            Map<String, Postings> postings = names.get(name);
+            if (postings == null) {
+                postings = new HashMap<String, Postings>();
+                names.put(name, postings);
+            }
+            for (String value : values) {
+                addPosting(postings, value, sequence);
+            }
+            if (postings.size() > MAX_INDEXED_VALUES) {
+                names.remove(name);
+                unindexedNames.add(name);
+            }
+        }
+
+        long[] getPostings(String name, String value, long firstSequence) {
+            if (unindexedNames.contains(name)) {
+                return null;
+            }
+            Map<String, Postings> postings = names.get(name);
+            Postings valuePostings = postings != null ? postings.get(value) : null;
+            return valuePostings != null ? valuePostings.snapshot(firstSequence) : new long[0];
+        }
+
+        void sweep(long firstSequence) {
+            for (Iterator<Map<String, Postings>> iterator = names.values().iterator(); iterator.hasNext(); ) {
+                Map<String, Postings> postings = iterator.next();
+                RecordedRequestsIndex.sweep(postings, firstSequence);
+                if (postings.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sequence numbers of requests sharing one key
+     */
+    private static final class Postings {
+        private long[] sequences = new long[4];
+        private int size;
+
+        void add(long sequence) {
+            if (size == sequences.length) {
+                sequences = Arrays.copyOf(sequences, size * 2);
+            }
+            sequences[size++] = sequence;
+        }
+
+        long[] snapshot(long firstSequence) {
+            trim(firstSequence);
+            long[] snapshot = Arrays.copyOf(sequences, size);
+            // requests pending while being recorded are indexed out of order
+            Arrays.sort(snapshot);
+            return snapshot;
+        }
+
+        /**
+         * @return true if no retained request is left
+         */
+        boolean trim(long firstSequence) {
+            int retained = 0;
+            for (int i = 0; i < size; i++) {
+                if (sequences[i] >= firstSequence) {
+                    sequences[retained++] = sequences[i];
+                }
+            }
+            size = retained;
+            if (size < sequences.length / 4 && sequences.length > 4) {
+                sequences = Arrays.copyOf(sequences, Math.max(4, size * 2));
+            }
+            return size == 0;
+        }
+    }
+}
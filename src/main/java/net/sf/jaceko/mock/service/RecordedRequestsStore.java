@@ -0,0 +1,78 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.model.request.MockRequest;
+
+import java.util.List;
+
+/**
+ * Requests recorded for one operation, together with their retention limits and counters
+ */
+public interface RecordedRequestsStore {
+
+    /**
+     * @return sequence number of the recorded request, -1 if it was dropped instead of being recorded
+     */
+    long add(MockRequest request);
+
+    /**
+     * @return retained requests, oldest first
+     */
+    List<MockRequest> getRequests();
+
+    /**
+     * @return request recorded with the sequence number, null if it is not retained
+     */
+    MockRequest get(long sequence);
+
+    /**
+     * @return sequence number below which no request is retained
+     */
+    long getFirstSequence();
+
+    /**
+     * @return sequence number the next recorded request gets; requests below it may still be being recorded
+     */
+    long getNextSequence();
+
+    /**
+     * @return store with the same retention limits and no recorded requests
+     */
+    RecordedRequestsStore cleared();
+
+    int getCapacity();
+
+    long getMaxBytes();
+
+    int getRetainedCount();
+
+    long getRetainedBytes();
+
+    /**
+     * @return number of requests offered to this store, including evicted and dropped ones
+     */
+    long getRecordedCount();
+
+    long getEvictedCount();
+
+    long getDroppedCount();
+
+}
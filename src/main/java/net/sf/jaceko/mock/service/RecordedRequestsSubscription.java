@@ -0,0 +1,139 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.model.request.MockRequest;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live feed of requests recorded from the moment of subscribing. Requests are buffered per subscriber up to the
+ * capacity; when a subscriber does not keep up, the oldest buffered requests are dropped so that recording is never
+ * held back by a slow subscriber.
+ */
+public class RecordedRequestsSubscription {
+    private final String serviceName;
+    private final String operationId;
+    private final BlockingQueue<RecordedRequest> buffer;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile boolean closed;
+    private volatile Runnable listener;
+
+    /**
+     * @param serviceName only requests of this service are delivered, all services if null
+     * @param operationId only requests of this operation are delivered, all operations if null
+     * @param capacity    number of requests buffered for the subscriber
+     */
+    RecordedRequestsSubscription(String serviceName, String operationId, int capacity) {
+        this.serviceName = serviceName;
+        this.operationId = operationId;
+        this.buffer = new ArrayBlockingQueue<RecordedRequest>(capacity);
+    }
+
+    boolean accepts(String serviceName, String operationId) {
+        return !closed && (this.serviceName == null || this.serviceName.equals(serviceName))
+            && (this.operationId == null || this.operationId.equals(operationId));
+    }
+
+    /**
+     * Never blocks; makes room by dropping the oldest buffered request if the buffer is full
+     */
+    void offer(RecordedRequest request) {
+        while (!buffer.offer(request)) {
+            if (buffer.poll() != null) {
+                droppedCount.incrementAndGet();
+            }
+        }
+        Runnable listener = this.listener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * @param listener run on the recording thread after each request is buffered, so it must not block; null for none
+     */
+    public void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return next buffered request, null if there is none
+     */
+    public RecordedRequest poll() {
+        return buffer.poll();
+    }
+
+    /**
+     * @return next recorded request, null if none was recorded within the timeout or if the subscription is closed and
+     * all buffered requests were taken
+     */
+    public RecordedRequest poll(long timeoutMillis) throws InterruptedException {
+        if (closed) {
+            return buffer.poll();
+        }
+        return buffer.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return number of requests dropped so far because the buffer was full
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    void close() {
+        closed = true;
+    }
+
+    /**
+     * Request recorded for an operation of a service
+     */
+    public static final class RecordedRequest {
+        private final String serviceName;
+        private final String operationId;
+        private final MockRequest request;
+
+        RecordedRequest(String serviceName, String operationId, MockRequest request) {
+            this.serviceName = serviceName;
+            this.operationId = operationId;
+            this.request = request;
+        }
+
+        public String getServiceName() {
+            return serviceName;
+        }
+
+        public String getOperationId() {
+            return operationId;
+        }
+
+        public MockRequest getRequest() {
+            return request;
+        }
+    }
+}
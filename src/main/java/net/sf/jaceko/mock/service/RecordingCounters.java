@@ -0,0 +1,51 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exact counters of requests received by one operation, kept whatever its recording mode records of them
+ */
+public class RecordingCounters {
+    private final AtomicLong invocationCount = new AtomicLong();
+    private final AtomicLong invocationBytes = new AtomicLong();
+
+    /**
+     * @param bytes size of the request body
+     * @return zero-based number of the counted request
+     */
+    long count(long bytes) {
+        invocationBytes.addAndGet(bytes);
+        return invocationCount.getAndIncrement();
+    }
+
+    public long getInvocationCount() {
+        return invocationCount.get();
+    }
+
+    /**
+     * @return total size of bodies of the counted requests, in bytes encoded as UTF-8
+     */
+    public long getInvocationBytes() {
+        return invocationBytes.get();
+    }
+
+}
@@ -0,0 +1,724 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.model.request.MockRequest;
+import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.RecordedBody;
+import net.sf.jaceko.mock.model.request.RequestTiming;
+import org.apache.log4j.Logger;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only journal of recorded requests kept in segmented, memory-mapped files. Only the position of
+ * each request is held on the heap; requests are decoded from the mapped segments when they are read.
+ * When the number of segments exceeds the limit the oldest segment file is deleted together with the
+ * requests it holds. Journal found in the directory on startup is replayed, so recordings survive
+ * a restart.
+ * <p/>
+ * Each record is an int length followed by the record type and - for requests - the request's timing: whether
+ * it is known, arrival time and service time. Service name and operation id follow, then for requests recording
+ * time, body as kept in memory (text or deflated), query string, resource path, headers and the response served,
+ * if known. Service time sits at a fixed offset: for a request journaled while its response was still being
+ * written it is filled in once the response is complete.
+ */
+public class RecordingJournal {
+    private static final Logger LOG = Logger.getLogger(RecordingJournal.class);
+
+    public static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+    public static final int DEFAULT_MAX_SEGMENTS = 16;
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte REQUEST_RECORD = 1;
+    private static final byte CLEAR_RECORD = 2;
+    private static final byte NO_BODY = 0;
+    private static final byte TEXT_BODY = 1;
+    private static final byte DEFLATED_BODY = 2;
+    private static final int LENGTH_BYTES = 4;
+    private static final long NOT_COMPLETED = -1;
+    // offset of service time in a request record: after the type, timing flag and arrival time
+    private static final int SERVICE_TIME_OFFSET = 1 + 1 + 8;
+
+    private final File directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+
+    private final ConcurrentMap<Integer, MappedByteBuffer> segments = new ConcurrentHashMap<Integer, MappedByteBuffer>();
+    private final ConcurrentMap<String, JournaledRequests> operations = new ConcurrentHashMap<String, JournaledRequests>();
+
+    private volatile int firstSegment;
+    // guarded by this
+    private int activeSegment;
+    // guarded by this
+    private int writePosition;
+
+    public RecordingJournal(File directory, int segmentBytes, int maxSegments) throws IOException {
+        if (segmentBytes <= LENGTH_BYTES || maxSegments < 1) {
+            throw new IllegalArgumentException("Journal needs at least one segment larger than " + LENGTH_BYTES + " bytes");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create journal directory " + directory);
+        }
+        replay();
+    }
+
+    /**
+     * @return requests of the operation recorded in this journal
+     */
+    public RecordedRequestsStore getRecordedRequests(String serviceName, String operationId) {
+        return fetchOperation(serviceName, operationId);
+    }
+
+    public int getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public int getMaxSegments() {
+        return maxSegments;
+    }
+
+    /**
+     * Flushes mapped segments to disk
+     */
+    public void force() {
+        for (MappedByteBuffer segment : segments.values()) {
+            segment.force();
+        }
+    }
+
+    private JournaledRequests fetchOperation(String serviceName, String operationId) {
+        String key = serviceName + '\n' + operationId;
+        JournaledRequests requests = operations.get(key);
+        if (requests == null) {
+            operations.putIfAbsent(key, new JournaledRequests(serviceName, operationId));
+            requests = operations.get(key);
+        }
+        return requests;
+    }
+
+    private void replay() throws IOException {
+        String[] fileNames = directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        List<Integer> segmentIds = new ArrayList<Integer>();
+        for (String fileName : fileNames) {
+            try {
+                segmentIds.add(Integer.valueOf(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length())));
+            } catch (NumberFormatException e) {
+                LOG.warn("Ignoring unexpected file in journal directory: " + fileName);
+            }
+        }
+        Collections.sort(segmentIds);
+
+        if (segmentIds.isEmpty()) {
+            openSegment(0);
+            return;
+        }
+        firstSegment = segmentIds.get(0);
+        for (Integer segmentId : segmentIds) {
+            activeSegment = segmentId;
+            writePosition = replaySegment(segmentId, openSegment(segmentId));
+        }
+        LOG.info("Replayed " + segmentIds.size() + " journal segment(s) from " + directory);
+    }
+
+    private int replaySegment(int segmentId, ByteBuffer segment) {
+        int position = 0;
+        while (position + LENGTH_BYTES <= segment.limit()) {
+            int length = segment.getInt(position);
+            if (length <= 0 || position + LENGTH_BYTES + length > segment.limit()) {
+                break;
+            }
+            ByteBuffer record = slice(segment, position + LENGTH_BYTES, length);
+            byte type = record.get();
+            long serviceTimeNanos = NOT_COMPLETED;
+            if (type == REQUEST_RECORD) {
+                serviceTimeNanos = record.getLong(SERVICE_TIME_OFFSET);
+                record.position(SERVICE_TIME_OFFSET + 8);
+            }
+            JournaledRequests requests = fetchOperation(readString(record), readString(record));
+            if (type == CLEAR_RECORD) {
+                requests.index.clear();
+            } else {
+                requests.index.add(toJournalPosition(segmentId, position), length, serviceTimeNanos);
+            }
+            position += LENGTH_BYTES + length;
+        }
+        return position;
+    }
+
+    private MappedByteBuffer openSegment(int segmentId) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(segmentFile(segmentId), "rw");
+        try {
+            file.setLength(segmentBytes);
+            MappedByteBuffer segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            segments.put(segmentId, segment);
+            return segment;
+        } finally {
+            file.close();
+        }
+    }
+
+    private File segmentFile(int segmentId) {
+        return new File(directory, String.format("%010d%s", segmentId, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * @return position of the appended record, -1 if it does not fit into a segment
+     */
+    private long append(byte[] record) {
+        int length = LENGTH_BYTES + record.length;
+        if (length > segmentBytes) {
+            return -1;
+        }
+
+        int segmentId;
+        int position;
+        MappedByteBuffer segment;
+        synchronized (this) {
+            if (writePosition + length > segmentBytes) {
+                rollOver();
+            }
+            segmentId = activeSegment;
+            position = writePosition;
+            writePosition += length;
+            segment = segments.get(segmentId);
+        }
+
+        // length is written last, so replay never reads a record which was not completely written
+        ByteBuffer target = segment.duplicate();
+        target.position(position + LENGTH_BYTES);
+        target.put(record);
+        segment.putInt(position, record.length);
+        return toJournalPosition(segmentId, position);
+    }
+
+    // called holding this
+    private void rollOver() {
+        try {
+            activeSegment++;
+            writePosition = 0;
+            openSegment(activeSegment);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't create journal segment " + segmentFile(activeSegment), e);
+        }
+        while (activeSegment - firstSegment + 1 > maxSegments) {
+            int oldest = firstSegment;
+            firstSegment = oldest + 1;
+            segments.remove(oldest);
+            if (!segmentFile(oldest).delete()) {
+                LOG.warn("Can't delete journal segment " + segmentFile(oldest));
+            }
+        }
+    }
+
+    /**
+     * @param serviceTimeNanos service time of the request as indexed, {@link #NOT_COMPLETED} if not known yet; the
+     *                         one in the record is not read, as it may be being written
+     */
+    private MockRequest read(Map<Integer, MappedByteBuffer> segmentsSnapshot, long journalPosition, long serviceTimeNanos) {
+        MappedByteBuffer segment = segmentsSnapshot.get(segmentOf(journalPosition));
+        if (segment == null) {
+            return null;
+        }
+        int position = offsetOf(journalPosition);
+        ByteBuffer record = slice(segment, position + LENGTH_BYTES, segment.getInt(position));
+        record.get();
+        RequestTiming timing = null;
+        if (record.get() == 1) {
+            timing = new RequestTiming(record.getLong());
+            if (serviceTimeNanos != NOT_COMPLETED) {
+                timing.complete(timing.getArrivalNanos() + serviceTimeNanos);
+            }
+        }
+        record.position(SERVICE_TIME_OFFSET + 8);
+        readString(record);
+        readString(record);
+
+        long recordedAt = record.getLong();
+        RecordedBody body = readBody(record);
+        String queryString = readString(record);
+        String resourcePath = readString(record);
+        MultivaluedMap<String, String> headers = null;
+        int headerCount = record.getInt();
+        if (headerCount >= 0) {
+            headers = new MultivaluedMapImpl<String, String>();
+            for (int i = 0; i < headerCount; i++) {
+                String name = readString(record);
+                int valueCount = record.getInt();
+                for (int j = 0; j < valueCount; j++) {
+                    headers.add(name, readString(record));
+                }
+            }
+        }
+        MockResponse response = record.get() == 1 ? readResponse(record) : null;
+        return new MockRequest(body, queryString, resourcePath, headers, recordedAt, timing, response);
+    }
+
+    private static void writeTiming(DataOutputStream out, RequestTiming timing) throws IOException {
+        Long serviceTimeNanos = timing != null ? timing.getServiceTimeNanos() : null;
+        out.writeByte(timing != null ? 1 : 0);
+        out.writeLong(timing != null ? timing.getArrivalNanos() : 0);
+        out.writeLong(serviceTimeNanos != null ? serviceTimeNanos : NOT_COMPLETED);
+    }
+
+    private static RecordedBody readBody(ByteBuffer record) {
+        byte kind = record.get();
+        if (kind == NO_BODY) {
+            return null;
+        }
+        if (kind == TEXT_BODY) {
+            return RecordedBody.of(readString(record));
+        }
+        int length = record.getInt();
+        int encodedLength = record.getInt();
+        byte[] deflated = new byte[record.getInt()];
+        record.get(deflated);
+        return RecordedBody.deflated(deflated, length, encodedLength);
+    }
+
+    private static void writeBody(DataOutputStream out, RecordedBody body) throws IOException {
+        if (body == null) {
+            out.writeByte(NO_BODY);
+        } else if (body.isCompressed()) {
+            out.writeByte(DEFLATED_BODY);
+            out.writeInt(body.length());
+            out.writeInt(body.getEncodedLength());
+            out.writeInt(body.getDeflated().length);
+            out.write(body.getDeflated());
+        } else {
+            out.writeByte(TEXT_BODY);
+            writeString(out, body.getText());
+        }
+    }
+
+    private static MockResponse readResponse(ByteBuffer record) {
+        int code = record.getInt();
+        String contentType = readString(record);
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        int headerCount = record.getInt();
+        for (int i = 0; i < headerCount; i++) {
+            headers.put(readString(record), readString(record));
+        }
+        String body = readString(record);
+        byte[] binaryBody = null;
+        int binaryLength = record.getInt();
+        if (binaryLength >= 0) {
+            binaryBody = new byte[binaryLength];
+            record.get(binaryBody);
+        }
+        return MockResponse.body(body).code(code).contentType(contentType).headers(headers).binaryBody(binaryBody).build();
+    }
+
+    private static void writeResponse(DataOutputStream out, MockResponse response) throws IOException {
+        if (response == null) {
+            out.writeByte(0);
+            return;
+        }
+        out.writeByte(1);
+        out.writeInt(response.getCode());
+        writeString(out, response.getContentType());
+        Map<String, String> headers = response.getHeaders() != null ? response.getHeaders() : Collections.<String, String>emptyMap();
+        out.writeInt(headers.size());
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            writeString(out, header.getKey());
+            writeString(out, header.getValue());
+        }
+        writeString(out, response.getBody());
+        byte[] binaryBody = response.getBinaryBody();
+        if (binaryBody == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(binaryBody.length);
+            out.write(binaryBody);
+        }
+    }
+
+    private static byte[] encode(byte type, String serviceName, String operationId, MockRequest request) {
+        RecordedBody body = request != null ? request.getRecordedBody() : null;
+        int bodyBytes = body != null ? body.getStoredBytes() : 0;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(request != null ? 256 + bodyBytes : 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(type);
+            if (request != null) {
+                writeTiming(out, request.getTiming());
+            }
+            writeString(out, serviceName);
+            writeString(out, operationId);
+            if (request != null) {
+                out.writeLong(request.getRecordedAt());
+                writeBody(out, body);
+                writeString(out, request.getQueryString());
+                writeString(out, request.getResourcePath());
+                MultivaluedMap<String, String> headers = request.getHeaders();
+                if (headers == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(headers.size());
+                    for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                        writeString(out, header.getKey());
+                        List<String> values = header.getValue() != null ? header.getValue() : Collections.<String>emptyList();
+                        out.writeInt(values.size());
+                        for (String value : values) {
+                            writeString(out, value);
+                        }
+                    }
+                }
+                writeResponse(out, request.getResponse());
+            }
+            out.flush();
+        } catch (IOException e) {
+            // not thrown by in-memory stream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static ByteBuffer slice(ByteBuffer segment, int position, int length) {
+        ByteBuffer record = segment.duplicate();
+        record.position(position);
+        record.limit(position + length);
+        return record.slice();
+    }
+
+    private static long toJournalPosition(int segmentId, int offset) {
+        return ((long) segmentId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int segmentOf(long journalPosition) {
+        return (int) (journalPosition >>> 32);
+    }
+
+    private static int offsetOf(long journalPosition) {
+        return (int) journalPosition;
+    }
+
+    /**
+     * Positions and service times of one operation's records; 20 bytes per recorded request
+     */
+    private static final class JournalIndex {
+        private long[] positions = new long[16];
+        private int[] lengths = new int[16];
+        // service times of requests whose response is complete, NOT_COMPLETED for others
+        private long[] serviceTimes = new long[16];
+        private int size;
+        // sequence number of the record at positions[0]
+        private long firstSequence;
+
+        /**
+         * @return sequence number of the record
+         */
+        synchronized long add(long position, int length, long serviceTimeNanos) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+                serviceTimes = Arrays.copyOf(serviceTimes, size * 2);
+            }
+            positions[size] = position;
+            lengths[size] = length;
+            serviceTimes[size] = serviceTimeNanos;
+            return firstSequence + size++;
+        }
+
+        synchronized void clear() {
+            positions = new long[16];
+            lengths = new int[16];
+            serviceTimes = new long[16];
+            firstSequence += size;
+            size = 0;
+        }
+
+        /**
+         * @return position of the record with the sequence number, -1 if it is not indexed
+         */
+        synchronized long positionOf(long sequence) {
+            long i = sequence - firstSequence;
+            return i >= 0 && i < size ? positions[(int) i] : -1;
+        }
+
+        /**
+         * @return service time of the record with the sequence number, NOT_COMPLETED if it is not known
+         */
+        synchronized long serviceTimeOf(long sequence) {
+            long i = sequence - firstSequence;
+            return i >= 0 && i < size ? serviceTimes[(int) i] : NOT_COMPLETED;
+        }
+
+        /**
+         * Sets service time of the record with the sequence number, unless it is not indexed any more
+         */
+        synchronized void complete(long sequence, long serviceTimeNanos) {
+            long i = sequence - firstSequence;
+            if (i >= 0 && i < size) {
+                serviceTimes[(int) i] = serviceTimeNanos;
+            }
+        }
+
+        synchronized long firstSequence() {
+            return firstSequence;
+        }
+
+        synchronized long nextSequence() {
+            return firstSequence + size;
+        }
+
+        /**
+         * Forgets records of deleted segments
+         *
+         * @return number of forgotten records
+         */
+        synchronized int trimBefore(int firstSegment) {
+            int trimmed = 0;
+            while (trimmed < size && segmentOf(positions[trimmed]) < firstSegment) {
+                trimmed++;
+            }
+            if (trimmed > 0) {
+                System.arraycopy(positions, trimmed, positions, 0, size - trimmed);
+                System.arraycopy(lengths, trimmed, lengths, 0, size - trimmed);
+                System.arraycopy(serviceTimes, trimmed, serviceTimes, 0, size - trimmed);
+                size -= trimmed;
+                firstSequence += trimmed;
+            }
+            return trimmed;
+        }
+
+        synchronized long[] positions() {
+            return Arrays.copyOf(positions, size);
+        }
+
+        synchronized long[] serviceTimes() {
+            return Arrays.copyOf(serviceTimes, size);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long bytes() {
+            long bytes = 0;
+            for (int i = 0; i < size; i++) {
+                bytes += lengths[i];
+            }
+            return bytes;
+        }
+    }
+
+    private final class JournaledRequests implements RecordedRequestsStore {
+        private final String serviceName;
+        private final String operationId;
+        private final JournalIndex index = new JournalIndex();
+        private final AtomicLong recordedCount = new AtomicLong();
+        private final AtomicLong evictedCount = new AtomicLong();
+        private final AtomicLong droppedCount = new AtomicLong();
+
+        private JournaledRequests(String serviceName, String operationId) {
+            this.serviceName = serviceName;
+            this.operationId = operationId;
+        }
+
+        @Override
+        public long add(MockRequest request) {
+            recordedCount.incrementAndGet();
+            byte[] record = encode(REQUEST_RECORD, serviceName, operationId, request);
+            long position = append(record);
+            if (position < 0) {
+                droppedCount.incrementAndGet();
+                return -1;
+            }
+            final RequestTiming timing = request.getTiming();
+            Long serviceTimeNanos = timing != null ? timing.getServiceTimeNanos() : null;
+            final long sequence = index.add(position, record.length, serviceTimeNanos != null ? serviceTimeNanos : NOT_COMPLETED);
+            if (timing != null && serviceTimeNanos == null) {
+                final long requestPosition = position;
+                timing.onCompletion(new Runnable() {
+                    @Override
+                    public void run() {
+                        completed(sequence, requestPosition, timing.getServiceTimeNanos());
+                    }
+                });
+            }
+            return sequence;
+        }
+
+        /**
+         * Records service time of a request journaled while its response was being written; the index serves
+         * reads, the record keeps it for replay
+         */
+        private void completed(long sequence, long requestPosition, long serviceTimeNanos) {
+            index.complete(sequence, serviceTimeNanos);
+            MappedByteBuffer segment = segments.get(segmentOf(requestPosition));
+            if (segment != null) {
+                segment.putLong(offsetOf(requestPosition) + LENGTH_BYTES + SERVICE_TIME_OFFSET, serviceTimeNanos);
+            }
+        }
+
+        @Override
+        public MockRequest get(long sequence) {
+            trim();
+            long position;
+            long serviceTimeNanos;
+            synchronized (index) {
+                position = index.positionOf(sequence);
+                serviceTimeNanos = index.serviceTimeOf(sequence);
+            }
+            return position >= 0 ? read(segments, position, serviceTimeNanos) : null;
+        }
+
+        @Override
+        public long getFirstSequence() {
+            trim();
+            return index.firstSequence();
+        }
+
+        @Override
+        public long getNextSequence() {
+            return index.nextSequence();
+        }
+
+        @Override
+        public List<MockRequest> getRequests() {
+            trim();
+            final Map<Integer, MappedByteBuffer> segmentsSnapshot = new HashMap<Integer, MappedByteBuffer>(segments);
+            final long[] positions;
+            final long[] serviceTimes;
+            synchronized (index) {
+                positions = index.positions();
+                serviceTimes = index.serviceTimes();
+            }
+            return new AbstractList<MockRequest>() {
+                @Override
+                public MockRequest get(int i) {
+                    return read(segmentsSnapshot, positions[i], serviceTimes[i]);
+                }
+
+                @Override
+                public int size() {
+                    return positions.length;
+                }
+            };
+        }
+
+        @Override
+        public RecordedRequestsStore cleared() {
+            append(encode(CLEAR_RECORD, serviceName, operationId, null));
+            index.clear();
+            recordedCount.set(0);
+            evictedCount.set(0);
+            droppedCount.set(0);
+            return this;
+        }
+
+        private void trim() {
+            evictedCount.addAndGet(index.trimBefore(firstSegment));
+        }
+
+        @Override
+        public int getCapacity() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public long getMaxBytes() {
+            return (long) segmentBytes * maxSegments;
+        }
+
+        @Override
+        public int getRetainedCount() {
+            trim();
+            return index.size();
+        }
+
+        @Override
+        public long getRetainedBytes() {
+            trim();
+            return index.bytes();
+        }
+
+        @Override
+        public long getRecordedCount() {
+            return recordedCount.get();
+        }
+
+        @Override
+        public long getEvictedCount() {
+            trim();
+            return evictedCount.get();
+        }
+
+        @Override
+        public long getDroppedCount() {
+            return droppedCount.get();
+        }
+    }
+
+}
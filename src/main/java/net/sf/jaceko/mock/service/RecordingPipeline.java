@@ -0,0 +1,205 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.RequestContext;
+import net.sf.jaceko.mock.model.request.RequestTiming;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves recording off the request threads. Request threads publish a record referencing the request into a
+ * pre-allocated ring; a single background thread takes records in sequence and stores them (XML declaration removal,
+ * indexing, journaling, notification of waiters and subscribers). Readers of recorded requests call
+ * {@link #awaitPublished()} first so that they see every request published before the read.
+ * <p/>
+ * Request threads only wait when the ring is full, i.e. when the consumer is a whole ring behind.
+ */
+public class RecordingPipeline {
+    /**
+     * ring size used unless configured otherwise
+     */
+    public static final int DEFAULT_RING_SIZE = 4096;
+
+    private static final Logger LOG = Logger.getLogger(RecordingPipeline.class);
+
+    private static final int SPINS_BEFORE_PARKING = 100;
+    private static final long PRODUCER_PARK_NANOS = 1000L;
+    private static final long BARRIER_PARK_NANOS = 50000L;
+    private static final long CONSUMER_PARK_NANOS = 10000000L;
+
+    private final Slot[] ring;
+    private final int mask;
+
+    // last sequence claimed by a request thread
+    private final AtomicLong claimed = new AtomicLong(-1);
+    // last sequence stored by the consumer
+    private final AtomicLong consumed = new AtomicLong(-1);
+
+    private volatile boolean running;
+    private volatile boolean consumerParked;
+    private Thread consumer;
+
+    /**
+     * @param ringSize number of records the ring holds, rounded up to a power of two
+     */
+    public RecordingPipeline(int ringSize) {
+        int size = Integer.highestOneBit(Math.max(ringSize, 1));
+        if (size < ringSize) {
+            size <<= 1;
+        }
+        ring = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Slot();
+        }
+        mask = size - 1;
+    }
+
+    public int getRingSize() {
+        return ring.length;
+    }
+
+    /**
+     * Starts the consumer thread storing published requests in given holder
+     */
+    synchronized void start(final RecordedRequestsHolder recordedRequestsHolder) {
+        if (consumer != null) {
+            throw new IllegalStateException("Recording pipeline already started");
+        }
+        running = true;
+        consumer = new ThreadFactoryBuilder().setNameFormat("mock-recorder").setDaemon(true).build().newThread(new Runnable() {
+            @Override
+            public void run() {
+                consume(recordedRequestsHolder);
+            }
+        });
+        consumer.start();
+    }
+
+    /**
+     * Stops the consumer once it has stored every request published so far
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (consumer == null) {
+            return;
+        }
+        awaitPublished();
+        running = false;
+        LockSupport.unpark(consumer);
+        consumer.join();
+        consumer = null;
+    }
+
+    /**
+     * Publishes a request to be recorded by the consumer
+     *
+     * @return sequence of the published request
+     */
+    public long publish(String serviceName, String operationId, RequestContext requestContext, RequestTiming timing,
+                        MockResponse response) {
+        long recordedAt = System.currentTimeMillis();
+        long sequence = claimed.incrementAndGet();
+        long wrapPoint = sequence - ring.length;
+        while (consumed.get() < wrapPoint) {
+            // ring is full - the slot is still held by the record published a whole ring ago
+            LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+        }
+        Slot slot = ring[(int) (sequence & mask)];
+        slot.serviceName = serviceName;
+        slot.operationId = operationId;
+        slot.requestContext = requestContext;
+        slot.timing = timing;
+        slot.response = response;
+        slot.recordedAt = recordedAt;
+        slot.sequence = sequence;
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+        return sequence;
+    }
+
+    /**
+     * Waits until the consumer has stored the request of given sequence and all before it
+     */
+    public void awaitConsumed(long sequence) {
+        int spins = 0;
+        while (consumed.get() < sequence) {
+            if (++spins < SPINS_BEFORE_PARKING) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(BARRIER_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Waits until the consumer has stored every request published before this call
+     */
+    public void awaitPublished() {
+        awaitConsumed(claimed.get());
+    }
+
+    private void consume(RecordedRequestsHolder recordedRequestsHolder) {
+        long next = consumed.get() + 1;
+        int spins = 0;
+        while (running) {
+            Slot slot = ring[(int) (next & mask)];
+            if (slot.sequence != next) {
+                if (++spins < SPINS_BEFORE_PARKING) {
+                    Thread.yield();
+                } else {
+                    consumerParked = true;
+                    if (slot.sequence != next) {
+                        LockSupport.parkNanos(CONSUMER_PARK_NANOS);
+                    }
+                    consumerParked = false;
+                }
+                continue;
+            }
+            spins = 0;
+            try {
+                recordedRequestsHolder.storeRequest(slot.serviceName, slot.operationId, slot.requestContext, slot.timing,
+                    slot.response, slot.recordedAt);
+            } catch (RuntimeException e) {
+                LOG.error("Problem recording request of operation " + slot.operationId + " of service " + slot.serviceName, e);
+            }
+            // do not keep the request reachable until the slot is reused
+            slot.requestContext = null;
+            slot.timing = null;
+            slot.response = null;
+            consumed.set(next++);
+        }
+    }
+
+    private static final class Slot {
+        private String serviceName;
+        private String operationId;
+        private RequestContext requestContext;
+        private RequestTiming timing;
+        private MockResponse response;
+        private long recordedAt;
+        // written last by the producer; makes the fields above visible to the consumer
+        private volatile long sequence = -1;
+    }
+}
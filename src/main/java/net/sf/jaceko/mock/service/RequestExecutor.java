@@ -20,30 +20,51 @@
 package net.sf.jaceko.mock.service;
 
 import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.RequestContext;
+import net.sf.jaceko.mock.model.request.RequestTiming;
 import net.sf.jaceko.mock.model.webservice.WebService;
 import net.sf.jaceko.mock.model.webservice.WebserviceOperation;
 
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.MultivaluedMap;
 
 public class RequestExecutor {
     private MockConfigurationHolder configurationHolder;
 
-    private Delayer delayService;
-
     private RecordedRequestsHolder recordedRequestsHolder;
 
-    public MockResponse performRequest(String serviceName, String operationId, String request, String queryString,
+    /**
+     * Performs REST request; it is served by the operation declaring a path template the resource path matches,
+     * otherwise by the operation of the HTTP method
+     */
+    public MockResponse performRequest(String serviceName, String httpMethod, String request, String queryString,
                                        String resourcePath, MultivaluedMap<String, String> headers) {
-        WebserviceOperation serviceOperation = configurationHolder.getWebServiceOperation(serviceName, operationId);
-        serviceOperation.setRequest(request);
-        int invocationNumber = serviceOperation.getNextInvocationNumber();
-        MockResponse response = serviceOperation.getResponse(invocationNumber);
-        recordedRequestsHolder.recordRequest(serviceName, operationId, request, queryString, resourcePath, headers);
-        delayService.delaySec(response.getDelaySec());
+        WebserviceOperation serviceOperation = configurationHolder.getRestOperation(serviceName, httpMethod, resourcePath);
+        String operationId = serviceOperation.getPathTemplate() != null ? serviceOperation.getOperationId() : httpMethod;
+        return performRequest(serviceName, operationId, serviceOperation,
+            new RequestContext(request, null, queryString, resourcePath, headers));
+    }
+
+    public MockResponse performRequest(String serviceName, String operationId, RequestContext request) {
+        return performRequest(serviceName, operationId, configurationHolder.getWebServiceOperation(serviceName, operationId), request);
+    }
+
+    private MockResponse performRequest(String serviceName, String operationId, WebserviceOperation serviceOperation,
+                                        RequestContext request) {
+        MockResponse response = serviceOperation.getNextResponse(request);
+        recordedRequestsHolder.recordRequest(serviceName, operationId, request, getRequestTiming(), response);
+        // response delay (if any) is applied by the endpoint without holding the calling thread
         return response;
 
     }
 
+    private static RequestTiming getRequestTiming() {
+        HttpServletRequest servletRequest = ResteasyProviderFactory.getContextData(HttpServletRequest.class);
+        return servletRequest != null ? (RequestTiming) servletRequest.getAttribute(RequestTiming.ATTRIBUTE_NAME) : null;
+    }
+
     public String getWsdl(String serviceName) {
         WebService soapService = configurationHolder.getWebService(serviceName);
         return soapService.getWsdlText();
@@ -53,10 +74,6 @@ public class RequestExecutor {
         this.configurationHolder = configuration;
     }
 
-    public void setDelayer(Delayer delayService) {
-        this.delayService = delayService;
-    }
-
     public void setRecordedRequestsHolder(RecordedRequestsHolder recordedRequestsHolder) {
         this.recordedRequestsHolder = recordedRequestsHolder;
     }
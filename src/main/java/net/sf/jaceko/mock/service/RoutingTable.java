@@ -0,0 +1,121 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.exception.ServiceNotConfiguredException;
+import net.sf.jaceko.mock.model.webservice.WebService;
+import net.sf.jaceko.mock.model.webservice.WebserviceOperation;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable lookup table of configured services and their operations, built once per configuration load.
+ * SOAP operations are keyed by request element name, REST operations by HTTP method name, so each REST
+ * service gets its own per-method index. REST operations declaring a path template are keyed by their
+ * operation id and routed by resource path through a {@link PathRouter} of their service.
+ * <p/>
+ * Operations of a service declaring a template whose operation id is shared by another operation, or declaring
+ * the same template for a method, are rejected with {@link ServiceNotConfiguredException}.
+ */
+final class RoutingTable {
+
+    static final RoutingTable EMPTY = new RoutingTable(Collections.<WebService>emptyList());
+
+    private final Map<String, WebService> services;
+    private final Map<String, Map<String, WebserviceOperation>> operations;
+    private final Map<String, PathRouter> pathRouters;
+
+    RoutingTable(Collection<WebService> webServices) {
+        Map<String, WebService> servicesByName = new LinkedHashMap<String, WebService>();
+        Map<String, Map<String, WebserviceOperation>> operationsByService = new HashMap<String, Map<String, WebserviceOperation>>();
+        Map<String, PathRouter> routersByService = new HashMap<String, PathRouter>();
+
+        for (WebService service : webServices) {
+            servicesByName.put(service.getName(), service);
+            operationsByService.put(service.getName(), indexOperations(service));
+            PathRouter router = routePaths(service);
+            if (!router.isEmpty()) {
+                routersByService.put(service.getName(), router);
+            }
+        }
+        this.services = Collections.unmodifiableMap(servicesByName);
+        this.operations = operationsByService;
+        this.pathRouters = routersByService;
+    }
+
+    private static Map<String, WebserviceOperation> indexOperations(WebService service) {
+        Map<String, WebserviceOperation> operationsById = new HashMap<String, WebserviceOperation>();
+        for (WebserviceOperation operation : service.getOperations()) {
+            String operationId = operation.getOperationId();
+            if (operationId == null) {
+                continue;
+            }
+            WebserviceOperation declared = operationsById.get(operationId);
+            if (declared == null) {
+                operationsById.put(operationId, operation);
+            } else if (declared.getPathTemplate() != null || operation.getPathTemplate() != null) {
+                throw new ServiceNotConfiguredException("Duplicate operation " + operationId + " of service "
+                    + service.getName());
+            }
+            // of operations named alike without a template, first declared one wins, as with the former linear scan
+        }
+        return operationsById;
+    }
+
+    private static PathRouter routePaths(WebService service) {
+        PathRouter router = new PathRouter();
+        for (WebserviceOperation operation : service.getOperations()) {
+            if (operation.getPathTemplate() != null && operation.getOperationName() != null
+                && !router.add(operation.getOperationName(), operation.getPathTemplate(), operation)) {
+                throw new ServiceNotConfiguredException("Duplicate path template " + operation.getPathTemplate()
+                    + " of " + operation.getOperationName() + " operations of service " + service.getName());
+            }
+        }
+        router.compile();
+        return router;
+    }
+
+    Collection<WebService> getWebServices() {
+        return services.values();
+    }
+
+    WebService getWebService(String serviceName) {
+        return services.get(serviceName);
+    }
+
+    WebserviceOperation getOperation(String serviceName, String operationId) {
+        Map<String, WebserviceOperation> serviceOperations = operations.get(serviceName);
+        return serviceOperations != null ? serviceOperations.get(operationId) : null;
+    }
+
+    /**
+     * @return REST operation declaring a template the path matches, otherwise the one keyed by HTTP method
+     */
+    WebserviceOperation routeOperation(String serviceName, String httpMethod, String resourcePath) {
+        PathRouter router = pathRouters.get(serviceName);
+        WebserviceOperation operation = router != null ? router.route(httpMethod, resourcePath) : null;
+        return operation != null ? operation : getOperation(serviceName, httpMethod);
+    }
+
+}
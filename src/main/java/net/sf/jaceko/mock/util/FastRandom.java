@@ -0,0 +1,85 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.util;
+
+/**
+ * Per-thread xorshift random number source. Unlike {@link java.util.Random} it does not CAS a shared seed
+ * on every call, so sampling from many request threads neither contends nor allocates.
+ */
+public final class FastRandom {
+
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+    private static final ThreadLocal<FastRandom> CURRENT = new ThreadLocal<FastRandom>() {
+        @Override
+        protected FastRandom initialValue() {
+            return new FastRandom(System.nanoTime() ^ Thread.currentThread().getId() * 0x9E3779B97F4A7C15L);
+        }
+    };
+
+    private long seed;
+    private double nextGaussian;
+    private boolean haveNextGaussian;
+
+    FastRandom(long seed) {
+        this.seed = seed == 0 ? 0x2545F4914F6CDD1DL : seed;
+    }
+
+    public static FastRandom current() {
+        return CURRENT.get();
+    }
+
+    public long nextLong() {
+        long x = seed;
+        x ^= x << 13;
+        x ^= x >>> 7;
+        x ^= x << 17;
+        seed = x;
+        return x;
+    }
+
+    /**
+     * @return uniformly distributed value in range [0, 1)
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * @return normally distributed value with mean 0 and standard deviation 1 (polar Box-Muller method)
+     */
+    public double nextGaussian() {
+        if (haveNextGaussian) {
+            haveNextGaussian = false;
+            return nextGaussian;
+        }
+        double v1, v2, s;
+        do {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        double multiplier = Math.sqrt(-2 * Math.log(s) / s);
+        nextGaussian = v2 * multiplier;
+        haveNextGaussian = true;
+        return v1 * multiplier;
+    }
+
+}
@@ -0,0 +1,166 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.util;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Subset of JSONPath selecting values of a JSON document: root <code>$</code>, children <code>.name</code> or
+ * <code>['name']</code>, array elements <code>[0]</code> and wildcards <code>.*</code> or <code>[*]</code>, e.g.
+ * <code>$.order.items[*].sku</code>
+ */
+public class JsonPath {
+    private static final String WILDCARD = "*";
+
+    private final String expression;
+    // member names, Integer array indexes or WILDCARD
+    private final List<Object> steps;
+
+    private JsonPath(String expression, List<Object> steps) {
+        this.expression = expression;
+        this.steps = steps;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is not supported
+     */
+    public static JsonPath compile(String expression) {
+        if (expression == null || !expression.startsWith("$")) {
+            throw new IllegalArgumentException("JSONPath must start with $: " + expression);
+        }
+        List<Object> steps = new ArrayList<Object>();
+        int position = 1;
+        while (position < expression.length()) {
+            char c = expression.charAt(position);
+            if (c == '.') {
+                int end = position + 1;
+                while (end < expression.length() && expression.charAt(end) != '.' && expression.charAt(end) != '[') {
+                    end++;
+                }
+                if (end == position + 1) {
+                    throw new IllegalArgumentException("Empty member name in JSONPath: " + expression);
+                }
+                String name = expression.substring(position + 1, end);
+                steps.add(name.equals(WILDCARD) ? WILDCARD : name);
+                position = end;
+            } else if (c == '[') {
+                int end = expression.indexOf(']', position);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed bracket in JSONPath: " + expression);
+                }
+                steps.add(parseBracket(expression, expression.substring(position + 1, end).trim()));
+                position = end + 1;
+            } else {
+                throw new IllegalArgumentException("Unexpected character '" + c + "' in JSONPath: " + expression);
+            }
+        }
+        return new JsonPath(expression, Collections.unmodifiableList(steps));
+    }
+
+    private static Object parseBracket(String expression, String content) {
+        if (content.equals(WILDCARD)) {
+            return WILDCARD;
+        }
+        if (content.length() >= 2 && (content.charAt(0) == '\'' || content.charAt(0) == '"')
+            && content.charAt(content.length() - 1) == content.charAt(0)) {
+            return content.substring(1, content.length() - 1);
+        }
+        try {
+            return Integer.valueOf(content);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unsupported bracket expression in JSONPath: " + expression);
+        }
+    }
+
+    /**
+     * @return values selected in the document, empty if the text is not JSON
+     */
+    public List<Object> select(String json) {
+        Object document = parse(json);
+        return document != null ? select(document) : Collections.<Object>emptyList();
+    }
+
+    /**
+     * @return JSON object or array, null if the text is not JSON; to be passed to {@link #select(Object)} of
+     * several paths without parsing the text again
+     */
+    public static Object parse(String json) {
+        Object document;
+        try {
+            document = new JSONTokener(json).nextValue();
+        } catch (JSONException e) {
+            return null;
+        }
+        return document instanceof JSONObject || document instanceof JSONArray ? document : null;
+    }
+
+    /**
+     * @return values selected in the document returned by {@link #parse(String)}
+     */
+    public List<Object> select(Object document) {
+        List<Object> current = Collections.singletonList(document);
+        for (Object step : steps) {
+            List<Object> next = new ArrayList<Object>();
+            for (Object node : current) {
+                selectChildren(node, step, next);
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    private static void selectChildren(Object node, Object step, List<Object> selected) {
+        if (node instanceof JSONObject) {
+            JSONObject object = (JSONObject) node;
+            if (step == WILDCARD) {
+                for (Iterator<?> keys = object.keys(); keys.hasNext(); ) {
+                    selected.add(object.opt((String) keys.next()));
+                }
+            } else if (step instanceof String && object.has((String) step)) {
+                selected.add(object.opt((String) step));
+            }
+        } else if (node instanceof JSONArray) {
+            JSONArray array = (JSONArray) node;
+            if (step == WILDCARD) {
+                for (int i = 0; i < array.length(); i++) {
+                    selected.add(array.opt(i));
+                }
+            } else if (step instanceof Integer) {
+                int index = (Integer) step < 0 ? array.length() + (Integer) step : (Integer) step;
+                if (index >= 0 && index < array.length()) {
+                    selected.add(array.opt(index));
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -21,11 +21,15 @@
 
 package net.sf.jaceko.mock.util;
 
-import net.sf.jaceko.mock.dom.DocumentImpl;
+import java.io.StringReader;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import net.sf.jaceko.mock.exception.ClientFaultException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 /**
  * Created by jussi on 30/12/15.
@@ -37,62 +41,95 @@ public class SOAPMessageParser {
     private static final String INVALID_SOAP_REQUEST = "Invalid SOAP request";
     private static final String MALFORMED_XML = "Malformed Xml";
 
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
 
-    public static String extractRequestMessageName(String request) {
-        Node requestMessage = getRequestMessageNode(request);
-
-        if (requestMessage == null) {
-            throw new ClientFaultException(INVALID_SOAP_REQUEST);
-        }
-        return requestMessage.getLocalName();
 
+    public static String extractRequestMessageName(String request) {
+        return extractRequestMessageQName(request).getLocalPart();
     }
 
-    public static Node getRequestMessageNode(String request) {
-        Document reqDocument = null;
+    /**
+     * Streams the request up to the first child element of the SOAP Body and returns its name and namespace.
+     * The rest of the message is not parsed, so large payloads cost only as much as their Envelope and Header.
+     */
+    public static QName extractRequestMessageQName(String request) {
+        if (request == null) {
+            throw new ClientFaultException(MALFORMED_XML);
+        }
 
+        XMLStreamReader reader = null;
         try {
-            reqDocument = new DocumentImpl(request, true);
-        } catch (Exception e) {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(request));
+
+            if (!nextChildElement(reader) || !ENVELOPE.equals(reader.getLocalName())) {
+                throw new ClientFaultException(INVALID_SOAP_REQUEST);
+            }
+            moveToChildElement(reader, BODY);
+            if (!nextChildElement(reader)) {
+                throw new ClientFaultException(INVALID_SOAP_REQUEST);
+            }
+            return new QName(reader.getNamespaceURI(), reader.getLocalName());
+        } catch (XMLStreamException e) {
             throw new ClientFaultException(MALFORMED_XML, e);
+        } finally {
+            closeQuietly(reader);
         }
-
-        reqDocument.normalize();
-        Node envelope = getChildElement(reqDocument, ENVELOPE);
-        Node body = getChildElement(envelope, BODY);
-        Node requestMessage = getChildElement(body);
-
-        return requestMessage;
     }
 
-    public static Node getChildElement(Node parent) {
-        NodeList childNodes = parent.getChildNodes();
-
-        Node foundNode = null;
-        for (int i = 0; i < childNodes.getLength(); i++) {
-            Node childNode = childNodes.item(i);
-            if (childNode.getNodeType() == Node.ELEMENT_NODE) {
-                foundNode = childNode;
-                break;
+    private static void moveToChildElement(XMLStreamReader reader, String elementName) throws XMLStreamException {
+        while (nextChildElement(reader)) {
+            if (elementName.equals(reader.getLocalName())) {
+                return;
             }
+            skipElement(reader);
         }
-        return foundNode;
+        throw new ClientFaultException(INVALID_SOAP_REQUEST);
     }
 
-    public static Node getChildElement(Node parent, String elementName) {
-        NodeList childNodes = parent.getChildNodes();
+    /**
+     * Advances to the next start element on the current level. Returns false when the enclosing element
+     * (or the document) ends first.
+     */
+    private static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
 
-        Node foundNode = null;
-        for (int i = 0; i < childNodes.getLength(); i++) {
-            Node childNode = childNodes.item(i);
-            if (elementName.equals(childNode.getLocalName())) {
-                foundNode = childNode;
-                break;
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
             }
         }
-        if (foundNode == null) {
-            throw new ClientFaultException(INVALID_SOAP_REQUEST);
+    }
+
+    private static void closeQuietly(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // nothing left to release
+            }
         }
-        return foundNode;
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
     }
 }
@@ -0,0 +1,49 @@
+/**
+ *
+ *     Copyright (C) 2016 Mystes Oy
+ *
+ *     This file is part of HTTP API Mock.
+ *
+ *     HTTP API Mock is free software; you can redistribute it and/or modify
+ *     it under the terms of the GNU Lesser General Public License, version 3
+ *     as published by the Free Software Foundation.
+ *
+ *     HTTP API Mock is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public License
+ *     along with SOAP/REST Mock Service; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sf.jaceko.mock.util;
+
+/**
+ * Sizes of text encoded in UTF-8, counted without encoding it
+ */
+public class Utf8 {
+
+    private Utf8() {
+    }
+
+    /**
+     * @return number of bytes of the text encoded in UTF-8; 0 for null
+     */
+    public static long encodedLength(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        long length = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x800) {
+                // surrogate pairs take 4 bytes, 2 more than their 2 chars
+                length += c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE ? 1 : 2;
+            } else if (c >= 0x80) {
+                length++;
+            }
+        }
+        return length;
+    }
+}
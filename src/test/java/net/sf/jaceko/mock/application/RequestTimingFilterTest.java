@@ -0,0 +1,84 @@
+package net.sf.jaceko.mock.application;
+
+import net.sf.jaceko.mock.model.request.RequestTiming;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class RequestTimingFilterTest {
+    private RequestTimingFilter filter = new RequestTimingFilter();
+
+    @Mock
+    private ServletRequest request;
+
+    @Mock
+    private ServletResponse response;
+
+    @Mock
+    private FilterChain chain;
+
+    @Mock
+    private AsyncContext asyncContext;
+
+    @Before
+    public void init() {
+        initMocks(this);
+    }
+
+    @Test
+    public void shouldCompleteTimingWhenChainReturns() throws Exception {
+        filter.doFilter(request, response, chain);
+
+        RequestTiming timing = storedTiming();
+        verify(chain).doFilter(request, response);
+        assertThat(timing.getServiceTimeNanos(), is(greaterThanOrEqualTo(0L)));
+    }
+
+    @Test
+    public void shouldCompleteTimingOfSuspendedRequestWhenAsynchronousProcessingCompletes() throws Exception {
+        when(request.isAsyncStarted()).thenReturn(true);
+        when(request.getAsyncContext()).thenReturn(asyncContext);
+
+        filter.doFilter(request, response, chain);
+
+        RequestTiming timing = storedTiming();
+        assertThat(timing.getServiceTimeNanos(), is(nullValue()));
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(asyncContext).addListener(listener.capture());
+        listener.getValue().onComplete(null);
+        assertThat(timing.getServiceTimeNanos(), is(notNullValue()));
+    }
+
+    @Test
+    public void shouldCompleteTimingIfAsynchronousProcessingCompletedBeforeListenerWasAdded() throws Exception {
+        when(request.isAsyncStarted()).thenReturn(true);
+        when(request.getAsyncContext()).thenThrow(new IllegalStateException());
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(storedTiming().getServiceTimeNanos(), is(notNullValue()));
+    }
+
+    private RequestTiming storedTiming() {
+        ArgumentCaptor<Object> timing = ArgumentCaptor.forClass(Object.class);
+        verify(request).setAttribute(eq(RequestTiming.ATTRIBUTE_NAME), timing.capture());
+        return (RequestTiming) timing.getValue();
+    }
+}
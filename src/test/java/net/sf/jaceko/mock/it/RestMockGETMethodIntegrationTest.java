@@ -19,6 +19,7 @@ public class RestMockGETMethodIntegrationTest {
     private static final String REST_MOCK_ENDPOINT_FORBIDDEN_RESPONSE_CODE = "http://localhost:8080/mock/services/REST/dummy-rest-notauthorized/endpoint";
     private static final String REST_MOCK_ENDPOINT_RESOURCE_PATHS_ENABLED = "http://localhost:8080/mock/services/REST/dummy-rest-paths-enabled/endpoint";
     private static final String REST_MOCK_ENDPOINT_BINARY = "http://localhost:8080/mock/services/REST/dummy-rest-binary/endpoint";
+    private static final String REST_MOCK_ENDPOINT_PATH_TEMPLATES = "http://localhost:8080/mock/services/REST/dummy-rest-path-templates/endpoint";
     private static final String REST_MOCK_ENDPOINT_WITH_HEADERS = "http://localhost:8080/mock/services/REST/dummy-rest-for-headers/endpoint";
 
     private final RestMockGETMethodIntegrationTestHelper testHelper = new RestMockGETMethodIntegrationTestHelper();
@@ -136,4 +137,19 @@ public class RestMockGETMethodIntegrationTest {
     public void shouldReturnCorrectHeadersForOperationWithHeadersSet() throws IOException {
         testHelper.shouldReturnCorrectHeadersForOperationWithHeadersSet(REST_MOCK_ENDPOINT_WITH_HEADERS);
     }
+
+    @Test
+    public void shouldRouteRequestByPathTemplate() throws IOException, ParserConfigurationException, SAXException {
+        testHelper.shouldRouteRequestByPathTemplate(REST_MOCK_ENDPOINT_PATH_TEMPLATES);
+    }
+
+    @Test
+    public void shouldServeResponseMixIndefinitely() throws IOException {
+        testHelper.shouldServeResponseMixIndefinitely(REST_MOCK_ENDPOINT);
+    }
+
+    @Test
+    public void shouldInjectTransportFaultsAndKeepServing() throws IOException {
+        testHelper.shouldInjectTransportFaultsAndKeepServing(REST_MOCK_ENDPOINT);
+    }
 }
@@ -10,15 +10,29 @@ import org.xml.sax.SAXException;
 
 import javax.ws.rs.core.MediaType;
 import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.startsWith;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.xml.HasXPath.hasXPath;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  * Created by esa on 12.1.2015.
@@ -28,6 +42,7 @@ public class RestMockGETMethodIntegrationTestHelper {
     private static final String REST_MOCK_GET_RESPONSES = "http://localhost:8080/mock/services/REST/dummy-rest/operations/GET/responses";
     private static final String REST_MOCK_GET_RESPONSE_1 = REST_MOCK_GET_RESPONSES + "/1";
     private static final String REST_MOCK_GET_RESPONSE_2 = REST_MOCK_GET_RESPONSES + "/2";
+    private static final String REST_MOCK_GET_MIX = "http://localhost:8080/mock/services/REST/dummy-rest/operations/GET/mix";
     private static final String REST_MOCK_GET_RECORDED_RESOURCE_IDS = "http://localhost:8080/mock/services/REST/dummy-rest/operations/GET/recorded-resource-ids";
     private static final String REST_MOCK_GET_RECORDED_RESOURCE_PATHS = "http://localhost:8080/mock/services/REST/dummy-rest/operations/GET/recorded-resource-paths";
     private static final String REST_MOCK_GET_RECORDED_REQUEST_PARAMS = "http://localhost:8080/mock/services/REST/dummy-rest/operations/GET/recorded-request-params";
@@ -36,15 +51,21 @@ public class RestMockGETMethodIntegrationTestHelper {
     private static final String REST_MOCK_GET_INIT_FOR_PATH_ENABLED_SERVICE = "http://localhost:8080/mock/services/REST/dummy-rest-paths-enabled/operations/GET/init";
     private static final String REST_MOCK_GET_RECORDED_RESOURCE_IDS_FOR_PATH_ENABLED_SERVICE = "http://localhost:8080/mock/services/REST/dummy-rest-paths-enabled/operations/GET/recorded-resource-ids";
     private static final String REST_MOCK_GET_RECORDED_RESOURCE_PATHS_FOR_PATH_ENABLED_SERVICE = "http://localhost:8080/mock/services/REST/dummy-rest-paths-enabled/operations/GET/recorded-resource-paths";
+    private static final String REST_MOCK_GET_ORDER_OPERATION = "http://localhost:8080/mock/services/REST/dummy-rest-path-templates/operations/GET_customers_%7Bid%7D_orders_%7BorderId%7D";
+    private static final String REST_MOCK_GET_INIT_FOR_PATH_TEMPLATES_SERVICE = "http://localhost:8080/mock/services/REST/dummy-rest-path-templates/operations/GET/init";
     private static final String BINARY_DEFAULT_RESPONSE_FILE_NAME = "default_rest_get_binary_response.gif";
     private static final String BINARY_DEFAULT_RESPONSE_FILE_PATH = "it/" + BINARY_DEFAULT_RESPONSE_FILE_NAME;
 
+    private static final int RAW_REQUEST_TIMEOUT_MILLIS = 10000;
+
     private final HttpRequestSender requestSender = new HttpRequestSender();
 
     public void initMock() throws IOException {
         // initalizing mock, clearing history of previous requests
         requestSender.sendPostRequest(REST_MOCK_GET_INIT, "", MediaType.TEXT_XML);
         requestSender.sendPostRequest(REST_MOCK_GET_INIT_FOR_PATH_ENABLED_SERVICE, "", MediaType.TEXT_XML);
+        requestSender.sendPostRequest(REST_MOCK_GET_INIT_FOR_PATH_TEMPLATES_SERVICE, "", MediaType.TEXT_XML);
+        requestSender.sendPostRequest(REST_MOCK_GET_ORDER_OPERATION + "/init", "", MediaType.TEXT_XML);
     }
 
     // default response defined in ws-mock.properties
@@ -273,6 +294,90 @@ public class RestMockGETMethodIntegrationTestHelper {
         assertThat("Expected HTTP 404 status code as resource paths are enabled for service", mockResponse.getCode(), is(HttpStatus.SC_NOT_FOUND));
     }
 
+    public void shouldRouteRequestByPathTemplate(String restMockEndpoint) throws IOException, ParserConfigurationException,
+        SAXException {
+        requestSender.sendPutRequest(REST_MOCK_GET_ORDER_OPERATION + "/responses/2", "{\"order\": \"primed\"}", MediaType.APPLICATION_JSON);
+
+        MockResponse order = requestSender.sendGetRequest(restMockEndpoint + "/customers/c1/orders/o1");
+        MockResponse primedOrder = requestSender.sendGetRequest(restMockEndpoint + "/customers/c2/orders/o2");
+        MockResponse other = requestSender.sendGetRequest(restMockEndpoint + "/customers/c1/invoices/i1");
+
+        assertThat(order.getBody().trim(), is("{\"customer\": \"c1\", \"order\": \"o1\"}"));
+        assertThat(primedOrder.getBody(), is("{\"order\": \"primed\"}"));
+        Document otherDoc = new DocumentImpl(other.getBody());
+        assertThat(otherDoc, hasXPath("//get_response_data", equalTo("default REST GET response text")));
+
+        MockResponse recorded = requestSender.sendGetRequest(REST_MOCK_GET_ORDER_OPERATION + "/recorded-resource-paths");
+        Document recordedDoc = new DocumentImpl(recorded.getBody());
+        assertThat(recordedDoc, hasXPath("count(//recorded-resource-paths/recorded-resource-path)", equalTo("2")));
+        assertThat(recordedDoc, hasXPath("//recorded-resource-paths/recorded-resource-path[1]", equalTo("customers/c1/orders/o1")));
+    }
+
+    public void shouldServeResponseMixIndefinitely(String restMockEndpoint) throws IOException {
+        requestSender.sendPostRequest(REST_MOCK_GET_MIX + "?weight=1&code=503", "<unavailable/>", MediaType.TEXT_XML);
+        requestSender.sendPostRequest(REST_MOCK_GET_MIX + "?weight=2&default=true", "", MediaType.TEXT_XML);
+
+        List<Integer> codes = new ArrayList<Integer>();
+        for (int i = 0; i < 6; i++) {
+            codes.add(requestSender.sendGetRequest(restMockEndpoint).getCode());
+        }
+
+        assertThat(codes, contains(HttpStatus.SC_OK, HttpStatus.SC_SERVICE_UNAVAILABLE, HttpStatus.SC_OK,
+            HttpStatus.SC_OK, HttpStatus.SC_SERVICE_UNAVAILABLE, HttpStatus.SC_OK));
+    }
+
+    public void shouldInjectTransportFaultsAndKeepServing(String restMockEndpoint) throws IOException {
+        String customResponseXML = "<custom_get_response>faulty response</custom_get_response>";
+        for (String fault : new String[]{"close-after:10", "malformed-chunked", "empty", "reset", "stall:500"}) {
+            requestSender.sendPostRequest(REST_MOCK_GET_RESPONSES + "?fault=" + fault, customResponseXML, MediaType.TEXT_XML);
+        }
+
+        String closed = sendRawGetRequest(restMockEndpoint);
+        assertThat(closed, startsWith("HTTP/1.1 200 OK\r\n"));
+        assertThat(closed, containsString("Content-Length: " + customResponseXML.length() + "\r\n"));
+        assertThat(closed, endsWith("\r\n\r\n<custom_ge"));
+
+        assertThat(sendRawGetRequest(restMockEndpoint), endsWith("\r\n\r\nzz\r\n" + customResponseXML + "\r\n0\r\n\r\n"));
+        assertThat(sendRawGetRequest(restMockEndpoint), is(""));
+
+        try {
+            sendRawGetRequest(restMockEndpoint);
+            fail("Expected connection to be reset");
+        } catch (SocketException e) {
+            // expected
+        }
+
+        long stallStart = System.currentTimeMillis();
+        assertThat(sendRawGetRequest(restMockEndpoint), endsWith("Connection: close\r\n\r\n"));
+        assertThat(System.currentTimeMillis() - stallStart, is(greaterThanOrEqualTo(500L)));
+
+        assertThat(requestSender.sendGetRequest(restMockEndpoint).getCode(), is(HttpStatus.SC_OK));
+    }
+
+    /**
+     * @return everything received until the server closed the connection
+     */
+    private String sendRawGetRequest(String endpoint) throws IOException {
+        URL url = new URL(endpoint);
+        Socket socket = new Socket(url.getHost(), url.getPort());
+        try {
+            socket.setSoTimeout(RAW_REQUEST_TIMEOUT_MILLIS);
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET " + url.getPath() + " HTTP/1.1\r\nHost: " + url.getHost() + "\r\n\r\n").getBytes("ISO-8859-1"));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                received.write(buffer, 0, read);
+            }
+            return new String(received.toByteArray(), "ISO-8859-1");
+        } finally {
+            socket.close();
+        }
+    }
+
     public void shouldReturnBinaryResponseForBinaryEnabledOperation(String restMockEndpoint) throws IOException {
         MockResponse mockResponse = requestSender.sendGetRequest(restMockEndpoint, true);
 
@@ -1,5 +1,6 @@
 package net.sf.jaceko.mock.it;
 
+import org.json.JSONException;
 import org.junit.Before;
 import org.junit.Test;
 import org.xml.sax.SAXException;
@@ -78,6 +79,31 @@ public class RestMockPOSTMethodIntegrationTest {
         testHelper.shouldDelayResponseFor1sec(REST_MOCK_ENDPOINT);
     }
 
+    @Test
+    public void shouldRecordServiceTimeIncludingDelay() throws IOException, ParserConfigurationException, SAXException {
+        testHelper.shouldRecordServiceTimeIncludingDelay(REST_MOCK_ENDPOINT);
+    }
+
+    @Test
+    public void shouldExportRecordedRequestWithResponse() throws IOException, JSONException {
+        testHelper.shouldExportRecordedRequestWithResponse(REST_MOCK_ENDPOINT);
+    }
+
+    @Test
+    public void shouldRenderResponseTemplateForRequest() throws IOException {
+        testHelper.shouldRenderResponseTemplateForRequest(REST_MOCK_ENDPOINT);
+    }
+
+    @Test
+    public void shouldSelectResponseByRequestContent() throws IOException {
+        testHelper.shouldSelectResponseByRequestContent(REST_MOCK_ENDPOINT);
+    }
+
+    @Test
+    public void shouldPrimeBatchOfResponses() throws IOException, ParserConfigurationException, SAXException {
+        testHelper.shouldPrimeBatchOfResponses(REST_MOCK_ENDPOINT);
+    }
+
     @Test
     public void shouldDelaySecondResponseFor1Sec() throws IOException {
         testHelper.shouldDelaySecondResponseFor1Sec(REST_MOCK_ENDPOINT);
@@ -89,6 +115,11 @@ public class RestMockPOSTMethodIntegrationTest {
         testHelper.shouldVerifyRecordedRequests(REST_MOCK_ENDPOINT);
     }
 
+    @Test
+    public void shouldAwaitRecordedRequests() throws IOException, ParserConfigurationException, SAXException {
+        testHelper.shouldAwaitRecordedRequests(REST_MOCK_ENDPOINT);
+    }
+
     @Test
     public void shouldVerifyRecordedRequestsUsingRequestElement() throws IOException,
         ParserConfigurationException, SAXException {
@@ -6,12 +6,15 @@ import net.sf.jaceko.mock.it.helper.request.HttpRequestSender.RestAttachment;
 import net.sf.jaceko.mock.model.request.MockResponse;
 import net.sf.jaceko.mock.util.FileReader;
 import org.apache.commons.httpclient.HttpStatus;
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
 import javax.ws.rs.core.MediaType;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
+import java.net.URLEncoder;
 import java.util.*;
 
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
@@ -29,7 +32,12 @@ public class RestMockPOSTMethodIntegrationTestHelper {
 
     private static final String REST_MOCK_POST_INIT = "http://localhost:8080/mock/services/REST/dummy-rest/operations/POST/init";
     private static final String REST_MOCK_POST_RESPONSES = "http://localhost:8080/mock/services/REST/dummy-rest/operations/POST/responses";
+    private static final String REST_MOCK_POST_RULES = "http://localhost:8080/mock/services/REST/dummy-rest/operations/POST/rules";
     private static final String REST_MOCK_POST_RECORDED_REQUESTS = "http://localhost:8080/mock/services/REST/dummy-rest/operations/POST/recorded-requests";
+    private static final String REST_MOCK_POST_AWAIT_RECORDED_REQUESTS = "http://localhost:8080/mock/services/REST/dummy-rest/operations/POST/recorded-requests/await";
+    private static final String REST_MOCK_POST_RECORDED_REQUEST_TIMINGS = "http://localhost:8080/mock/services/REST/dummy-rest/operations/POST/recorded-request-timings";
+    private static final String REST_MOCK_EXPORT_RECORDED_REQUESTS = "http://localhost:8080/mock/services/recorded-requests/export?service=dummy-rest&format=jsonl";
+    private static final String REST_MOCK_PRIME_RESPONSES_WITH_INIT = "http://localhost:8080/mock/services/responses?init=true";
     private static final String REST_MOCK_POST_RECORDED_REQUESTS_HEADERS = "http://localhost:8080/mock/services/REST/dummy-rest/operations/POST/recorded-request-headers";
     private static final String REST_MOCK_POST_RECORDED_REQUESTS_WITH_REQUEST_ELEMENT = "http://localhost:8080/mock/services/REST/dummy-rest/operations/POST/recorded-requests?requestElement=request";
     private static final String REST_MOCK_POST_RECORDED_REQUEST_PARAMS = "http://localhost:8080/mock/services/REST/dummy-rest/operations/POST/recorded-request-params";
@@ -87,6 +95,33 @@ public class RestMockPOSTMethodIntegrationTestHelper {
         assertThat("default response code", response.getCode(), is(HttpStatus.SC_CREATED));
     }
 
+    public void shouldRenderResponseTemplateForRequest(String restMockEndpoint) throws IOException {
+        requestSender.sendPostRequest(REST_MOCK_POST_RESPONSES + "?template=true&headers=" + URLEncoder.encode("X-Call:${invocation}", "UTF-8"),
+            "{\"order\": ${jsonPath:$.order.id}, \"call\": ${invocation}}", MediaType.APPLICATION_JSON);
+
+        MockResponse response = requestSender.sendPostRequest(restMockEndpoint, "{\"order\": {\"id\": 17}}", MediaType.APPLICATION_JSON);
+
+        assertThat(response.getBody(), is("{\"order\": 17, \"call\": 1}"));
+        assertThat(response.getHeader("X-Call"), is("1"));
+    }
+
+    public void shouldSelectResponseByRequestContent(String restMockEndpoint) throws IOException {
+        requestSender.sendPostRequest(REST_MOCK_POST_RULES + "?code=404&when=" + URLEncoder.encode("jsonPath:$.customer=unknown", "UTF-8"),
+            "{\"error\": \"no such customer\"}", MediaType.APPLICATION_JSON);
+        requestSender.sendPostRequest(REST_MOCK_POST_RULES + "?when=" + URLEncoder.encode("jsonPath:$.customer=42", "UTF-8"),
+            "{\"customer\": 42}", MediaType.APPLICATION_JSON);
+
+        MockResponse unknown = requestSender.sendPostRequest(restMockEndpoint, "{\"customer\": \"unknown\"}", MediaType.APPLICATION_JSON);
+        MockResponse known = requestSender.sendPostRequest(restMockEndpoint, "{\"customer\": 42}", MediaType.APPLICATION_JSON);
+        MockResponse other = requestSender.sendPostRequest(restMockEndpoint, "{\"customer\": 7}", MediaType.APPLICATION_JSON);
+
+        assertThat(unknown.getCode(), is(HttpStatus.SC_NOT_FOUND));
+        assertThat(unknown.getBody(), sameJSONAs("{\"error\": \"no such customer\"}"));
+        assertThat(known.getCode(), is(HttpStatus.SC_CREATED));
+        assertThat(known.getBody(), sameJSONAs("{\"customer\": 42}"));
+        assertThat(other.getBody(), containsString("default REST POST response text"));
+    }
+
     public void shouldReturnCustomJsonResponseBody(String restMockEndpoint) throws IOException,
         ParserConfigurationException, SAXException {
         // setting up json response body on mock
@@ -192,6 +227,65 @@ public class RestMockPOSTMethodIntegrationTestHelper {
         assertThat(after.getTimeInMillis() - before.getTimeInMillis(), is(greaterThanOrEqualTo(oneSecInMilis)));
     }
 
+    public void shouldExportRecordedRequestWithResponse(String restMockEndpoint) throws IOException, JSONException {
+        requestSender.sendPostRequest(restMockEndpoint, "<req>exported</req>", MediaType.APPLICATION_XML);
+
+        MockResponse export = requestSender.sendGetRequest(REST_MOCK_EXPORT_RECORDED_REQUESTS);
+        assertThat(export.getCode(), is(HttpStatus.SC_OK));
+
+        List<JSONObject> postRequests = new ArrayList<JSONObject>();
+        for (String line : export.getBody().split("\n")) {
+            JSONObject request = new JSONObject(line);
+            if ("POST".equals(request.getString("operation"))) {
+                postRequests.add(request);
+            }
+        }
+        assertThat(postRequests.size(), is(1));
+        assertThat(postRequests.get(0).getString("body"), is("<req>exported</req>"));
+        assertThat(postRequests.get(0).getJSONObject("response").getInt("code"), is(HttpStatus.SC_CREATED));
+        assertThat(postRequests.get(0).getJSONObject("response").getString("body"), containsString("default REST POST response text"));
+    }
+
+    public void shouldPrimeBatchOfResponses(String restMockEndpoint) throws IOException, ParserConfigurationException,
+        SAXException {
+        requestSender.sendPostRequest(restMockEndpoint, "<req>before</req>", MediaType.APPLICATION_XML);
+
+        MockResponse primed = requestSender.sendPostRequest(REST_MOCK_PRIME_RESPONSES_WITH_INIT, "<responses>"
+            + "<response service=\"dummy-rest\" operation=\"POST\" code=\"202\"><body>&lt;first/&gt;</body></response>"
+            + "<response service=\"dummy-rest\" operation=\"POST\" position=\"3\"><header name=\"ETag\" value=\"3\"/>"
+            + "<body><![CDATA[<third/>]]></body></response>"
+            + "</responses>", MediaType.APPLICATION_XML);
+        assertThat(primed.getCode(), is(HttpStatus.SC_OK));
+
+        MockResponse first = requestSender.sendPostRequest(restMockEndpoint, "<req>after</req>", MediaType.APPLICATION_XML);
+        assertThat(first.getCode(), is(HttpStatus.SC_ACCEPTED));
+        assertThat(first.getBody(), is("<first/>"));
+        MockResponse second = requestSender.sendPostRequest(restMockEndpoint, "<req>after</req>", MediaType.APPLICATION_XML);
+        assertThat(second.getBody(), containsString("default REST POST response text"));
+        MockResponse third = requestSender.sendPostRequest(restMockEndpoint, "<req>after</req>", MediaType.APPLICATION_XML);
+        assertThat(third.getCode(), is(HttpStatus.SC_CREATED));
+        assertThat(third.getBody(), is("<third/>"));
+        assertThat(third.getHeader("ETag"), is("3"));
+
+        MockResponse recorded = requestSender.sendGetRequest(REST_MOCK_POST_RECORDED_REQUESTS);
+        Document recordedDoc = new DocumentImpl(recorded.getBody());
+        assertThat(recordedDoc, hasXPath("count(//recorded-requests/req[text()='after'])", equalTo("3")));
+        assertThat(recordedDoc, hasXPath("count(//recorded-requests/req)", equalTo("3")));
+    }
+
+    public void shouldRecordServiceTimeIncludingDelay(String restMockEndpoint) throws IOException,
+        ParserConfigurationException, SAXException {
+        requestSender.sendPostRequest(REST_MOCK_POST_RESPONSES + "?delay=1", "", MediaType.APPLICATION_XML);
+        requestSender.sendPostRequest(restMockEndpoint, "", MediaType.APPLICATION_XML);
+
+        MockResponse timings = requestSender.sendGetRequest(REST_MOCK_POST_RECORDED_REQUEST_TIMINGS);
+        Document timingsDoc = new DocumentImpl(timings.getBody());
+
+        assertThat(timingsDoc, hasXPath("count(//recorded-request-timings/recorded-request-timing)", equalTo("1")));
+        assertThat(timingsDoc, hasXPath("//recorded-request-timing[1]/service-time-nanos >= 1000000000", equalTo("true")));
+        assertThat(timingsDoc, hasXPath("//recorded-request-timing[1]/arrival-nanos"));
+    }
+
     public void shouldDelaySecondResponseFor1Sec(String restMockEndpoint) throws IOException {
         requestSender.sendPutRequest(REST_MOCK_POST_RESPONSES + "/2/?delay=1", "", MediaType.APPLICATION_XML);
         long oneSecInMilis = 1000l;
@@ -222,6 +316,19 @@ public class RestMockPOSTMethodIntegrationTestHelper {
         assertThat(requestUrlParamsDoc, hasXPath("//recorded-requests/dummyReq[2]", equalTo("dummyReqText2")));
     }
 
+    public void shouldAwaitRecordedRequests(String restMockEndpoint) throws IOException,
+        ParserConfigurationException, SAXException {
+        requestSender.sendPostRequest(restMockEndpoint, "<dummyReq>dummyReqText1</dummyReq>", MediaType.APPLICATION_XML);
+
+        MockResponse awaited = requestSender.sendGetRequest(REST_MOCK_POST_AWAIT_RECORDED_REQUESTS + "?count=1&timeout=5000");
+        assertThat(awaited.getCode(), is(HttpStatus.SC_OK));
+        assertThat(new DocumentImpl(awaited.getBody()), hasXPath("//recorded-requests/dummyReq[1]", equalTo("dummyReqText1")));
+
+        MockResponse timedOut = requestSender.sendGetRequest(REST_MOCK_POST_AWAIT_RECORDED_REQUESTS + "?count=2&timeout=200");
+        assertThat(timedOut.getCode(), is(HttpStatus.SC_REQUEST_TIMEOUT));
+        assertThat(new DocumentImpl(timedOut.getBody()), hasXPath("count(//recorded-requests/dummyReq)", equalTo("1")));
+    }
+
     public void shouldVerifyRecordedRequestsUsingRequestElement(String restMockEndpoint) throws IOException,
         ParserConfigurationException, SAXException {
         requestSender.sendPostRequest(restMockEndpoint, "dummyReqText1", MediaType.APPLICATION_XML);
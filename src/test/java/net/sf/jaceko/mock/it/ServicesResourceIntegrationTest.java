@@ -44,7 +44,7 @@ public class ServicesResourceIntegrationTest {
         assertThat("dummy-rest-paths-enabled", serviceResponseDoc, hasXPath("//services/service[@name='dummy-rest-paths-enabled']"));
 
         assertThat("Number of soap services", serviceResponseDoc, hasXPath("count(//services/service[@type='SOAP'])", equalTo("4")));
-        assertThat("Number of rest services", serviceResponseDoc, hasXPath("count(//services/service[@type='REST'])", equalTo("6")));
+        assertThat("Number of rest services", serviceResponseDoc, hasXPath("count(//services/service[@type='REST'])", equalTo("7")));
 
         assertThat("sayHello is found", serviceResponseDoc,
             hasXPath("//services/service[@name='hello-soap']/operations/operation-ref/@name", equalTo("sayHello")));
@@ -0,0 +1,130 @@
+package net.sf.jaceko.mock.model.request;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class LatencyProfileTest {
+
+    private static final int SAMPLES = 20000;
+
+    @Test
+    public void shouldParsePlainNumberAsFixedLatency() {
+        LatencyProfile profile = LatencyProfile.parse("250");
+
+        assertThat(profile.sampleMillis(), is(250L));
+        assertThat(profile, is(LatencyProfile.fixed(250)));
+    }
+
+    @Test
+    public void shouldSampleFixedLatency() {
+        assertThat(LatencyProfile.parse("fixed:15").sampleMillis(), is(15L));
+    }
+
+    @Test
+    public void shouldSampleUniformLatencyWithinRange() {
+        LatencyProfile profile = LatencyProfile.parse("uniform:100,500");
+
+        for (int i = 0; i < SAMPLES; i++) {
+            assertThat(profile.sampleMillis(), both(greaterThanOrEqualTo(100L)).and(lessThanOrEqualTo(500L)));
+        }
+    }
+
+    @Test
+    public void shouldSampleNormalLatencyAroundMean() {
+        LatencyProfile profile = LatencyProfile.parse("normal:200,20");
+
+        assertThat(mean(profile), both(greaterThanOrEqualTo(195.0)).and(lessThanOrEqualTo(205.0)));
+    }
+
+    @Test
+    public void shouldNeverSampleNegativeLatency() {
+        LatencyProfile profile = LatencyProfile.parse("normal:0,100");
+
+        for (int i = 0; i < SAMPLES; i++) {
+            assertThat(profile.sampleMillis(), greaterThanOrEqualTo(0L));
+        }
+    }
+
+    @Test
+    public void shouldSampleLogNormalLatencyAroundMedian() {
+        LatencyProfile profile = LatencyProfile.parse("lognormal:200,0.5");
+
+        assertThat(percentile(profile, 0.5), both(greaterThanOrEqualTo(190L)).and(lessThanOrEqualTo(210L)));
+    }
+
+    @Test
+    public void shouldSampleLatencyHavingGivenPercentiles() {
+        LatencyProfile profile = LatencyProfile.parse("percentiles:50=100,95=400,99=900");
+
+        assertThat(percentile(profile, 0.5), both(greaterThanOrEqualTo(95L)).and(lessThanOrEqualTo(105L)));
+        // the sampled 95th percentile itself varies widely, as latency rises steeply above it
+        assertThat(fractionAtMost(profile, 400), both(greaterThanOrEqualTo(0.94)).and(lessThanOrEqualTo(0.96)));
+        for (int i = 0; i < SAMPLES; i++) {
+            assertThat(profile.sampleMillis(), lessThanOrEqualTo(900L));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownProfileType() {
+        LatencyProfile.parse("gamma:1,2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMissingParameter() {
+        LatencyProfile.parse("uniform:100");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectDecreasingPercentiles() {
+        LatencyProfile.parse("percentiles:50=500,99=100");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectDuplicatePercentile() {
+        LatencyProfile.parse("percentiles:50=100,50.0=200");
+    }
+
+    @Test
+    public void shouldRoundFractionalMillis() {
+        assertThat(LatencyProfile.parse("0.5").sampleMillis(), is(1L));
+        assertThat(LatencyProfile.parse("fixed:2.4").sampleMillis(), is(2L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNonNumericLatency() {
+        LatencyProfile.parse("fast");
+    }
+
+    private double mean(LatencyProfile profile) {
+        double sum = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            sum += profile.sampleMillis();
+        }
+        return sum / SAMPLES;
+    }
+
+    private double fractionAtMost(LatencyProfile profile, long millis) {
+        int atMost = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            if (profile.sampleMillis() <= millis) {
+                atMost++;
+            }
+        }
+        return (double) atMost / SAMPLES;
+    }
+
+    private long percentile(LatencyProfile profile, double quantile) {
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            samples[i] = profile.sampleMillis();
+        }
+        java.util.Arrays.sort(samples);
+        return samples[(int) (quantile * (SAMPLES - 1))];
+    }
+
+}
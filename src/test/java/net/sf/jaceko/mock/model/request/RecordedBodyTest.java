@@ -0,0 +1,64 @@
+package net.sf.jaceko.mock.model.request;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class RecordedBodyTest {
+
+    @Test
+    public void shouldKeepShortBodyAsIs() {
+        RecordedBody body = RecordedBody.of("<req/>");
+
+        assertThat(body.getText(), is("<req/>"));
+        assertThat(body.isCompressed(), is(false));
+        assertThat(RecordedBody.of("<req/>"), is(not(sameInstance(body))));
+    }
+
+    @Test
+    public void shouldCompressLargeBodies() {
+        String text = "<?xml version=\"1.0\"?>" + repeat("<item>ä€</item>", 200);
+
+        RecordedBody body = RecordedBody.of(text);
+
+        assertThat(body.isCompressed(), is(true));
+        assertThat(body.getStoredBytes(), is(lessThan(text.length() / 10)));
+        assertThat(body.length(), is(text.length()));
+        assertThat(body.getText(), is(text));
+    }
+
+    @Test
+    public void shouldReturnNullForNullBody() {
+        assertThat(RecordedBody.of(null), is(nullValue()));
+    }
+
+    @Test
+    public void shouldCompareContentOfCompressedBody() {
+        String text = repeat("<item>ä€</item>", 200);
+        RecordedBody body = RecordedBody.of(text);
+
+        assertThat(body.hasText(new String(text)), is(true));
+        assertThat(body.hasText(text.replace('€', '$')), is(false));
+        assertThat(body.hasText(text.substring(1) + " "), is(false));
+    }
+
+    @Test
+    public void shouldRestoreDeflatedBodyWithoutDeflatingAgain() {
+        String text = repeat("<item>ä€</item>", 200);
+        RecordedBody body = RecordedBody.of(text);
+
+        RecordedBody restored = RecordedBody.deflated(body.getDeflated(), body.length(), body.getEncodedLength());
+
+        assertThat(restored.getDeflated(), is(sameInstance(body.getDeflated())));
+        assertThat(restored.getText(), is(text));
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            repeated.append(text);
+        }
+        return repeated.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package net.sf.jaceko.mock.model.request;
+
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.junit.Test;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class RecordedHeadersTest {
+
+    @Test
+    public void shouldKeepHeadersAndTheirValues() {
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+        headers.add("Accept", "text/xml");
+        headers.add("Accept", "application/json");
+        headers.add("X-Tenant", "acme");
+
+        RecordedHeaders recorded = RecordedHeaders.copyOf(headers);
+
+        assertThat(recorded.size(), is(2));
+        assertThat(recorded.get("Accept"), contains("text/xml", "application/json"));
+        assertThat(recorded.getFirst("X-Tenant"), is("acme"));
+        assertThat(recorded, is(equalTo((Map<String, List<String>>) headers)));
+        assertThat(headers, is(equalTo((Map<String, List<String>>) recorded)));
+    }
+
+    @Test
+    public void shouldLookUpHeadersIgnoringCase() {
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+        headers.putSingle("Content-Type", "text/xml");
+
+        RecordedHeaders recorded = RecordedHeaders.copyOf(headers);
+
+        assertThat(recorded.getFirst("content-type"), is("text/xml"));
+        assertThat(recorded.containsKey("CONTENT-TYPE"), is(true));
+        assertThat(recorded.get("Accept"), is(nullValue()));
+        assertThat(recorded.keySet(), contains("Content-Type"));
+    }
+
+    @Test
+    public void shouldShareHeaderNamesBetweenRecordings() {
+        RecordedHeaders first = RecordedHeaders.copyOf(singleHeader(new String("X-Correlation-Id"), "1"));
+        RecordedHeaders second = RecordedHeaders.copyOf(singleHeader(new String("X-Correlation-Id"), "2"));
+
+        assertThat(first.keySet().iterator().next(), is(sameInstance(second.keySet().iterator().next())));
+    }
+
+    @Test
+    public void shouldKeepHeaderWithoutValues() {
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+        headers.put("X-Empty", null);
+        headers.putSingle("X-Other", "value");
+
+        RecordedHeaders recorded = RecordedHeaders.copyOf(headers);
+
+        assertThat(recorded.get("X-Empty"), is(empty()));
+        assertThat(recorded.get("X-Other"), contains("value"));
+    }
+
+    @Test
+    public void shouldNotChangeWhenCopiedHeadersChange() {
+        MultivaluedMap<String, String> headers = singleHeader("Accept", "text/xml");
+        RecordedHeaders recorded = RecordedHeaders.copyOf(headers);
+
+        headers.add("Accept", "application/json");
+
+        assertThat(recorded.get("Accept"), contains("text/xml"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotBeModifiable() {
+        RecordedHeaders.copyOf(singleHeader("Accept", "text/xml")).add("Accept", "application/json");
+    }
+
+    @Test
+    public void shouldCopyNullAsNull() {
+        assertThat(RecordedHeaders.copyOf(null), is(nullValue()));
+    }
+
+    private static MultivaluedMap<String, String> singleHeader(String name, String value) {
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+        headers.add(name, value);
+        return headers;
+    }
+}
@@ -0,0 +1,65 @@
+package net.sf.jaceko.mock.model.request;
+
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.junit.Test;
+
+import javax.ws.rs.core.MultivaluedMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class RecordedRequestsQueryTest {
+
+    @Test
+    public void shouldMatchHeaderNameCaseInsensitively() {
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+        headers.putSingle("Content-Type", "text/xml");
+        MockRequest request = new MockRequest(null, null, null, headers);
+
+        assertThat(new RecordedRequestsQuery().withHeader("content-type", "text/xml").matches(request), is(true));
+        assertThat(new RecordedRequestsQuery().withHeader("Content-Type", "text/plain").matches(request), is(false));
+        assertThat(new RecordedRequestsQuery().withHeader("Accept", "text/xml").matches(request), is(false));
+    }
+
+    @Test
+    public void shouldMatchDecodedQueryParams() {
+        MockRequest request = new MockRequest(null, "msg=a%20b&id=1&id=2", null, null);
+
+        assertThat(new RecordedRequestsQuery().withQueryParam("msg", "a b").withQueryParam("id", "2").matches(request), is(true));
+        assertThat(new RecordedRequestsQuery().withQueryParam("id", "3").matches(request), is(false));
+    }
+
+    @Test
+    public void shouldMatchResourcePathPrefixAndRecordingTime() {
+        MockRequest request = new MockRequest(null, null, "orders/12/items", null, 1000L);
+
+        assertThat(new RecordedRequestsQuery().withResourcePathPrefix("orders/12").recordedBetween(1000L, 1001L).matches(request), is(true));
+        assertThat(new RecordedRequestsQuery().withResourcePathPrefix("orders/13").matches(request), is(false));
+        assertThat(new RecordedRequestsQuery().recordedBetween(null, 1000L).matches(request), is(false));
+    }
+
+    @Test
+    public void shouldMatchBodyByXPath() {
+        MockRequest request = new MockRequest("<soap:Envelope xmlns:soap=\"urn:s\"><order><amount>15</amount></order></soap:Envelope>", null, null, null);
+
+        assertThat(new RecordedRequestsQuery().withXPath("//order[amount > 10]").matches(request), is(true));
+        assertThat(new RecordedRequestsQuery().withXPath("//*[local-name()='Envelope']/order").matches(request), is(true));
+        assertThat(new RecordedRequestsQuery().withXPath("//order[amount > 20]").matches(request), is(false));
+        assertThat(new RecordedRequestsQuery().withXPath("//order").matches(new MockRequest("not xml", null, null, null)), is(false));
+    }
+
+    @Test
+    public void shouldMatchBodyByJsonPath() {
+        MockRequest request = new MockRequest("{\"order\": {\"id\": \"A1\", \"amount\": 15}}", null, null, null);
+
+        assertThat(new RecordedRequestsQuery().withJsonPath("$.order.id", null).matches(request), is(true));
+        assertThat(new RecordedRequestsQuery().withJsonPath("$.order.amount", "15").matches(request), is(true));
+        assertThat(new RecordedRequestsQuery().withJsonPath("$.order.id", "A2").matches(request), is(false));
+        assertThat(new RecordedRequestsQuery().withJsonPath("$.customer", null).matches(request), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidXPath() {
+        new RecordedRequestsQuery().withXPath("//order[");
+    }
+}
@@ -0,0 +1,50 @@
+package net.sf.jaceko.mock.model.request;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class RecordingModeTest {
+
+    @Test
+    public void shouldParseModes() {
+        assertThat(RecordingMode.parse("full"), is(RecordingMode.FULL));
+        assertThat(RecordingMode.parse(" Headers-Only "), is(RecordingMode.HEADERS_ONLY));
+        assertThat(RecordingMode.parse("count-only"), is(RecordingMode.COUNT_ONLY));
+        assertThat(RecordingMode.parse("off"), is(RecordingMode.OFF));
+        assertThat(RecordingMode.parse("sampled:10"), is(RecordingMode.sampled(10)));
+        assertThat(RecordingMode.parse("sampled:1"), is(RecordingMode.FULL));
+    }
+
+    @Test
+    public void shouldRecordOneRequestInInterval() {
+        RecordingMode mode = RecordingMode.sampled(3);
+
+        assertThat(mode.isRecorded(0), is(true));
+        assertThat(mode.isRecorded(1), is(false));
+        assertThat(mode.isRecorded(2), is(false));
+        assertThat(mode.isRecorded(3), is(true));
+        assertThat(mode.isBodyRecorded(), is(true));
+    }
+
+    @Test
+    public void shouldCountWithoutRecording() {
+        assertThat(RecordingMode.COUNT_ONLY.isCounted(), is(true));
+        assertThat(RecordingMode.COUNT_ONLY.isRecorded(0), is(false));
+        assertThat(RecordingMode.OFF.isCounted(), is(false));
+        assertThat(RecordingMode.HEADERS_ONLY.isRecorded(7), is(true));
+        assertThat(RecordingMode.HEADERS_ONLY.isBodyRecorded(), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNonPositiveSamplingInterval() {
+        RecordingMode.parse("sampled:0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownMode() {
+        RecordingMode.parse("sometimes");
+    }
+
+}
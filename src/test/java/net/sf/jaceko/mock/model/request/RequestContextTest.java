@@ -0,0 +1,62 @@
+package net.sf.jaceko.mock.model.request;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import javax.xml.namespace.QName;
+
+import org.junit.Test;
+
+public class RequestContextTest {
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+    @Test
+    public void shouldLocateLeadingXmlDeclaration() {
+        RequestContext request = new RequestContext(XML_DECLARATION + "<req/>", null, null, null, null);
+
+        assertThat(request.getXmlDeclarationEnd(), is(XML_DECLARATION.length()));
+        assertThat(request.getBodyWithoutXmlDeclaration(), is("<req/>"));
+    }
+
+    @Test
+    public void shouldLocateXmlDeclarationAfterWhitespace() {
+        RequestContext request = new RequestContext("\r\n " + XML_DECLARATION + "<req/>", null, null, null, null);
+
+        assertThat(request.getBodyWithoutXmlDeclaration(), is("<req/>"));
+    }
+
+    @Test
+    public void shouldKeepBodyWithoutXmlDeclaration() {
+        RequestContext request = new RequestContext("<req>?></req>", null, null, null, null);
+
+        assertThat(request.getXmlDeclarationEnd(), is(0));
+        assertThat(request.getBodyWithoutXmlDeclaration(), is("<req>?></req>"));
+    }
+
+    @Test
+    public void shouldHandleMissingBody() {
+        RequestContext request = new RequestContext(null, null, null, null, null);
+
+        assertThat(request.getBodyWithoutXmlDeclaration(), is(nullValue()));
+        assertThat(request.getNamespace(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldExposeNamespaceOfRootElement() {
+        RequestContext request = new RequestContext("<soap/>", new QName("http://www.bookstore.com", "getBook"), null, null, null);
+
+        assertThat(request.getNamespace(), is("http://www.bookstore.com"));
+    }
+
+    @Test
+    public void shouldCountBodyBytesEncodedAsUtf8() throws Exception {
+        String body = "<req>a\u00e4\u20ac\ud83d\ude00</req>";
+        RequestContext request = new RequestContext(body, null, null, null, null);
+
+        assertThat(request.getEncodedBodyLength(), is((long) body.getBytes("UTF-8").length));
+        assertThat(new RequestContext(null, null, null, null, null).getEncodedBodyLength(), is(0L));
+    }
+
+}
@@ -0,0 +1,62 @@
+package net.sf.jaceko.mock.model.request;
+
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.junit.Test;
+
+import javax.ws.rs.core.MultivaluedMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class RequestPredicateTest {
+
+    @Test
+    public void shouldMatchHeaderAndQueryParameter() {
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+        headers.add("X-Customer", "42");
+        RequestContext request = new RequestContext(null, null, "lang=fi&id=a%3Db", null, headers);
+
+        assertThat(RequestPredicate.parse("header:x-customer=42").matches(request), is(true));
+        assertThat(RequestPredicate.parse("header:X-Customer=43").matches(request), is(false));
+        assertThat(RequestPredicate.parse("query:id=a=b").matches(request), is(true));
+        assertThat(RequestPredicate.parse("query:lang=en").matches(request), is(false));
+    }
+
+    @Test
+    public void shouldMatchBodyValues() {
+        RequestContext xml = new RequestContext("<order><item id=\"7\">book</item></order>", null, null, null, null);
+        RequestContext json = new RequestContext("{\"order\":{\"id\":7}}", null, null, null, null);
+
+        assertThat(RequestPredicate.parse("xpath://item[@id='7']=book").matches(xml), is(true));
+        assertThat(RequestPredicate.parse("xpath://item=pen").matches(xml), is(false));
+        assertThat(RequestPredicate.parse("jsonPath:$.order.id=7").matches(json), is(true));
+        assertThat(RequestPredicate.parse("jsonPath:$.order.id=7").matches(xml), is(false));
+        assertThat(RequestPredicate.parse("regex:<item[^>]*>bo+k<").matches(xml), is(true));
+        assertThat(RequestPredicate.parse("regex:pen").matches(xml), is(false));
+    }
+
+    @Test
+    public void shouldMatchPathPattern() {
+        RequestPredicate predicate = RequestPredicate.parse("path:/customers/*/orders");
+
+        assertThat(predicate.matches(new RequestContext(null, null, null, "customers/5/orders", null)), is(true));
+        assertThat(predicate.matches(new RequestContext(null, null, null, "/customers/5/orders/", null)), is(true));
+        assertThat(predicate.matches(new RequestContext(null, null, null, "customers/5/orders/1", null)), is(false));
+        assertThat(predicate.matches(new RequestContext(null, null, null, null, null)), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectConditionWithoutValue() {
+        RequestPredicate.parse("header:X-Customer");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownCondition() {
+        RequestPredicate.parse("cookie:session=1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidXPath() {
+        RequestPredicate.parse("xpath://item[=1");
+    }
+}
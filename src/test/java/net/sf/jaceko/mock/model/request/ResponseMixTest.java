@@ -0,0 +1,82 @@
+package net.sf.jaceko.mock.model.request;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ResponseMixTest {
+
+    private final MockResponse ok = new MockResponse("ok");
+    private final MockResponse unavailable = MockResponse.body("unavailable").code(503).build();
+
+    @Test
+    public void shouldServeResponsesInCycleSpreadingThemByWeight() {
+        ResponseMix mix = new ResponseMix(ResponseMix.Selection.ROUND_ROBIN).add(ok, 3).add(unavailable, 1);
+
+        List<String> bodies = new ArrayList<String>();
+        for (int i = 0; i < 8; i++) {
+            bodies.add(mix.next().getBody());
+        }
+
+        assertThat(bodies, contains("ok", "ok", "unavailable", "ok", "ok", "ok", "unavailable", "ok"));
+    }
+
+    @Test
+    public void shouldDrawResponsesInProportionToWeight() {
+        ResponseMix mix = new ResponseMix(ResponseMix.Selection.WEIGHTED).add(ok, 95).add(unavailable, 4).add(null, 1);
+
+        int unavailableCount = 0;
+        int defaultCount = 0;
+        for (int i = 0; i < 100000; i++) {
+            MockResponse response = mix.next();
+            if (response == unavailable) {
+                unavailableCount++;
+            } else if (response == null) {
+                defaultCount++;
+            }
+        }
+
+        assertThat(unavailableCount, is(both(greaterThan(3500)).and(lessThan(4500))));
+        assertThat(defaultCount, is(both(greaterThan(800)).and(lessThan(1200))));
+    }
+
+    @Test
+    public void shouldServeNothingFromEmptyMix() {
+        ResponseMix mix = new ResponseMix(ResponseMix.Selection.WEIGHTED);
+
+        assertThat(mix.next(), is(nullValue()));
+        assertThat(mix.isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldKeepResponsesWhenSelectionChanges() {
+        ResponseMix mix = new ResponseMix(ResponseMix.Selection.ROUND_ROBIN).add(ok, 1);
+
+        ResponseMix weighted = mix.withSelection(ResponseMix.Selection.parse(" Weighted "));
+
+        assertThat(weighted.getSelection(), is(ResponseMix.Selection.WEIGHTED));
+        assertThat(weighted.next(), is(ok));
+        assertThat(mix.add(unavailable, 1).size(), is(2));
+        assertThat(mix.size(), is(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNonPositiveWeight() {
+        new ResponseMix(ResponseMix.Selection.ROUND_ROBIN).add(ok, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTotalWeightAboveLimit() {
+        new ResponseMix(ResponseMix.Selection.ROUND_ROBIN).add(ok, ResponseMix.MAX_TOTAL_WEIGHT).add(unavailable, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownSelection() {
+        ResponseMix.Selection.parse("random");
+    }
+
+}
@@ -0,0 +1,97 @@
+package net.sf.jaceko.mock.model.request;
+
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.junit.Test;
+
+import javax.ws.rs.core.MultivaluedMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ResponseRulesTest {
+
+    @Test
+    public void shouldSelectResponseByIndexedValue() {
+        ResponseRules rules = new ResponseRules();
+        for (int i = 0; i < 10000; i++) {
+            rules.add(RequestPredicate.parse("header:X-Customer=" + i), new MockResponse("customer" + i));
+        }
+
+        assertThat(rules.match(requestWithHeader("X-Customer", "1234")).getBody(), is("customer1234"));
+        assertThat(rules.match(requestWithHeader("x-customer", "9999")).getBody(), is("customer9999"));
+        assertThat(rules.match(requestWithHeader("X-Customer", "10000")), is(nullValue()));
+        assertThat(rules.size(), is(10000));
+    }
+
+    @Test
+    public void shouldSelectResponseByPathPattern() {
+        ResponseRules rules = new ResponseRules();
+        rules.add(RequestPredicate.parse("path:customers/*/orders"), new MockResponse("orders"));
+        rules.add(RequestPredicate.parse("path:customers/vip/*"), new MockResponse("vip"));
+        rules.add(RequestPredicate.parse("path:customers/*"), new MockResponse("customer"));
+
+        assertThat(rules.match(requestWithPath("customers/5/orders")).getBody(), is("orders"));
+        assertThat(rules.match(requestWithPath("customers/vip/orders")).getBody(), is("orders"));
+        assertThat(rules.match(requestWithPath("customers/vip/profile")).getBody(), is("vip"));
+        assertThat(rules.match(requestWithPath("/customers/5")).getBody(), is("customer"));
+        assertThat(rules.match(requestWithPath("customers")), is(nullValue()));
+    }
+
+    @Test
+    public void shouldPreferRuleAddedFirst() {
+        ResponseRules rules = new ResponseRules();
+        rules.add(RequestPredicate.parse("regex:urgent"), new MockResponse("regex"));
+        rules.add(RequestPredicate.parse("jsonPath:$.id=7"), new MockResponse("json"));
+        rules.add(RequestPredicate.parse("regex:\"id\""), new MockResponse("later regex"));
+
+        assertThat(rules.match(new RequestContext("{\"id\":7,\"note\":\"urgent\"}", null, null, null, null)).getBody(),
+            is("regex"));
+        assertThat(rules.match(new RequestContext("{\"id\":7}", null, null, null, null)).getBody(), is("json"));
+        assertThat(rules.match(new RequestContext("{\"id\":8}", null, null, null, null)).getBody(), is("later regex"));
+    }
+
+    @Test
+    public void shouldReplaceResponseOfRuleWithSameCondition() {
+        ResponseRules rules = new ResponseRules();
+        rules.add(RequestPredicate.parse("query:id=1"), new MockResponse("first"));
+        rules.add(RequestPredicate.parse("regex:."), new MockResponse("any"));
+        rules.add(RequestPredicate.parse("query:id=1"), new MockResponse("replaced"));
+
+        assertThat(rules.match(new RequestContext("x", null, "id=1", null, null)).getBody(), is("replaced"));
+        assertThat(rules.size(), is(2));
+        assertThat(rules.getPredicates(), contains(RequestPredicate.parse("query:id=1"), RequestPredicate.parse("regex:.")));
+    }
+
+    @Test
+    public void shouldCopyRulesIndependently() {
+        ResponseRules rules = new ResponseRules();
+        rules.add(RequestPredicate.parse("query:id=1"), new MockResponse("first"));
+
+        ResponseRules copy = rules.copy();
+        copy.add(RequestPredicate.parse("query:id=2"), new MockResponse("second"));
+
+        assertThat(copy.match(new RequestContext(null, null, "id=1", null, null)).getBody(), is("first"));
+        assertThat(rules.match(new RequestContext(null, null, "id=2", null, null)), is(nullValue()));
+        assertThat(rules.size(), is(1));
+    }
+
+    @Test
+    public void shouldNotMatchUnknownRequest() {
+        ResponseRules rules = new ResponseRules();
+        rules.add(RequestPredicate.parse("header:X-Customer=1"), new MockResponse("customer"));
+        rules.add(RequestPredicate.parse("path:customers"), new MockResponse("customers"));
+
+        assertThat(rules.match(null), is(nullValue()));
+        assertThat(new ResponseRules().match(null), is(nullValue()));
+    }
+
+    private RequestContext requestWithHeader(String name, String value) {
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+        headers.add(name, value);
+        return new RequestContext(null, null, null, null, headers);
+    }
+
+    private RequestContext requestWithPath(String path) {
+        return new RequestContext(null, null, null, path, null);
+    }
+}
@@ -0,0 +1,84 @@
+package net.sf.jaceko.mock.model.request;
+
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.junit.Test;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ResponseTemplateTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void shouldFillPlaceholdersFromRequest() {
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+        headers.add("X-Correlation-Id", "abc-1");
+        RequestContext request = new RequestContext("{\"order\":{\"id\":7}}", null, "lang=fi&q=a%20b", "orders/7/items",
+            headers);
+
+        ResponseTemplate template = ResponseTemplate.compile(
+            "${path}|${path:1}|${path:3}|${query:q}|${header:x-correlation-id}|${jsonPath:$.order.id}|${invocation}", UTF_8);
+
+        assertThat(template.render(request, 5), is("orders/7/items|7||a b|abc-1|7|5"));
+    }
+
+    @Test
+    public void shouldEvaluateXPathOnSoapBody() {
+        RequestContext request = new RequestContext("<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<soapenv:Body><ns:prepayRequest xmlns:ns=\"urn:x\"><msisdn>123</msisdn></ns:prepayRequest></soapenv:Body>"
+            + "</soapenv:Envelope>", null, null, null, null);
+
+        ResponseTemplate template = ResponseTemplate.compile("<msisdn>${xpath://*[local-name()='msisdn']}</msisdn>", UTF_8);
+
+        assertThat(template.render(request, 1), is("<msisdn>123</msisdn>"));
+    }
+
+    @Test
+    public void shouldRenderEncodedInCharsetOfTemplate() {
+        ResponseTemplate template = ResponseTemplate.compile("ä${query:name}", Charset.forName("ISO-8859-1"));
+
+        byte[] rendered = template.renderEncoded(new RequestContext(null, null, "name=%C3%B6", null, null), 1);
+
+        assertThat(rendered, is("äö".getBytes(Charset.forName("ISO-8859-1"))));
+    }
+
+    @Test
+    public void shouldLeavePlaceholdersWithoutValueEmpty() {
+        ResponseTemplate template = ResponseTemplate.compile("[${header:Missing}${xpath:/a}${jsonPath:$.a}]", UTF_8);
+
+        assertThat(template.render(null, 1), is("[]"));
+    }
+
+    @Test
+    public void shouldRenderGeneratedValues() {
+        ResponseTemplate template = ResponseTemplate.compile("${uuid} ${timestamp} ${timestamp:yyyy}", UTF_8);
+
+        String[] rendered = template.render(null, 1).split(" ");
+
+        assertThat(UUID.fromString(rendered[0]).toString(), is(rendered[0]));
+        assertThat(Long.parseLong(rendered[1]), is(lessThanOrEqualTo(System.currentTimeMillis())));
+        assertThat(rendered[2].length(), is(4));
+    }
+
+    @Test
+    public void shouldKeepEscapedPlaceholder() {
+        ResponseTemplate template = ResponseTemplate.compile("$${invocation} ${invocation}", UTF_8);
+
+        assertThat(template.render(null, 3), is("${invocation} 3"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownPlaceholder() {
+        ResponseTemplate.compile("${sessionId}", UTF_8);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnclosedPlaceholder() {
+        ResponseTemplate.compile("${query:id", UTF_8);
+    }
+}
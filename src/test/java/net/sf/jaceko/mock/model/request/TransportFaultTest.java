@@ -0,0 +1,53 @@
+package net.sf.jaceko.mock.model.request;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class TransportFaultTest {
+
+    @Test
+    public void shouldParseFaultsWithoutParameter() {
+        assertThat(TransportFault.parse("reset"), is(TransportFault.RESET));
+        assertThat(TransportFault.parse(" EMPTY "), is(TransportFault.EMPTY));
+        assertThat(TransportFault.parse("malformed-chunked"), is(TransportFault.MALFORMED_CHUNKED));
+    }
+
+    @Test
+    public void shouldParseCloseAfterBytes() {
+        TransportFault fault = TransportFault.parse("close-after:100");
+
+        assertThat(fault.getType(), is(TransportFault.Type.CLOSE_AFTER));
+        assertThat(fault.getBodyBytes(), is(100));
+        assertThat(fault, is(TransportFault.closeAfter(100)));
+    }
+
+    @Test
+    public void shouldParseStallWithAndWithoutDuration() {
+        assertThat(TransportFault.parse("stall:5000").getStallMillis(), is(5000L));
+        assertThat(TransportFault.parse("stall").getStallMillis(), is(TransportFault.DEFAULT_STALL_MILLIS));
+        assertThat(TransportFault.parse("stall").getType(), is(TransportFault.Type.STALL));
+    }
+
+    @Test
+    public void shouldPrintSpecification() {
+        assertThat(TransportFault.parse("close-after: 7").toString(), is("close-after:7"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownFault() {
+        TransportFault.parse("explode");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNegativeNumberOfBytes() {
+        TransportFault.parse("close-after:-1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNonNumericStall() {
+        TransportFault.parse("stall:long");
+    }
+
+}
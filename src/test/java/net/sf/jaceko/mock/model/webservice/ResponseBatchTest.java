@@ -0,0 +1,122 @@
+package net.sf.jaceko.mock.model.webservice;
+
+import net.sf.jaceko.mock.model.request.MockResponse;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class ResponseBatchTest {
+
+    private WebserviceOperation operation1;
+    private WebserviceOperation operation2;
+
+    @Before
+    public void before() {
+        operation1 = WebserviceOperation.defaultResponseText("default1").defaultResponseCode(200).build();
+        operation2 = WebserviceOperation.defaultResponseText("default2").defaultResponseCode(200).build();
+    }
+
+    @Test
+    public void shouldServePreviousResponsesUntilBatchIsInstalled() {
+        operation1.addCustomResponse(new MockResponse("old1"));
+        ResponseBatch batch = new ResponseBatch(true);
+        batch.addResponse(operation1, new MockResponse("new1"));
+        batch.addResponse(operation2, new MockResponse("new2"));
+
+        assertThat(operation1.getNextResponse(null).getBody(), is("old1"));
+        assertThat(operation2.getNextResponse(null).getBody(), is("default2"));
+
+        batch.install();
+
+        assertThat(operation1.getNextResponse(null).getBody(), is("new1"));
+        assertThat(operation2.getNextResponse(null).getBody(), is("new2"));
+    }
+
+    @Test
+    public void shouldReplaceResponsesAndInvocationNumbersOnInit() {
+        operation1.addCustomResponse(new MockResponse("old1"));
+        operation1.addCustomResponse(new MockResponse("old2"));
+        operation1.getNextInvocationNumber();
+
+        ResponseBatch batch = new ResponseBatch(true);
+        batch.setResponse(operation1, 3, new MockResponse("new3"));
+        batch.install();
+
+        assertThat(operation1.getNextResponse(null).getBody(), is("default1"));
+        assertThat(operation1.getNextResponse(null).getBody(), is("default1"));
+        assertThat(operation1.getNextResponse(null).getBody(), is("new3"));
+    }
+
+    @Test
+    public void shouldAddToResponsesAndKeepCountingInvocationsWithoutInit() {
+        operation1.addCustomResponse(new MockResponse("old1"));
+        assertThat(operation1.getNextResponse(null).getBody(), is("old1"));
+
+        ResponseBatch batch = new ResponseBatch(false);
+        batch.addResponse(operation1, new MockResponse("new2"));
+        batch.install();
+
+        assertThat(operation1.getNextResponse(null).getBody(), is("new2"));
+    }
+
+    @Test
+    public void shouldRestartCountingInvocationsWhenResponseOfInvocationIsSetWithoutInit() {
+        operation1.addCustomResponse(new MockResponse("old1"));
+        assertThat(operation1.getNextResponse(null).getBody(), is("old1"));
+        assertThat(operation1.getNextResponse(null).getBody(), is("default1"));
+
+        ResponseBatch batch = new ResponseBatch(false);
+        batch.setResponse(operation1, 2, new MockResponse("new2"));
+        batch.setResponse(operation1, 3, new MockResponse("new3"));
+        batch.install();
+
+        assertThat(operation1.getNextResponse(null).getBody(), is("old1"));
+        assertThat(operation1.getNextResponse(null).getBody(), is("new2"));
+        assertThat(operation1.getNextResponse(null).getBody(), is("new3"));
+    }
+
+    @Test
+    public void shouldKeepResponsesPrimedAfterStagingWithoutInit() {
+        ResponseBatch batch = new ResponseBatch(false);
+        batch.addResponse(operation1, new MockResponse("new2"));
+        operation1.addCustomResponse(new MockResponse("old1"));
+        batch.install();
+
+        assertThat(operation1.getNextResponse(null).getBody(), is("old1"));
+        assertThat(operation1.getNextResponse(null).getBody(), is("new2"));
+    }
+
+    @Test
+    public void shouldRunActionOnceBatchIsActivated() {
+        operation1.addCustomResponse(new MockResponse("old1"));
+        ResponseBatch batch = new ResponseBatch(true);
+        batch.addResponse(operation1, new MockResponse("new1"));
+        final List<String> servedOnActivation = new ArrayList<String>();
+
+        batch.install(new Runnable() {
+            @Override
+            public void run() {
+                servedOnActivation.add(operation1.getResponse(1).getBody());
+            }
+        });
+
+        assertThat(servedOnActivation, is(Collections.singletonList("new1")));
+    }
+
+    @Test
+    public void shouldFillInDefaultCodeOfOperation() {
+        operation1.setDefaultResponseCode(201);
+        ResponseBatch batch = new ResponseBatch(false);
+        batch.addResponse(operation1, MockResponse.body("new1").code(0).build());
+        batch.install();
+
+        assertThat(operation1.getNextResponse(null).getCode(), is(201));
+    }
+
+}
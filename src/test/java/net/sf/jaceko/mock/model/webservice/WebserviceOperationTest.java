@@ -1,13 +1,19 @@
 package net.sf.jaceko.mock.model.webservice;
 
 import net.sf.jaceko.mock.exception.ClientFaultException;
+import net.sf.jaceko.mock.model.request.LatencyProfile;
 import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.RequestContext;
+import net.sf.jaceko.mock.model.request.RequestPredicate;
+import net.sf.jaceko.mock.model.request.ResponseMix;
+import net.sf.jaceko.mock.util.SOAPMessageParser;
 import org.apache.commons.httpclient.HttpStatus;
 import org.junit.Before;
 import org.junit.Test;
 
 import static javax.ws.rs.core.MediaType.TEXT_XML_TYPE;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
 import static org.junit.Assert.assertThat;
 
 public class WebserviceOperationTest {
@@ -89,6 +95,66 @@ public class WebserviceOperationTest {
 
     }
 
+    @Test
+    public void shouldAppendResponsesAfterLastPrimedPosition() {
+        MockResponse customResponse3 = new MockResponse("abc3", 200);
+        MockResponse customResponse4 = new MockResponse("abc4", 200);
+        operation.setDefaultResponseText("defaultResp");
+        operation.setCustomResponse(customResponse3, 3);
+        operation.addCustomResponse(customResponse4);
+
+        assertThat(operation.getResponse(1).getBody(), is("defaultResp"));
+        assertThat(operation.getResponse(3), is(customResponse3));
+        assertThat(operation.getResponse(4), is(customResponse4));
+    }
+
+    @Test
+    public void shouldSetFarResponseWithoutAffectingPreviousOnes() {
+        MockResponse customResponse = new MockResponse("far", 200);
+        operation.setDefaultResponseText("defaultResp");
+        operation.setCustomResponse(customResponse, 1000000);
+
+        assertThat(operation.getResponse(999999).getBody(), is("defaultResp"));
+        assertThat(operation.getResponse(1000000), is(customResponse));
+    }
+
+    @Test
+    public void shouldReuseDefaultResponse() {
+        operation.setDefaultResponseText("defaultResp");
+
+        assertThat(operation.getResponse(1), sameInstance(operation.getResponse(2)));
+    }
+
+    @Test
+    public void shouldRebuildDefaultResponseWhenConfigurationChanges() {
+        operation.setDefaultResponseText("defaultResp");
+        operation.getResponse(1);
+        operation.setDefaultResponseText("changedResp");
+
+        assertThat(operation.getResponse(2).getBody(), is("changedResp"));
+    }
+
+    @Test
+    public void shouldPreEncodeDefaultResponseBody() throws Exception {
+        operation.setDefaultResponseText("\u00e4\u00f6");
+        operation.setDefaultResponseContentType("text/xml; charset=ISO-8859-1");
+
+        assertThat(operation.getResponse(1).getEncodedBody(), is("\u00e4\u00f6".getBytes("ISO-8859-1")));
+    }
+
+    @Test
+    public void shouldNotModifyDefaultHeadersOfBinaryOperation() {
+        operation.setBinary(true);
+        operation.setDefaultResponseFile("book.pdf");
+        operation.setDefaultResponseBinaryContent(new byte[] {1, 2});
+        operation.setDefaultResponseHeaders("X-Book:1");
+
+        MockResponse response = operation.getResponse(1);
+
+        assertThat(response.getHeader("Content-Disposition"), is("attachment; filename=book.pdf"));
+        assertThat(operation.getDefaultResponseHeaders(), is("X-Book:1"));
+    }
+
     @Test
     public void shouldSetConsecutiveResponses() {
         MockResponse customResponse1 = new MockResponse("sadfsadfsa1", 201);
@@ -143,34 +209,85 @@ public class WebserviceOperationTest {
         assertThat(operation.getNextInvocationNumber(), is(4));
     }
 
+    @Test
+    public void shouldDelayDefaultResponseByLatencyProfile() {
+        operation.setLatencyProfile(LatencyProfile.fixed(150));
+
+        assertThat(operation.getResponse(1).sampleDelayMillis(), is(150L));
+    }
+
+    @Test
+    public void shouldApplyLatencyProfileToCustomResponseWithoutDelay() {
+        operation.setLatencyProfile(LatencyProfile.fixed(150));
+        operation.addCustomResponse(new MockResponse("customResp"));
+        operation.addCustomResponse(new MockResponse(2));
+
+        assertThat(operation.getResponse(1).sampleDelayMillis(), is(150L));
+        assertThat(operation.getResponse(2).sampleDelayMillis(), is(2000L));
+    }
+
+    @Test
+    public void shouldRestoreConfiguredLatencyProfileOnInit() {
+        operation.setLatencyProfile(LatencyProfile.fixed(150));
+        operation.primeLatencyProfile(LatencyProfile.fixed(10));
+        assertThat(operation.getResponse(1).sampleDelayMillis(), is(10L));
+
+        operation.init();
+        assertThat(operation.getResponse(1).sampleDelayMillis(), is(150L));
+    }
+
+    @Test
+    public void shouldRebuildDefaultResponseOnlyWhenItsConfigurationChanges() {
+        operation.setDefaultResponseText("defaultResp");
+        MockResponse defaultResponse = operation.getDefaultResponse();
+
+        assertThat(operation.getDefaultResponse(), is(sameInstance(defaultResponse)));
+
+        operation.setDefaultResponseCode(HttpStatus.SC_ACCEPTED);
+
+        assertThat(operation.getDefaultResponse().getCode(), is(HttpStatus.SC_ACCEPTED));
+        assertThat(operation.getDefaultResponse().getBody(), is("defaultResp"));
+    }
+
     @Test(expected = ClientFaultException.class)
     public void shouldThrowExceptionInCaseOfNameSpaceMissing() throws Exception {
-        operation.setRequest(soapRequestWithoutNamespace());
         operation.setNameSpaces("http://non-valid.org/namespace");
-        operation.getResponse(1);
+        operation.getResponse(1, soapRequest(soapRequestWithoutNamespace()));
     }
 
     @Test(expected = ClientFaultException.class)
     public void shouldThrowExceptionInCaseOfNameSpaceNotMatch() throws Exception {
-        operation.setRequest(soapRequestWithNamespace());
         operation.setNameSpaces("http://non-valid.org/namespace");
-        operation.getResponse(1);
+        operation.getResponse(1, soapRequest(soapRequestWithNamespace()));
+    }
+
+    @Test
+    public void shouldNotValidateNameSpaceOfNonSoapRequest() {
+        operation.setNameSpaces("http://non-valid.org/namespace");
+        operation.setDefaultResponseText("defaultResp");
+
+        MockResponse response = operation.getResponse(1, new RequestContext("{}", null, null, null, null));
+
+        assertThat(response.getBody(), is("defaultResp"));
     }
 
     @Test
     public void shouldParseRequestAndPassThroughRequestWithNamespaces() {
         String bodyString = "This is the default response :)";
-        operation.setRequest(soapRequestWithTwoNamespace());
         operation.setNameSpaces("http://mystes.com/ns/library,http://mystes.com/ns/person");
         operation.setDefaultResponseText(bodyString);
         operation.setDefaultResponseCode(200);
 
-        MockResponse response = operation.getResponse(1);
+        MockResponse response = operation.getResponse(1, soapRequest(soapRequestWithTwoNamespace()));
 
         assertThat(response.getBody(), is(bodyString));
         assertThat(response.getCode(), is(200));
     }
 
+    private RequestContext soapRequest(String body) {
+        return new RequestContext(body, SOAPMessageParser.extractRequestMessageQName(body), null, null, null);
+    }
+
 
     private String soapRequestWithoutNamespace() {
         return "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\"\r\n>" +
@@ -223,4 +340,56 @@ public class WebserviceOperationTest {
                 + "</soapenv:Body></soapenv:Envelope>";
     }
 
+    @Test
+    public void shouldRenderTemplateOfCustomResponseForRequest() {
+        operation.addCustomResponse(MockResponse.body("<resp id=\"${query:id}\">${invocation}</resp>").template(true).build());
+        RequestContext request = new RequestContext("<req/>", null, "id=42", null, null);
+
+        MockResponse response = operation.getNextResponse(request);
+
+        assertThat(response.getBody(), is("<resp id=\"42\">1</resp>"));
+        assertThat(operation.getNextResponse(request).isTemplate(), is(false));
+    }
+
+    @Test
+    public void shouldSelectResponseByRuleWhenNoneIsPrimedForInvocation() {
+        operation.setDefaultResponseText("<default/>");
+        operation.addResponseRule(RequestPredicate.parse("query:id=1"), new MockResponse("<configured/>"));
+        operation.addResponseRule(RequestPredicate.parse("query:id=2"), new MockResponse("<configured2/>"));
+        operation.addCustomResponseRule(RequestPredicate.parse("query:id=1"), new MockResponse("<primed/>"));
+        operation.setCustomResponse(new MockResponse("<second/>"), 2);
+        RequestContext request = new RequestContext(null, null, "id=1", null, null);
+
+        assertThat(operation.getNextResponse(request).getBody(), is("<primed/>"));
+        assertThat(operation.getNextResponse(request).getBody(), is("<second/>"));
+        assertThat(operation.getNextResponse(new RequestContext(null, null, "id=2", null, null)).getBody(), is("<configured2/>"));
+        assertThat(operation.getNextResponse(new RequestContext(null, null, "id=3", null, null)).getBody(), is("<default/>"));
+
+        operation.init();
+        assertThat(operation.getNextResponse(request).getBody(), is("<configured/>"));
+    }
+
+    @Test
+    public void shouldServeResponseMixWhenNoOtherCustomResponseApplies() {
+        operation.setDefaultResponseText("<default/>");
+        operation.addMixResponse(new MockResponse("<configured/>"), 1);
+        operation.addMixResponse(null, 1);
+        operation.addResponseRule(RequestPredicate.parse("query:id=1"), new MockResponse("<rule/>"));
+        operation.setCustomResponse(new MockResponse("<first/>"), 1);
+        RequestContext request = new RequestContext(null, null, null, null, null);
+
+        assertThat(operation.getNextResponse(request).getBody(), is("<first/>"));
+        assertThat(operation.getNextResponse(new RequestContext(null, null, "id=1", null, null)).getBody(), is("<rule/>"));
+        assertThat(operation.getNextResponse(request).getBody(), is("<configured/>"));
+        assertThat(operation.getNextResponse(request).getBody(), is("<default/>"));
+
+        operation.addCustomMixResponse(MockResponse.body("<primed/>").build(), 1, ResponseMix.Selection.WEIGHTED);
+        assertThat(operation.getNextResponse(request).getBody(), is("<primed/>"));
+        assertThat(operation.getNextResponse(request).getCode(), is(200));
+
+        operation.init();
+        assertThat(operation.getNextResponse(request).getBody(), is("<configured/>"));
+        assertThat(operation.getMixSelection(), is(ResponseMix.Selection.ROUND_ROBIN));
+    }
+
 }
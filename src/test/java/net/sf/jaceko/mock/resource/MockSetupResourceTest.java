@@ -1,8 +1,14 @@
 package net.sf.jaceko.mock.resource;
 
+import net.sf.jaceko.mock.model.request.LatencyProfile;
+import net.sf.jaceko.mock.model.request.RecordingMode;
 import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.RequestPredicate;
+import net.sf.jaceko.mock.model.request.ResponseMix;
+import net.sf.jaceko.mock.model.request.TransportFault;
 import net.sf.jaceko.mock.service.MockSetupExecutor;
 import org.apache.http.HttpStatus;
+import org.jboss.resteasy.spi.BadRequestException;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -65,7 +71,7 @@ public class MockSetupResourceTest {
         HttpHeaders httpHeaders = mock(HttpHeaders.class);
         when(httpHeaders.getMediaType()).thenReturn(mediaType);
 
-        resource.addResponse(httpHeaders, serviceName, operationId, customResponseCode, delaySec, null, customResponseBody);
+        resource.addResponse(httpHeaders, serviceName, operationId, customResponseCode, delaySec, null, null, false, null, customResponseBody);
         MockResponse expectedResponse = MockResponse.body(customResponseBody).code(customResponseCode).delaySec(delaySec)
             .contentType(mediaType).build();
 
@@ -89,7 +95,7 @@ public class MockSetupResourceTest {
         HttpHeaders httpHeaders = mock(HttpHeaders.class);
         when(httpHeaders.getMediaType()).thenReturn(mediaType);
 
-        resource.addResponse(httpHeaders, serviceName, operationId, customResponseCode, delaySec, headersToPrime, customResponseBody);
+        resource.addResponse(httpHeaders, serviceName, operationId, customResponseCode, delaySec, null, headersToPrime, false, null, customResponseBody);
         MockResponse expectedResponse = MockResponse.body(customResponseBody).code(customResponseCode).contentType(mediaType)
             .delaySec(delaySec).headers(headersToPrimeMap).build();
 
@@ -117,7 +123,7 @@ public class MockSetupResourceTest {
         when(httpHeaders.getMediaType()).thenReturn(mediaType);
 
         //when
-        resource.addResponse(httpHeaders, serviceName, operationId, customResponseCode, delaySec, headersToPrime, customResponseBody);
+        resource.addResponse(httpHeaders, serviceName, operationId, customResponseCode, delaySec, null, headersToPrime, false, null, customResponseBody);
 
         MockResponse expectedResponse = MockResponse.body(customResponseBody).code(customResponseCode).contentType(mediaType)
             .delaySec(delaySec).headers(headersToPrimeMap).build();
@@ -126,9 +132,147 @@ public class MockSetupResourceTest {
 
     }
 
+    @Test
+    public void shouldAddCustomResponseWithLatencyProfile() {
+        String serviceName = "ticketing";
+        String operationId = "POST";
+        String customResponseBody = "[]";
+        int customResponseCode = 200;
+        String latency = "uniform:100,500";
+        MediaType mediaType = MediaType.APPLICATION_JSON_TYPE;
+
+        HttpHeaders httpHeaders = mock(HttpHeaders.class);
+        when(httpHeaders.getMediaType()).thenReturn(mediaType);
+
+        resource.addResponse(httpHeaders, serviceName, operationId, customResponseCode, 0, latency, null, false, null, customResponseBody);
+        MockResponse expectedResponse = MockResponse.body(customResponseBody).code(customResponseCode)
+            .latency(LatencyProfile.parse(latency)).contentType(mediaType).build();
+
+        verify(mockSetupExecutor).addCustomResponse(serviceName, operationId, expectedResponse);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectInvalidResponseTemplate() {
+        resource.addResponse(mock(HttpHeaders.class), "ticketing", "POST", 200, 0, null, null, true, null, "${unknown}");
+    }
+
+    @Test
+    public void shouldPassResponseRuleToServiceLayer() {
+        HttpHeaders headers = mock(HttpHeaders.class);
+        when(headers.getMediaType()).thenReturn(MediaType.TEXT_XML_TYPE);
+
+        Response response = resource.addResponseRule(headers, "ticketing", "reserveRequest", "query:id=1", 409, 0, null,
+            null, false, null, "<taken/>");
+
+        assertThat(response.getStatus(), is(HttpStatus.SC_OK));
+        verify(mockSetupExecutor).addCustomResponseRule("ticketing", "reserveRequest", RequestPredicate.parse("query:id=1"),
+            MockResponse.body("<taken/>").code(409).contentType(MediaType.TEXT_XML_TYPE).build());
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectInvalidResponseRuleCondition() {
+        resource.addResponseRule(mock(HttpHeaders.class), "ticketing", "reserveRequest", "query:id", 200, 0, null, null,
+            false, null, "<taken/>");
+    }
+
+    @Test
+    public void shouldPassMixResponseToServiceLayer() {
+        HttpHeaders headers = mock(HttpHeaders.class);
+        when(headers.getMediaType()).thenReturn(MediaType.TEXT_XML_TYPE);
+
+        Response response = resource.addMixResponse(headers, "ticketing", "reserveRequest", 4, "weighted", false, 503, 0,
+            null, null, false, null, "<unavailable/>");
+        resource.addMixResponse(headers, "ticketing", "reserveRequest", 95, null, true, 0, 0, null, null, false, null, "");
+
+        assertThat(response.getStatus(), is(HttpStatus.SC_OK));
+        verify(mockSetupExecutor).addCustomMixResponse("ticketing", "reserveRequest",
+            MockResponse.body("<unavailable/>").code(503).contentType(MediaType.TEXT_XML_TYPE).build(), 4,
+            ResponseMix.Selection.WEIGHTED);
+        verify(mockSetupExecutor).addCustomMixResponse("ticketing", "reserveRequest", null, 95, null);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectNonPositiveMixWeight() {
+        resource.addMixResponse(mock(HttpHeaders.class), "ticketing", "reserveRequest", 0, null, true, 0, 0, null, null,
+            false, null, "");
+    }
+
+    @Test
+    public void shouldPassTransportFaultToServiceLayer() {
+        HttpHeaders headers = mock(HttpHeaders.class);
+        when(headers.getMediaType()).thenReturn(MediaType.TEXT_XML_TYPE);
+
+        resource.addResponse(headers, "ticketing", "reserveRequest", 200, 0, null, null, false, "close-after:10", "<resp/>");
+        resource.addMixResponse(headers, "ticketing", "reserveRequest", 1, null, true, 0, 0, null, null, false, "reset", "");
+
+        verify(mockSetupExecutor).addCustomResponse("ticketing", "reserveRequest", MockResponse.body("<resp/>").code(200)
+            .contentType(MediaType.TEXT_XML_TYPE).fault(TransportFault.closeAfter(10)).build());
+        verify(mockSetupExecutor).addCustomMixFault("ticketing", "reserveRequest", TransportFault.RESET, 1, null);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectUnknownTransportFault() {
+        resource.addResponse(mock(HttpHeaders.class), "ticketing", "reserveRequest", 200, 0, null, null, false, "explode",
+            "<resp/>");
+    }
+
+    @Test
+    public void shouldPassLatencyProfileToServiceLayer() {
+        String serviceName = "ticketing";
+        String operationId = "reserveRequest";
+
+        Response response = resource.setLatencyProfile(serviceName, operationId, "normal:200,50");
+
+        assertThat(response.getStatus(), is(HttpStatus.SC_OK));
+        verify(mockSetupExecutor).setLatencyProfile(serviceName, operationId, LatencyProfile.parse("normal:200,50"));
+    }
+
+    @Test
+    public void shouldSwitchLatencyProfileOffWhenEmpty() {
+        resource.setLatencyProfile("ticketing", "reserveRequest", "");
+
+        verify(mockSetupExecutor).setLatencyProfile("ticketing", "reserveRequest", null);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectInvalidLatencyProfile() {
+        resource.setLatencyProfile("ticketing", "reserveRequest", "gamma:1,2");
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectLatencyProfileGivingPercentileTwice() {
+        resource.setLatencyProfile("ticketing", "reserveRequest", "percentiles:95=400,95=500");
+    }
+
+    @Test
+    public void shouldPassRecordingModeToServiceLayer() {
+        Response response = resource.setRecordingMode("ticketing", "reserveRequest", "sampled:10");
+
+        assertThat(response.getStatus(), is(HttpStatus.SC_OK));
+        verify(mockSetupExecutor).setRecordingMode("ticketing", "reserveRequest", RecordingMode.sampled(10));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectInvalidRecordingMode() {
+        resource.setRecordingMode("ticketing", "reserveRequest", "sometimes");
+    }
+
+    @Test
+    public void shouldPassRecordingRetentionToServiceLayer() {
+        Response response = resource.setRecordingRetention("ticketing", "reserveRequest", 100, null);
+
+        assertThat(response.getStatus(), is(HttpStatus.SC_OK));
+        verify(mockSetupExecutor).setRecordingRetention("ticketing", "reserveRequest", 100, null);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectNegativeRecordingCapacity() {
+        resource.setRecordingRetention("ticketing", "reserveRequest", -1, null);
+    }
+
     @Test
     public void setResponseShouldReturnResponseWithStatusOK() {
-        Response response = resource.setResponse(mock(HttpHeaders.class), "", "", 1, 0, 0, "", "");
+        Response response = resource.setResponse(mock(HttpHeaders.class), "", "", 1, 0, 0, null, "", false, null, "");
         assertThat(response.getStatus(), is(HttpStatus.SC_OK));
     }
 
@@ -146,8 +290,8 @@ public class MockSetupResourceTest {
         HttpHeaders httpHeaders = mock(HttpHeaders.class);
         when(httpHeaders.getMediaType()).thenReturn(mediaType);
 
-        resource.setResponse(httpHeaders, serviceName, operationId, responseInOrder, customResponseCode, delaySec, headerString,
-            customResponseBody);
+        resource.setResponse(httpHeaders, serviceName, operationId, responseInOrder, customResponseCode, delaySec, null, headerString,
+            false, null, customResponseBody);
         verify(mockSetupExecutor).setCustomResponse(serviceName, operationId, responseInOrder,
             MockResponse.body(customResponseBody).code(customResponseCode).delaySec(delaySec).contentType(mediaType)
                 .headers(BasicSetupResource.parseHeadersToPrime(headerString)).build());
@@ -162,8 +306,8 @@ public class MockSetupResourceTest {
 
         when(httpHeaders.getMediaType()).thenReturn(mediaType);
 
-        resource.setResponse(httpHeaders, serviceName, operationId, responseInOrder, customResponseCode, delaySec, headerString,
-            customResponseBody);
+        resource.setResponse(httpHeaders, serviceName, operationId, responseInOrder, customResponseCode, delaySec, null, headerString,
+            false, null, customResponseBody);
         verify(mockSetupExecutor).setCustomResponse(serviceName, operationId, responseInOrder,
             MockResponse.body(customResponseBody).code(customResponseCode).delaySec(delaySec).contentType(mediaType)
                 .headers(BasicSetupResource.parseHeadersToPrime(headerString)).build());
@@ -178,8 +322,8 @@ public class MockSetupResourceTest {
         int responseInOrder = 5;
         String headerString = "header:value";
 
-        resource.setResponse(mock(HttpHeaders.class), serviceName, operationId, responseInOrder, customResponseCode, 0, headerString,
-            customResponseBody);
+        resource.setResponse(mock(HttpHeaders.class), serviceName, operationId, responseInOrder, customResponseCode, 0, null, headerString,
+            false, null, customResponseBody);
         verify(mockSetupExecutor).setCustomResponse(serviceName, operationId, responseInOrder,
             MockResponse.body(customResponseBody).code(customResponseCode).headers(BasicSetupResource.parseHeadersToPrime(headerString)).build());
 
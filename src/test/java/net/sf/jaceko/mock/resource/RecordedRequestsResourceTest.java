@@ -2,31 +2,54 @@ package net.sf.jaceko.mock.resource;
 
 import net.sf.jaceko.mock.dom.DocumentImpl;
 import net.sf.jaceko.mock.model.request.MockRequest;
+import net.sf.jaceko.mock.model.request.RecordedRequestsQuery;
+import net.sf.jaceko.mock.model.request.RecordingMode;
+import net.sf.jaceko.mock.model.request.RequestTiming;
 import net.sf.jaceko.mock.model.webservice.WebService;
 import net.sf.jaceko.mock.service.MockConfigurationHolder;
+import net.sf.jaceko.mock.service.RecordedRequestsCallback;
 import net.sf.jaceko.mock.service.RecordedRequestsHolder;
+import net.sf.jaceko.mock.service.RecordedRequestsStore;
+import net.sf.jaceko.mock.service.RecordingCounters;
 import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.jboss.resteasy.spi.BadRequestException;
 import org.jboss.resteasy.spi.NotFoundException;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 
 import static java.util.Arrays.asList;
-import static net.sf.jaceko.mock.resource.RestServiceMockVerificationResource.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.hamcrest.xml.HasXPath.hasXPath;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -54,11 +77,9 @@ public class RecordedRequestsResourceTest {
         String req1 = "<req>dummyRequestContent1</req>";
         String req2 = "<req>dummyRequestContent2</req>";
 
-        List<String> recordedRequests = asList(req1, req2);
+        when(recordedRequestsHolder.getRecordedRequests(serviceName, operationId)).thenReturn(requestsWithBodies(req1, req2));
 
-        when(recordedRequestsHolder.getRecordedRequestBodies(serviceName, operationId)).thenReturn(recordedRequests);
-
-        String requestsXml = resource.getRecordedRequests(serviceName, operationId, "");
+        String requestsXml = render(resource.getRecordedRequests(serviceName, operationId, "", 0, null, null));
 
         Document requestsDoc = new DocumentImpl(requestsXml);
 
@@ -76,11 +97,9 @@ public class RecordedRequestsResourceTest {
         String req1 = "dummyRequestContent1";
         String req2 = "dummyRequestContent2";
 
-        List<String> recordedRequests = asList(req1, req2);
-
-        when(recordedRequestsHolder.getRecordedRequestBodies(serviceName, operationId)).thenReturn(recordedRequests);
+        when(recordedRequestsHolder.getRecordedRequests(serviceName, operationId)).thenReturn(requestsWithBodies(req1, req2));
 
-        String requestsXml = resource.getRecordedRequests(serviceName, operationId, "");
+        String requestsXml = render(resource.getRecordedRequests(serviceName, operationId, "", 0, null, null));
 
         Document requestsDoc = new DocumentImpl(requestsXml);
 
@@ -97,11 +116,9 @@ public class RecordedRequestsResourceTest {
         String req1 = "dummyRequestContent1";
         String req2 = "dummyRequestContent2";
 
-        List<String> recordedRequests = asList(req1, req2);
+        when(recordedRequestsHolder.getRecordedRequests(serviceName, operationId)).thenReturn(requestsWithBodies(req1, req2));
 
-        when(recordedRequestsHolder.getRecordedRequestBodies(serviceName, operationId)).thenReturn(recordedRequests);
-
-        String requestsXml = resource.getRecordedRequests(serviceName, operationId, elementToSurroundRecordedRequests);
+        String requestsXml = render(resource.getRecordedRequests(serviceName, operationId, elementToSurroundRecordedRequests, 0, null, null));
 
         Document requestsDoc = new DocumentImpl(requestsXml);
         assertThat(requestsDoc, hasXPath("count(/recorded-requests/request)", equalTo("2")));
@@ -114,11 +131,11 @@ public class RecordedRequestsResourceTest {
 
         String serviceName = "ticketing";
         String operationId = "reserveRequest";
-        List<String> emptyList = Collections.emptyList();
+        List<MockRequest> emptyList = Collections.emptyList();
 
-        when(recordedRequestsHolder.getRecordedRequestBodies(serviceName, operationId)).thenReturn((emptyList));
+        when(recordedRequestsHolder.getRecordedRequests(serviceName, operationId)).thenReturn(emptyList);
 
-        String requestsXml = resource.getRecordedRequests(serviceName, operationId, "");
+        String requestsXml = render(resource.getRecordedRequests(serviceName, operationId, "", 0, null, null));
         Document requestsDoc = new DocumentImpl(requestsXml);
         assertThat(requestsDoc, hasXPath("count(/recorded-requests)", equalTo("1")));
         assertThat(requestsDoc, hasXPath("count(/recorded-requests/req)", equalTo("0")));
@@ -133,11 +150,10 @@ public class RecordedRequestsResourceTest {
         String reqParams1 = "msg=ABC";
         String reqParams2 = "msg=CDEF&ccno=12334;";
 
-        List<String> recordedRequests = asList(reqParams1, reqParams2);
-
-        when(recordedRequestsHolder.getRecordedUrlParams(serviceName, operationId)).thenReturn(recordedRequests);
+        when(recordedRequestsHolder.getRecordedRequests(serviceName, operationId)).thenReturn(asList(
+            new MockRequest(null, reqParams1, null, null), new MockRequest(null, reqParams2, null, null)));
 
-        String requestParamsXml = resource.getRecordedUrlParams(serviceName, operationId);
+        String requestParamsXml = render(resource.getRecordedUrlParams(serviceName, operationId, 0, null, null));
 
         Document requestsDoc = new DocumentImpl(requestParamsXml);
 
@@ -154,12 +170,11 @@ public class RecordedRequestsResourceTest {
         String resourceId1 = "id1";
         String resourceId2 = "id2";
 
-        List<String> recordedResourceIds = asList(resourceId1, resourceId2);
 
         WebService service = new WebService();
         when(configurationHolder.getWebService(anyString())).thenReturn(service);
-        when(recordedRequestsHolder.getRecordedResourcePaths(serviceName, operationId)).thenReturn(recordedResourceIds);
-        String requestParamsXml = resource.getRecordedResourceIds(serviceName, operationId);
+        when(recordedRequestsHolder.getRecordedRequests(serviceName, operationId)).thenReturn(requestsWithResourcePaths(resourceId1, resourceId2));
+        String requestParamsXml = render(resource.getRecordedResourceIds(serviceName, operationId, 0, null, null));
         Document requestsDoc = new DocumentImpl(requestParamsXml);
 
         assertThat(requestsDoc, hasXPath("count(/recorded-resource-ids/recorded-resource-id)", equalTo("2")));
@@ -176,7 +191,7 @@ public class RecordedRequestsResourceTest {
         service.setEnableResourcePaths(true);
         when(configurationHolder.getWebService(anyString())).thenReturn(service);
 
-        resource.getRecordedResourceIds(serviceName, operationId);
+        resource.getRecordedResourceIds(serviceName, operationId, 0, null, null);
     }
 
     @Test
@@ -187,13 +202,12 @@ public class RecordedRequestsResourceTest {
         String resourcePath1 = "id1/id2/id3";
         String resourcePath2 = "id2/id3/id4";
 
-        List<String> recordedResourcePaths = asList(resourcePath1, resourcePath2);
 
         WebService service = new WebService();
         service.setEnableResourcePaths(true);
         when(configurationHolder.getWebService(anyString())).thenReturn(service);
-        when(recordedRequestsHolder.getRecordedResourcePaths(serviceName, operationId)).thenReturn(recordedResourcePaths);
-        String requestParamsXml = resource.getRecordedResourcePaths(serviceName, operationId);
+        when(recordedRequestsHolder.getRecordedRequests(serviceName, operationId)).thenReturn(requestsWithResourcePaths(resourcePath1, resourcePath2));
+        String requestParamsXml = render(resource.getRecordedResourcePaths(serviceName, operationId, 0, null, null));
         Document requestsDoc = new DocumentImpl(requestParamsXml);
 
         assertThat(requestsDoc, hasXPath("count(/recorded-resource-paths/recorded-resource-path)", equalTo("2")));
@@ -209,11 +223,11 @@ public class RecordedRequestsResourceTest {
         WebService service = new WebService();
         when(configurationHolder.getWebService(anyString())).thenReturn(service);
 
-        resource.getRecordedResourcePaths(serviceName, operationId);
+        resource.getRecordedResourcePaths(serviceName, operationId, 0, null, null);
     }
 
     @Test
-    public void shouldGetRecordedRequestHeaders() {
+    public void shouldGetRecordedRequestHeaders() throws Exception {
         //given
         String serviceName = "someRESTService";
         String operationId = "GET";
@@ -228,15 +242,183 @@ public class RecordedRequestsResourceTest {
         when(recordedRequestsHolder.getRecordedRequests(serviceName, operationId)).thenReturn(mockRequests);
 
         //when
-        RecordedRequestHeaders recordedRequestHeaders = resource.getRecordedRequestHeaders(serviceName, operationId);
+        String headersXml = render(resource.getRecordedRequestHeaders(serviceName, operationId, 0, null, null));
 
         //then
-        List<SingleRequestHeaders> singleRequestHeaders = recordedRequestHeaders.getHeaders();
-        List<RecordedHeader> recordedHeaders = singleRequestHeaders.get(0).getRecordedHeaders();
+        Document headersDoc = new DocumentImpl(headersXml);
+        assertThat(headersDoc, hasXPath("count(/recorded-request-headers/single-request-recorded-headers/header)", equalTo("1")));
+        assertThat(headersDoc, hasXPath("/recorded-request-headers/single-request-recorded-headers/header/name", equalTo(headerName)));
+        assertThat(headersDoc, hasXPath("/recorded-request-headers/single-request-recorded-headers/header/value", equalTo(headerValue)));
+    }
+
+    @Test
+    public void shouldStreamRecordedRequestsInUnchangedFormat() throws Exception {
+        when(recordedRequestsHolder.getRecordedRequests("ticketing", "reserve")).thenReturn(requestsWithBodies("<a/>", "b"));
+
+        assertThat(render(resource.getRecordedRequests("ticketing", "reserve", "request", 0, null, null)),
+            equalTo("<recorded-requests>\n<request><a/></request>\n<request>b</request>\n</recorded-requests>"));
+    }
+
+    @Test
+    public void shouldStreamRecordedRequestHeadersAsJaxbMarshalledThem() throws Exception {
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+        headers.putSingle("name", "a&b<c>\r");
+        when(recordedRequestsHolder.getRecordedRequests("ticketing", "reserve")).thenReturn(asList(
+            new MockRequest(null, null, null, headers), new MockRequest(null, null, null, new MultivaluedMapImpl<String, String>())));
+
+        assertThat(render(resource.getRecordedRequestHeaders("ticketing", "reserve", 0, null, null)),
+            equalTo("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?><recorded-request-headers>"
+                + "<single-request-recorded-headers><header><name>name</name><value>a&amp;b&lt;c&gt;&#xD;</value></header>"
+                + "</single-request-recorded-headers><single-request-recorded-headers/></recorded-request-headers>"));
+    }
+
+    @Test
+    public void shouldReturnPageOfRecordedRequests() throws Exception {
+        when(recordedRequestsHolder.getRecordedRequests("ticketing", "reserve")).thenReturn(requestsWithBodies("a", "b", "c", "d"));
+
+        assertThat(render(resource.getRecordedRequests("ticketing", "reserve", "req", 1, 2, null)),
+            equalTo("<recorded-requests>\n<req>b</req>\n<req>c</req>\n</recorded-requests>"));
+        assertThat(render(resource.getRecordedRequests("ticketing", "reserve", "req", 3, 10, null)),
+            equalTo("<recorded-requests>\n<req>d</req>\n</recorded-requests>"));
+        assertThat(render(resource.getRecordedRequests("ticketing", "reserve", "req", 5, null, null)),
+            equalTo("<recorded-requests>\n</recorded-requests>"));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectNegativeOffset() {
+        resource.getRecordedRequests("ticketing", "reserve", "", -1, null, null);
+    }
+
+    @Test
+    public void shouldReturnRecordedRequestsAsJsonWhenPreferred() throws Exception {
+        HttpHeaders httpHeaders = mock(HttpHeaders.class);
+        when(httpHeaders.getAcceptableMediaTypes()).thenReturn(asList(MediaType.APPLICATION_JSON_TYPE, MediaType.TEXT_XML_TYPE));
+        when(recordedRequestsHolder.getRecordedRequests("billdesk", "processPayment")).thenReturn(asList(
+            new MockRequest(null, "msg=\"A\"\n", null, null), new MockRequest(null, null, null, null)));
+
+        Response response = resource.getRecordedUrlParams("billdesk", "processPayment", 0, null, httpHeaders);
+
+        assertThat(response.getMetadata().getFirst("Content-Type"), equalTo((Object) MediaType.valueOf("application/json;charset=UTF-8")));
+        assertThat(render(response), equalTo("{\"recorded-request-params\":[\"msg=\\\"A\\\"\\n\",null]}"));
+    }
+
+    @Test
+    public void shouldQueryRecordedRequestsByHeaderAndParam() throws Exception {
+        ArgumentCaptor<RecordedRequestsQuery> query = ArgumentCaptor.forClass(RecordedRequestsQuery.class);
+        when(recordedRequestsHolder.queryRecordedRequests(eq("ticketing"), eq("reserve"), query.capture()))
+            .thenReturn(requestsWithBodies("<a/>"));
+
+        String requestsXml = render(resource.queryRecordedRequests("ticketing", "reserve", asList("X-Tenant: a"), asList("id=1"),
+            null, null, null, null, null, null, "", 0, null, null));
+
+        assertThat(requestsXml, equalTo("<recorded-requests>\n<a/></recorded-requests>"));
+        assertThat(query.getValue().getHeaders().getFirst("x-tenant"), equalTo("a"));
+        assertThat(query.getValue().getQueryParams().getFirst("id"), equalTo("1"));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectQueryWithInvalidXPath() {
+        resource.queryRecordedRequests("ticketing", "reserve", null, null, null, null, null, "//req[", null, null, "", 0, null, null);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectQueryWithHeaderWithoutValue() {
+        resource.queryRecordedRequests("ticketing", "reserve", asList("X-Tenant"), null, null, null, null, null, null, null, "", 0, null, null);
+    }
+
+    @Test
+    public void shouldReturnAwaitedRequestsAtOnceIfAlreadyRecorded() throws Exception {
+        givenReceivedRequests(2L);
+        when(recordedRequestsHolder.getRecordedRequests("ticketing", "reserve")).thenReturn(requestsWithBodies("<a/>", "<b/>"));
+
+        Response response = resource.awaitRecordedRequests("ticketing", "reserve", 2, 1000, "", null);
+
+        assertThat(response.getStatus(), equalTo(200));
+        assertThat(render(response), equalTo("<recorded-requests>\n<a/><b/></recorded-requests>"));
+        verify(recordedRequestsHolder, never()).awaitRecordedRequests(anyString(), anyString(), anyInt(), anyLong(),
+            any(RecordedRequestsCallback.class));
+    }
+
+    @Test
+    public void shouldReturnRequestTimeoutWithRequestsRecordedSoFar() throws Exception {
+        givenReceivedRequests(1L);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((RecordedRequestsCallback) invocation.getArguments()[4]).onRecordedRequests(requestsWithBodies("<a/>"), false);
+                return null;
+            }
+        }).when(recordedRequestsHolder).awaitRecordedRequests(eq("ticketing"), eq("reserve"), eq(2), eq(1000L),
+            any(RecordedRequestsCallback.class));
+
+        Response response = resource.awaitRecordedRequests("ticketing", "reserve", 2, 1000, "", null);
+
+        assertThat(response.getStatus(), equalTo(408));
+        assertThat(render(response), equalTo("<recorded-requests>\n<a/></recorded-requests>"));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectAwaitTimeoutAboveLimit() {
+        resource.awaitRecordedRequests("ticketing", "reserve", 1, BasicVerificationResource.MAX_AWAIT_TIMEOUT_MILLIS + 1, "", null);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectAwaitWhenRecordingIsOff() {
+        when(recordedRequestsHolder.getRecordingMode("ticketing", "reserve")).thenReturn(RecordingMode.OFF);
+
+        resource.awaitRecordedRequests("ticketing", "reserve", 1, 1000, "", null);
+    }
+
+    private void givenReceivedRequests(long count) {
+        RecordingCounters counters = mock(RecordingCounters.class);
+        when(counters.getInvocationCount()).thenReturn(count);
+        when(recordedRequestsHolder.getRecordingCounters("ticketing", "reserve")).thenReturn(counters);
+        when(recordedRequestsHolder.getRecordingMode("ticketing", "reserve")).thenReturn(RecordingMode.FULL);
+    }
+
+    @Test
+    public void shouldGetRecordedRequestTimings() throws Exception {
+        RequestTiming completed = new RequestTiming(5000);
+        completed.complete(5750);
+        when(recordedRequestsHolder.getRecordedRequests("ticketing", "reserve")).thenReturn(asList(
+            new MockRequest(null, null, null, null, 1000L, completed),
+            new MockRequest(null, null, null, null, 2000L, new RequestTiming(9000)),
+            new MockRequest(null, null, null, null, 3000L)));
+
+        assertThat(render(resource.getRecordedRequestTimings("ticketing", "reserve", 0, null, null)), equalTo(
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?><recorded-request-timings>"
+                + "<recorded-request-timing><recorded-at>1000</recorded-at><arrival-nanos>5000</arrival-nanos><service-time-nanos>750</service-time-nanos></recorded-request-timing>"
+                + "<recorded-request-timing><recorded-at>2000</recorded-at><arrival-nanos>9000</arrival-nanos></recorded-request-timing>"
+                + "<recorded-request-timing><recorded-at>3000</recorded-at></recorded-request-timing>"
+                + "</recorded-request-timings>"));
+
+        HttpHeaders httpHeaders = mock(HttpHeaders.class);
+        when(httpHeaders.getAcceptableMediaTypes()).thenReturn(asList(MediaType.APPLICATION_JSON_TYPE));
+        assertThat(render(resource.getRecordedRequestTimings("ticketing", "reserve", 0, 2, httpHeaders)), equalTo(
+            "{\"recorded-request-timings\":[{\"recordedAt\":1000,\"arrivalNanos\":5000,\"serviceTimeNanos\":750},"
+                + "{\"recordedAt\":2000,\"arrivalNanos\":9000,\"serviceTimeNanos\":null}]}"));
+    }
+
+    private static List<MockRequest> requestsWithBodies(String... bodies) {
+        List<MockRequest> requests = new ArrayList<MockRequest>();
+        for (String body : bodies) {
+            requests.add(new MockRequest(body, null, null, null));
+        }
+        return requests;
+    }
+
+    private static List<MockRequest> requestsWithResourcePaths(String... resourcePaths) {
+        List<MockRequest> requests = new ArrayList<MockRequest>();
+        for (String resourcePath : resourcePaths) {
+            requests.add(new MockRequest(null, null, resourcePath, null));
+        }
+        return requests;
+    }
 
-        assertThat(recordedHeaders.size(), equalTo(1));
-        assertThat(recordedHeaders.get(0).getName(), equalTo(headerName));
-        assertThat(recordedHeaders.get(0).getValue(), equalTo(headerValue));
+    private static String render(Response response) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(output);
+        return new String(output.toByteArray(), "UTF-8");
     }
 
 }
@@ -0,0 +1,133 @@
+package net.sf.jaceko.mock.resource;
+
+import net.sf.jaceko.mock.model.webservice.WebserviceOperation;
+import net.sf.jaceko.mock.service.Delayer;
+import net.sf.jaceko.mock.service.MockConfigurationHolder;
+import net.sf.jaceko.mock.service.RecordedRequestsHolder;
+import net.sf.jaceko.mock.service.RecordedRequestsSubscription;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.jboss.resteasy.spi.BadRequestException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class RecordedRequestsTailResourceTest {
+    private RecordedRequestsHolder recordedRequestsHolder = new RecordedRequestsHolder();
+
+    @Mock
+    private MockConfigurationHolder configurationHolder;
+
+    @Mock
+    private AsyncContext asyncContext;
+
+    @Mock
+    private HttpServletResponse servletResponse;
+
+    @Before
+    public void before() {
+        initMocks(this);
+        recordedRequestsHolder.setMockserviceConfiguration(configurationHolder);
+        when(configurationHolder.getWebServiceOperation(anyString(), anyString())).thenReturn(new WebserviceOperation());
+    }
+
+    @Test
+    public void shouldStreamRecordedRequestsAsServerSentEvents() throws IOException {
+        RecordedRequestsSubscription subscription = recordedRequestsHolder.subscribe("mptu", null, 10);
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+        headers.add("Accept", "text/xml");
+        recordedRequestsHolder.recordRequest("mptu", "prepayRequest", "<req a=\"1\"/>\n", "id=1", null, headers);
+        recordedRequestsHolder.unsubscribe(subscription);
+
+        String events = render(new RecordedRequestsEventStream(recordedRequestsHolder, subscription, 10));
+
+        long recordedAt = recordedRequestsHolder.getRecordedRequests("mptu", "prepayRequest").iterator().next().getRecordedAt();
+        assertThat(events, is(": subscribed\n\n"
+            + "event: recorded-request\n"
+            + "data: {\"service\":\"mptu\",\"operation\":\"prepayRequest\",\"recordedAt\":" + recordedAt
+            + ",\"resourcePath\":null,\"queryString\":\"id=1\",\"headers\":{\"Accept\":[\"text/xml\"]},"
+            + "\"body\":\"<req a=\\\"1\\\"/>\\n\"}\n\n"));
+    }
+
+    @Test
+    public void shouldReportDroppedRequests() throws IOException {
+        RecordedRequestsSubscription subscription = recordedRequestsHolder.subscribe(null, null, 1);
+        recordedRequestsHolder.recordRequest("mptu", "prepayRequest", null, null, null, null);
+        recordedRequestsHolder.recordRequest("mptu", "prepayRequest", null, null, null, null);
+        recordedRequestsHolder.recordRequest("mptu", "prepayRequest", "<last/>", null, null, null);
+        recordedRequestsHolder.unsubscribe(subscription);
+
+        String events = render(new RecordedRequestsEventStream(recordedRequestsHolder, subscription, 10));
+
+        assertThat(events.startsWith(": subscribed\n\nevent: dropped\ndata: 2\n\nevent: recorded-request\n"), is(true));
+        assertThat(events.endsWith("\"body\":\"<last/>\"}\n\n"), is(true));
+    }
+
+    @Test
+    public void shouldDeliverEventsToSuspendedRequestUntilClientGoesAway() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final AtomicBoolean clientGone = new AtomicBoolean();
+        when(asyncContext.getResponse()).thenReturn(servletResponse);
+        when(servletResponse.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                if (clientGone.get()) {
+                    throw new IOException("Connection reset");
+                }
+                synchronized (output) {
+                    output.write(b);
+                }
+            }
+        });
+        RecordedRequestsSubscription subscription = recordedRequestsHolder.subscribe("mptu", null, 10);
+
+        new RecordedRequestsEventStream(recordedRequestsHolder, subscription, 10).deliver(asyncContext, new Delayer());
+        recordedRequestsHolder.recordRequest("mptu", "prepayRequest", "<req/>", null, null, null);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!written(output).contains("\"body\":\"<req/>\"}") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(written(output).startsWith(": subscribed\n\nevent: recorded-request\n"), is(true));
+
+        clientGone.set(true);
+
+        verify(asyncContext, timeout(5000)).complete();
+        assertThat(subscription.isClosed(), is(true));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectTooLargeBuffer() {
+        RecordedRequestsTailResource resource = new RecordedRequestsTailResource();
+        resource.setRecordedRequestsHolder(recordedRequestsHolder);
+
+        resource.streamRecordedRequests(null, null, RecordedRequestsTailResource.MAX_BUFFER_SIZE + 1);
+    }
+
+    private static String written(ByteArrayOutputStream output) throws IOException {
+        synchronized (output) {
+            return new String(output.toByteArray(), "UTF-8");
+        }
+    }
+
+    private static String render(RecordedRequestsEventStream stream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        stream.write(output);
+        return new String(output.toByteArray(), "UTF-8");
+    }
+}
@@ -0,0 +1,141 @@
+package net.sf.jaceko.mock.resource;
+
+import net.sf.jaceko.mock.application.enums.ServiceType;
+import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.RequestContext;
+import net.sf.jaceko.mock.model.webservice.WebService;
+import net.sf.jaceko.mock.model.webservice.WebserviceOperation;
+import net.sf.jaceko.mock.service.MockConfigurationHolder;
+import net.sf.jaceko.mock.service.RecordedRequestsHolder;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.jboss.resteasy.spi.BadRequestException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class RecordedTrafficExportResourceTest {
+    private static final String SERVICE_NAME = "items";
+
+    private RecordedRequestsHolder recordedRequestsHolder = new RecordedRequestsHolder();
+    private RecordedTrafficExportResource resource = new RecordedTrafficExportResource();
+
+    @Mock
+    private MockConfigurationHolder configurationHolder;
+
+    @Mock
+    private UriInfo uriInfo;
+
+    @Before
+    public void before() throws Exception {
+        initMocks(this);
+        WebService service = new WebService(SERVICE_NAME, null);
+        service.setServiceType(ServiceType.REST);
+        service.addOperations(Arrays.asList(WebserviceOperation.name("POST").build(), WebserviceOperation.name("GET").build()));
+        when(configurationHolder.getWebServices()).thenReturn(Collections.singletonList(service));
+        when(configurationHolder.getWebService(SERVICE_NAME)).thenReturn(service);
+        when(configurationHolder.getWebServiceOperation(anyString(), anyString())).thenReturn(new WebserviceOperation());
+        when(uriInfo.getBaseUri()).thenReturn(new URI("http://localhost:8080/mock/"));
+        recordedRequestsHolder.setMockserviceConfiguration(configurationHolder);
+        resource.setConfigurationHolder(configurationHolder);
+        resource.setRecordedRequestsHolder(recordedRequestsHolder);
+
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+        headers.add("Content-Type", "application/json");
+        recordedRequestsHolder.recordRequest(SERVICE_NAME, "POST", new RequestContext("{\"name\":\"ä\"}", null, "dryRun=true",
+            "items/1", headers), null, MockResponse.body("{\"id\":1}").code(201).contentType("application/json").build());
+        recordedRequestsHolder.recordRequest(SERVICE_NAME, "GET", new RequestContext(null, null, null, null, null), null,
+            MockResponse.body(null).binaryBody(new byte[]{1, 2, 3}).build());
+    }
+
+    @Test
+    public void shouldExportRecordedRequestsAsHar() throws Exception {
+        Response response = resource.exportRecordedRequests(null, "har", false, uriInfo);
+
+        JSONObject log = new JSONObject(write(response)).getJSONObject("log");
+        assertThat(log.getString("version"), is("1.2"));
+        JSONArray entries = log.getJSONArray("entries");
+        assertThat(entries.length(), is(2));
+
+        JSONObject post = entries.getJSONObject(0);
+        JSONObject request = post.getJSONObject("request");
+        assertThat(request.getString("method"), is("POST"));
+        assertThat(request.getString("url"), is("http://localhost:8080/mock/services/REST/items/endpoint/items/1?dryRun=true"));
+        assertThat(request.getJSONArray("queryString").getJSONObject(0).getString("value"), is("true"));
+        assertThat(request.getJSONObject("postData").getString("text"), is("{\"name\":\"ä\"}"));
+        assertThat(request.getInt("bodySize"), is(13));
+        assertThat(post.getJSONObject("response").getInt("status"), is(201));
+        assertThat(post.getJSONObject("response").getJSONObject("content").getString("text"), is("{\"id\":1}"));
+        assertThat(post.getString("_operation"), is("POST"));
+
+        JSONObject content = entries.getJSONObject(1).getJSONObject("response").getJSONObject("content");
+        assertThat(content.getString("encoding"), is("base64"));
+        assertThat(content.getString("text"), is("AQID"));
+        assertThat(response.getMetadata().getFirst("Content-Disposition"), is((Object) "attachment; filename=recorded-requests.har"));
+    }
+
+    @Test
+    public void shouldExportGzippedJsonLines() throws Exception {
+        Response response = resource.exportRecordedRequests(SERVICE_NAME, "jsonl", true, uriInfo);
+
+        assertThat(response.getMetadata().getFirst("Content-Type"), is((Object) MediaType.valueOf("application/gzip")));
+        List<JSONObject> lines = readJsonLines(new GZIPInputStream(new ByteArrayInputStream(writeBytes(response))));
+        assertThat(lines, hasSize(2));
+        assertThat(lines.get(0).getString("service"), is(SERVICE_NAME));
+        assertThat(lines.get(0).getString("resourcePath"), is("items/1"));
+        assertThat(lines.get(0).getJSONObject("headers").getJSONArray("Content-Type").getString(0), is("application/json"));
+        assertThat(lines.get(0).getJSONObject("response").getInt("code"), is(201));
+        assertThat(lines.get(1).getJSONObject("response").getString("body"), is("AQID"));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectUnknownFormat() {
+        resource.exportRecordedRequests(null, "csv", false, uriInfo);
+    }
+
+    private static String write(Response response) throws IOException {
+        return new String(writeBytes(response), "UTF-8");
+    }
+
+    private static byte[] writeBytes(Response response) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(output);
+        return output.toByteArray();
+    }
+
+    private static List<JSONObject> readJsonLines(InputStream input) throws IOException, JSONException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, "UTF-8"));
+        List<JSONObject> lines = new ArrayList<JSONObject>();
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lines.add(new JSONObject(line));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,77 @@
+package net.sf.jaceko.mock.resource;
+
+import net.sf.jaceko.mock.dto.PrimedResponseDto;
+import net.sf.jaceko.mock.dto.PrimedResponsesDto;
+import net.sf.jaceko.mock.model.request.PrimedResponse;
+import net.sf.jaceko.mock.service.MockSetupExecutor;
+import org.jboss.resteasy.spi.BadRequestException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ResponseBatchResourceTest {
+
+    @Mock
+    private MockSetupExecutor mockSetupExecutor;
+
+    private ResponseBatchResource resource = new ResponseBatchResource();
+
+    @Before
+    public void before() {
+        initMocks(this);
+        resource.setMockSetupExecutor(mockSetupExecutor);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldPrimeResponsesGivenAsJson() {
+        resource.primeJsonResponses(true, "{\"responses\":["
+            + "{\"service\":\"svc1\",\"operation\":\"POST\",\"code\":201,\"content-type\":\"application/json\","
+            + "\"headers\":{\"ETag\":\"1\"},\"body\":\"{}\"},"
+            + "{\"service\":\"svc2\",\"operation\":\"GET\",\"position\":3,\"body\":\"<resp/>\"}]}");
+
+        ArgumentCaptor<List> responses = ArgumentCaptor.forClass(List.class);
+        verify(mockSetupExecutor).primeResponses(responses.capture(), eq(true));
+        List<PrimedResponse> primed = responses.getValue();
+        assertThat(primed, hasSize(2));
+        assertThat(primed.get(0).getServiceName(), is("svc1"));
+        assertThat(primed.get(0).getOperationId(), is("POST"));
+        assertThat(primed.get(0).getRequestInOrder(), is(nullValue()));
+        assertThat(primed.get(0).getResponse().getCode(), is(201));
+        assertThat(primed.get(0).getResponse().getContentType(), is("application/json"));
+        assertThat(primed.get(0).getResponse().getHeader("ETag"), is("1"));
+        assertThat(primed.get(0).getResponse().getBody(), is("{}"));
+        assertThat(primed.get(1).getRequestInOrder(), is(3));
+        assertThat(primed.get(1).getResponse().getBody(), is("<resp/>"));
+    }
+
+    @Test
+    public void shouldRejectBatchWithResponseMissingOperation() {
+        PrimedResponsesDto responses = new PrimedResponsesDto();
+        PrimedResponseDto response = new PrimedResponseDto();
+        response.setService("svc1");
+        responses.getResponses().add(response);
+
+        try {
+            resource.primeResponses(false, responses);
+            fail();
+        } catch (BadRequestException e) {
+            verifyZeroInteractions(mockSetupExecutor);
+        }
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectMalformedJson() {
+        resource.primeJsonResponses(false, "{\"responses\":");
+    }
+
+}
@@ -2,17 +2,20 @@ package net.sf.jaceko.mock.resource;
 
 import net.sf.jaceko.mock.exception.ClientFaultException;
 import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.RequestContext;
 import net.sf.jaceko.mock.service.MockConfigurationHolder;
 import net.sf.jaceko.mock.service.RequestExecutor;
 import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
+import javax.xml.namespace.QName;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -21,6 +24,7 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -59,10 +63,20 @@ public class SoapEndpointResourceTest {
 
         resource.performRequest(serviceName, servletContext, request, mockHttpHeaders);
 
-        verify(service).performRequest(serviceName, inputMessageName, request, null, null, headers);
+        RequestContext requestContext = verifyRequestPerformed(serviceName, inputMessageName);
+        assertThat(requestContext.getBody(), is(request));
+        assertThat(requestContext.getRootElement(), is(new QName("http://tempuri.org/", inputMessageName)));
+        assertThat(requestContext.getQueryString(), is((String) null));
+        assertThat(requestContext.getHeaders(), is(headers));
 
     }
 
+    private RequestContext verifyRequestPerformed(String serviceName, String inputMessageName) {
+        ArgumentCaptor<RequestContext> requestContext = ArgumentCaptor.forClass(RequestContext.class);
+        verify(service).performRequest(eq(serviceName), eq(inputMessageName), requestContext.capture());
+        return requestContext.getValue();
+    }
+
     private String soapRequest(String inputMessageName) {
         return "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:tem=\"http://tempuri.org/\">"
             + "<soapenv:Body><tem:"
@@ -85,7 +99,9 @@ public class SoapEndpointResourceTest {
 
         resource.performRequest(serviceName, servletContext, request, mockHttpHeaders);
 
-        verify(service).performRequest(serviceName, inputMessageName, request, null, null, headers);
+        RequestContext requestContext = verifyRequestPerformed(serviceName, inputMessageName);
+        assertThat(requestContext.getBody(), is(request));
+        assertThat(requestContext.getHeaders(), is(headers));
     }
 
     @Test
@@ -107,7 +123,9 @@ public class SoapEndpointResourceTest {
 
         resource.performRequest(serviceName, servletContext, request, mockHttpHeaders);
 
-        verify(service).performRequest(serviceName, "objExecute", request, null, null, headers);
+        RequestContext requestContext = verifyRequestPerformed(serviceName, "objExecute");
+        assertThat(requestContext.getBody(), is(request));
+        assertThat(requestContext.getNamespace(), is("http://www.bookmyshow.com/"));
 
     }
 
@@ -169,7 +187,7 @@ public class SoapEndpointResourceTest {
         String responseBody = "<dummyResponse/>";
         int responseCode = 500;
 
-        when(service.performRequest(anyString(), anyString(), anyString(), anyString(), anyString(), any(MultivaluedMap.class))).thenReturn(
+        when(service.performRequest(anyString(), anyString(), any(RequestContext.class))).thenReturn(
             new MockResponse(responseBody, responseCode));
         Response response = resource.performRequest(serviceName, servletContext, request, mockHttpHeaders);
         assertThat((String) response.getEntity(), is(responseBody));
@@ -189,7 +207,7 @@ public class SoapEndpointResourceTest {
         Map<String, String> headers = new HashMap<String, String>();
         headers.put("headerkey", "headervalue");
 
-        when(service.performRequest(anyString(), anyString(), anyString(), anyString(), anyString(), any(MultivaluedMap.class))).thenReturn(
+        when(service.performRequest(anyString(), anyString(), any(RequestContext.class))).thenReturn(
             MockResponse.body(responseBody).code(responseCode).headers(headers).build());
 
         Response response = resource.performRequest(serviceName, servletContext, request, mockHttpHeaders);
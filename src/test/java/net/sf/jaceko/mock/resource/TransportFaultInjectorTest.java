@@ -0,0 +1,58 @@
+package net.sf.jaceko.mock.resource;
+
+import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.TransportFault;
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TransportFaultInjectorTest {
+
+    @Test
+    public void shouldSendNothingBeforeResetOrEmptyResponse() {
+        assertThat(TransportFaultInjector.faultBytes(response(TransportFault.RESET)).length, is(0));
+        assertThat(TransportFaultInjector.faultBytes(response(TransportFault.EMPTY)).length, is(0));
+    }
+
+    @Test
+    public void shouldSendHeadAndFirstBytesOfBodyBeforeClosing() throws UnsupportedEncodingException {
+        String sent = text(TransportFaultInjector.faultBytes(response(TransportFault.closeAfter(4))));
+
+        assertThat(sent, startsWith("HTTP/1.1 503 Service Unavailable\r\n"));
+        assertThat(sent, containsString("Content-Type: text/xml\r\n"));
+        assertThat(sent, containsString("Retry-After: 5\r\n"));
+        assertThat(sent, containsString("Content-Length: 10\r\n"));
+        assertThat(sent, endsWith("Connection: close\r\n\r\n<res"));
+    }
+
+    @Test
+    public void shouldSendOnlyHeadBeforeStalling() throws UnsupportedEncodingException {
+        String sent = text(TransportFaultInjector.faultBytes(response(TransportFault.stall(100))));
+
+        assertThat(sent, containsString("Content-Length: 10\r\n"));
+        assertThat(sent, endsWith("\r\n\r\n"));
+    }
+
+    @Test
+    public void shouldSendBodyWithInvalidChunkSize() throws UnsupportedEncodingException {
+        String sent = text(TransportFaultInjector.faultBytes(response(TransportFault.MALFORMED_CHUNKED)));
+
+        assertThat(sent, containsString("Transfer-Encoding: chunked\r\n"));
+        assertThat(sent, not(containsString("Content-Length")));
+        assertThat(sent, endsWith("\r\n\r\nzz\r\n<response>\r\n0\r\n\r\n"));
+    }
+
+    private MockResponse response(TransportFault fault) {
+        return MockResponse.body("<response>").code(503).contentType("text/xml")
+            .headers(Collections.singletonMap("Retry-After", "5")).fault(fault).build();
+    }
+
+    private String text(byte[] bytes) throws UnsupportedEncodingException {
+        return new String(bytes, "ISO-8859-1");
+    }
+
+}
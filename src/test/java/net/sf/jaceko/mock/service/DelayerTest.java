@@ -0,0 +1,51 @@
+package net.sf.jaceko.mock.service;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.junit.Assert.assertThat;
+
+public class DelayerTest {
+
+    private Delayer delayer = new Delayer();
+
+    @Test
+    public void shouldRunUndelayedTaskOnCallingThread() {
+        final AtomicReference<Thread> executingThread = new AtomicReference<Thread>();
+
+        delayer.delayMillis(0, new Runnable() {
+            @Override
+            public void run() {
+                executingThread.set(Thread.currentThread());
+            }
+        });
+
+        assertThat(executingThread.get(), is(Thread.currentThread()));
+    }
+
+    @Test
+    public void shouldRunDelayedTaskOnTimerThreadWithoutBlockingCaller() throws InterruptedException {
+        final AtomicReference<Thread> executingThread = new AtomicReference<Thread>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        long start = System.currentTimeMillis();
+        delayer.delayMillis(1000, new Runnable() {
+            @Override
+            public void run() {
+                executingThread.set(Thread.currentThread());
+                done.countDown();
+            }
+        });
+
+        assertThat(System.currentTimeMillis() - start < 1000, is(true));
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(System.currentTimeMillis() - start >= 1000, is(true));
+        assertThat(executingThread.get(), not(Thread.currentThread()));
+    }
+
+}
@@ -0,0 +1,128 @@
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.model.request.MockRequest;
+import net.sf.jaceko.mock.model.request.RecordedRequestsQuery;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.junit.Test;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class IndexedRecordedRequestsStoreTest {
+
+    private IndexedRecordedRequestsStore store = new IndexedRecordedRequestsStore(new RecordedRequestsBuffer(100, 0));
+
+    @Test
+    public void shouldQueryByHeaderValue() {
+        store.add(request("1", "X-Tenant", "a", null, null));
+        store.add(request("2", "X-Tenant", "b", null, null));
+        store.add(request("3", "x-tenant", "a", null, null));
+
+        assertThat(bodies(store.query(new RecordedRequestsQuery().withHeader("X-TENANT", "a"))), contains("1", "3"));
+    }
+
+    @Test
+    public void shouldQueryByQueryParamAndResourcePathPrefix() {
+        store.add(request("1", null, null, "id=1", "orders/1"));
+        store.add(request("2", null, null, "id=2", "orders/2"));
+        store.add(request("3", null, null, "id=1", "customers/1"));
+
+        assertThat(bodies(store.query(new RecordedRequestsQuery().withQueryParam("id", "1"))), contains("1", "3"));
+        assertThat(bodies(store.query(new RecordedRequestsQuery().withResourcePathPrefix("orders/"))), contains("1", "2"));
+        assertThat(bodies(store.query(new RecordedRequestsQuery().withQueryParam("id", "1").withResourcePathPrefix("orders/"))),
+            contains("1"));
+    }
+
+    @Test
+    public void shouldQueryWithoutIndexedCriteria() {
+        store.add(new MockRequest("1", null, null, null, 100L));
+        store.add(new MockRequest("2", null, null, null, 200L));
+
+        assertThat(bodies(store.query(new RecordedRequestsQuery().recordedBetween(150L, null))), contains("2"));
+        assertThat(bodies(store.query(new RecordedRequestsQuery())), contains("1", "2"));
+    }
+
+    @Test
+    public void shouldNotReturnEvictedRequests() {
+        IndexedRecordedRequestsStore smallStore = new IndexedRecordedRequestsStore(new RecordedRequestsBuffer(2, 0));
+        for (int i = 0; i < 5; i++) {
+            smallStore.add(request(String.valueOf(i), "X-Tenant", "a", null, null));
+        }
+
+        assertThat(bodies(smallStore.query(new RecordedRequestsQuery().withHeader("X-Tenant", "a"))), contains("3", "4"));
+    }
+
+    @Test
+    public void shouldKeepQueryingRetainedRequestsAfterIndexIsSwept() {
+        IndexedRecordedRequestsStore smallStore = new IndexedRecordedRequestsStore(new RecordedRequestsBuffer(10, 0));
+        for (int i = 0; i < 10000; i++) {
+            smallStore.add(request(String.valueOf(i), "X-Request-Id", String.valueOf(i), null, null));
+        }
+
+        assertThat(bodies(smallStore.query(new RecordedRequestsQuery().withHeader("X-Request-Id", "9995"))), contains("9995"));
+        assertThat(bodies(smallStore.query(new RecordedRequestsQuery().withHeader("X-Request-Id", "5"))), is(empty()));
+    }
+
+    @Test
+    public void shouldIndexRequestsRecordedSincePreviousQuery() {
+        store.add(request("1", "X-Tenant", "a", null, null));
+        assertThat(bodies(store.query(new RecordedRequestsQuery().withHeader("X-Tenant", "a"))), contains("1"));
+
+        store.add(request("2", "X-Tenant", "a", null, null));
+
+        assertThat(bodies(store.query(new RecordedRequestsQuery().withHeader("X-Tenant", "a"))), contains("1", "2"));
+    }
+
+    @Test
+    public void shouldQueryHeaderHavingTooManyValuesToIndex() {
+        int count = RecordedRequestsIndex.MAX_INDEXED_VALUES + 10;
+        IndexedRecordedRequestsStore largeStore = new IndexedRecordedRequestsStore(new RecordedRequestsBuffer(count, 0));
+        for (int i = 0; i < count; i++) {
+            largeStore.add(request(String.valueOf(i), "X-Request-Id", String.valueOf(i), "page=" + i % 2, null));
+        }
+
+        assertThat(bodies(largeStore.query(new RecordedRequestsQuery().withHeader("X-Request-Id", "5"))), contains("5"));
+        assertThat(bodies(largeStore.query(new RecordedRequestsQuery().withHeader("X-Request-Id", "5")
+            .withQueryParam("page", "1"))), contains("5"));
+    }
+
+    @Test
+    public void shouldIndexRequestsAlreadyInWrappedStore() {
+        RecordedRequestsBuffer buffer = new RecordedRequestsBuffer(10, 0);
+        buffer.add(request("1", "X-Tenant", "a", null, null));
+
+        IndexedRecordedRequestsStore indexed = new IndexedRecordedRequestsStore(buffer);
+
+        assertThat(bodies(indexed.query(new RecordedRequestsQuery().withHeader("X-Tenant", "a"))), contains("1"));
+    }
+
+    @Test
+    public void shouldForgetIndexedRequestsWhenCleared() {
+        store.add(request("1", "X-Tenant", "a", null, null));
+
+        IndexedRecordedRequestsStore cleared = store.cleared();
+        cleared.add(request("2", "X-Tenant", "a", null, null));
+
+        assertThat(bodies(cleared.query(new RecordedRequestsQuery().withHeader("X-Tenant", "a"))), contains("2"));
+    }
+
+    private static MockRequest request(String body, String headerName, String headerValue, String queryString, String resourcePath) {
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+        if (headerName != null) {
+            headers.putSingle(headerName, headerValue);
+        }
+        return new MockRequest(body, queryString, resourcePath, headers);
+    }
+
+    private static List<String> bodies(List<MockRequest> requests) {
+        List<String> bodies = new ArrayList<String>();
+        for (MockRequest request : requests) {
+            bodies.add(request.getBody());
+        }
+        return bodies;
+    }
+}
@@ -1,5 +1,6 @@
 package net.sf.jaceko.mock.service;
 
+import net.sf.jaceko.mock.model.request.PathTemplate;
 import net.sf.jaceko.mock.model.webservice.WebService;
 import net.sf.jaceko.mock.model.webservice.WebserviceOperation;
 import org.jboss.resteasy.spi.NotFoundException;
@@ -78,6 +79,62 @@ public class MockConfigurationHolderTest {
 
     }
 
+    @Test
+    public void shouldReturnRestOperationByHttpMethod() {
+        WebService service = new WebService("books", null);
+        WebserviceOperation getOperation = WebserviceOperation.name("GET").build();
+        WebserviceOperation postOperation = WebserviceOperation.name("POST").build();
+        service.addOperation(0, getOperation);
+        service.addOperation(1, postOperation);
+
+        configuration.setWebServices(asList(service));
+
+        assertThat(configuration.getWebServiceOperation("books", "GET"), is(getOperation));
+        assertThat(configuration.getWebServiceOperation("books", "POST"), is(postOperation));
+    }
+
+    @Test
+    public void shouldRouteRestOperationByPathTemplate() {
+        WebService service = new WebService("shop", null);
+        WebserviceOperation getOperation = WebserviceOperation.name("GET").build();
+        WebserviceOperation getOrderOperation = WebserviceOperation.name("GET").build();
+        getOrderOperation.setPathTemplate(PathTemplate.parse("/customers/{id}/orders/{orderId}"));
+        service.addOperation(0, getOperation);
+        service.addOperation(1, getOrderOperation);
+
+        configuration.setWebServices(asList(service));
+
+        assertThat(configuration.getRestOperation("shop", "GET", "customers/1/orders/2"), is(getOrderOperation));
+        assertThat(configuration.getRestOperation("shop", "GET", "customers/1"), is(getOperation));
+        assertThat(configuration.getRestOperation("shop", "GET", null), is(getOperation));
+        assertThat(configuration.getWebServiceOperation("shop", "GET_customers_{id}_orders_{orderId}"), is(getOrderOperation));
+        assertThat(configuration.getWebServiceOperation("shop", "GET"), is(getOperation));
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void shouldThrowExceptionIfNoRestOperationMatches() {
+        WebService service = new WebService("shop", null);
+        WebserviceOperation getOrderOperation = WebserviceOperation.name("GET").build();
+        getOrderOperation.setPathTemplate(PathTemplate.parse("/orders/{orderId}"));
+        service.addOperation(0, getOrderOperation);
+        configuration.setWebServices(asList(service));
+
+        configuration.getRestOperation("shop", "GET", "customers/1");
+    }
+
+    @Test
+    public void shouldReturnFirstDeclaredOperationIfNamesRepeat() {
+        WebService service = new WebService("ticketing", null);
+        WebserviceOperation operation1 = WebserviceOperation.name("reserveRequest").defaultResponseText("first").build();
+        WebserviceOperation operation2 = WebserviceOperation.name("reserveRequest").defaultResponseText("second").build();
+        service.addOperation(0, operation1);
+        service.addOperation(1, operation2);
+
+        configuration.setWebServices(asList(service));
+
+        assertThat(configuration.getWebServiceOperation("ticketing", "reserveRequest").getDefaultResponseText(), is("first"));
+    }
+
     @Test(expected = NotFoundException.class)
     public void shouldThrowExceptionIfServiceNotFound() {
         configuration.getWebServiceOperation("not_existing", "abc");
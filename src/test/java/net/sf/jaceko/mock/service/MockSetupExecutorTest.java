@@ -1,16 +1,21 @@
 package net.sf.jaceko.mock.service;
 
 import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.PrimedResponse;
 import net.sf.jaceko.mock.model.webservice.WebService;
 import net.sf.jaceko.mock.model.webservice.WebserviceOperation;
+import org.jboss.resteasy.spi.NotFoundException;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 
 import java.util.Collection;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -122,6 +127,40 @@ public class MockSetupExecutorTest {
 
     }
 
+    @Test
+    public void shouldPrimeResponsesOfManyOperationsAndInitThem() {
+        WebserviceOperation operation1 = new WebserviceOperation();
+        WebserviceOperation operation2 = new WebserviceOperation();
+        when(configurationHolder.getWebServiceOperation("svc1", "POST")).thenReturn(operation1);
+        when(configurationHolder.getWebServiceOperation("svc2", "GET")).thenReturn(operation2);
+        operation1.addCustomResponse(new MockResponse("<old/>"));
+        recordedRequestsHolder.recordRequest("svc1", "POST", "<req1/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+
+        setupExecutor.primeResponses(asList(
+            new PrimedResponse("svc1", "POST", null, new MockResponse("<resp1/>")),
+            new PrimedResponse("svc2", "GET", 2, new MockResponse("<resp2/>"))), true);
+
+        assertThat(operation1.getResponse(1).getBody(), is("<resp1/>"));
+        assertThat(operation2.getResponse(2).getBody(), is("<resp2/>"));
+        assertThat(recordedRequestsHolder.getRecordedRequestBodies("svc1", "POST").size(), is(0));
+    }
+
+    @Test
+    public void shouldPrimeNoResponseIfAnyOperationIsUndefined() {
+        WebserviceOperation operation = new WebserviceOperation();
+        when(configurationHolder.getWebServiceOperation("svc1", "POST")).thenReturn(operation);
+        when(configurationHolder.getWebServiceOperation("svc1", "PATCH")).thenThrow(new NotFoundException("Undefined"));
+
+        try {
+            setupExecutor.primeResponses(asList(
+                new PrimedResponse("svc1", "POST", null, new MockResponse("<resp1/>")),
+                new PrimedResponse("svc1", "PATCH", null, new MockResponse("<resp2/>"))), false);
+            fail();
+        } catch (NotFoundException e) {
+            assertThat(operation.getResponse(1).getBody(), is(nullValue()));
+        }
+    }
+
     private void initWebService(String serviceName) {
         initWebService(serviceName, true);
     }
@@ -0,0 +1,105 @@
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.model.request.PathTemplate;
+import net.sf.jaceko.mock.model.webservice.WebserviceOperation;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class PathRouterTest {
+
+    private final PathRouter router = new PathRouter();
+
+    @Test
+    public void shouldRouteByTemplateOfMethod() {
+        WebserviceOperation getOrder = new WebserviceOperation();
+        WebserviceOperation deleteOrder = new WebserviceOperation();
+        router.add("GET", PathTemplate.parse("/customers/{id}/orders/{orderId}"), getOrder);
+        router.add("DELETE", PathTemplate.parse("/customers/{id}/orders/{orderId}"), deleteOrder);
+        router.compile();
+
+        assertThat(router.route("GET", "customers/1/orders/2"), is(sameInstance(getOrder)));
+        assertThat(router.route("DELETE", "/customers/1/orders/2/"), is(sameInstance(deleteOrder)));
+        assertThat(router.route("PUT", "customers/1/orders/2"), is(nullValue()));
+        assertThat(router.route("GET", "customers/1/orders"), is(nullValue()));
+        assertThat(router.route("GET", "customers/1/orders/2/items"), is(nullValue()));
+        assertThat(router.route("GET", null), is(nullValue()));
+    }
+
+    @Test
+    public void shouldPreferLiteralSegmentOverVariable() {
+        WebserviceOperation customer = new WebserviceOperation();
+        WebserviceOperation me = new WebserviceOperation();
+        WebserviceOperation meOrders = new WebserviceOperation();
+        router.add("GET", PathTemplate.parse("/customers/{id}"), customer);
+        router.add("GET", PathTemplate.parse("/customers/me"), me);
+        router.add("GET", PathTemplate.parse("/{collection}/{id}/orders"), meOrders);
+        router.compile();
+
+        assertThat(router.route("GET", "customers/me"), is(sameInstance(me)));
+        assertThat(router.route("GET", "customers/5"), is(sameInstance(customer)));
+        // literal branch has no "orders" child, so the variable one is tried
+        assertThat(router.route("GET", "customers/me/orders"), is(sameInstance(meOrders)));
+    }
+
+    @Test
+    public void shouldPreferTemplateWithEarlierLiteralSegment() {
+        WebserviceOperation literalFirst = new WebserviceOperation();
+        WebserviceOperation variableFirst = new WebserviceOperation();
+        router.add("GET", PathTemplate.parse("/{collection}/5/orders"), variableFirst);
+        router.add("GET", PathTemplate.parse("/customers/{id}/orders"), literalFirst);
+        router.compile();
+
+        assertThat(router.route("GET", "customers/5/orders"), is(sameInstance(literalFirst)));
+        assertThat(router.route("GET", "suppliers/5/orders"), is(sameInstance(variableFirst)));
+        assertThat(router.route("GET", "suppliers/6/orders"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldRouteDeepPathsMatchingLiteralAndVariableTemplates() {
+        WebserviceOperation[] literalTemplates = new WebserviceOperation[40];
+        WebserviceOperation[] variableTemplates = new WebserviceOperation[40];
+        StringBuilder literals = new StringBuilder();
+        StringBuilder variables = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            literals.append("/a");
+            variables.append("/{v").append(i).append('}');
+            literalTemplates[i] = new WebserviceOperation();
+            variableTemplates[i] = new WebserviceOperation();
+            router.add("GET", PathTemplate.parse(literals + "/x"), literalTemplates[i]);
+            router.add("GET", PathTemplate.parse(variables + "/y"), variableTemplates[i]);
+        }
+        router.compile();
+
+        assertThat(router.route("GET", "a/a/a/x"), is(sameInstance(literalTemplates[2])));
+        assertThat(router.route("GET", "a/a/a/y"), is(sameInstance(variableTemplates[2])));
+        assertThat(router.route("GET", "a/b/y"), is(sameInstance(variableTemplates[1])));
+        assertThat(router.route("GET", literals.substring(1) + "/z"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldKeepFirstOperationOfDuplicateTemplate() {
+        WebserviceOperation first = new WebserviceOperation();
+
+        assertThat(router.add("GET", PathTemplate.parse("/customers/{id}"), first), is(true));
+        assertThat(router.add("GET", PathTemplate.parse("/customers/{customerId}"), new WebserviceOperation()), is(false));
+        router.compile();
+        assertThat(router.route("GET", "customers/5"), is(sameInstance(first)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectTemplateAddedAfterCompilation() {
+        router.add("GET", PathTemplate.parse("/customers/{id}"), new WebserviceOperation());
+        router.compile();
+
+        router.add("GET", PathTemplate.parse("/customers/me"), new WebserviceOperation());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectSegmentWithPartialVariable() {
+        PathTemplate.parse("/customers/id-{id}");
+    }
+}
@@ -151,10 +151,9 @@ public class PropertyProcessorFileReadingTest {
         String propertyString = "SERVICE[0].NAME=hello\r\n" + "SERVICE[0].WSDL=" + wsdlName;
         Reader reader = new StringReader(propertyString);
 
-        Collection<WebService> webServices = propertyProcessor.process(reader).getWebServices();
-        assertThat(webServices.size(), is(1));
-        WebService webService = webServices.iterator().next();
-        assertThat(webService.getOperation("sayHello"), is(new OperationHavingNameEqualTo("sayHello")));
+        MockConfigurationHolder configuration = propertyProcessor.process(reader);
+        assertThat(configuration.getWebServices().size(), is(1));
+        assertThat(configuration.getWebServiceOperation("hello", "sayHello"), is(new OperationHavingNameEqualTo("sayHello")));
     }
 
     @Test
@@ -164,10 +163,9 @@ public class PropertyProcessorFileReadingTest {
         String propertyString = "SERVICE[0].NAME=someService\r\n" + "SERVICE[0].WSDL=" + wsdlName;
         Reader reader = new StringReader(propertyString);
 
-        Collection<WebService> webServices = propertyProcessor.process(reader).getWebServices();
-        assertThat(webServices.size(), is(1));
-        WebService webService = webServices.iterator().next();
-        WebserviceOperation operation = webService.getOperation("Reservation");
+        MockConfigurationHolder configuration = propertyProcessor.process(reader);
+        assertThat(configuration.getWebServices().size(), is(1));
+        WebserviceOperation operation = configuration.getWebServiceOperation("someService", "Reservation");
         assertThat(operation.getOperationName(), is("Reservation"));
         DocumentImpl defaultResponseDoc = new DocumentImpl(operation.getDefaultResponseText());
         assertThat(defaultResponseDoc, hasXPath("//Envelope/Body/ReservationResponse/Status", equalTo("DefStatus")));
@@ -5,16 +5,25 @@ import net.sf.jaceko.mock.exception.ServiceNotConfiguredException;
 import net.sf.jaceko.mock.matcher.OperationHavingDefaultResponseContentTypeEqualTo;
 import net.sf.jaceko.mock.matcher.OperationHavingDefaultResponseEqualTo;
 import net.sf.jaceko.mock.matcher.OperationHavingNameEqualTo;
+import net.sf.jaceko.mock.model.request.LatencyProfile;
+import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.PathTemplate;
+import net.sf.jaceko.mock.model.request.RecordingMode;
+import net.sf.jaceko.mock.model.request.RequestContext;
+import net.sf.jaceko.mock.model.request.ResponseMix;
+import net.sf.jaceko.mock.model.request.TransportFault;
 import net.sf.jaceko.mock.model.webservice.WebService;
 import net.sf.jaceko.mock.model.webservice.WebserviceOperation;
 import net.sf.jaceko.mock.util.FileReader;
 import org.hamcrest.Description;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Mock;
 
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
@@ -26,6 +35,7 @@ import java.util.Map;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.*;
 import static org.junit.matchers.JUnitMatchers.hasItem;
+import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 public class PropertyProcessorTest {
@@ -471,6 +481,274 @@ public class PropertyProcessorTest {
         assertThat(operations, hasItem(new OperationHeadersSetTo(expectedHeaders)));
     }
 
+    @Test
+    public void shouldReturnOperationHavingLatencyProfile() throws IOException {
+        String propertyString = "SERVICE[0].NAME=some_service\r\n" + "SERVICE[0].OPERATION[0].LATENCY_PROFILE=uniform:100,500\r\n";
+
+        Collection<WebService> webServices = processPropertiesAndReturnWebServices(propertyString);
+        WebserviceOperation operation = webServices.iterator().next().getOperations().iterator().next();
+
+        assertThat(operation.getLatencyProfile(), is(LatencyProfile.parse("uniform:100,500")));
+    }
+
+    @Test(expected = ServiceNotConfiguredException.class)
+    public void shouldThrowExceptionIfLatencyProfileNotRecognized() throws IOException {
+        String propertyString = "SERVICE[0].NAME=some_service\r\n" + "SERVICE[0].OPERATION[0].LATENCY_PROFILE=sometimes\r\n";
+        processPropertiesAndReturnWebServices(propertyString);
+    }
+
+    @Test
+    public void shouldReturnServiceAndOperationRecordingRetention() throws IOException {
+        String propertyString = "SERVICE[0].NAME=some_service\r\n" + "SERVICE[0].RECORDING_CAPACITY=500\r\n"
+            + "SERVICE[0].RECORDING_MAX_BYTES=1048576\r\n" + "SERVICE[0].OPERATION[0].RECORDING_CAPACITY=20\r\n";
+
+        WebService service = processPropertiesAndReturnWebServices(propertyString).iterator().next();
+        WebserviceOperation operation = service.getOperations().iterator().next();
+
+        assertThat(service.getRecordingCapacity(), is(500));
+        assertThat(service.getRecordingMaxBytes(), is(1048576L));
+        assertThat(operation.getRecordingCapacity(), is(20));
+        assertThat(operation.getRecordingMaxBytes(), is((Long) null));
+    }
+
+    @Test(expected = ServiceNotConfiguredException.class)
+    public void shouldThrowExceptionIfRecordingCapacityIsNegative() throws IOException {
+        String propertyString = "SERVICE[0].NAME=some_service\r\n" + "SERVICE[0].OPERATION[0].RECORDING_CAPACITY=-1\r\n";
+        processPropertiesAndReturnWebServices(propertyString);
+    }
+
+    @Test
+    public void shouldReturnServiceAndOperationRecordingMode() throws IOException {
+        String propertyString = "SERVICE[0].NAME=some_service\r\n" + "SERVICE[0].RECORDING_MODE=count-only\r\n"
+            + "SERVICE[0].OPERATION[0].RECORDING_MODE=sampled:10\r\n";
+
+        WebService service = processPropertiesAndReturnWebServices(propertyString).iterator().next();
+        WebserviceOperation operation = service.getOperations().iterator().next();
+
+        assertThat(service.getRecordingMode(), is(RecordingMode.COUNT_ONLY));
+        assertThat(operation.getRecordingMode(), is(RecordingMode.sampled(10)));
+    }
+
+    @Test(expected = ServiceNotConfiguredException.class)
+    public void shouldThrowExceptionIfRecordingModeNotRecognized() throws IOException {
+        String propertyString = "SERVICE[0].NAME=some_service\r\n" + "SERVICE[0].OPERATION[0].RECORDING_MODE=sometimes\r\n";
+        processPropertiesAndReturnWebServices(propertyString);
+    }
+
+    @Test
+    public void shouldCompileDefaultResponseTemplate() throws IOException {
+        when(fileReader.readFileContents("resp.xml")).thenReturn("<resp>${invocation}</resp>");
+        String propertyString = "SERVICE[0].NAME=some_service\r\n" + "SERVICE[0].OPERATION[0].DEFAULT_RESPONSE=resp.xml\r\n"
+            + "SERVICE[0].OPERATION[0].TEMPLATE=true\r\n";
+
+        WebserviceOperation operation = processPropertiesAndReturnWebServices(propertyString).iterator().next()
+            .getOperations().iterator().next();
+
+        assertThat(operation.isTemplate(), is(true));
+        assertThat(operation.getResponse(2).getBody(), is("<resp>2</resp>"));
+    }
+
+    @Test(expected = ServiceNotConfiguredException.class)
+    public void shouldThrowExceptionIfDefaultResponseTemplateIsInvalid() throws IOException {
+        when(fileReader.readFileContents("resp.xml")).thenReturn("<resp>${unknown}</resp>");
+        String propertyString = "SERVICE[0].NAME=some_service\r\n" + "SERVICE[0].OPERATION[0].DEFAULT_RESPONSE=resp.xml\r\n"
+            + "SERVICE[0].OPERATION[0].TEMPLATE=true\r\n";
+        processPropertiesAndReturnWebServices(propertyString);
+    }
+
+    @Test
+    public void shouldAddResponseRulesInOrderOfIndexes() throws IOException {
+        when(fileReader.readFileContents("taken.xml")).thenReturn("<taken/>");
+        when(fileReader.readFileContents("vip.xml")).thenReturn("<vip/>");
+        String propertyString = "SERVICE[0].NAME=some_service\r\n" + "SERVICE[0].OPERATION[0].INPUT_MESSAGE=reserveRequest\r\n"
+            + "SERVICE[0].OPERATION[0].DEFAULT_RESPONSE_CODE=201\r\n"
+            + "SERVICE[0].OPERATION[0].RULE[1].WHEN=header:X-Customer=vip\r\n"
+            + "SERVICE[0].OPERATION[0].RULE[1].RESPONSE=vip.xml\r\n"
+            + "SERVICE[0].OPERATION[0].RULE[0].WHEN=xpath://seat=A1\r\n"
+            + "SERVICE[0].OPERATION[0].RULE[0].RESPONSE=taken.xml\r\n"
+            + "SERVICE[0].OPERATION[0].RULE[0].RESPONSE_CODE=409\r\n";
+
+        WebserviceOperation operation = processPropertiesAndReturnWebServices(propertyString).iterator().next()
+            .getOperations().iterator().next();
+
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+        headers.add("X-Customer", "vip");
+        MockResponse taken = operation.getNextResponse(new RequestContext("<seat>A1</seat>", null, null, null, headers));
+        MockResponse vip = operation.getNextResponse(new RequestContext("<seat>A2</seat>", null, null, null, headers));
+        assertThat(taken.getBody(), is("<taken/>"));
+        assertThat(taken.getCode(), is(409));
+        assertThat(vip.getBody(), is("<vip/>"));
+        assertThat(vip.getCode(), is(201));
+    }
+
+    @Test(expected = ServiceNotConfiguredException.class)
+    public void shouldThrowExceptionIfResponseRuleIsInvalid() throws IOException {
+        String propertyString = "SERVICE[0].NAME=some_service\r\n" + "SERVICE[0].OPERATION[0].INPUT_MESSAGE=reserveRequest\r\n"
+            + "SERVICE[0].OPERATION[0].RULE[0].WHEN=cookie:session=1\r\n";
+        processPropertiesAndReturnWebServices(propertyString);
+    }
+
+    @Test
+    public void shouldAddResponseMixInOrderOfIndexes() throws IOException {
+        when(fileReader.readFileContents("resp.xml")).thenReturn("<default/>");
+        String propertyString = "SERVICE[0].NAME=some_service\r\n" + "SERVICE[0].OPERATION[0].INPUT_MESSAGE=reserveRequest\r\n"
+            + "SERVICE[0].OPERATION[0].DEFAULT_RESPONSE=resp.xml\r\n"
+            + "SERVICE[0].OPERATION[0].RESPONSE_MIX=round-robin\r\n"
+            + "SERVICE[0].OPERATION[0].MIX[1].WEIGHT=1\r\n"
+            + "SERVICE[0].OPERATION[0].MIX[1].RESPONSE_CODE=503\r\n"
+            + "SERVICE[0].OPERATION[0].MIX[1].LATENCY_PROFILE=250\r\n"
+            + "SERVICE[0].OPERATION[0].MIX[0].WEIGHT=2\r\n";
+
+        WebserviceOperation operation = processPropertiesAndReturnWebServices(propertyString).iterator().next()
+            .getOperations().iterator().next();
+
+        RequestContext request = new RequestContext(null, null, null, null, null);
+        assertThat(operation.getNextResponse(request).getBody(), is("<default/>"));
+        MockResponse unavailable = operation.getNextResponse(request);
+        assertThat(unavailable.getCode(), is(503));
+        assertThat(unavailable.getLatency(), is(LatencyProfile.fixed(250)));
+        assertThat(unavailable.getBody(), is("<default/>"));
+        assertThat(operation.getNextResponse(request).getBody(), is("<default/>"));
+        assertThat(operation.getMixSelection(), is(ResponseMix.Selection.ROUND_ROBIN));
+    }
+
+    @Test
+    public void shouldServeDefaultResponseTextWithFaultOfMixResponse() throws IOException {
+        when(fileReader.readFileContents("resp.xml")).thenReturn("<default/>");
+        String propertyString = "SERVICE[0].NAME=some_service\r\n" + "SERVICE[0].OPERATION[0].INPUT_MESSAGE=reserveRequest\r\n"
+            + "SERVICE[0].OPERATION[0].DEFAULT_RESPONSE=resp.xml\r\n"
+            + "SERVICE[0].OPERATION[0].MIX[0].FAULT=close-after:4\r\n";
+
+        WebserviceOperation operation = processPropertiesAndReturnWebServices(propertyString).iterator().next()
+            .getOperations().iterator().next();
+
+        MockResponse response = operation.getNextResponse(new RequestContext(null, null, null, null, null));
+        assertThat(response.getFault(), is(TransportFault.closeAfter(4)));
+        assertThat(response.getBody(), is("<default/>"));
+    }
+
+    @Test(expected = ServiceNotConfiguredException.class)
+    public void shouldThrowExceptionIfResponseFaultIsInvalid() throws IOException {
+        String propertyString = "SERVICE[0].NAME=some_service\r\n" + "SERVICE[0].OPERATION[0].INPUT_MESSAGE=reserveRequest\r\n"
+            + "SERVICE[0].OPERATION[0].MIX[0].FAULT=explode\r\n";
+        processPropertiesAndReturnWebServices(propertyString);
+    }
+
+    @Test(expected = ServiceNotConfiguredException.class)
+    public void shouldThrowExceptionIfResponseMixSelectionIsInvalid() throws IOException {
+        String propertyString = "SERVICE[0].NAME=some_service\r\n" + "SERVICE[0].OPERATION[0].INPUT_MESSAGE=reserveRequest\r\n"
+            + "SERVICE[0].OPERATION[0].RESPONSE_MIX=random\r\n";
+        processPropertiesAndReturnWebServices(propertyString);
+    }
+
+    @Test
+    public void shouldReturnOperationPathTemplate() throws IOException {
+        String propertyString = "SERVICE[0].NAME=shop\r\n" + "SERVICE[0].TYPE=REST\r\n"
+            + "SERVICE[0].OPERATION[0].HTTP_METHOD=GET\r\n"
+            + "SERVICE[0].OPERATION[0].PATH=/customers/{id}/orders/{orderId}\r\n";
+
+        WebserviceOperation operation = processPropertiesAndReturnWebServices(propertyString).iterator().next()
+            .getOperations().iterator().next();
+
+        assertThat(operation.getPathTemplate(), is(PathTemplate.parse("/customers/{id}/orders/{orderId}")));
+        assertThat(operation.getOperationId(), is("GET_customers_{id}_orders_{orderId}"));
+    }
+
+    @Test
+    public void shouldAcceptResourcePathsOfServiceDeclaringPathTemplate() throws IOException {
+        String propertyString = "SERVICE[0].NAME=shop\r\n" + "SERVICE[0].TYPE=REST\r\n"
+            + "SERVICE[0].OPERATION[0].HTTP_METHOD=GET\r\n"
+            + "SERVICE[0].OPERATION[0].PATH=/orders/{orderId}\r\n"
+            + "SERVICE[1].NAME=plain\r\n" + "SERVICE[1].TYPE=REST\r\n"
+            + "SERVICE[1].OPERATION[0].HTTP_METHOD=GET\r\n";
+
+        MockConfigurationHolder configuration = propertyProcessor.process(new StringReader(propertyString));
+
+        assertThat(configuration.getWebService("shop").acceptsResourcePaths(), is(true));
+        assertThat(configuration.getWebService("plain").acceptsResourcePaths(), is(false));
+    }
+
+    @Test
+    public void shouldTellVariableSegmentFromLiteralInOperationId() throws IOException {
+        String propertyString = "SERVICE[0].NAME=shop\r\n" + "SERVICE[0].TYPE=REST\r\n"
+            + "SERVICE[0].OPERATION[0].HTTP_METHOD=GET\r\n"
+            + "SERVICE[0].OPERATION[0].PATH=/customers/{id}\r\n"
+            + "SERVICE[0].OPERATION[1].HTTP_METHOD=GET\r\n"
+            + "SERVICE[0].OPERATION[1].PATH=/customers/id\r\n";
+
+        MockConfigurationHolder configuration = propertyProcessor.process(new StringReader(propertyString));
+
+        assertThat(configuration.getWebServiceOperation("shop", "GET_customers_{id}").getPathTemplate(),
+            is(PathTemplate.parse("/customers/{id}")));
+        assertThat(configuration.getWebServiceOperation("shop", "GET_customers_id").getPathTemplate(),
+            is(PathTemplate.parse("/customers/id")));
+    }
+
+    @Test(expected = ServiceNotConfiguredException.class)
+    public void shouldThrowExceptionIfOperationsDeclareSameTemplate() throws IOException {
+        String propertyString = "SERVICE[0].NAME=shop\r\n" + "SERVICE[0].TYPE=REST\r\n"
+            + "SERVICE[0].OPERATION[0].HTTP_METHOD=GET\r\n"
+            + "SERVICE[0].OPERATION[0].PATH=/customers/{id}\r\n"
+            + "SERVICE[0].OPERATION[1].HTTP_METHOD=GET\r\n"
+            + "SERVICE[0].OPERATION[1].PATH=/customers/{customerId}\r\n";
+        processPropertiesAndReturnWebServices(propertyString);
+    }
+
+    @Test(expected = ServiceNotConfiguredException.class)
+    public void shouldThrowExceptionIfOperationsShareId() throws IOException {
+        String propertyString = "SERVICE[0].NAME=shop\r\n" + "SERVICE[0].TYPE=REST\r\n"
+            + "SERVICE[0].OPERATION[0].HTTP_METHOD=GET\r\n"
+            + "SERVICE[0].OPERATION[0].PATH=/customers/a_b\r\n"
+            + "SERVICE[0].OPERATION[1].HTTP_METHOD=GET\r\n"
+            + "SERVICE[0].OPERATION[1].PATH=/customers/a/b\r\n";
+        processPropertiesAndReturnWebServices(propertyString);
+    }
+
+    @Test(expected = ServiceNotConfiguredException.class)
+    public void shouldThrowExceptionIfPathTemplateIsInvalid() throws IOException {
+        String propertyString = "SERVICE[0].NAME=shop\r\n" + "SERVICE[0].OPERATION[0].HTTP_METHOD=GET\r\n"
+            + "SERVICE[0].OPERATION[0].PATH=/customers/{id\r\n";
+        processPropertiesAndReturnWebServices(propertyString);
+    }
+
+    @Test
+    public void shouldReturnRecordingJournalConfiguration() throws IOException {
+        String propertyString = "SERVICE[0].NAME=some_service\r\n" + "RECORDING_JOURNAL.DIRECTORY=/tmp/journal\r\n"
+            + "RECORDING_JOURNAL.SEGMENT_SIZE=1048576\r\n" + "RECORDING_JOURNAL.MAX_SEGMENTS=4\r\n";
+
+        MockConfigurationHolder configuration = propertyProcessor.process(new StringReader(propertyString));
+
+        assertThat(configuration.getRecordingJournalDirectory(), is("/tmp/journal"));
+        assertThat(configuration.getRecordingJournalSegmentBytes(), is(1048576));
+        assertThat(configuration.getRecordingJournalMaxSegments(), is(4));
+    }
+
+    @Test
+    public void shouldNotConfigureRecordingJournalByDefault() throws IOException {
+        MockConfigurationHolder configuration = propertyProcessor.process(new StringReader("SERVICE[0].NAME=some_service\r\n"));
+
+        assertThat(configuration.getRecordingJournalDirectory(), is((String) null));
+        assertThat(configuration.getRecordingJournalSegmentBytes(), is(RecordingJournal.DEFAULT_SEGMENT_BYTES));
+    }
+
+    @Test
+    public void shouldReturnRecordingPipelineConfiguration() throws IOException {
+        String propertyString = "SERVICE[0].NAME=some_service\r\n" + "RECORDING_PIPELINE.ENABLED=true\r\n"
+            + "RECORDING_PIPELINE.RING_SIZE=1024\r\n";
+
+        MockConfigurationHolder configuration = propertyProcessor.process(new StringReader(propertyString));
+
+        assertThat(configuration.isRecordingPipelineEnabled(), is(true));
+        assertThat(configuration.getRecordingPipelineRingSize(), is(1024));
+    }
+
+    @Test
+    public void shouldRecordSynchronouslyByDefault() throws IOException {
+        MockConfigurationHolder configuration = propertyProcessor.process(new StringReader("SERVICE[0].NAME=some_service\r\n"));
+
+        assertThat(configuration.isRecordingPipelineEnabled(), is(false));
+    }
+
     private static final class ServiceHavingNameEqualTo extends ArgumentMatcher<WebService> {
         private WebService service;
         private final String name;
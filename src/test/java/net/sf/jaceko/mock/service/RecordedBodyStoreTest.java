@@ -0,0 +1,61 @@
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.model.request.RecordedBody;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class RecordedBodyStoreTest {
+
+    private final RecordedBodyStore store = new RecordedBodyStore();
+
+    @Test
+    public void shouldShareBodiesOfSameContent() {
+        String text = repeat("<item>same</item>", 10);
+
+        RecordedBody first = store.intern(text);
+        RecordedBody second = store.intern(new String(text));
+
+        assertThat(second, is(sameInstance(first)));
+        assertThat(store.intern(text + " "), is(not(sameInstance(first))));
+    }
+
+    @Test
+    public void shouldShareCompressedBodiesOfSameContent() {
+        String text = repeat("<item>ä€</item>", 200);
+
+        RecordedBody first = store.intern(text);
+
+        assertThat(first.isCompressed(), is(true));
+        assertThat(store.intern(new String(text)), is(sameInstance(first)));
+    }
+
+    @Test
+    public void shouldNotShareShortBodies() {
+        assertThat(store.intern("<req/>"), is(not(sameInstance(store.intern("<req/>")))));
+        assertThat(store.size(), is(0));
+    }
+
+    @Test
+    public void shouldDropBodiesNoLongerRecorded() throws InterruptedException {
+        RecordedBody body = store.intern(repeat("<transient/>", 20));
+        assertThat(store.size(), is(1));
+
+        body = null;
+        for (int i = 0; i < 50 && store.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assertThat(store.size(), is(0));
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            repeated.append(text);
+        }
+        return repeated.toString();
+    }
+}
@@ -0,0 +1,139 @@
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.model.request.MockRequest;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.junit.Test;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class RecordedRequestsBufferTest {
+
+    @Test
+    public void shouldReturnRequestsInRecordingOrder() {
+        RecordedRequestsBuffer buffer = new RecordedRequestsBuffer(5, 0);
+
+        buffer.add(request("1"));
+        buffer.add(request("2"));
+
+        assertThat(bodies(buffer), contains("1", "2"));
+        assertThat(buffer.getRetainedCount(), is(2));
+    }
+
+    @Test
+    public void shouldOverwriteOldestRequestsWhenFull() {
+        RecordedRequestsBuffer buffer = new RecordedRequestsBuffer(3, 0);
+
+        for (int i = 1; i <= 5; i++) {
+            buffer.add(request(String.valueOf(i)));
+        }
+
+        assertThat(bodies(buffer), contains("3", "4", "5"));
+        assertThat(buffer.getRetainedCount(), is(3));
+        assertThat(buffer.getEvictedCount(), is(2L));
+        assertThat(buffer.getRecordedCount(), is(5L));
+    }
+
+    @Test
+    public void shouldEvictOldestRequestsAboveByteLimit() {
+        // each body takes 2 bytes per character
+        RecordedRequestsBuffer buffer = new RecordedRequestsBuffer(10, 20);
+
+        buffer.add(request("aaaaa"));
+        buffer.add(request("bbbbb"));
+        buffer.add(request("ccccc"));
+
+        assertThat(bodies(buffer), contains("bbbbb", "ccccc"));
+        assertThat(buffer.getRetainedBytes(), is(20L));
+        assertThat(buffer.getEvictedCount(), is(1L));
+    }
+
+    @Test
+    public void shouldDropRequestLargerThanByteLimit() {
+        RecordedRequestsBuffer buffer = new RecordedRequestsBuffer(10, 4);
+
+        buffer.add(request("a"));
+        buffer.add(request("too large"));
+
+        assertThat(bodies(buffer), contains("a"));
+        assertThat(buffer.getDroppedCount(), is(1L));
+        assertThat(buffer.getRecordedCount(), is(2L));
+    }
+
+    @Test
+    public void shouldCountHeadersInRequestSize() {
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+        headers.add("Accept", "text/xml");
+        headers.add("Accept", "json");
+        RecordedRequestsBuffer buffer = new RecordedRequestsBuffer(10, 0);
+
+        buffer.add(new MockRequest("abc", null, null, headers));
+
+        // 3 body characters + 6 of the name + 12 of the values, 2 bytes each
+        assertThat(buffer.getRetainedBytes(), is(42L));
+    }
+
+    @Test
+    public void shouldDropEverythingWithZeroCapacity() {
+        RecordedRequestsBuffer buffer = new RecordedRequestsBuffer(0, 0);
+
+        buffer.add(request("a"));
+
+        assertThat(buffer.getRequests(), is(empty()));
+        assertThat(buffer.getDroppedCount(), is(1L));
+    }
+
+    @Test
+    public void shouldKeepCountersConsistentUnderConcurrentAppends() throws InterruptedException {
+        final int threads = 8;
+        final int requestsPerThread = 5000;
+        final RecordedRequestsBuffer buffer = new RecordedRequestsBuffer(100, 0);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < requestsPerThread; i++) {
+                        buffer.add(request("r"));
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+
+        assertThat(buffer.getRetainedCount(), is(100));
+        assertThat(buffer.getRequests().size(), is(100));
+        assertThat(buffer.getEvictedCount(), is((long) threads * requestsPerThread - 100));
+    }
+
+    private static MockRequest request(String body) {
+        return new MockRequest(body, null, null, null);
+    }
+
+    private static List<String> bodies(RecordedRequestsBuffer buffer) {
+        List<String> bodies = new ArrayList<String>();
+        for (MockRequest request : buffer.getRequests()) {
+            bodies.add(request.getBody());
+        }
+        return bodies;
+    }
+
+}
@@ -1,22 +1,39 @@
 package net.sf.jaceko.mock.service;
 
 import net.sf.jaceko.mock.model.request.MockRequest;
+import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.RecordedRequestsQuery;
+import net.sf.jaceko.mock.model.request.RecordingMode;
+import net.sf.jaceko.mock.model.request.RequestContext;
+import net.sf.jaceko.mock.model.request.RequestTiming;
 import net.sf.jaceko.mock.model.webservice.WebService;
 import net.sf.jaceko.mock.model.webservice.WebserviceOperation;
 import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.jboss.resteasy.spi.BadRequestException;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 
 import javax.ws.rs.core.MultivaluedMap;
 import java.util.Collection;
-
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.matchers.JUnitMatchers.hasItem;
 import static org.junit.matchers.JUnitMatchers.hasItems;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -37,6 +54,7 @@ public class RecordedRequestsHolderTest {
     public void init() {
         initMocks(this);
         recordedRequestsHolder.setMockserviceConfiguration(configurationHolder);
+        recordedRequestsHolder.setDelayer(new Delayer());
         initWebService(anyString());
     }
 
@@ -213,6 +231,300 @@ public class RecordedRequestsHolderTest {
         assertThat(recordedPrepayRequests.size(), is(0));
     }
 
+    @Test
+    public void shouldRetainRequestsAccordingToOperationCapacity() {
+        String serviceName = "mptu";
+        String operationId = "prepayRequest";
+        WebserviceOperation operation = new WebserviceOperation();
+        operation.setRecordingCapacity(2);
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(operation);
+
+        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req1/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req2/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req3/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+
+        assertThat(recordedRequestsHolder.getRecordedRequestBodies(serviceName, operationId), contains("<req2/>", "<req3/>"));
+        assertThat(recordedRequestsHolder.getRecordedRequestsStore(serviceName, operationId).getEvictedCount(), is(1L));
+    }
+
+    @Test
+    public void shouldUseServiceRetentionIfOperationHasNone() {
+        String serviceName = "mptu";
+        String operationId = "prepayRequest";
+        WebService service = new WebService();
+        service.setRecordingCapacity(7);
+        service.setRecordingMaxBytes(1000L);
+        when(configurationHolder.getWebService(serviceName)).thenReturn(service);
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(new WebserviceOperation());
+
+        RecordedRequestsStore recordedRequests = recordedRequestsHolder.getRecordedRequestsStore(serviceName, operationId);
+
+        assertThat(recordedRequests.getCapacity(), is(7));
+        assertThat(recordedRequests.getMaxBytes(), is(1000L));
+    }
+
+    @Test
+    public void shouldKeepLatestRequestsWhenRetentionIsChanged() {
+        String serviceName = "mptu";
+        String operationId = "prepayRequest";
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(new WebserviceOperation());
+        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req1/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req2/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+
+        recordedRequestsHolder.setRetention(serviceName, operationId, 1, null);
+        recordedRequestsHolder.clearRecordedRequests(serviceName, operationId);
+        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req3/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req4/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+
+        assertThat(recordedRequestsHolder.getRecordedRequestBodies(serviceName, operationId), contains("<req4/>"));
+    }
+
+    @Test
+    public void shouldKeepRequestsRecordedWhileRetentionIsChanged() throws InterruptedException {
+        final String serviceName = "mptu";
+        final String operationId = "prepayRequest";
+        final int threads = 4;
+        final int requestsPerThread = 2000;
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(new WebserviceOperation());
+        recordedRequestsHolder.setRetention(serviceName, operationId, threads * requestsPerThread, null);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < requestsPerThread; i++) {
+                        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req/>", NOT_USED_REQUEST_PARAM,
+                            NOT_USED_RESOURCE_ID, null);
+                    }
+                }
+            });
+        }
+        for (int i = 0; i < 20; i++) {
+            recordedRequestsHolder.setRetention(serviceName, operationId, threads * requestsPerThread + i, null);
+        }
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+
+        assertThat(recordedRequestsHolder.getRecordedRequestBodies(serviceName, operationId).size(),
+            is(threads * requestsPerThread));
+    }
+
+    @Test
+    public void shouldQueryRecordedRequestsAfterRetentionIsChanged() {
+        String serviceName = "mptu";
+        String operationId = "prepayRequest";
+        initWebService(serviceName);
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(new WebserviceOperation());
+        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req1/>", "msisdn=1", NOT_USED_RESOURCE_ID, null);
+        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req2/>", "msisdn=2", NOT_USED_RESOURCE_ID, null);
+
+        recordedRequestsHolder.setRetention(serviceName, operationId, 5, null);
+
+        Collection<MockRequest> matching = recordedRequestsHolder.queryRecordedRequests(serviceName, operationId,
+            new RecordedRequestsQuery().withQueryParam("msisdn", "2"));
+        assertThat(matching.size(), is(1));
+        assertThat(matching.iterator().next().getBody(), is("<req2/>"));
+    }
+
+    @Test
+    public void shouldCallBackWhenAwaitedRequestsAreRecorded() throws InterruptedException {
+        String serviceName = "mptu";
+        String operationId = "prepayRequest";
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(new WebserviceOperation());
+        AwaitResult result = new AwaitResult();
+
+        recordedRequestsHolder.awaitRecordedRequests(serviceName, operationId, 2, 10000, result);
+        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req1/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req2/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+
+        assertThat(result.countReached.poll(5, TimeUnit.SECONDS), is(true));
+        assertThat(result.recordedRequests.size(), is(2));
+    }
+
+    @Test
+    public void shouldCallBackWhenAwaitTimesOut() throws InterruptedException {
+        String serviceName = "mptu";
+        String operationId = "prepayRequest";
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(new WebserviceOperation());
+        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req1/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+        AwaitResult result = new AwaitResult();
+
+        recordedRequestsHolder.awaitRecordedRequests(serviceName, operationId, 2, 50, result);
+
+        assertThat(result.countReached.poll(5, TimeUnit.SECONDS), is(false));
+        assertThat(result.recordedRequests.size(), is(1));
+    }
+
+    @Test
+    public void shouldCallBackImmediatelyIfAwaitedRequestsWereAlreadyRecorded() throws InterruptedException {
+        String serviceName = "mptu";
+        String operationId = "prepayRequest";
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(new WebserviceOperation());
+        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req1/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+        AwaitResult result = new AwaitResult();
+
+        recordedRequestsHolder.awaitRecordedRequests(serviceName, operationId, 1, 10000, result);
+
+        assertThat(result.countReached.poll(5, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void shouldCancelTimeoutOfAwaitCompletedImmediately() throws InterruptedException {
+        String serviceName = "mptu";
+        String operationId = "prepayRequest";
+        Delayer delayer = spy(new Delayer());
+        recordedRequestsHolder.setDelayer(delayer);
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(new WebserviceOperation());
+        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req1/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+        AwaitResult result = new AwaitResult();
+
+        recordedRequestsHolder.awaitRecordedRequests(serviceName, operationId, 1, 10000, result);
+
+        assertThat(result.countReached.poll(5, TimeUnit.SECONDS), is(true));
+        verify(delayer).cancel(any(Future.class));
+    }
+
+    @Test
+    public void shouldCallBackWhenAwaitedRequestsAreCountedButNotRecorded() throws InterruptedException {
+        String serviceName = "mptu";
+        String operationId = "prepayRequest";
+        WebserviceOperation operation = new WebserviceOperation();
+        operation.setRecordingMode(RecordingMode.COUNT_ONLY);
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(operation);
+        AwaitResult result = new AwaitResult();
+
+        recordedRequestsHolder.awaitRecordedRequests(serviceName, operationId, 2, 10000, result);
+        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req1/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+        recordedRequestsHolder.recordRequest(serviceName, operationId, "<req2/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+
+        assertThat(result.countReached.poll(5, TimeUnit.SECONDS), is(true));
+        assertThat(result.recordedRequests.size(), is(0));
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void shouldRejectAwaitWhenRecordingIsOff() {
+        String serviceName = "mptu";
+        String operationId = "prepayRequest";
+        WebserviceOperation operation = new WebserviceOperation();
+        operation.setRecordingMode(RecordingMode.OFF);
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(operation);
+
+        recordedRequestsHolder.awaitRecordedRequests(serviceName, operationId, 1, 10000, new AwaitResult());
+    }
+
+    @Test
+    public void shouldPublishRecordedRequestsToSubscribers() throws InterruptedException {
+        String serviceName = "mptu";
+        when(configurationHolder.getWebServiceOperation(serviceName, "prepayRequest")).thenReturn(new WebserviceOperation());
+        when(configurationHolder.getWebServiceOperation(serviceName, "topupRequest")).thenReturn(new WebserviceOperation());
+        RecordedRequestsSubscription subscription = recordedRequestsHolder.subscribe(serviceName, "topupRequest", 10);
+
+        recordedRequestsHolder.recordRequest(serviceName, "prepayRequest", "<req1/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+        recordedRequestsHolder.recordRequest(serviceName, "topupRequest", "<req2/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+        recordedRequestsHolder.unsubscribe(subscription);
+        recordedRequestsHolder.recordRequest(serviceName, "topupRequest", "<req3/>", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+
+        RecordedRequestsSubscription.RecordedRequest published = subscription.poll(0);
+        assertThat(published.getOperationId(), is("topupRequest"));
+        assertThat(published.getRequest().getBody(), is("<req2/>"));
+        assertThat(subscription.poll(0), is(nullValue()));
+    }
+
+    @Test
+    public void shouldAttachTimingToRecordedRequest() {
+        String serviceName = "mptu";
+        String operationId = "prepayRequest";
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(new WebserviceOperation());
+        RequestTiming timing = RequestTiming.arrivingNow();
+
+        recordedRequestsHolder.recordRequest(serviceName, operationId, new RequestContext("<req1/>", null, null, null, null), timing);
+
+        assertThat(recordedRequestsHolder.getRecordedRequests(serviceName, operationId).iterator().next().getTiming(), is(timing));
+    }
+
+    @Test
+    public void shouldRecordResponseServedToRequest() {
+        String serviceName = "mptu";
+        String operationId = "prepayRequest";
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(new WebserviceOperation());
+        MockResponse response = MockResponse.body("<resp1/>").build();
+
+        recordedRequestsHolder.recordRequest(serviceName, operationId, new RequestContext("<req1/>", null, null, null, null), null, response);
+
+        assertThat(recordedRequestsHolder.getRecordedRequests(serviceName, operationId).iterator().next().getResponse(), is(response));
+    }
+
+    @Test
+    public void shouldRecordSampledRequestsAndCountAllOfThem() {
+        String serviceName = "mptu";
+        String operationId = "prepayRequest";
+        WebserviceOperation operation = new WebserviceOperation();
+        operation.setRecordingMode(RecordingMode.sampled(2));
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(operation);
+
+        for (int i = 0; i < 5; i++) {
+            recordedRequestsHolder.recordRequest(serviceName, operationId, new RequestContext("<req" + i + "/>", null, null, null, null));
+        }
+
+        assertThat(recordedRequestsHolder.getRecordedRequestBodies(serviceName, operationId), contains("<req0/>", "<req2/>", "<req4/>"));
+        RecordingCounters counters = recordedRequestsHolder.getRecordingCounters(serviceName, operationId);
+        assertThat(counters.getInvocationCount(), is(5L));
+        assertThat(counters.getInvocationBytes(), is(35L));
+    }
+
+    @Test
+    public void shouldOnlyCountRequestsInCountOnlyModeOfService() {
+        String serviceName = "mptu";
+        String operationId = "prepayRequest";
+        WebService service = new WebService();
+        service.setRecordingMode(RecordingMode.COUNT_ONLY);
+        when(configurationHolder.getWebService(serviceName)).thenReturn(service);
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(new WebserviceOperation());
+
+        recordedRequestsHolder.recordRequest(serviceName, operationId, new RequestContext("<req\u00e4/>", null, null, null, null));
+        recordedRequestsHolder.recordRequest(serviceName, operationId, new RequestContext(null, null, "id=1", null, null));
+
+        assertThat(recordedRequestsHolder.getRecordedRequests(serviceName, operationId).isEmpty(), is(true));
+        RecordingCounters counters = recordedRequestsHolder.getRecordingCounters(serviceName, operationId);
+        assertThat(counters.getInvocationCount(), is(2L));
+        assertThat(counters.getInvocationBytes(), is(8L));
+    }
+
+    @Test
+    public void shouldRecordRequestsWithoutBodyInHeadersOnlyMode() {
+        String serviceName = "mptu";
+        String operationId = "prepayRequest";
+        WebserviceOperation operation = new WebserviceOperation();
+        operation.setRecordingMode(RecordingMode.HEADERS_ONLY);
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(operation);
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+        headers.putSingle("Accept", "text/xml");
+
+        recordedRequestsHolder.recordRequest(serviceName, operationId, new RequestContext("<req1/>", null, "id=1", "/items", headers));
+
+        MockRequest recorded = recordedRequestsHolder.getRecordedRequests(serviceName, operationId).iterator().next();
+        assertThat(recorded.getBody(), is(nullValue()));
+        assertThat(recorded.getQueryString(), is("id=1"));
+        assertThat(recorded.getHeaders().getFirst("Accept"), is("text/xml"));
+    }
+
+    @Test
+    public void shouldNeitherRecordNorCountRequestsWhenRecordingIsOff() {
+        String serviceName = "mptu";
+        String operationId = "prepayRequest";
+        WebserviceOperation operation = new WebserviceOperation();
+        operation.setRecordingMode(RecordingMode.FULL);
+        operation.primeRecordingMode(RecordingMode.OFF);
+        when(configurationHolder.getWebServiceOperation(serviceName, operationId)).thenReturn(operation);
+
+        recordedRequestsHolder.recordRequest(serviceName, operationId, new RequestContext("<req1/>", null, null, null, null));
+        operation.init();
+        recordedRequestsHolder.recordRequest(serviceName, operationId, new RequestContext("<req2/>", null, null, null, null));
+
+        assertThat(recordedRequestsHolder.getRecordedRequestBodies(serviceName, operationId), contains("<req2/>"));
+        assertThat(recordedRequestsHolder.getRecordingCounters(serviceName, operationId).getInvocationCount(), is(1L));
+    }
+
     private void initWebService(String serviceName) {
         initWebService(serviceName, true);
     }
@@ -223,5 +535,14 @@ public class RecordedRequestsHolderTest {
         when(configurationHolder.getWebService(serviceName)).thenReturn(service);
     }
 
+    private static class AwaitResult implements RecordedRequestsCallback {
+        private final BlockingQueue<Boolean> countReached = new ArrayBlockingQueue<Boolean>(1);
+        private volatile Collection<MockRequest> recordedRequests;
 
+        @Override
+        public void onRecordedRequests(Collection<MockRequest> recordedRequests, boolean countReached) {
+            this.recordedRequests = recordedRequests;
+            this.countReached.add(countReached);
+        }
+    }
 }
@@ -0,0 +1,58 @@
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.model.request.MockRequest;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class RecordedRequestsSubscriptionTest {
+
+    @Test
+    public void shouldDropOldestRequestsWhenBufferIsFull() throws InterruptedException {
+        RecordedRequestsSubscription subscription = new RecordedRequestsSubscription(null, null, 2);
+
+        subscription.offer(recorded("<req1/>"));
+        subscription.offer(recorded("<req2/>"));
+        subscription.offer(recorded("<req3/>"));
+
+        assertThat(subscription.getDroppedCount(), is(1L));
+        assertThat(subscription.poll(0).getRequest().getBody(), is("<req2/>"));
+        assertThat(subscription.poll(0).getRequest().getBody(), is("<req3/>"));
+        assertThat(subscription.poll(0), is(nullValue()));
+    }
+
+    @Test
+    public void shouldAcceptRequestsOfSubscribedServiceAndOperationOnly() {
+        RecordedRequestsSubscription subscription = new RecordedRequestsSubscription("mptu", "prepayRequest", 1);
+
+        assertThat(subscription.accepts("mptu", "prepayRequest"), is(true));
+        assertThat(subscription.accepts("mptu", "topupRequest"), is(false));
+        assertThat(subscription.accepts("ticketing", "prepayRequest"), is(false));
+    }
+
+    @Test
+    public void shouldAcceptRequestsOfAllOperationsOfSubscribedService() {
+        RecordedRequestsSubscription subscription = new RecordedRequestsSubscription("mptu", null, 1);
+
+        assertThat(subscription.accepts("mptu", "topupRequest"), is(true));
+        assertThat(subscription.accepts("ticketing", "reserve"), is(false));
+    }
+
+    @Test
+    public void shouldNotAcceptRequestsOnceClosed() throws InterruptedException {
+        RecordedRequestsSubscription subscription = new RecordedRequestsSubscription(null, null, 1);
+        subscription.offer(recorded("<req1/>"));
+
+        subscription.close();
+
+        assertThat(subscription.accepts("mptu", "prepayRequest"), is(false));
+        assertThat(subscription.poll(10000).getRequest().getBody(), is("<req1/>"));
+        assertThat(subscription.poll(10000), is(nullValue()));
+    }
+
+    private static RecordedRequestsSubscription.RecordedRequest recorded(String body) {
+        return new RecordedRequestsSubscription.RecordedRequest("mptu", "prepayRequest", new MockRequest(body, null, null, null));
+    }
+}
@@ -0,0 +1,204 @@
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.model.request.MockRequest;
+import net.sf.jaceko.mock.model.request.MockResponse;
+import net.sf.jaceko.mock.model.request.RecordedBody;
+import net.sf.jaceko.mock.model.request.RequestTiming;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class RecordingJournalTest {
+
+    private static final int SEGMENT_BYTES = 256;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldReadAppendedRequests() throws IOException {
+        RecordingJournal journal = new RecordingJournal(folder.getRoot(), SEGMENT_BYTES, 4);
+        MultivaluedMap<String, String> headers = new MultivaluedMapImpl<String, String>();
+        headers.add("Accept", "text/xml");
+        headers.add("Accept", "application/json");
+
+        RecordedRequestsStore requests = journal.getRecordedRequests("mptu", "prepayRequest");
+        requests.add(new MockRequest("<req>ä</req>", "id=1", "/items/1", headers, 1234567890123L));
+        requests.add(new MockRequest(null, null, null, null));
+
+        List<MockRequest> recorded = requests.getRequests();
+        assertThat(recorded, hasSize(2));
+        assertThat(recorded.get(0).getBody(), is("<req>ä</req>"));
+        assertThat(recorded.get(0).getQueryString(), is("id=1"));
+        assertThat(recorded.get(0).getResourcePath(), is("/items/1"));
+        assertThat(recorded.get(0).getHeaders().get("Accept"), contains("text/xml", "application/json"));
+        assertThat(recorded.get(0).getRecordedAt(), is(1234567890123L));
+        assertThat(recorded.get(1).getBody(), is(nullValue()));
+        assertThat(recorded.get(1).getHeaders(), is(nullValue()));
+        assertThat(requests.getRetainedCount(), is(2));
+    }
+
+    @Test
+    public void shouldReadResponseServedToRequest() throws IOException {
+        RecordingJournal journal = new RecordingJournal(folder.getRoot(), SEGMENT_BYTES, 4);
+        Map<String, String> responseHeaders = new HashMap<String, String>();
+        responseHeaders.put("ETag", "1");
+
+        RecordedRequestsStore requests = journal.getRecordedRequests("mptu", "prepayRequest");
+        requests.add(new MockRequest("<req/>", null, null, null, 1L, null,
+            MockResponse.body("<resp/>").code(201).contentType("text/xml").headers(responseHeaders).build()));
+        requests.add(new MockRequest("<req/>", null, null, null, 1L, null,
+            MockResponse.body(null).binaryBody(new byte[]{1, 2}).build()));
+
+        List<MockRequest> recorded = requests.getRequests();
+        MockResponse response = recorded.get(0).getResponse();
+        assertThat(response.getBody(), is("<resp/>"));
+        assertThat(response.getCode(), is(201));
+        assertThat(response.getContentType(), is("text/xml"));
+        assertThat(response.getHeaders(), is(responseHeaders));
+        assertThat(recorded.get(1).getResponse().getBinaryBody(), is(new byte[]{1, 2}));
+    }
+
+    @Test
+    public void shouldReadCompressedBodyAsStored() throws IOException {
+        RecordingJournal journal = new RecordingJournal(folder.getRoot(), 4096, 4);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("<item>ä€</item>");
+        }
+
+        RecordedRequestsStore requests = journal.getRecordedRequests("mptu", "prepayRequest");
+        requests.add(new MockRequest(text.toString(), null, null, null));
+
+        RecordedBody body = requests.getRequests().get(0).getRecordedBody();
+        assertThat(body.isCompressed(), is(true));
+        assertThat(body.getText(), is(text.toString()));
+    }
+
+    @Test
+    public void shouldKeepRequestsOfOperationsApart() throws IOException {
+        RecordingJournal journal = new RecordingJournal(folder.getRoot(), SEGMENT_BYTES, 4);
+
+        journal.getRecordedRequests("mptu", "prepayRequest").add(new MockRequest("<req1/>", null, null, null));
+        journal.getRecordedRequests("mptu", "topupRequest").add(new MockRequest("<req2/>", null, null, null));
+
+        assertThat(bodies(journal.getRecordedRequests("mptu", "prepayRequest")), contains("<req1/>"));
+        assertThat(bodies(journal.getRecordedRequests("mptu", "topupRequest")), contains("<req2/>"));
+    }
+
+    @Test
+    public void shouldReplayRequestsAfterRestart() throws IOException {
+        RecordingJournal journal = new RecordingJournal(folder.getRoot(), SEGMENT_BYTES, 4);
+        journal.getRecordedRequests("mptu", "prepayRequest").add(new MockRequest("<req1/>", null, null, null));
+        journal.getRecordedRequests("mptu", "prepayRequest").add(new MockRequest("<req2/>", null, null, null));
+        journal.force();
+
+        RecordingJournal reopened = new RecordingJournal(folder.getRoot(), SEGMENT_BYTES, 4);
+        reopened.getRecordedRequests("mptu", "prepayRequest").add(new MockRequest("<req3/>", null, null, null));
+
+        assertThat(bodies(reopened.getRecordedRequests("mptu", "prepayRequest")), contains("<req1/>", "<req2/>", "<req3/>"));
+    }
+
+    @Test
+    public void shouldReplayTimingOfRequestsAfterRestart() throws IOException {
+        RecordingJournal journal = new RecordingJournal(folder.getRoot(), SEGMENT_BYTES, 4);
+        RecordedRequestsStore requests = journal.getRecordedRequests("mptu", "prepayRequest");
+        RequestTiming completed = new RequestTiming(1000L);
+        completed.complete(1500L);
+        RequestTiming pending = new RequestTiming(2000L);
+        requests.add(new MockRequest("<req1/>", null, null, null, 1L, completed));
+        requests.add(new MockRequest("<req2/>", null, null, null, 2L, pending));
+
+        assertThat(requests.getRequests().get(1).getTiming().getServiceTimeNanos(), is(nullValue()));
+        pending.complete(2700L);
+        assertThat(requests.getRequests().get(1).getTiming().getServiceTimeNanos(), is(700L));
+        journal.force();
+
+        List<MockRequest> replayed = new RecordingJournal(folder.getRoot(), SEGMENT_BYTES, 4)
+            .getRecordedRequests("mptu", "prepayRequest").getRequests();
+        assertThat(replayed.get(0).getTiming().getArrivalNanos(), is(1000L));
+        assertThat(replayed.get(0).getTiming().getServiceTimeNanos(), is(500L));
+        assertThat(replayed.get(1).getTiming().getArrivalNanos(), is(2000L));
+        assertThat(replayed.get(1).getTiming().getServiceTimeNanos(), is(700L));
+    }
+
+    @Test
+    public void shouldNotReplayClearedRequests() throws IOException {
+        RecordingJournal journal = new RecordingJournal(folder.getRoot(), SEGMENT_BYTES, 4);
+        RecordedRequestsStore requests = journal.getRecordedRequests("mptu", "prepayRequest");
+        requests.add(new MockRequest("<req1/>", null, null, null));
+        requests.cleared().add(new MockRequest("<req2/>", null, null, null));
+        journal.force();
+
+        RecordingJournal reopened = new RecordingJournal(folder.getRoot(), SEGMENT_BYTES, 4);
+
+        assertThat(bodies(reopened.getRecordedRequests("mptu", "prepayRequest")), contains("<req2/>"));
+    }
+
+    @Test
+    public void shouldDeleteOldestSegmentWhenSegmentLimitIsExceeded() throws IOException {
+        RecordingJournal journal = new RecordingJournal(folder.getRoot(), SEGMENT_BYTES, 2);
+        RecordedRequestsStore requests = journal.getRecordedRequests("mptu", "prepayRequest");
+
+        for (int i = 0; i < 20; i++) {
+            requests.add(new MockRequest("<req" + i + "/>", null, null, null));
+        }
+
+        File[] segments = folder.getRoot().listFiles();
+        assertThat(segments.length, is(2));
+        List<String> bodies = bodies(requests);
+        assertThat(bodies.size(), is(lessThan(20)));
+        assertThat(bodies.get(bodies.size() - 1), is("<req19/>"));
+        assertThat(requests.getEvictedCount(), is(20L - bodies.size()));
+    }
+
+    @Test
+    public void shouldGetRequestsBySequenceUntilTheirSegmentIsDeleted() throws IOException {
+        RecordingJournal journal = new RecordingJournal(folder.getRoot(), SEGMENT_BYTES, 2);
+        RecordedRequestsStore requests = journal.getRecordedRequests("mptu", "prepayRequest");
+
+        long first = requests.add(new MockRequest("<req0/>", null, null, null));
+        long second = requests.add(new MockRequest("<req1/>", null, null, null));
+        assertThat(requests.get(second).getBody(), is("<req1/>"));
+
+        for (int i = 2; i < 20; i++) {
+            requests.add(new MockRequest("<req" + i + "/>", null, null, null));
+        }
+        assertThat(requests.get(first), is(nullValue()));
+        assertThat(requests.getFirstSequence(), is(20L - requests.getRetainedCount()));
+    }
+
+    @Test
+    public void shouldDropRequestLargerThanSegment() throws IOException {
+        RecordingJournal journal = new RecordingJournal(folder.getRoot(), SEGMENT_BYTES, 2);
+        RecordedRequestsStore requests = journal.getRecordedRequests("mptu", "prepayRequest");
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < SEGMENT_BYTES; i++) {
+            body.append('x');
+        }
+
+        assertThat(requests.add(new MockRequest(body.toString(), null, null, null)), is(-1L));
+        assertThat(requests.getDroppedCount(), is(1L));
+        assertThat(requests.getRequests(), is(empty()));
+    }
+
+    private List<String> bodies(RecordedRequestsStore requests) {
+        List<String> bodies = new ArrayList<String>();
+        for (MockRequest request : requests.getRequests()) {
+            bodies.add(request.getBody());
+        }
+        return bodies;
+    }
+}
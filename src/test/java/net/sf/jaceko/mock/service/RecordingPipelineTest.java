@@ -0,0 +1,106 @@
+package net.sf.jaceko.mock.service;
+
+import net.sf.jaceko.mock.model.request.MockRequest;
+import net.sf.jaceko.mock.model.request.RequestContext;
+import net.sf.jaceko.mock.model.webservice.WebService;
+import net.sf.jaceko.mock.model.webservice.WebserviceOperation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class RecordingPipelineTest {
+    private static final String SERVICE_NAME = "mptu";
+    private static final String OPERATION_ID = "prepayRequest";
+
+    private RecordedRequestsHolder recordedRequestsHolder = new RecordedRequestsHolder();
+    private RecordingPipeline recordingPipeline = new RecordingPipeline(4);
+
+    @Mock
+    private MockConfigurationHolder configurationHolder;
+
+    @Before
+    public void init() {
+        initMocks(this);
+        WebService service = new WebService();
+        service.setIgnoreXmlDeclaration(true);
+        when(configurationHolder.getWebService(anyString())).thenReturn(service);
+        when(configurationHolder.getWebServiceOperation(anyString(), anyString())).thenReturn(new WebserviceOperation());
+        recordedRequestsHolder.setMockserviceConfiguration(configurationHolder);
+        recordedRequestsHolder.setRecordingPipeline(recordingPipeline);
+    }
+
+    @After
+    public void stopPipeline() throws InterruptedException {
+        recordingPipeline.stop();
+    }
+
+    @Test
+    public void shouldRoundRingSizeUpToPowerOfTwo() {
+        assertThat(new RecordingPipeline(1000).getRingSize(), is(1024));
+        assertThat(new RecordingPipeline(1024).getRingSize(), is(1024));
+    }
+
+    @Test
+    public void shouldReadRequestsRecordedThroughPipeline() {
+        recordedRequestsHolder.recordRequest(SERVICE_NAME, OPERATION_ID,
+            new RequestContext("<?xml version=\"1.0\"?><req1/>", null, null, null, null));
+        recordedRequestsHolder.recordRequest(SERVICE_NAME, OPERATION_ID, new RequestContext("<req2/>", null, null, null, null));
+
+        assertThat(recordedRequestsHolder.getRecordedRequestBodies(SERVICE_NAME, OPERATION_ID), contains("<req1/>", "<req2/>"));
+    }
+
+    @Test
+    public void shouldNotLoseRequestsPublishedConcurrentlyBeyondRingSize() throws InterruptedException {
+        final int threads = 4;
+        final int requestsPerThread = 250;
+        List<Thread> producers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final String operationId = "operation" + t;
+            producers.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < requestsPerThread; i++) {
+                        recordedRequestsHolder.recordRequest(SERVICE_NAME, operationId,
+                            new RequestContext(Integer.toString(i), null, null, null, null));
+                    }
+                }
+            });
+        }
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        for (int t = 0; t < threads; t++) {
+            Collection<MockRequest> recorded = recordedRequestsHolder.getRecordedRequests(SERVICE_NAME, "operation" + t);
+            assertThat(recorded.size(), is(requestsPerThread));
+            int expected = 0;
+            for (MockRequest request : recorded) {
+                assertThat(request.getBody(), is(Integer.toString(expected++)));
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotRecordRequestPublishedBeforeClearAfterIt() {
+        recordedRequestsHolder.recordRequest(SERVICE_NAME, OPERATION_ID, new RequestContext("<req1/>", null, null, null, null));
+
+        recordedRequestsHolder.clearRecordedRequests(SERVICE_NAME, OPERATION_ID);
+
+        assertThat(recordedRequestsHolder.getRecordedRequests(SERVICE_NAME, OPERATION_ID).isEmpty(), is(true));
+    }
+}
@@ -8,6 +8,8 @@ import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
@@ -18,7 +20,6 @@ import static org.hamcrest.core.IsEqual.equalTo;
 import static org.junit.Assert.assertThat;
 import static org.junit.matchers.JUnitMatchers.hasItem;
 import static org.mockito.Matchers.anyString;
-import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -31,9 +32,6 @@ public class RequestExecutorTest {
     @Mock
     private MockConfigurationHolder configurationHolder;
 
-    @Mock
-    private Delayer delayer;
-
     private RequestExecutor requestExeutor = new RequestExecutor();
     private RecordedRequestsHolder recordedRequestsHolder;
 
@@ -44,7 +42,14 @@ public class RequestExecutorTest {
         recordedRequestsHolder = new RecordedRequestsHolder();
         recordedRequestsHolder.setMockserviceConfiguration(configurationHolder);
         requestExeutor.setRecordedRequestsHolder(recordedRequestsHolder);
-        requestExeutor.setDelayer(delayer);
+        // REST requests without path templates are served by the operation of their HTTP method
+        when(configurationHolder.getRestOperation(anyString(), anyString(), anyString())).thenAnswer(new Answer<WebserviceOperation>() {
+            @Override
+            public WebserviceOperation answer(InvocationOnMock invocation) {
+                Object[] arguments = invocation.getArguments();
+                return configurationHolder.getWebServiceOperation((String) arguments[0], (String) arguments[1]);
+            }
+        });
     }
 
     @Test
@@ -194,13 +199,13 @@ public class RequestExecutorTest {
     public void shouldDelayByZeroSecByDefault() {
         initWebService(anyString());
         when(configurationHolder.getWebServiceOperation(anyString(), anyString())).thenReturn(new WebserviceOperation());
-        requestExeutor.performRequest("", "", "", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+        MockResponse response = requestExeutor.performRequest("", "", "", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
 
-        verify(delayer).delaySec(0);
+        assertThat(response.getDelaySec(), is(0));
     }
 
     @Test
-    public void shouldDelayRequest() {
+    public void shouldReturnDelayOfCustomResponseWithoutBlocking() {
         WebserviceOperation operation = new WebserviceOperation();
         int delaySec = 5;
         MockResponse customResponse = new MockResponse(delaySec);
@@ -208,9 +213,11 @@ public class RequestExecutorTest {
 
         initWebService(anyString());
         when(configurationHolder.getWebServiceOperation(anyString(), anyString())).thenReturn(operation);
-        requestExeutor.performRequest("", "", "", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
+        long start = System.currentTimeMillis();
+        MockResponse response = requestExeutor.performRequest("", "", "", NOT_USED_REQUEST_PARAM, NOT_USED_RESOURCE_ID, null);
 
-        verify(delayer).delaySec(delaySec);
+        assertThat(response.getDelaySec(), is(delaySec));
+        assertThat(System.currentTimeMillis() - start < delaySec * 1000, is(true));
     }
 
     @Test
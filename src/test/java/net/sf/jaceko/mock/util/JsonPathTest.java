@@ -0,0 +1,48 @@
+package net.sf.jaceko.mock.util;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class JsonPathTest {
+
+    private static final String ORDER = "{\"order\": {\"id\": \"A1\", \"items\": [{\"sku\": \"x\", \"qty\": 2}, {\"sku\": \"y\", \"qty\": 1}]}}";
+
+    @Test
+    public void shouldSelectMember() {
+        assertThat(JsonPath.compile("$.order.id").select(ORDER), contains((Object) "A1"));
+    }
+
+    @Test
+    public void shouldSelectArrayElementsAndBracketedMembers() {
+        assertThat(JsonPath.compile("$.order.items[1]['sku']").select(ORDER), contains((Object) "y"));
+        assertThat(JsonPath.compile("$.order.items[-1].qty").select(ORDER), contains((Object) 1));
+    }
+
+    @Test
+    public void shouldSelectWithWildcards() {
+        List<Object> skus = JsonPath.compile("$.order.items[*].sku").select(ORDER);
+        assertThat(skus, contains((Object) "x", "y"));
+        assertThat(JsonPath.compile("$.order.*").select(ORDER), hasSize(2));
+    }
+
+    @Test
+    public void shouldSelectNothingWhenPathIsMissingOrTextIsNotJson() {
+        assertThat(JsonPath.compile("$.order.customer").select(ORDER), is(empty()));
+        assertThat(JsonPath.compile("$.order.id").select("<order/>"), is(empty()));
+        assertThat(JsonPath.compile("$.order").select("\"text\""), is(empty()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectExpressionNotStartingAtRoot() {
+        JsonPath.compile("order.id");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnsupportedFilter() {
+        JsonPath.compile("$.order.items[?(@.qty > 1)]");
+    }
+}
@@ -1,11 +1,72 @@
 package net.sf.jaceko.mock.util;
 
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import javax.xml.namespace.QName;
+
+import net.sf.jaceko.mock.exception.ClientFaultException;
+
+import org.junit.Test;
+
 
 /**
  * Created by jussi on 30/12/15.
  */
 public class SOAPMessageParserTest {
 
-    // TODO: Tests for the class
+    private static final String SOAP_ENV = "http://schemas.xmlsoap.org/soap/envelope/";
+
+    @Test
+    public void shouldExtractNameOfFirstBodyChild() {
+        String request = "<soapenv:Envelope xmlns:soapenv=\"" + SOAP_ENV + "\"><soapenv:Body>"
+                + "<ns:getBook xmlns:ns=\"http://www.bookstore.com\"><id>1</id></ns:getBook>"
+                + "</soapenv:Body></soapenv:Envelope>";
+
+        assertThat(SOAPMessageParser.extractRequestMessageName(request), is("getBook"));
+        assertThat(SOAPMessageParser.extractRequestMessageQName(request), is(new QName("http://www.bookstore.com", "getBook")));
+    }
+
+    @Test
+    public void shouldSkipHeaderAndWhitespace() {
+        String request = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- comment -->\n"
+                + "<soapenv:Envelope xmlns:soapenv=\"" + SOAP_ENV + "\">\n"
+                + "  <soapenv:Header><Body><nested/></Body></soapenv:Header>\n"
+                + "  <soapenv:Body>\n    <addBook/>\n  </soapenv:Body>\n</soapenv:Envelope>";
+
+        assertThat(SOAPMessageParser.extractRequestMessageQName(request), is(new QName("addBook")));
+    }
+
+    @Test
+    public void shouldNotParseBeyondFirstBodyChild() {
+        String request = "<Envelope><Body><getBook/><unclosed></Body>";
+
+        assertThat(SOAPMessageParser.extractRequestMessageName(request), is("getBook"));
+    }
+
+    @Test(expected = ClientFaultException.class)
+    public void shouldThrowClientFaultOnMalformedXml() {
+        SOAPMessageParser.extractRequestMessageName("<Envelope><Body><<getBook/></Body></Envelope>");
+    }
+
+    @Test(expected = ClientFaultException.class)
+    public void shouldThrowClientFaultOnEmptyRequest() {
+        SOAPMessageParser.extractRequestMessageName("");
+    }
+
+    @Test(expected = ClientFaultException.class)
+    public void shouldThrowClientFaultWhenRootIsNotEnvelope() {
+        SOAPMessageParser.extractRequestMessageName("<getBook><Body><id/></Body></getBook>");
+    }
+
+    @Test(expected = ClientFaultException.class)
+    public void shouldThrowClientFaultWhenBodyIsMissing() {
+        SOAPMessageParser.extractRequestMessageName("<Envelope><Header><id/></Header></Envelope>");
+    }
+
+    @Test(expected = ClientFaultException.class)
+    public void shouldThrowClientFaultWhenBodyIsEmpty() {
+        SOAPMessageParser.extractRequestMessageName("<Envelope><Body> </Body></Envelope>");
+    }
 
 }